@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.internal.api;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Identifies a sequence of resources on an executor, passing each result to a consumer as soon as it is
+ * available instead of collecting them all.
+ * <p>
+ * The resources are read lazily from an iterator and at most maxInFlight are queued or being identified at any
+ * one time, so iterating blocks while the executor and consumer catch up, and memory use does not grow with the
+ * number of resources.  Iterating happens on the calling thread, so a directory walk or a paged listing carries
+ * on while earlier resources are still being identified.  If any identification fails, no more resources are
+ * submitted and the first failure is thrown once the resources already submitted have completed.
+ */
+final class BoundedSubmitter {
+
+    private final Executor executor;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    /**
+     * @param executor The executor to identify resources on.
+     * @param maxInFlight The maximum number of resources queued or being identified at once.
+     */
+    BoundedSubmitter(final Executor executor, final int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("The maximum number of resources in flight must be at least 1: " + maxInFlight);
+        }
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Identifies every resource in an iterator, returning when all of them have been passed to the consumer.
+     *
+     * @param resources The resources to identify.
+     * @param identifier A function which identifies a single resource.
+     * @param consumer The consumer of results, which may be called concurrently from the executor's threads.
+     * @param <T> The type of resource to identify.
+     * @throws IOException If a resource could not be identified.
+     */
+    <T> void submit(final Iterator<T> resources, final Function<T, DroidAPI.APIResult> identifier,
+                    final Consumer<DroidAPI.APIResult> consumer) throws IOException {
+        try {
+            while (failure.get() == null && resources.hasNext()) {
+                submitResource(resources.next(), identifier, consumer);
+            }
+        } finally {
+            awaitInFlight();
+        }
+        throwFailure();
+    }
+
+    //CHECKSTYLE:OFF - illegal to catch RuntimeException... but we must record any failure on the executor's thread.
+    private <T> void submitResource(final T resource, final Function<T, DroidAPI.APIResult> identifier,
+                                    final Consumer<DroidAPI.APIResult> consumer) throws InterruptedIOException {
+        acquire(1);
+        try {
+            executor.execute(() -> {
+                try {
+                    consumer.accept(identifier.apply(resource));
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+    //CHECKSTYLE:ON
+
+    private void awaitInFlight() throws InterruptedIOException {
+        acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+    }
+
+    private void acquire(final int permits) throws InterruptedIOException {
+        try {
+            inFlight.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while identifying resources");
+        }
+    }
+
+    private void throwFailure() throws IOException {
+        final RuntimeException e = failure.get();
+        if (e != null) {
+            if (e.getCause() instanceof IOException ioe) {
+                throw ioe;
+            }
+            throw e;
+        }
+    }
+}
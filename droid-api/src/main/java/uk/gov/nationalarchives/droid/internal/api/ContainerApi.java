@@ -47,16 +47,43 @@ import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveFormatResolv
 import uk.gov.nationalarchives.droid.core.interfaces.archive.ContainerIdentifierFactory;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.IdentificationRequestFactory;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.ContainerIdentifierFactoryImpl;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.WindowBufferPool;
 import uk.gov.nationalarchives.droid.core.interfaces.signature.SignatureFileException;
 
 public final class ContainerApi {
 
     private final DroidCore droid;
     private final Path containerSignature;
+    private final int containerEntryThreads;
+    private final WindowBufferPool bufferPool;
 
     public ContainerApi(DroidCore droid, Path containerSignature) {
+        this(droid, containerSignature, 0);
+    }
+
+    /**
+     * @param droid The binary signature identifier.
+     * @param containerSignature The container signature file.
+     * @param containerEntryThreads The number of threads to read the entries of ZIP and OLE2 containers on,
+     *                              or 0 to read them one at a time.
+     */
+    public ContainerApi(DroidCore droid, Path containerSignature, int containerEntryThreads) {
+        this(droid, containerSignature, containerEntryThreads, null);
+    }
+
+    /**
+     * @param droid The binary signature identifier.
+     * @param containerSignature The container signature file.
+     * @param containerEntryThreads The number of threads to read the entries of ZIP and OLE2 containers on,
+     *                              or 0 to read them one at a time.
+     * @param bufferPool The pool container entries borrow windows from, or null to allocate new windows.
+     */
+    public ContainerApi(DroidCore droid, Path containerSignature, int containerEntryThreads,
+                        WindowBufferPool bufferPool) {
         this.droid = droid;
         this.containerSignature = containerSignature;
+        this.containerEntryThreads = containerEntryThreads;
+        this.bufferPool = bufferPool;
     }
 
     public ContainerSignatureFileReader signatureReader() {
@@ -67,12 +94,15 @@ public final class ContainerApi {
     }
 
     private IdentificationRequestFactory<InputStream> requestFactory() {
-        return new ContainerFileIdentificationRequestFactory();
+        ContainerFileIdentificationRequestFactory factory = new ContainerFileIdentificationRequestFactory();
+        factory.setBufferPool(bufferPool);
+        return factory;
     }
 
     private IdentifierEngine zipIdentifierEngine() {
         ZipIdentifierEngine engine = new ZipIdentifierEngine();
         engine.setRequestFactory(requestFactory());
+        engine.setEntryThreads(containerEntryThreads);
         return engine;
     }
 
@@ -85,6 +115,7 @@ public final class ContainerApi {
     private Ole2IdentifierEngine ole2IdentifierEngine() {
         Ole2IdentifierEngine engine = new Ole2IdentifierEngine();
         engine.setRequestFactory(requestFactory());
+        engine.setEntryThreads(containerEntryThreads);
         return engine;
     }
 
@@ -35,37 +35,32 @@ import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
 
 import org.apache.http.client.utils.URIBuilder;
-import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.regions.providers.DefaultAwsRegionProviderChain;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3Uri;
 import software.amazon.awssdk.services.s3.S3Utilities;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.S3Object;
 import uk.gov.nationalarchives.droid.core.BinarySignatureIdentifier;
 import uk.gov.nationalarchives.droid.core.SignatureParseException;
 import uk.gov.nationalarchives.droid.core.interfaces.*;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.ContainerIdentifier;
-import uk.gov.nationalarchives.droid.core.interfaces.hash.MD5HashGenerator;
-import uk.gov.nationalarchives.droid.core.interfaces.hash.SHA1HashGenerator;
-import uk.gov.nationalarchives.droid.core.interfaces.hash.SHA256HashGenerator;
-import uk.gov.nationalarchives.droid.core.interfaces.hash.SHA512HashGenerator;
+import uk.gov.nationalarchives.droid.core.interfaces.hash.CompositeHashGenerator;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.*;
 
 
@@ -118,6 +113,17 @@ public final class DroidAPI implements AutoCloseable {
 
     private final List<HashAlgorithm> hashAlgorithms;
 
+    private final int s3ObjectsInFlight;
+
+    private final RemoteReadStatistics remoteReadStatistics = new RemoteReadStatistics();
+
+    private final RemoteBlockCache remoteBlockCache;
+
+    private final boolean fileChannelReader;
+
+    private final WindowBufferPool bufferPool;
+
+    //CHECKSTYLE:OFF - too many parameters - but the builder is the only caller.
     private DroidAPI(
             DroidCore droidCore,
             ContainerIdentifier zipIdentifier,
@@ -129,7 +135,11 @@ public final class DroidAPI implements AutoCloseable {
             S3Client s3Client,
             HttpClient httpClient,
             Region s3Region,
-            List<HashAlgorithm> hashAlgorithms
+            List<HashAlgorithm> hashAlgorithms,
+            int s3ObjectsInFlight,
+            long remoteBlockCacheSize,
+            boolean fileChannelReader,
+            WindowBufferPool bufferPool
     ) {
         this.droidCore = droidCore;
         this.zipIdentifier = zipIdentifier;
@@ -142,7 +152,12 @@ public final class DroidAPI implements AutoCloseable {
         this.s3Client = getS3ClientOrDefault(s3Client);
         this.httpClient = getHttpClientOrDefault(httpClient);
         this.hashAlgorithms = hashAlgorithms;
+        this.s3ObjectsInFlight = s3ObjectsInFlight;
+        this.remoteBlockCache = remoteBlockCacheSize > 0 ? new RemoteBlockCache(remoteBlockCacheSize) : null;
+        this.fileChannelReader = fileChannelReader;
+        this.bufferPool = bufferPool;
     }
+    //CHECKSTYLE:ON
 
     public record APIResult(List<APIIdentificationResult> identificationResults, Map<HashAlgorithm, String> hashResults) {}
 
@@ -184,6 +199,12 @@ public final class DroidAPI implements AutoCloseable {
         private HttpClient httpClient;
         private List<HashAlgorithm> hashAlgorithms = Collections.emptyList();
         private long maxBytesToScan = DEFAULT_MAX_BYTES_TO_SCAN;
+        private Path signatureSnapshotDir;
+        private int s3ObjectsInFlight = 1;
+        private long remoteBlockCacheSize;
+        private boolean fileChannelReader;
+        private long bufferPoolSize;
+        private int containerEntryThreads;
 
         public DroidAPIBuilder binarySignature(final Path binarySignature) {
             this.binarySignature = binarySignature;
@@ -220,18 +241,98 @@ public final class DroidAPI implements AutoCloseable {
             return this;
         }
 
+        /**
+         * Loads the binary signature from a precompiled snapshot in this directory if one exists for it,
+         * or writes one there after parsing it, so later builds start faster.
+         * @param signatureSnapshotDir The directory to keep signature snapshots in, or null for none.
+         * @return this builder.
+         */
+        public DroidAPIBuilder signatureSnapshotDir(final Path signatureSnapshotDir) {
+            this.signatureSnapshotDir = signatureSnapshotDir;
+            return this;
+        }
+
+        /**
+         * Sets how many objects under an S3 prefix are identified at once.  With more than one, objects are
+         * identified on virtual threads while the listing carries on, and the first and last windows of each
+         * object are read at the same time.  Results for a prefix are then returned in no particular order.
+         * @param s3ObjectsInFlight The number of S3 objects to identify at once; the default of 1 identifies
+         *                          them one after another in listing order.
+         * @return this builder.
+         */
+        public DroidAPIBuilder s3ObjectsInFlight(final int s3ObjectsInFlight) {
+            if (s3ObjectsInFlight < 1) {
+                throw new IllegalArgumentException("The number of S3 objects in flight must be at least 1: " + s3ObjectsInFlight);
+            }
+            this.s3ObjectsInFlight = s3ObjectsInFlight;
+            return this;
+        }
+
+        /**
+         * Shares the blocks read from S3 and http resources between all requests made by the API, so that
+         * identifying, hashing or submitting the same version of a resource again doesn't fetch it again.
+         * @param remoteBlockCacheSize The maximum number of bytes to cache, or 0 for no cache, the default.
+         * @return this builder.
+         */
+        public DroidAPIBuilder remoteBlockCacheSize(final long remoteBlockCacheSize) {
+            this.remoteBlockCacheSize = remoteBlockCacheSize;
+            return this;
+        }
+
+        /**
+         * Reads local files with positional FileChannel reads into windows held only while each file is
+         * identified, rather than with soft cached windows.
+         * @param fileChannelReader Whether to read local files with a FileChannel reader.
+         * @return this builder.
+         */
+        public DroidAPIBuilder fileChannelReader(final boolean fileChannelReader) {
+            this.fileChannelReader = fileChannelReader;
+            return this;
+        }
+
+        /**
+         * Reuses the windows of local files read with a FileChannel reader, and of the container entries read to
+         * match container signatures, rather than allocating new ones for every file and entry.
+         * @param bufferPoolSize The maximum number of bytes of windows to pool, or 0 for no pool, the default.
+         * @return this builder.
+         */
+        public DroidAPIBuilder bufferPoolSize(final long bufferPoolSize) {
+            this.bufferPoolSize = bufferPoolSize;
+            return this;
+        }
+
+        /**
+         * Reads and matches the entries of ZIP and OLE2 containers several at a time, on a pool of threads
+         * shared by all the containers the API identifies.  Matching a container stops as soon as every
+         * container signature has either matched or can no longer match.
+         * @param containerEntryThreads The number of threads to read entries on, or 0 to read the entries of
+         *                              each container one at a time, the default.
+         * @return this builder.
+         */
+        public DroidAPIBuilder containerEntryThreads(final int containerEntryThreads) {
+            if (containerEntryThreads < 0) {
+                throw new IllegalArgumentException("The number of container entry threads can't be negative: " + containerEntryThreads);
+            }
+            this.containerEntryThreads = containerEntryThreads;
+            return this;
+        }
+
         public DroidAPI build() throws SignatureParseException {
             if (this.binarySignature == null || this.containerSignature == null) {
                 throw new IllegalArgumentException("Container signature and binary signature are mandatory arguments");
             }
             BinarySignatureIdentifier droidCore = new BinarySignatureIdentifier();
             droidCore.setSignatureFile(binarySignature.toAbsolutePath().toString());
+            if (this.signatureSnapshotDir != null) {
+                droidCore.setSignatureSnapshotDir(signatureSnapshotDir.toAbsolutePath().toString());
+            }
             droidCore.init();
             droidCore.setMaxBytesToScan(this.maxBytesToScan);
             String containerVersion = StringUtils.substringAfterLast(containerSignature.getFileName().toString(), "-").split("\\.")[0];
             String droidVersion = ResourceBundle.getBundle("options").getString("version_no");
-            ContainerApi containerApi = new ContainerApi(droidCore, containerSignature);
-            return new DroidAPI(droidCore, containerApi.zipIdentifier(), containerApi.ole2Identifier(), containerApi.gzIdentifier(), containerVersion, droidCore.getSigFile().getVersion(), droidVersion, this.s3Client, this.httpClient, this.s3Region, this.hashAlgorithms);
+            WindowBufferPool bufferPool = this.bufferPoolSize > 0 ? new WindowBufferPool(this.bufferPoolSize) : null;
+            ContainerApi containerApi = new ContainerApi(droidCore, containerSignature, this.containerEntryThreads, bufferPool);
+            return new DroidAPI(droidCore, containerApi.zipIdentifier(), containerApi.ole2Identifier(), containerApi.gzIdentifier(), containerVersion, droidCore.getSigFile().getVersion(), droidVersion, this.s3Client, this.httpClient, this.s3Region, this.hashAlgorithms, this.s3ObjectsInFlight, this.remoteBlockCacheSize, this.fileChannelReader, bufferPool);
         }
     }
 
@@ -267,6 +368,43 @@ public final class DroidAPI implements AutoCloseable {
         return submit(uri, null);
     }
 
+    /**
+     * Submit every file in a directory tree for identification, passing each result to a consumer as soon as it
+     * is available rather than returning them all at once.  Files are identified on virtual threads, with at most
+     * two files per available processor in flight at any one time.
+     * @param directory The directory to identify the files in.
+     * @param extension The extension of the files. Only necessary if the files don't have one.
+     * @param consumer Receives the result for each file.  It may be called concurrently, so must be thread-safe.
+     * @throws IOException If the directory can't be walked, or a file can't be identified.
+     */
+    public void submitDirectory(final Path directory, String extension, Consumer<APIResult> consumer) throws IOException {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            submitDirectory(directory, extension, executor, Runtime.getRuntime().availableProcessors() * 2, consumer);
+        }
+    }
+
+    /**
+     * Submit every file in a directory tree for identification on an executor, passing each result to a consumer
+     * as soon as it is available rather than returning them all at once.  The directory is walked lazily, and
+     * walking waits while maxInFlight files are queued or being identified, so a slow consumer holds back the walk
+     * and memory use does not grow with the size of the tree.
+     * @param directory The directory to identify the files in.
+     * @param extension The extension of the files. Only necessary if the files don't have one.
+     * @param executor The executor to identify files on, e.g. a bounded thread pool or virtual threads.
+     * @param maxInFlight The maximum number of files queued or being identified at once.
+     * @param consumer Receives the result for each file.  It may be called concurrently, so must be thread-safe.
+     * @throws IOException If the directory can't be walked, or a file can't be identified.
+     */
+    public void submitDirectory(final Path directory, String extension, Executor executor, int maxInFlight,
+                                Consumer<APIResult> consumer) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            new BoundedSubmitter(executor, maxInFlight).submit(files.filter(Files::isRegularFile).iterator(),
+                    file -> getApiResultForFile(extension, file), consumer);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
     private List<APIResult> submitHttpIdentification(final URI uri, String extension) throws IOException {
         HttpClient httpClient = this.httpClient == null ? HttpClient.newHttpClient() : this.httpClient;
         HttpUtils httpUtils = new HttpUtils(httpClient);
@@ -282,94 +420,105 @@ public final class DroidAPI implements AutoCloseable {
 
         final RequestIdentifier id = getRequestIdentifier(uri);
 
-        Map<HashAlgorithm, String> hashResults = generateHashResults(uri, this::getHttpHash);
-
-        try (final HttpIdentificationRequest request = new HttpIdentificationRequest(metaData, id, httpClient)) {
+        try (final HttpIdentificationRequest request = new HttpIdentificationRequest(metaData, id, httpClient, DEFAULT_WINDOW_SIZE)) {
             request.setExtension(extension);
+            request.setBlockCache(remoteBlockCache, fileSize + "@" + lastModified);
             request.open(uri);
-            return List.of(new APIResult(getIdentificationResults(request), hashResults));
+            return List.of(getApiResult(request));
         }
     }
 
-    private <T> Map<HashAlgorithm, String> generateHashResults(T identifier, BiFunction<HashAlgorithm, T, String> hashFunction) {
-        return hashAlgorithms.stream().collect(Collectors.toMap(
-                algorithm -> algorithm,
-                algorithm -> hashFunction.apply(algorithm, identifier)
-        ));
+    /**
+     * Identifies a request and then hashes it.  Hashing after identification reads the content through
+     * the request's own window reader, so any windows it cached while identifying are not fetched again,
+     * and all the requested hashes are calculated in a single pass over the content.
+     *
+     * @param request The request to identify and hash.
+     * @param <T> The type of resource the request identifies.
+     * @return The identification and hash results for the request.
+     * @throws IOException If there was a problem reading the request.
+     */
+    private <T> APIResult getApiResult(IdentificationRequest<T> request) throws IOException {
+        List<APIIdentificationResult> identificationResults = getIdentificationResults(request);
+        APIResult result = new APIResult(identificationResults, generateHashResults(request));
+        if (request.getWindowReader() instanceof RemoteWindowReader remoteReader) {
+            remoteReadStatistics.add(remoteReader.getStatistics());
+        }
+        return result;
     }
 
-    private String getFileHash(HashAlgorithm hashAlgorithm, Path path) {
-        try (InputStream fileInputStream = new FileInputStream(path.toFile())) {
-            return getHash(hashAlgorithm, fileInputStream);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+    private <T> Map<HashAlgorithm, String> generateHashResults(IdentificationRequest<T> request) throws IOException {
+        Map<HashAlgorithm, String> hashResults = new HashMap<>();
+        if (!hashAlgorithms.isEmpty()) {
+            List<String> digestNames = hashAlgorithms.stream().map(DroidAPI::getDigestName).toList();
+            Map<String, String> hashes = new CompositeHashGenerator(digestNames).hash(request.getWindowReader());
+            for (HashAlgorithm algorithm : hashAlgorithms) {
+                hashResults.put(algorithm, hashes.get(getDigestName(algorithm)));
+            }
         }
+        return hashResults;
     }
 
-    private String getS3Hash(HashAlgorithm algorithm, S3Uri s3Uri) {
-        String key = s3Uri.key().orElseThrow(() -> new RuntimeException("Key not found in uri " + s3Uri.uri()));
-        String bucket = s3Uri.bucket().orElseThrow(() -> new RuntimeException("Bucket not found in uri " + s3Uri.uri()));
-
-        try (ResponseInputStream<GetObjectResponse> responseInputStream = s3Client.getObject(GetObjectRequest.builder().bucket(bucket).key(key).build())) {
-            return getHash(algorithm, responseInputStream);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    private static String getDigestName(HashAlgorithm algorithm) {
+        return switch (algorithm) {
+            case MD5 -> "MD5";
+            case SHA1 -> "SHA-1";
+            case SHA256 -> "SHA-256";
+            case SHA512 -> "SHA-512";
+        };
     }
 
-    private String getHttpHash(HashAlgorithm algorithm, URI httpUri) {
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(httpUri)
-                .GET()
-                .build();
-        try {
-            try (InputStream responseStream = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream()).body()) {
-                return getHash(algorithm, responseStream);
+    private List<APIResult> submitS3Identification(final URI uri, String extension) throws IOException {
+        S3Utils s3Utils = new S3Utils(s3Client);
+        S3Utils.S3ObjectList objectList = s3Utils.listObjects(uri);
+        List<APIResult> apiResults = new ArrayList<>();
+
+        if (s3ObjectsInFlight > 1) {
+            List<APIResult> results = Collections.synchronizedList(apiResults);
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                new BoundedSubmitter(executor, s3ObjectsInFlight).submit(objectList.contents().iterator(),
+                        s3Object -> getApiResultForS3Object(objectList.bucket(), s3Object, extension, executor),
+                        results::add);
+            }
+        } else {
+            for (S3Object s3Object : objectList.contents()) {
+                apiResults.add(identifyS3Object(objectList.bucket(), s3Object, extension, null));
             }
-        } catch (IOException | InterruptedException e) {
-            throw new RuntimeException(e);
         }
+        return apiResults;
     }
 
-    private String getHash(HashAlgorithm algorithm, InputStream inputStream) {
+    private APIResult getApiResultForS3Object(String bucket, S3Object s3Object, String extension, Executor prefetchExecutor) {
         try {
-            return switch (algorithm) {
-                case MD5 -> new MD5HashGenerator().hash(inputStream);
-                case SHA1 -> new SHA1HashGenerator().hash(inputStream);
-                case SHA256 -> new SHA256HashGenerator().hash(inputStream);
-                case SHA512 -> new SHA512HashGenerator().hash(inputStream);
-            };
+            return identifyS3Object(bucket, s3Object, extension, prefetchExecutor);
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new UncheckedIOException(e);
         }
     }
 
-    private List<APIResult> submitS3Identification(final URI uri, String extension) throws IOException {
-        S3Utils s3Utils = new S3Utils(s3Client);
-        S3Utils.S3ObjectList objectList = s3Utils.listObjects(uri);
-        List<APIResult> apiResults = new ArrayList<>();
-
-        for (S3Object s3Object: objectList.contents()) {
-            URIBuilder uriBuilder = new URIBuilder();
-            URI objectUri;
-            try {
-                objectUri = uriBuilder.setScheme(S3_SCHEME).setHost(objectList.bucket()).setPath(s3Object.key()).build();
-            } catch (URISyntaxException e) {
-                throw new RuntimeException(e);
-            }
-            S3Uri s3Uri = S3Utilities.builder().region(s3Region).build().parseUri(objectUri);
-            Map<HashAlgorithm, String> hashResults = generateHashResults(s3Uri, this::getS3Hash);
+    private APIResult identifyS3Object(String bucket, S3Object s3Object, String extension, Executor prefetchExecutor) throws IOException {
+        URIBuilder uriBuilder = new URIBuilder();
+        URI objectUri;
+        try {
+            objectUri = uriBuilder.setScheme(S3_SCHEME).setHost(bucket).setPath(s3Object.key()).build();
+        } catch (URISyntaxException e) {
+            throw new RuntimeException(e);
+        }
+        S3Uri s3Uri = S3Utilities.builder().region(s3Region).build().parseUri(objectUri);
 
-            final RequestIdentifier id = getRequestIdentifier(s3Uri.uri());
-            RequestMetaData metaData = new RequestMetaData(s3Object.size(), s3Object.lastModified().toEpochMilli(), s3Uri.uri().toString());
+        final RequestIdentifier id = getRequestIdentifier(s3Uri.uri());
+        RequestMetaData metaData = new RequestMetaData(s3Object.size(), s3Object.lastModified().toEpochMilli(), s3Uri.uri().toString());
 
-            try (final S3IdentificationRequest request = new S3IdentificationRequest(metaData, id, s3Client, DEFAULT_WINDOW_SIZE)) {
-                request.setExtension(extension);
+        try (final S3IdentificationRequest request = new S3IdentificationRequest(metaData, id, s3Client, DEFAULT_WINDOW_SIZE)) {
+            request.setExtension(extension);
+            request.setBlockCache(remoteBlockCache, s3Object.eTag());
+            if (prefetchExecutor == null) {
                 request.open(s3Uri);
-                apiResults.add(new APIResult(getIdentificationResults(request), hashResults));
+            } else {
+                request.open(s3Uri, prefetchExecutor);
             }
+            return getApiResult(request);
         }
-        return apiResults;
     }
 
     private static RequestIdentifier getRequestIdentifier(URI uri) {
@@ -407,12 +556,11 @@ public final class DroidAPI implements AutoCloseable {
 
         final RequestIdentifier id = getRequestIdentifier(eachFile.toAbsolutePath().toUri());
 
-        Map<HashAlgorithm, String> hashResults = generateHashResults(eachFile, this::getFileHash);
-
-        try (final FileSystemIdentificationRequest request = new FileSystemIdentificationRequest(metaData, id)) {
+        try (final FileSystemIdentificationRequest request = new FileSystemIdentificationRequest(metaData, id, fileChannelReader)) {
             request.setExtension(extension);
+            request.setBufferPool(bufferPool);
             request.open(eachFile);
-            return new APIResult(getIdentificationResults(request), hashResults);
+            return getApiResult(request);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -504,6 +652,31 @@ public final class DroidAPI implements AutoCloseable {
         return httpClient;
     }
 
+    /**
+     * Gets the number of ranged requests made, and the bytes they fetched, to identify S3 and http resources
+     * with this instance.
+     * @return The statistics for remote reads.
+     */
+    public RemoteReadStatistics getRemoteReadStatistics() {
+        return remoteReadStatistics;
+    }
+
+    /**
+     * Gets the cache of blocks read from S3 and http resources.
+     * @return The block cache, or null if there is none.
+     */
+    public RemoteBlockCache getRemoteBlockCache() {
+        return remoteBlockCache;
+    }
+
+    /**
+     * Gets the pool of windows reused by local files read with a FileChannel reader and by container entries.
+     * @return The buffer pool, or null if there is none.
+     */
+    public WindowBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
     public Region getS3Region() {
         return s3Region;
     }
@@ -52,6 +52,9 @@ import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.BiFunction;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -355,6 +358,81 @@ public class DroidAPITest {
         checkPuid.apply("word97", List.of("fmt/40"));
     }
 
+    @Test
+    public void should_count_the_remote_requests_and_bytes_fetched_for_s3() throws IOException {
+        long requests = api.getRemoteReadStatistics().getRequestCount();
+        long bytes = api.getRemoteReadStatistics().getBytesFetched();
+        URI s3Uri = getUris("src/test/resources/persistence.zip").toList().get(1);
+        api.submit(s3Uri);
+        assertTrue(api.getRemoteReadStatistics().getRequestCount() > requests);
+        assertTrue(api.getRemoteReadStatistics().getBytesFetched() > bytes);
+    }
+
+    @Test
+    public void should_return_the_same_results_for_an_s3_prefix_when_identifying_objects_concurrently_and_caching_blocks() throws Exception {
+        URI s3Uri = directoryUris().toList().getLast();
+        List<DroidAPI.APIResult> expected = api.submit(s3Uri);
+        try (DroidAPI concurrentApi = DroidAPI.builder()
+                .binarySignature(signaturePath)
+                .containerSignature(containerPath)
+                .s3Client(S3Client.builder().region(Region.EU_WEST_2).endpointOverride(endpointOverride).build())
+                .s3ObjectsInFlight(4)
+                .remoteBlockCacheSize(64 * 1024 * 1024)
+                .build()) {
+            assertThat(concurrentApi.submit(s3Uri), containsInAnyOrder(expected.toArray()));
+            long requests = concurrentApi.getRemoteReadStatistics().getRequestCount();
+            assertThat(concurrentApi.submit(s3Uri), containsInAnyOrder(expected.toArray()));
+            assertEquals(requests, concurrentApi.getRemoteReadStatistics().getRequestCount());
+            assertTrue(concurrentApi.getRemoteBlockCache().getHitCount() > 0);
+        }
+    }
+
+    @Test
+    public void should_return_the_same_results_for_a_directory_when_reading_files_into_pooled_windows() throws Exception {
+        URI directory = Paths.get("src/test/resources").toUri();
+        List<DroidAPI.APIResult> expected = api.submit(directory);
+        try (DroidAPI pooledApi = DroidAPI.builder()
+                .binarySignature(signaturePath)
+                .containerSignature(containerPath)
+                .fileChannelReader(true)
+                .bufferPoolSize(16 * 1024 * 1024)
+                .build()) {
+            assertThat(pooledApi.submit(directory), containsInAnyOrder(expected.toArray()));
+            assertThat(pooledApi.submit(directory), containsInAnyOrder(expected.toArray()));
+            assertTrue(pooledApi.getBufferPool().getHitCount() > 0);
+            assertTrue(pooledApi.getBufferPool().getPeakPooledBytes() <= 16 * 1024 * 1024);
+        }
+    }
+
+    @Test
+    public void should_stream_results_for_each_file_in_a_directory_on_virtual_threads() throws IOException {
+        List<DroidAPI.APIResult> expected = api.submit(Paths.get("src/test/resources").toUri());
+        List<DroidAPI.APIResult> results = new CopyOnWriteArrayList<>();
+        api.submitDirectory(Paths.get("src/test/resources"), null, results::add);
+        assertThat(results, containsInAnyOrder(expected.toArray()));
+    }
+
+    @Test
+    public void should_stream_results_for_each_file_in_a_directory_on_a_bounded_pool() throws IOException {
+        List<DroidAPI.APIResult> expected = api.submit(Paths.get("src/test/resources").toUri());
+        List<DroidAPI.APIResult> results = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            api.submitDirectory(Paths.get("src/test/resources"), null, executor, 1, results::add);
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(results, containsInAnyOrder(expected.toArray()));
+    }
+
+    @Test
+    public void should_throw_the_consumer_failure_when_streaming_a_directory() {
+        IllegalStateException failure = new IllegalStateException("consumer failed");
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () ->
+                api.submitDirectory(Paths.get("src/test/resources"), null, result -> { throw failure; }));
+        assertSame(failure, thrown);
+    }
+
     @Test
     public void should_report_correct_version_for_the_binary_and_container_signature() {
         assertThat(api.getContainerSignatureVersion(), is("20260119"));
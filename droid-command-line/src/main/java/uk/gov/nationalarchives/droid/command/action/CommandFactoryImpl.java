@@ -48,6 +48,7 @@ import org.apache.commons.lang3.StringUtils;
 import uk.gov.nationalarchives.droid.command.context.GlobalContext;
 import uk.gov.nationalarchives.droid.command.filter.DqlCriterionFactory;
 import uk.gov.nationalarchives.droid.command.filter.DqlFilterParser;
+import uk.gov.nationalarchives.droid.core.interfaces.ExecutorStrategy;
 import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
 import uk.gov.nationalarchives.droid.core.interfaces.config.DroidGlobalProperty;
 import uk.gov.nationalarchives.droid.core.interfaces.filter.BasicFilter;
@@ -69,6 +70,7 @@ public class CommandFactoryImpl implements CommandFactory {
 
 
     private static final String NO_RESOURCES_SPECIFIED = "No resources specified.";
+    private static final String INVALID_PARALLEL_PROFILES = "Invalid number of profiles to export in parallel: ";
     private static final String NO_PROFILES_SPECIFIED_FOR_EXPORT = "No profiles specified for export.";
     private static final String PROFILE_PREFIX = "profile.";
     private static final String FILE_EXT_FIELD = "file_ext";
@@ -91,7 +93,27 @@ public class CommandFactoryImpl implements CommandFactory {
     }
 
     private ExportOutputOptions getExportOutputOptions(CommandLine cli) {
-        return cli.hasOption(CommandLineParam.JSON_OUTPUT.toString()) ? ExportOutputOptions.JSON_OUTPUT : ExportOutputOptions.CSV_OUTPUT;
+        if (cli.hasOption(CommandLineParam.JSON_OUTPUT.toString())) {
+            return ExportOutputOptions.JSON_OUTPUT;
+        }
+        if (cli.hasOption(CommandLineParam.ARROW_OUTPUT.toString())) {
+            return ExportOutputOptions.ARROW_OUTPUT;
+        }
+        return ExportOutputOptions.CSV_OUTPUT;
+    }
+
+    private void setParallelProfiles(CommandLine cli, ExportCommand cmd) throws CommandLineSyntaxException {
+        if (cli.hasOption(CommandLineParam.EXPORT_PARALLEL.toString())) {
+            final String profiles = cli.getOptionValue(CommandLineParam.EXPORT_PARALLEL.toString());
+            try {
+                cmd.setParallelProfiles(Integer.parseInt(profiles));
+            } catch (NumberFormatException e) {
+                throw new CommandLineSyntaxException(INVALID_PARALLEL_PROFILES + profiles, e);
+            }
+            if (cmd.getParallelProfiles() < 1) {
+                throw new CommandLineSyntaxException(INVALID_PARALLEL_PROFILES + profiles);
+            }
+        }
     }
 
     /**
@@ -126,6 +148,8 @@ public class CommandFactoryImpl implements CommandFactory {
             cmd.setExportTemplate(cli.getOptionValue(CommandLineParam.EXPORT_TEMPLATE.getLongName()));
         }
 
+        setParallelProfiles(cli, cmd);
+
         if (cli.hasOption(CommandLineParam.ALL_FILTER.toString())) {
             cmd.setFilter(createFilter(cli.getOptionValues(CommandLineParam.ALL_FILTER.toString()), true));
         }
@@ -168,6 +192,8 @@ public class CommandFactoryImpl implements CommandFactory {
             cmd.setExportTemplate(cli.getOptionValue(CommandLineParam.EXPORT_TEMPLATE.getLongName()));
         }
 
+        setParallelProfiles(cli, cmd);
+
         if (cli.hasOption(CommandLineParam.ALL_FILTER.toString())) {
             cmd.setFilter(createFilter(cli.getOptionValues(CommandLineParam.ALL_FILTER.toString()), true));
         }
@@ -238,6 +264,10 @@ public class CommandFactoryImpl implements CommandFactory {
         PropertiesConfiguration overrides = getOverrideProperties(cli);
         processCommandLineArchiveFlags(cli, overrides);
         setProxyParameters(cli, overrides);
+        setExecutorParameters(cli, overrides);
+        if (cli.hasOption(CommandLineParam.BULK_LOAD.toString())) {
+            overrides.setProperty(DroidGlobalProperty.BULK_LOAD.getName(), true);
+        }
         command.setResources(getResources(cli));
         command.setDestination(getDestination(cli, overrides)); // will also set the output csv file in overrides if present.
         command.setRecursive(cli.hasOption(CommandLineParam.RECURSIVE.toString()));
@@ -267,6 +297,7 @@ public class CommandFactoryImpl implements CommandFactory {
         overrides.setProperty(DroidGlobalProperty.COLUMNS_TO_WRITE.getName(), "FILE_PATH PUID");
 
         setProxyParameters(cli, overrides);
+        setExecutorParameters(cli, overrides);
         command.setResources(resources);
         command.setDestination(getDestination(cli, overrides)); // will also set the output csv file in overrides if present.
         command.setRecursive(cli.hasOption(CommandLineParam.RECURSIVE.toString()));
@@ -287,6 +318,17 @@ public class CommandFactoryImpl implements CommandFactory {
         }
     }
 
+    private void setExecutorParameters(CommandLine cli, PropertiesConfiguration overrides) throws CommandLineSyntaxException {
+        if (cli.hasOption(CommandLineParam.EXECUTOR.toString())) {
+            final String strategy = cli.getOptionValue(CommandLineParam.EXECUTOR.toString());
+            try {
+                overrides.setProperty(DroidGlobalProperty.EXECUTOR.getName(), ExecutorStrategy.fromName(strategy).name());
+            } catch (IllegalArgumentException e) {
+                throw new CommandLineSyntaxException("Unknown executor: " + strategy, e);
+            }
+        }
+    }
+
     private Filter getFileOnlyResultsFilter() {
         Object[] filterValue = new Object[]{ResourceType.FOLDER};
         FilterCriterion criterion = new BasicFilterCriterion(CriterionFieldEnum.RESOURCE_TYPE, CriterionOperator.NONE_OF, filterValue);
@@ -407,6 +449,8 @@ public class CommandFactoryImpl implements CommandFactory {
         }
         if (cli.hasOption(CommandLineParam.JSON_OUTPUT.getLongName())) {
             overrideProperties.setProperty(DroidGlobalProperty.EXPORT_OUTPUT_OPTIONS.getName(), ExportOutputOptions.JSON_OUTPUT.name());
+        } else if (cli.hasOption(CommandLineParam.ARROW_OUTPUT.getLongName())) {
+            overrideProperties.setProperty(DroidGlobalProperty.EXPORT_OUTPUT_OPTIONS.getName(), ExportOutputOptions.ARROW_OUTPUT.name());
         } else {
             overrideProperties.setProperty(DroidGlobalProperty.EXPORT_OUTPUT_OPTIONS.getName(), ExportOutputOptions.CSV_OUTPUT.name());
         }
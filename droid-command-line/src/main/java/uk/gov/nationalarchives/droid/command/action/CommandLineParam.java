@@ -285,6 +285,16 @@ public enum CommandLineParam {
         }
     },
 
+    /**
+     * Outputs the results as an Apache Arrow file.
+     */
+    ARROW_OUTPUT("arrow", "arrow-output", I18N.ARROW_OUTPUT) {
+        @Override
+        public DroidCommand getCommand(CommandFactory commandFactory, CommandLine cli) {
+            return null;
+        }
+    },
+
     /** Runs without a profile and with the specified resources. */
     RUN_NO_PROFILE("Nr", "no-profile-resource", true, -1, I18N.RUN_NO_PROFILE_HELP, "folder") {
         @Override
@@ -309,6 +319,27 @@ public enum CommandLineParam {
         }
     },
 
+    /** How identification tasks are run. */
+    EXECUTOR("ex", "executor", true, 1, I18N.EXECUTOR_HELP, "strategy") {
+        @Override public DroidCommand getCommand(CommandFactory commandFactory, CommandLine cli) {
+            return null;
+        }
+    },
+
+    /** The number of profiles to read at the same time when exporting. */
+    EXPORT_PARALLEL("ep", "export-parallel", true, 1, I18N.EXPORT_PARALLEL_HELP, "profiles") {
+        @Override public DroidCommand getCommand(CommandFactory commandFactory, CommandLine cli) {
+            return null;
+        }
+    },
+
+    /** Bulk load a profile, building its indexes at the end of the run. */
+    BULK_LOAD("bl", "bulk-load", I18N.BULK_LOAD_HELP) {
+        @Override public DroidCommand getCommand(CommandFactory commandFactory, CommandLine cli) {
+            return null;
+        }
+    },
+
 
     /** Container signature file. */
     CONTAINER_SIGNATURE_FILE("Nc", "container-file", true, 1,
@@ -561,8 +592,12 @@ public enum CommandLineParam {
         options.addOption(QUOTE_COMMAS.newOption());
         options.addOption(ROW_PER_FORMAT.newOption());
         options.addOption(HTTP_PROXY.newOption());
+        options.addOption(EXECUTOR.newOption());
+        options.addOption(BULK_LOAD.newOption());
+        options.addOption(EXPORT_PARALLEL.newOption());
         options.addOption(JSON_OUTPUT.newOption());
         options.addOption(CSV_OUTPUT.newOption());
+        options.addOption(ARROW_OUTPUT.newOption());
     }
 
     private static OptionGroup getFileFilterOptionGroup() {
@@ -590,6 +625,7 @@ public enum CommandLineParam {
         OptionGroup exportOutputOptions = new OptionGroup();
         exportOutputOptions.addOption(JSON_OUTPUT.newOption());
         exportOutputOptions.addOption(CSV_OUTPUT.newOption());
+        exportOutputOptions.addOption(ARROW_OUTPUT.newOption());
         return exportOutputOptions;
     }
 
@@ -675,6 +711,7 @@ public enum CommandLineParam {
         options.addOption(QUOTE_COMMAS.newOption());
         options.addOption(COLUMNS_TO_WRITE.newOption());
         options.addOption(EXPORT_TEMPLATE.newOption());
+        options.addOption(EXPORT_PARALLEL.newOption());
         return options;
     }
 
@@ -65,6 +65,7 @@ public class ExportCommand implements DroidCommand {
     private String columnsToWrite;
 
     private String exportTemplate;
+    private int parallelProfiles = 1;
 
     /**
      * {@inheritDoc}
@@ -250,6 +251,19 @@ public class ExportCommand implements DroidCommand {
         this.exportTemplate = exportTemplate;
     }
 
+    /**
+     * @return The number of profiles to read at the same time.
+     */
+    public int getParallelProfiles() {
+        return parallelProfiles;
+    }
+
+    /**
+     * @param parallelProfiles The number of profiles to read at the same time.
+     */
+    public void setParallelProfiles(int parallelProfiles) {
+        this.parallelProfiles = parallelProfiles;
+    }
 
     /**
      *
@@ -267,6 +281,7 @@ public class ExportCommand implements DroidCommand {
                 .withQuotingAllFields(getQuoteAllFields())
                 .withColumnsToWrite(getColumnsToWrite())
                 .withExportTemplatePath(getExportTemplate())
+                .withParallelProfiles(getParallelProfiles())
                 .build();
     }
 }
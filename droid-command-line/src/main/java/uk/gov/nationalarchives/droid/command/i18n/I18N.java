@@ -91,6 +91,11 @@ public final class I18N {
      */
     public static final String CSV_OUTPUT = "profile.csv.help";
 
+    /**
+     * Writes the output as an Apache Arrow file.
+     */
+    public static final String ARROW_OUTPUT = "profile.arrow.help";
+
     /**
      * Override default properties from the command line.
      */
@@ -140,6 +145,15 @@ public final class I18N {
     /** Configure a proxy to send http requests through for S3 or HTTP identification. */
     public static final String PROXY_HELP = "proxy.help";
 
+    /** Choose how identification tasks are run. */
+    public static final String EXECUTOR_HELP = "executor.help";
+
+    /** Bulk load a profile. */
+    public static final String BULK_LOAD_HELP = "bulk_load.help";
+
+    /** Read profiles for export in parallel. */
+    public static final String EXPORT_PARALLEL_HELP = "export_parallel.help";
+
     /** Help for signature file. */
     public static final String SIGNATURE_FILE_HELP = "signature_file.help";
     
@@ -161,6 +161,42 @@ public class CommandFactoryTest {
         factory.getExportFormatCommand(cli);
     }
 
+    @Test
+    public void testExportCommandWithParallelProfiles() throws Exception {
+        when(context.getExportCommand(ExportOptions.ONE_ROW_PER_FORMAT, ExportOutputOptions.CSV_OUTPUT)).thenReturn(exportCommand);
+        String[] args = new String[] {
+                "-E",
+                "out.csv",
+                "-ep",
+                "2",
+                "-p",
+                "tmp/profile 1.droid",
+                "tmp/profile-2.droid",
+                "tmp/profile-3.droid"
+        };
+        CommandLine cli = parse(args);
+        ExportCommand e1 = (ExportCommand) factory.getExportFormatCommand(cli);
+
+        assertArrayEquals(expectedProfiles, e1.getProfiles());
+        assertEquals(2, e1.getParallelProfiles());
+    }
+
+    @Test (expected = CommandLineSyntaxException.class)
+    public void testExportCommandWithInvalidParallelProfiles() throws Exception {
+        when(context.getExportCommand(ExportOptions.ONE_ROW_PER_FILE, ExportOutputOptions.CSV_OUTPUT)).thenReturn(exportCommand);
+        String[] args = new String[] {
+                "-e",
+                "out.csv",
+                "-ep",
+                "0",
+                "-p",
+                "tmp/profile 1.droid"
+        };
+        CommandLine cli = parse(args);
+
+        factory.getExportFileCommand(cli);
+    }
+
     @Test
     public void testExportCommandFile() throws Exception {
         when(context.getExportCommand(ExportOptions.ONE_ROW_PER_FILE, ExportOutputOptions.CSV_OUTPUT)).thenReturn(exportCommand);
@@ -1057,6 +1093,36 @@ public class CommandFactoryTest {
         assertEquals("JSON_OUTPUT", profileRunCommand.getProperties().getProperty("profile.exportOutputOptions"));
     }
 
+    @Test
+    public void testSetExportOutputToArrow() throws Exception {
+        when(context.getProfileRunCommand()).thenReturn(profileRunCommand);
+        String[] args = new String[] {
+                "-a",
+                "/home/user/Documents/test.doc",
+                "-arrow"
+        };
+        CommandLine cli = parse(args);
+        factory.getProfileCommand(cli);
+        assertEquals("ARROW_OUTPUT", profileRunCommand.getProperties().getProperty("profile.exportOutputOptions"));
+    }
+
+    @Test
+    public void testExportCommandWithArrowOutput() throws Exception {
+        when(context.getExportCommand(ExportOptions.ONE_ROW_PER_FILE, ExportOutputOptions.ARROW_OUTPUT)).thenReturn(exportCommand);
+        String[] args = new String[] {
+                "-e",
+                "out.arrow",
+                "-arrow",
+                "-p",
+                "tmp/profile 1.droid"
+        };
+        CommandLine cli = parse(args);
+        ExportCommand cmd = (ExportCommand) factory.getExportFileCommand(cli);
+
+        assertNotNull(cmd);
+        assertEquals("out.arrow", cmd.getDestination());
+    }
+
     @Test
     public void testSetProfileResultAllFilter() throws Exception {
         when(context.getProfileRunCommand()).thenReturn(profileRunCommand);
@@ -1461,6 +1527,49 @@ public class CommandFactoryTest {
         assertEquals(e1.getProperties().getProperty("update.proxy.port"), 8080);
     }
 
+    @Test
+    public void testExecutorOverride() throws Exception {
+        when(context.getProfileRunCommand()).thenReturn(profileRunCommand);
+        String[] args = new String[] {
+                "test.txt",
+                "-ex",
+                "work-stealing",
+                "-p",
+                "out.droid"
+        };
+        CommandLine cli = parse(args);
+        ProfileRunCommand e1 = (ProfileRunCommand) factory.getProfileCommand(cli);
+        assertEquals("WORK_STEALING", e1.getProperties().getProperty("profile.executor"));
+    }
+
+    @Test
+    public void testBulkLoadOverride() throws Exception {
+        when(context.getProfileRunCommand()).thenReturn(profileRunCommand);
+        String[] args = new String[] {
+                "test.txt",
+                "-bl",
+                "-p",
+                "out.droid"
+        };
+        CommandLine cli = parse(args);
+        ProfileRunCommand e1 = (ProfileRunCommand) factory.getProfileCommand(cli);
+        assertEquals(true, e1.getProperties().getProperty("profile.bulkLoad"));
+    }
+
+    @Test(expected = CommandLineSyntaxException.class)
+    public void testUnknownExecutorIsRejected() throws Exception {
+        when(context.getProfileRunCommand()).thenReturn(profileRunCommand);
+        String[] args = new String[] {
+                "test.txt",
+                "-ex",
+                "no-such-executor",
+                "-p",
+                "out.droid"
+        };
+        CommandLine cli = parse(args);
+        factory.getProfileCommand(cli);
+    }
+
     /**
     @Test
     public void testListReports() throws Exception {
@@ -83,9 +83,7 @@ public abstract class AbstractContainerIdentifier implements ContainerIdentifier
     @Override
     public final IdentificationResultCollection submit(IdentificationRequest request) throws IOException {
         final ContainerSignatureMatchCollection matches = new ContainerSignatureMatchCollection(
-            getContainerSignatures(),
-            init.getUniqueFileEntries(),
-            maxBytesToScan);
+            init.getIndex(), maxBytesToScan);
 
         process(request, matches);
         final IdentificationResultCollection results = new IdentificationResultCollection(request);
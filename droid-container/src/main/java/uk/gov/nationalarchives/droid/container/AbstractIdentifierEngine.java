@@ -33,6 +33,14 @@ package uk.gov.nationalarchives.droid.container;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.input.BoundedInputStream;
 
 import uk.gov.nationalarchives.droid.core.IdentificationRequestByteReaderAdapter;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
@@ -44,8 +52,12 @@ import uk.gov.nationalarchives.droid.core.signature.ByteReader;
  * @author rbrennan
  */
 public abstract class AbstractIdentifierEngine implements IdentifierEngine<InputStream> {
-    
+
+    private static final long ENTRY_THREAD_KEEP_ALIVE_SECONDS = 60;
+
     private IdentificationRequestFactory<InputStream> requestFactory;
+    private int entryThreads;
+    private ExecutorService entryExecutor;
     
     /**
      * Returns a ByteReader for the input stream supplied.
@@ -59,6 +71,85 @@ public abstract class AbstractIdentifierEngine implements IdentifierEngine<Input
         return new IdentificationRequestByteReaderAdapter(request);
     }
     
+    /**
+     * Returns a ByteReader over only as much of the input stream as the signatures need, so
+     * an entry is only decompressed as far as the furthest position they could read.
+     * @param in an input stream
+     * @param bytesNeeded the number of bytes needed from the start of the stream, or negative if all of it is needed.
+     * @return a Byte reader
+     * @throws IOException if the input stream could not be read
+     */
+    protected ByteReader newByteReader(InputStream in, long bytesNeeded) throws IOException {
+        return newByteReader(bytesNeeded < 0 ? in
+                : BoundedInputStream.builder().setInputStream(in).setMaxCount(bytesNeeded).get());
+    }
+
+    /**
+     * Returns how many bytes from the start of an entry are needed to match it against a list of signatures.
+     * @param entryName the name of the container file path
+     * @param matchList the signatures to match against
+     * @return 0 if the entry does not need a binary match, the number of bytes from the start of the
+     *         entry needed to match it, or -1 if the whole entry may be needed.
+     */
+    protected static long getBytesNeeded(String entryName, List<ContainerSignatureMatch> matchList) {
+        long bytesNeeded = 0;
+        for (ContainerSignatureMatch match : matchList) {
+            final long matchBytesNeeded = match.getBytesNeeded(entryName);
+            if (matchBytesNeeded < 0) {
+                return -1;
+            }
+            bytesNeeded = Math.max(bytesNeeded, matchBytesNeeded);
+        }
+        return bytesNeeded;
+    }
+
+    /**
+     * Matches the content of container entries against the signatures which need them, reading each entry only
+     * as far as they need.  Entries are read while any signature is unresolved, one at a time, or several at a
+     * time if entry threads have been set.
+     * @param matchList the signatures to match, whose file names have already been matched.
+     * @param entries the paths of the entries which can be read, in the order to read them, mapped to the names to open them with.
+     * @param opener opens an entry by name.  It must be safe to call from several threads if entry threads have been set.
+     * @throws IOException if an entry could not be read.
+     */
+    protected void matchEntries(List<ContainerSignatureMatch> matchList, Map<String, String> entries,
+                                EntryOpener opener) throws IOException {
+        new ContainerEntryMatcher(this, matchList).matchEntries(entries, opener, getEntryExecutor());
+    }
+
+    /**
+     * @param entryThreads the number of threads to read the entries of a container on, shared by all the
+     *                     containers this engine processes, or 0 to read entries one at a time.
+     */
+    public synchronized void setEntryThreads(int entryThreads) {
+        this.entryThreads = entryThreads;
+        if (entryExecutor != null) {
+            entryExecutor.shutdown();
+            entryExecutor = null;
+        }
+    }
+
+    /**
+     * @return the number of threads to read the entries of a container on, or 0 to read entries one at a time.
+     */
+    public synchronized int getEntryThreads() {
+        return entryThreads;
+    }
+
+    /*
+     * The entry threads are daemons which stop when idle, so the executor never needs shutting down.
+     */
+    private synchronized ExecutorService getEntryExecutor() {
+        if (entryExecutor == null && entryThreads > 0) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(entryThreads, entryThreads,
+                    ENTRY_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    Thread.ofPlatform().name("container-entry-", 1).daemon(true).factory());
+            executor.allowCoreThreadTimeOut(true);
+            entryExecutor = executor;
+        }
+        return entryExecutor;
+    }
+
      /**
      * @param requestFactory the requestFactory to set
      */
@@ -72,4 +163,17 @@ public abstract class AbstractIdentifierEngine implements IdentifierEngine<Input
     protected IdentificationRequestFactory<InputStream> getRequestFactory() {
         return requestFactory;
     }
+
+    /**
+     * Opens a stream on a named entry of a container.
+     */
+    @FunctionalInterface
+    protected interface EntryOpener {
+        /**
+         * @param entryName the name of the entry.
+         * @return a stream over the content of the entry.
+         * @throws IOException if the entry could not be opened.
+         */
+        InputStream open(String entryName) throws IOException;
+    }
 }
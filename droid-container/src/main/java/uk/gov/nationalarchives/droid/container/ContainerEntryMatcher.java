@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.container;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import uk.gov.nationalarchives.droid.core.signature.ByteReader;
+
+/**
+ * Matches the content of the entries of a container against the signatures which need them.
+ * <p>
+ * A signature is resolved once it has matched, or once it can't match because one of its files is not among
+ * the entries, or the content of one of its files didn't match.  Entries are only read while they are needed by
+ * an unresolved signature, and matching stops as soon as every signature is resolved.
+ * <p>
+ * Given an executor, entries are opened, read and tested on its threads, several at a time, while their results
+ * are recorded on the calling thread.  Entries which have not started when every signature is resolved are
+ * cancelled, and those which have started are waited for, so no entry is still being read once matching returns.
+ */
+final class ContainerEntryMatcher {
+
+    private final AbstractIdentifierEngine engine;
+    private final List<ContainerSignatureMatch> matchList;
+    private final BitSet excluded;
+    private volatile boolean stopped;
+
+    /**
+     * @param engine the engine which reads the entries.
+     * @param matchList the signatures to match, whose file names have already been matched.
+     */
+    ContainerEntryMatcher(AbstractIdentifierEngine engine, List<ContainerSignatureMatch> matchList) {
+        this.engine = engine;
+        this.matchList = matchList;
+        this.excluded = new BitSet(matchList.size());
+    }
+
+    /**
+     * Matches entries against the signatures.
+     * @param entries the paths of the entries which can be read, in the order to read them, mapped to the names to open them with.
+     * @param opener opens an entry by name.
+     * @param executor the executor to read entries on, or null to read them one at a time on the calling thread.
+     * @throws IOException if an entry could not be read.
+     */
+    void matchEntries(Map<String, String> entries, AbstractIdentifierEngine.EntryOpener opener,
+                      ExecutorService executor) throws IOException {
+        // A signature can't match if one of its files is not among the entries:
+        for (int i = 0; i < matchList.size(); i++) {
+            final ContainerSignatureMatch match = matchList.get(i);
+            if (!match.isMatch() && !entries.keySet().containsAll(match.getUnmatchedFiles())) {
+                excluded.set(i);
+            }
+        }
+        if (executor == null) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                if (isResolved()) {
+                    break;
+                }
+                final BitSet needed = getMatchesNeeding(entry.getKey());
+                if (!needed.isEmpty()) {
+                    record(matchEntry(entry.getKey(), entry.getValue(), opener, needed,
+                                      getBytesNeeded(entry.getKey(), needed)));
+                }
+            }
+        } else {
+            matchConcurrently(entries, opener, executor);
+        }
+    }
+
+    private void matchConcurrently(Map<String, String> entries, AbstractIdentifierEngine.EntryOpener opener,
+                                   ExecutorService executor) throws IOException {
+        final CompletionService<EntryResult> completionService = new ExecutorCompletionService<>(executor);
+        final List<Future<EntryResult>> futures = new ArrayList<>();
+        try {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                final BitSet needed = getMatchesNeeding(entry.getKey());
+                if (!needed.isEmpty()) {
+                    final long bytesNeeded = getBytesNeeded(entry.getKey(), needed);
+                    futures.add(completionService.submit(
+                        () -> matchEntry(entry.getKey(), entry.getValue(), opener, needed, bytesNeeded)));
+                }
+            }
+            for (int pending = futures.size(); pending > 0 && !isResolved(); pending--) {
+                record(completionService.take().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while matching container entries");
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } finally {
+            stop(futures);
+        }
+    }
+
+    /*
+     * Cancels entries which haven't started, and waits for those which have, as the container may be
+     * closed once matching returns.  They aren't interrupted, which would close a FileChannel they read from.
+     */
+    private void stop(List<Future<EntryResult>> futures) {
+        stopped = true;
+        boolean interrupted = false;
+        for (Future<EntryResult> future : futures) {
+            if (!future.cancel(false)) {
+                while (true) {
+                    try {
+                        future.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        break; // The first failure has already been thrown, or matching had finished.
+                    }
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private IOException unwrap(ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+
+    /*
+     * Reads an entry and tests it against the signatures which need it.  This doesn't change the state
+     * of the signatures, so it can run on any thread.
+     */
+    private EntryResult matchEntry(String filePath, String entryName, AbstractIdentifierEngine.EntryOpener opener,
+                                   BitSet needed, long bytesNeeded) throws IOException {
+        final BitSet matched = new BitSet(matchList.size());
+        if (!stopped) {
+            try (InputStream stream = opener.open(entryName);
+                 ByteReader reader = engine.newByteReader(stream, bytesNeeded)) {
+                for (int i = needed.nextSetBit(0); i >= 0 && !stopped; i = needed.nextSetBit(i + 1)) {
+                    if (matchList.get(i).binaryContentMatches(filePath, reader)) {
+                        matched.set(i);
+                    }
+                }
+            }
+        }
+        return new EntryResult(filePath, needed, matched);
+    }
+
+    private void record(EntryResult result) {
+        final BitSet needed = result.needed;
+        for (int i = needed.nextSetBit(0); i >= 0; i = needed.nextSetBit(i + 1)) {
+            if (result.matched.get(i)) {
+                matchList.get(i).matchFile(result.filePath);
+            } else {
+                excluded.set(i);
+            }
+        }
+    }
+
+    private BitSet getMatchesNeeding(String filePath) {
+        final BitSet needed = new BitSet(matchList.size());
+        for (int i = 0; i < matchList.size(); i++) {
+            if (!excluded.get(i) && matchList.get(i).needsBinaryMatch(filePath)) {
+                needed.set(i);
+            }
+        }
+        return needed;
+    }
+
+    /*
+     * Worked out on the calling thread before the entry is read, as the signatures change as results are recorded.
+     */
+    private long getBytesNeeded(String filePath, BitSet needed) {
+        long bytesNeeded = 0;
+        for (int i = needed.nextSetBit(0); i >= 0; i = needed.nextSetBit(i + 1)) {
+            final long matchBytesNeeded = matchList.get(i).getBytesNeeded(filePath);
+            if (matchBytesNeeded < 0) {
+                return -1;
+            }
+            bytesNeeded = Math.max(bytesNeeded, matchBytesNeeded);
+        }
+        return bytesNeeded;
+    }
+
+    private boolean isResolved() {
+        for (int i = 0; i < matchList.size(); i++) {
+            if (!excluded.get(i) && !matchList.get(i).isMatch()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Which of the signatures needing an entry it matched.
+     */
+    private static final class EntryResult {
+        private final String filePath;
+        private final BitSet needed;
+        private final BitSet matched;
+
+        EntryResult(String filePath, BitSet needed, BitSet matched) {
+            this.filePath = filePath;
+            this.needed = needed;
+            this.matched = matched;
+        }
+    }
+}
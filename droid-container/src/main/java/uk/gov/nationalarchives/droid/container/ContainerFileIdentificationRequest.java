@@ -44,6 +44,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.ResourceUtils;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.WindowBufferPool;
 
 /**
  * @author rflitcroft
@@ -57,6 +58,7 @@ public class ContainerFileIdentificationRequest implements IdentificationRequest
     private Path tempDir;
     private Logger log = LoggerFactory.getLogger(this.getClass());
     private WindowReader reader;
+    private WindowBufferPool bufferPool;
 
     /**
      * Constructs a new container file resource.
@@ -65,13 +67,28 @@ public class ContainerFileIdentificationRequest implements IdentificationRequest
     public ContainerFileIdentificationRequest(final Path tempDir) {
         this.tempDir = tempDir;
     }
+
+    /**
+     * Sets a pool to borrow windows from when the entry is read.  Entries which turn out to be larger than the
+     * cached top and tail of an entry are not read into pooled windows.
+     * @param bufferPool The pool of window buffers, or null to allocate new windows.
+     */
+    public void setBufferPool(final WindowBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
     
     /**
      * {@inheritDoc}
      */
     @Override
     public final void open(final InputStream in) throws IOException {
-        reader = ResourceUtils.getStreamReader(in, tempDir, TOP_TAIL_CAPACITY);
+        if (bufferPool != null) {
+            // The size of an entry is not known until it is read, so it is read into pooled windows
+            // until it turns out to be too large for them.
+            reader = ResourceUtils.getStreamReader(in, tempDir, TOP_TAIL_CAPACITY, true, bufferPool);
+        } else {
+            reader = ResourceUtils.getStreamReader(in, tempDir, TOP_TAIL_CAPACITY);
+        }
         // Force read of entire input stream to build reader and remove dependence on source input stream.
         size = reader.length(); // getting the size of a reader backed by a stream forces a stream read.
     }
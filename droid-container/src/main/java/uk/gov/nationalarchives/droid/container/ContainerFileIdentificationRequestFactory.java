@@ -39,6 +39,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.IdentificationRequestFactory;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.WindowBufferPool;
 
 /**
  * @author rflitcroft
@@ -47,6 +48,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
 public class ContainerFileIdentificationRequestFactory implements IdentificationRequestFactory<InputStream> {
 
     private Path tempDirLocation;
+    private WindowBufferPool bufferPool;
     
     /**
      * {@inheritDoc}
@@ -54,7 +56,16 @@ public class ContainerFileIdentificationRequestFactory implements Identification
     @Override
     public final IdentificationRequest<InputStream> newRequest(RequestMetaData metaData,
                                                   RequestIdentifier identifier) {
-        return new ContainerFileIdentificationRequest(getTempDirLocation());
+        final ContainerFileIdentificationRequest request = new ContainerFileIdentificationRequest(getTempDirLocation());
+        request.setBufferPool(bufferPool);
+        return request;
+    }
+
+    /**
+     * @param bufferPool the pool requests borrow windows from, or null to allocate new windows.
+     */
+    public void setBufferPool(final WindowBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
     }
     
     /**
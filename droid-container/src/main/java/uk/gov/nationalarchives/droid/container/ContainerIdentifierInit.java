@@ -32,10 +32,8 @@
 package uk.gov.nationalarchives.droid.container;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import uk.gov.nationalarchives.droid.core.interfaces.DroidCore;
 
@@ -45,8 +43,8 @@ import uk.gov.nationalarchives.droid.core.interfaces.DroidCore;
  */
 public class ContainerIdentifierInit {
     
-    private List<String> uniqueFileEntries = new ArrayList<>();
     private List<ContainerSignature> containerSignatures = new ArrayList<ContainerSignature>();
+    private volatile ContainerSignatureIndex index;
     
     /**
      * @param defs The definitions from the container signature
@@ -56,16 +54,13 @@ public class ContainerIdentifierInit {
      */
     public void init(final ContainerSignatureDefinitions defs, final String containerType,
             final Map<Integer, List<FileFormatMapping>> formats, final DroidCore droidCore) {
-        
-        final Set<String> uniqueFileSet = new HashSet<String>();
-        
+
         for (final ContainerSignature sig : defs.getContainerSignatures()) {
             if (sig.getContainerType().equals(containerType)) {
                 addContainerSignature(sig);
-                uniqueFileSet.addAll(sig.getFiles().keySet());
             }
         }
-        uniqueFileEntries = new ArrayList<String>(uniqueFileSet); 
+        index = new ContainerSignatureIndex(containerSignatures);
         
         for (final FileFormatMapping fmt : defs.getFormats()) {
             List<FileFormatMapping> mappings = formats.get(fmt.getSignatureId());
@@ -88,6 +83,7 @@ public class ContainerIdentifierInit {
      */
     public void addContainerSignature(final ContainerSignature containerSignature) {
         containerSignatures.add(containerSignature);
+        index = null;
     }
 
     /**
@@ -105,6 +101,21 @@ public class ContainerIdentifierInit {
      * @return the unique file entries
      */
     public List<String> getUniqueFileEntries() {
-        return uniqueFileEntries;
+        return getIndex().getAllFileEntries();
     }   
+
+    /**
+     * Get an index of the container signatures, which is built once and then
+     * shared by all the identifications using them.
+     *
+     * @return the index of the container signatures
+     */
+    public ContainerSignatureIndex getIndex() {
+        ContainerSignatureIndex result = index;
+        if (result == null) {
+            result = new ContainerSignatureIndex(containerSignatures);
+            index = result;
+        }
+        return result;
+    }
 }
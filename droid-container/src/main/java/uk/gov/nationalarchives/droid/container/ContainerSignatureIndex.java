@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.container;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An index of the files named in a set of container signatures, built once when the signatures are loaded.
+ * <p>
+ * Each file path used by the signatures is mapped to the set of signatures which use it.  Paths which
+ * can only match an entry of exactly the same name are looked up by name; paths which use glob syntax or the
+ * container file name placeholder are kept in a separate list, and are the only ones which need to be tested
+ * against every entry.  This lets a container resolve all the signature files against its entries in a single
+ * pass over them, and tells us which signatures can possibly match before any entry content is read.
+ * <p>
+ * Where the {@link FileMatcher} ignores case, as glob matching does on Windows, literal paths are also
+ * looked up by their lower case names, so they match the same entries as they would through the matcher.
+ */
+public class ContainerSignatureIndex {
+
+    private static final FileMatcher FILE_MATCHER = new FileMatcher();
+
+    private final List<ContainerSignature> signatures;
+    private final Map<String, BitSet> signaturesByPath = new LinkedHashMap<>();
+    private final List<String> patternPaths = new ArrayList<>();
+    private final Map<String, List<String>> literalPathsIgnoringCase;
+    private final List<String> allFileEntries;
+
+    /**
+     * Builds an index of the files in the signatures.
+     * @param signatures The container signatures to index.
+     */
+    public ContainerSignatureIndex(List<ContainerSignature> signatures) {
+        this(signatures, FILE_MATCHER.isCaseInsensitive());
+    }
+
+    /**
+     * Builds an index of the files in the signatures.
+     * @param signatures The container signatures to index.
+     * @param ignoreCase Whether literal paths match entries whose names differ only in case.
+     */
+    ContainerSignatureIndex(List<ContainerSignature> signatures, boolean ignoreCase) {
+        this.signatures = new ArrayList<>(signatures);
+        for (int i = 0; i < this.signatures.size(); i++) {
+            for (String path : this.signatures.get(i).getFiles().keySet()) {
+                signaturesByPath.computeIfAbsent(path, p -> new BitSet()).set(i);
+            }
+        }
+        literalPathsIgnoringCase = ignoreCase ? new HashMap<>() : null;
+        for (String path : signaturesByPath.keySet()) {
+            if (!FileMatcher.isLiteral(path)) {
+                patternPaths.add(path);
+            } else if (ignoreCase) {
+                literalPathsIgnoringCase.computeIfAbsent(path.toLowerCase(Locale.ROOT), p -> new ArrayList<>())
+                        .add(path);
+            }
+        }
+        allFileEntries = Collections.unmodifiableList(new ArrayList<>(signaturesByPath.keySet()));
+    }
+
+    /**
+     * @return The signatures in the index, in the order used for the signature bitsets.
+     */
+    public List<ContainerSignature> getSignatures() {
+        return signatures;
+    }
+
+    /**
+     * @return A list of all the unique file paths used in the signatures.
+     */
+    public List<String> getAllFileEntries() {
+        return allFileEntries;
+    }
+
+    /**
+     * Creates a resolver which maps the entries of a single container onto the signature file paths.
+     * @param containerFileName The name of the container file, or null if it isn't known.
+     * @return A new entry resolver.
+     */
+    public EntryResolver newResolver(String containerFileName) {
+        return new EntryResolver(containerFileName);
+    }
+
+    /**
+     * Resolves the signature file paths against the entries of a single container, which are
+     * given to it in the order they appear in the container.
+     * <p>
+     * A path resolves to an entry with exactly the same name if there is one; otherwise a glob or
+     * container name path, or a literal path if case is ignored, resolves to the first file entry which
+     * matches it.
+     */
+    public final class EntryResolver {
+
+        private final String containerFileName;
+        private final Map<String, String> exactEntries = new HashMap<>();
+        private final Map<String, String> patternEntries = new HashMap<>();
+        private final List<String> unresolvedPatterns = new ArrayList<>(patternPaths);
+
+        private EntryResolver(String containerFileName) {
+            this.containerFileName = containerFileName;
+        }
+
+        /**
+         * Adds the next entry in the container.
+         * @param entryName The name of the entry.
+         * @param directory Whether the entry is a directory.
+         */
+        public void addEntry(String entryName, boolean directory) {
+            if (signaturesByPath.containsKey(entryName)) {
+                exactEntries.putIfAbsent(entryName, entryName);
+            }
+            if (!directory && literalPathsIgnoringCase != null) {
+                final List<String> paths = literalPathsIgnoringCase.get(entryName.toLowerCase(Locale.ROOT));
+                if (paths != null) {
+                    for (String path : paths) {
+                        patternEntries.putIfAbsent(path, entryName);
+                    }
+                }
+            }
+            if (!directory && !unresolvedPatterns.isEmpty()) {
+                for (int i = unresolvedPatterns.size() - 1; i >= 0; i--) {
+                    final String path = unresolvedPatterns.get(i);
+                    if (FILE_MATCHER.fileMatches(path, entryName, containerFileName)) {
+                        patternEntries.put(path, entryName);
+                        unresolvedPatterns.remove(i);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return A map of the signature file paths which were found in the container to the
+         *         names of the entries they resolved to, in the order of the paths in the index.
+         */
+        public Map<String, String> getResolvedEntries() {
+            final Map<String, String> resolved = new LinkedHashMap<>();
+            for (String path : signaturesByPath.keySet()) {
+                String entryName = exactEntries.get(path);
+                if (entryName == null) {
+                    entryName = patternEntries.get(path);
+                }
+                if (entryName != null) {
+                    resolved.put(path, entryName);
+                }
+            }
+            return resolved;
+        }
+
+        /**
+         * @return The signatures which could still match, because every file they need was found in the container.
+         */
+        public BitSet getCandidateSignatures() {
+            final BitSet candidates = new BitSet(signatures.size());
+            candidates.set(0, signatures.size());
+            for (Map.Entry<String, BitSet> entry : signaturesByPath.entrySet()) {
+                final String path = entry.getKey();
+                if (!exactEntries.containsKey(path) && !patternEntries.containsKey(path)) {
+                    candidates.andNot(entry.getValue());
+                }
+            }
+            return candidates;
+        }
+    }
+}
@@ -33,7 +33,6 @@ package uk.gov.nationalarchives.droid.container;
 
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.Set;
 
 import uk.gov.nationalarchives.droid.core.signature.ByteReader;
@@ -46,20 +45,19 @@ import uk.gov.nationalarchives.droid.core.signature.droid6.InternalSignatureColl
  */
 public class ContainerSignatureMatch {
 
+    private static final FileMatcher FILE_MATCHER = new FileMatcher();
+
     private ContainerSignature signature;
     private long maxBytesToScan = -1;
 
     private Set<String> unmatchedFiles = new HashSet<>();
 
-    private final FileMatcher fileMatcher;
-
     /**
      * Constructs a new Container signature match.
      * @param sig the signature to match against
      * @param maxBytesToScan - the max bytes to binary match on, or negative meaning unlimited.
      */
     public ContainerSignatureMatch(ContainerSignature sig, long maxBytesToScan) {
-        fileMatcher = new FileMatcher();
         unmatchedFiles.addAll(sig.getFiles().keySet());
         this.signature = sig;
         this.maxBytesToScan = maxBytesToScan;
@@ -91,7 +89,7 @@ public class ContainerSignatureMatch {
     public void matchFileEntry(String entryName, String containerFileName) {
         for (Iterator<String> it = unmatchedFiles.iterator(); it.hasNext();) {
             String unmatchedFile = it.next();
-            if (fileMatcher.fileMatches(unmatchedFile, entryName, containerFileName)) {
+            if (FILE_MATCHER.fileMatches(unmatchedFile, entryName, containerFileName)) {
                 InternalSignatureCollection binSigs = signature.getFiles().get(unmatchedFile).getCompiledBinarySignatures();
                 if (binSigs == null) {
                     it.remove();
@@ -101,6 +99,19 @@ public class ContainerSignatureMatch {
         }
     }
 
+    /**
+     * Matches a signature file which has already been found in the container, for example
+     * by resolving the container entries against a {@link ContainerSignatureIndex}.
+     * If there are no signatures defined for the file, just having it is enough to match it.
+     * @param filePath the path of the file in the signature
+     */
+    public void matchResolvedFile(String filePath) {
+        if (unmatchedFiles.contains(filePath)
+                && signature.getFiles().get(filePath).getCompiledBinarySignatures() == null) {
+            unmatchedFiles.remove(filePath);
+        }
+    }
+
     /**
      * Determines if an entry requires a text signature match.
      * @param entryName the name of the container file path
@@ -115,6 +126,20 @@ public class ContainerSignatureMatch {
         return needsMatch;
     }
 
+    /**
+     * Returns how many bytes from the start of an entry are needed to match it against the signature.
+     * @param entryName the name of the container file path
+     * @return 0 if the entry does not need a binary match, the number of bytes from the start of the
+     *         entry needed to match it, or -1 if the whole entry may be needed.
+     */
+    public long getBytesNeeded(String entryName) {
+        long bytesNeeded = 0;
+        if (needsBinaryMatch(entryName)) {
+            bytesNeeded = signature.getFiles().get(entryName).getCompiledBinarySignatures().getBytesNeededFromBOF(maxBytesToScan);
+        }
+        return bytesNeeded;
+    }
+
     /**
      * Matches some a binary files against a binary signature.
      * If there is no binary signature defined for the file,
@@ -125,19 +150,33 @@ public class ContainerSignatureMatch {
      * @param content the content to me matched against a text signature
      */
     public void matchBinaryContent(String entryName, ByteReader content) {
-        boolean matched = true;
-        if (unmatchedFiles.contains(entryName)) {
-            Map<String, ContainerFile> sigFiles = signature.getFiles();
-            InternalSignatureCollection binSigs = sigFiles.get(entryName).getCompiledBinarySignatures();
-            if (binSigs != null) {
-                matched = binSigs.getMatchingSignatures(content, maxBytesToScan).size() > 0;
-            }
-            if (matched) {
-                unmatchedFiles.remove(entryName);
-            }
+        if (unmatchedFiles.contains(entryName) && binaryContentMatches(entryName, content)) {
+            unmatchedFiles.remove(entryName);
         }
     }
 
+    /**
+     * Tests the content of a file against its binary signature, without recording the result.
+     * This doesn't change the state of the match, so the files of a container can be tested on
+     * other threads while their results are recorded with {@link #matchFile(String)}.
+     * @param entryName the name of a container entry
+     * @param content the content to be matched against the binary signature
+     * @return true if the file has no binary signature or its content matches it; false otherwise
+     */
+    public boolean binaryContentMatches(String entryName, ByteReader content) {
+        final ContainerFile file = signature.getFiles().get(entryName);
+        final InternalSignatureCollection binSigs = file == null ? null : file.getCompiledBinarySignatures();
+        return binSigs == null || binSigs.getMatchingSignatures(content, maxBytesToScan).size() > 0;
+    }
+
+    /**
+     * Records that a file of the signature has matched.
+     * @param entryName the name of a container entry
+     */
+    public void matchFile(String entryName) {
+        unmatchedFiles.remove(entryName);
+    }
+
     /**
      * @return the signature
      */
@@ -32,6 +32,7 @@
 package uk.gov.nationalarchives.droid.container;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -41,8 +42,10 @@ import java.util.List;
 public class ContainerSignatureMatchCollection {
 
     private final List<ContainerSignatureMatch> matches = new ArrayList<ContainerSignatureMatch>();
-    private final List<String> allFileEntries; 
-    
+    private final ContainerSignatureIndex index;
+    private final List<String> allFileEntries;
+    private final long maxBytesToScan;
+
     /**
      * 
      * @param signatures     The signatures from which to contruct our match objects.
@@ -51,13 +54,60 @@ public class ContainerSignatureMatchCollection {
      */
     public ContainerSignatureMatchCollection(final List<ContainerSignature> signatures, 
         final List<String> allFileEntries, final long maxBytesToScan) {
-        for (ContainerSignature sig : signatures) {
+        this(new ContainerSignatureIndex(signatures), allFileEntries, maxBytesToScan);
+    }
+
+    /**
+     *
+     * @param index          A precompiled index of the signatures from which to construct our match objects.
+     * @param maxBytesToScan - the max bytes to binary match on, or negative meaning unlimited.
+     */
+    public ContainerSignatureMatchCollection(final ContainerSignatureIndex index, final long maxBytesToScan) {
+        this(index, index.getAllFileEntries(), maxBytesToScan);
+    }
+
+    private ContainerSignatureMatchCollection(final ContainerSignatureIndex index,
+        final List<String> allFileEntries, final long maxBytesToScan) {
+        for (ContainerSignature sig : index.getSignatures()) {
             ContainerSignatureMatch match = new ContainerSignatureMatch(sig, maxBytesToScan);
             matches.add(match);
         }
+        this.index = index;
         this.allFileEntries = allFileEntries;
+        this.maxBytesToScan = maxBytesToScan;
     }
-    
+
+    /**
+     *
+     * @return The index of the signatures in this collection.
+     */
+    public ContainerSignatureIndex getIndex() {
+        return index;
+    }
+
+    /**
+     *
+     * @return The max bytes to binary match on, or negative meaning unlimited.
+     */
+    public long getMaxBytesToScan() {
+        return maxBytesToScan;
+    }
+
+    /**
+     * Gets the matches for the signatures which can still match, as found by resolving the
+     * entries of a container against the index.
+     *
+     * @param candidates The positions in the index of the signatures which can still match.
+     * @return A list of the container signature match objects for the candidate signatures.
+     */
+    public List<ContainerSignatureMatch> getCandidateMatches(final BitSet candidates) {
+        final List<ContainerSignatureMatch> candidateMatches = new ArrayList<>(candidates.cardinality());
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            candidateMatches.add(matches.get(i));
+        }
+        return candidateMatches;
+    }
+
     /**
      * 
      * @return A list of all the unique file entries
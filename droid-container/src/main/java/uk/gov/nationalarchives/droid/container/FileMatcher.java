@@ -37,21 +37,54 @@ import java.net.URI;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.PathMatcher;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class FileMatcher {
 
     private static final String CONTAINER_NAME_PLACEHOLDER = "{containerFileName}";
 
+    private static final String GLOB_CHARACTERS = "*?[{\\";
+
     private final FileSystem fileSystem;
 
+    private final Map<String, PathMatcher> globMatchers = new ConcurrentHashMap<>();
+
+    private final boolean caseInsensitive;
+
     public FileMatcher() {
         this.fileSystem = FileSystems.getFileSystem(URI.create("file:///"));
+        this.caseInsensitive = fileSystem.getPathMatcher("glob:a").matches(fileSystem.getPath("A"));
     }
 
     public boolean fileMatches(String filePath, String toMatch, String containerFileName) {
         return filePath.equals(toMatch) || matchesContainerName(filePath, toMatch, containerFileName) || globMatches(filePath, toMatch);
     }
 
+    /**
+     * Returns true if a file path in a signature can only match an entry with exactly the same name,
+     * because it has no container name placeholder and no glob syntax.
+     * @param filePath The file path in the signature.
+     * @return true if the file path only matches itself.
+     */
+    public static boolean isLiteral(String filePath) {
+        for (int i = 0; i < filePath.length(); i++) {
+            if (GLOB_CHARACTERS.indexOf(filePath.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if file paths match entries whose names differ only in case, as glob matching does
+     * on case-insensitive platforms such as Windows.  A literal path then matches such entries too.
+     * @return true if file paths match entries regardless of case.
+     */
+    public boolean isCaseInsensitive() {
+        return caseInsensitive;
+    }
+
     private boolean matchesContainerName(String fileName, String toMatch, String containerFileName) {
         if (fileName != null && toMatch != null && containerFileName != null && fileName.startsWith(CONTAINER_NAME_PLACEHOLDER)) {
             return toMatch.equals(fileName.replace(CONTAINER_NAME_PLACEHOLDER, FilenameUtils.removeExtension(containerFileName)));
@@ -60,9 +93,7 @@ public class FileMatcher {
     }
 
     private boolean globMatches(String pattern, String toMatch) {
-        PathMatcher pathMatcher = fileSystem.getPathMatcher("glob:" + pattern);
+        PathMatcher pathMatcher = globMatchers.computeIfAbsent(pattern, p -> fileSystem.getPathMatcher("glob:" + p));
         return pathMatcher.matches(fileSystem.getPath(toMatch));
     }
-
-
 }
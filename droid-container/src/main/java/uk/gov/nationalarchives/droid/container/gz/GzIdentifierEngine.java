@@ -38,6 +38,8 @@ import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.signature.ByteReader;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.GZIPInputStream;
 
@@ -45,12 +47,27 @@ public class GzIdentifierEngine extends AbstractIdentifierEngine {
 
     @Override
     public void process(IdentificationRequest request, ContainerSignatureMatchCollection matches) throws IOException {
-        for (String entryName: matches.getAllFileEntries()) {
-            try (GZIPInputStream stream = new GZIPInputStream(request.getSourceInputStream()); ByteReader reader = newByteReader(stream)) {
-                List<ContainerSignatureMatch> matchList =
-                        matches.getContainerSignatureMatches();
-                for (ContainerSignatureMatch match : matchList) {
-                    match.matchBinaryContent(entryName, reader);
+        final List<ContainerSignatureMatch> matchList = matches.getContainerSignatureMatches();
+        final List<String> binaryEntries = new ArrayList<>();
+        long bytesNeeded = 0;
+        for (String entryName : matches.getAllFileEntries()) {
+            for (ContainerSignatureMatch match : matchList) {
+                match.matchResolvedFile(entryName);
+            }
+            final long entryBytesNeeded = getBytesNeeded(entryName, matchList);
+            if (entryBytesNeeded != 0) {
+                binaryEntries.add(entryName);
+                bytesNeeded = entryBytesNeeded < 0 || bytesNeeded < 0 ? -1 : Math.max(bytesNeeded, entryBytesNeeded);
+            }
+        }
+        if (!binaryEntries.isEmpty()) {
+            // Decompress once, only as far as any of the signatures could read, and match every entry against it:
+            try (InputStream stream = new GZIPInputStream(request.getSourceInputStream());
+                 ByteReader reader = newByteReader(stream, bytesNeeded)) {
+                for (String entryName : binaryEntries) {
+                    for (ContainerSignatureMatch match : matchList) {
+                        match.matchBinaryContent(entryName, reader);
+                    }
                 }
             }
         }
@@ -0,0 +1,448 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.container.ole2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+import net.byteseek.io.reader.WindowReader;
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveFileUtils;
+
+/**
+ * Reads the directory and streams of an OLE2 compound file directly from a WindowReader.
+ * <p>
+ * A POIFSFileSystem built from an input stream reads the whole compound file into memory.  This reader only
+ * reads the header and the directory up front.  Entries in the FAT and mini FAT are looked up as sector chains
+ * are followed, and only the sectors of streams which are opened are read.  Streams can be opened and read on
+ * several threads at once.
+ */
+final class CompoundFileReader {
+
+    private static final byte[] SIGNATURE = {(byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0,
+                                             (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1};
+    private static final int HEADER_SIZE = 512;
+    private static final int SECTOR_SHIFT_OFFSET = 0x1E;
+    private static final int MINI_SECTOR_SHIFT_OFFSET = 0x20;
+    private static final int NUM_FAT_SECTORS_OFFSET = 0x2C;
+    private static final int FIRST_DIRECTORY_SECTOR_OFFSET = 0x30;
+    private static final int MINI_STREAM_CUTOFF_OFFSET = 0x38;
+    private static final int FIRST_MINI_FAT_SECTOR_OFFSET = 0x3C;
+    private static final int NUM_MINI_FAT_SECTORS_OFFSET = 0x40;
+    private static final int FIRST_DIFAT_SECTOR_OFFSET = 0x44;
+    private static final int NUM_DIFAT_SECTORS_OFFSET = 0x48;
+    private static final int HEADER_DIFAT_OFFSET = 0x4C;
+    private static final int HEADER_DIFAT_ENTRIES = 109;
+    private static final int SMALL_SECTOR_SHIFT = 9;
+    private static final int LARGE_SECTOR_SHIFT = 12;
+
+    private static final int DIRECTORY_ENTRY_SIZE = 128;
+    private static final int NAME_LENGTH_OFFSET = 0x40;
+    private static final int TYPE_OFFSET = 0x42;
+    private static final int LEFT_SIBLING_OFFSET = 0x44;
+    private static final int RIGHT_SIBLING_OFFSET = 0x48;
+    private static final int CHILD_OFFSET = 0x4C;
+    private static final int START_SECTOR_OFFSET = 0x74;
+    private static final int STREAM_SIZE_OFFSET = 0x78;
+    private static final int MAX_NAME_BYTES = 64;
+    private static final int TYPE_STORAGE = 1;
+    private static final int TYPE_STREAM = 2;
+    private static final int TYPE_ROOT = 5;
+
+    private static final int SIZE_OF_INT = 4;
+    private static final long UNSIGNED_INT_MASK = 0xFFFFFFFFL;
+    private static final String UNEXPECTED_END = "Unexpected end of OLE2 compound file at position ";
+
+    private final WindowReader reader;
+    private final int sectorShift;
+    private final int sectorSize;
+    private final int miniSectorShift;
+    private final long miniStreamCutoff;
+    private final int firstMiniFatSector;
+    private final int numMiniFatSectors;
+    private final int[] fatSectors;
+    private final List<DirectoryEntry> directory;
+    private int[] miniFatSectors;
+    private int[] miniStreamSectors;
+
+    /**
+     * Reads the header and directory of a compound file.
+     * @param reader The reader for the compound file.
+     * @throws IOException If the compound file could not be read or is not valid.
+     */
+    CompoundFileReader(WindowReader reader) throws IOException {
+        this.reader = reader;
+        final ByteBuffer header = read(0, HEADER_SIZE);
+        final byte[] signature = new byte[SIGNATURE.length];
+        header.get(0, signature);
+        if (!Arrays.equals(SIGNATURE, signature)) {
+            throw new IOException("Not an OLE2 compound file");
+        }
+        sectorShift = header.getShort(SECTOR_SHIFT_OFFSET);
+        if (sectorShift != SMALL_SECTOR_SHIFT && sectorShift != LARGE_SECTOR_SHIFT) {
+            throw new IOException("Unsupported OLE2 sector shift: " + sectorShift);
+        }
+        sectorSize = 1 << sectorShift;
+        miniSectorShift = header.getShort(MINI_SECTOR_SHIFT_OFFSET);
+        if (miniSectorShift <= 0 || miniSectorShift > sectorShift) {
+            throw new IOException("Unsupported OLE2 mini sector shift: " + miniSectorShift);
+        }
+        miniStreamCutoff = header.getInt(MINI_STREAM_CUTOFF_OFFSET) & UNSIGNED_INT_MASK;
+        firstMiniFatSector = header.getInt(FIRST_MINI_FAT_SECTOR_OFFSET);
+        numMiniFatSectors = header.getInt(NUM_MINI_FAT_SECTORS_OFFSET);
+        fatSectors = readFatSectors(header);
+        directory = readDirectory(header.getInt(FIRST_DIRECTORY_SECTOR_OFFSET));
+        if (directory.isEmpty() || directory.get(0).getType() != TYPE_ROOT) {
+            throw new IOException("OLE2 compound file has no root entry");
+        }
+    }
+
+    /**
+     * Lists the storages and streams under the root of the compound file.
+     * The path of an entry is made of the names of the storages it is in and its own name, separated by '/'.
+     * @return The entries in the compound file.
+     */
+    List<Entry> getEntries() {
+        final List<Entry> entries = new ArrayList<>();
+        final BitSet visited = new BitSet(directory.size());
+        visited.set(0);
+        final Deque<Entry> storages = new ArrayDeque<>();
+        storages.push(new Entry("", directory.get(0)));
+        while (!storages.isEmpty()) {
+            final Entry storage = storages.pop();
+            final String parentPath = storage.getPath().isEmpty() ? "" : storage.getPath() + '/';
+            // The children of a storage are held in a tree of siblings below its child:
+            final Deque<Integer> siblings = new ArrayDeque<>();
+            siblings.push(storage.directoryEntry.getChild());
+            while (!siblings.isEmpty()) {
+                final int id = siblings.pop();
+                if (id >= 0 && id < directory.size() && !visited.get(id)) {
+                    visited.set(id);
+                    final DirectoryEntry directoryEntry = directory.get(id);
+                    siblings.push(directoryEntry.getLeftSibling());
+                    siblings.push(directoryEntry.getRightSibling());
+                    if (directoryEntry.getType() == TYPE_STORAGE || directoryEntry.getType() == TYPE_STREAM) {
+                        final Entry entry = new Entry(parentPath + directoryEntry.getName().trim(), directoryEntry);
+                        entries.add(entry);
+                        if (entry.isStorage()) {
+                            storages.push(entry);
+                        }
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Opens a stream in the compound file.  Its sectors are only read as the stream is read.
+     * @param entry The entry for the stream.
+     * @return An input stream over the contents of the stream.
+     * @throws IOException If the stream could not be opened.
+     */
+    synchronized InputStream openStream(Entry entry) throws IOException {
+        final DirectoryEntry directoryEntry = entry.directoryEntry;
+        if (directoryEntry.getType() != TYPE_STREAM) {
+            throw new IOException("Not an OLE2 stream: " + entry.getPath());
+        }
+        final boolean mini = directoryEntry.getSize() < miniStreamCutoff;
+        if (mini && miniStreamSectors == null) {
+            final DirectoryEntry root = directory.get(0);
+            miniFatSectors = getChain(firstMiniFatSector, numMiniFatSectors);
+            miniStreamSectors = getChain(root.getStartSector(), (root.getSize() + sectorSize - 1) >> sectorShift);
+        }
+        return new SectorChainInputStream(directoryEntry.getStartSector(), directoryEntry.getSize(), mini);
+    }
+
+    private int[] readFatSectors(ByteBuffer header) throws IOException {
+        final int numFatSectors = header.getInt(NUM_FAT_SECTORS_OFFSET);
+        final int numDifatSectors = header.getInt(NUM_DIFAT_SECTORS_OFFSET);
+        final int entriesPerDifatSector = sectorSize / SIZE_OF_INT - 1;
+        final long maxFatSectors = HEADER_DIFAT_ENTRIES + (long) Math.max(0, numDifatSectors) * entriesPerDifatSector;
+        if (numFatSectors < 0 || numFatSectors > maxFatSectors) {
+            throw new IOException("Invalid number of OLE2 FAT sectors: " + numFatSectors);
+        }
+        int[] sectors = new int[Math.min(numFatSectors, HEADER_DIFAT_ENTRIES)];
+        for (int i = 0; i < sectors.length; i++) {
+            sectors[i] = header.getInt(HEADER_DIFAT_OFFSET + i * SIZE_OF_INT);
+        }
+        int count = sectors.length;
+        int difatSector = header.getInt(FIRST_DIFAT_SECTOR_OFFSET);
+        for (int i = 0; i < numDifatSectors && count < numFatSectors && difatSector >= 0; i++) {
+            final ByteBuffer difat = read(sectorPosition(difatSector), sectorSize);
+            sectors = Arrays.copyOf(sectors, Math.min(numFatSectors, count + entriesPerDifatSector));
+            for (int entry = 0; count < sectors.length; entry++) {
+                sectors[count++] = difat.getInt(entry * SIZE_OF_INT);
+            }
+            difatSector = difat.getInt(entriesPerDifatSector * SIZE_OF_INT);
+        }
+        return sectors;
+    }
+
+    private List<DirectoryEntry> readDirectory(int firstDirectorySector) throws IOException {
+        final List<DirectoryEntry> entries = new ArrayList<>();
+        for (int sector : getChain(firstDirectorySector, (long) fatSectors.length * (sectorSize / SIZE_OF_INT))) {
+            final ByteBuffer sectorBytes = read(sectorPosition(sector), sectorSize);
+            for (int offset = 0; offset < sectorSize; offset += DIRECTORY_ENTRY_SIZE) {
+                entries.add(new DirectoryEntry(sectorBytes.slice(offset, DIRECTORY_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN),
+                        sectorShift == LARGE_SECTOR_SHIFT));
+            }
+        }
+        return entries;
+    }
+
+    /*
+     * Follows a chain of sectors through the FAT, returning at most maxSectors sectors.
+     */
+    private int[] getChain(int startSector, long maxSectors) throws IOException {
+        final long maxChainLength = (long) fatSectors.length * (sectorSize / SIZE_OF_INT);
+        int[] chain = new int[0];
+        int length = 0;
+        int sector = startSector;
+        while (sector >= 0 && length < maxSectors) {
+            if (length >= maxChainLength) {
+                throw new IOException("Loop in OLE2 sector chain starting at " + startSector);
+            }
+            if (length == chain.length) {
+                chain = Arrays.copyOf(chain, Math.max(SIZE_OF_INT, length * 2));
+            }
+            chain[length++] = sector;
+            sector = nextSector(fatSectors, sector);
+        }
+        return Arrays.copyOf(chain, length);
+    }
+
+    /*
+     * Looks up the sector following the given sector in a FAT or mini FAT made of the given sectors.
+     * Both tables are stored in regular sectors, so entries are located by the sector size either way.
+     */
+    private int nextSector(int[] allocationSectors, int sector) throws IOException {
+        final int entriesPerSector = sectorSize / SIZE_OF_INT;
+        final int allocationSector = sector / entriesPerSector;
+        if (allocationSector >= allocationSectors.length) {
+            throw new IOException("OLE2 sector " + sector + " is outside the allocation table");
+        }
+        final long position = sectorPosition(allocationSectors[allocationSector])
+                + (long) (sector % entriesPerSector) * SIZE_OF_INT;
+        return read(position, SIZE_OF_INT).getInt(0);
+    }
+
+    private long sectorPosition(int sector) {
+        return ((long) sector + 1) << sectorShift;
+    }
+
+    private long miniSectorPosition(int miniSector) throws IOException {
+        final long offset = (long) miniSector << miniSectorShift;
+        final long streamSector = offset >> sectorShift;
+        if (streamSector >= miniStreamSectors.length) {
+            throw new IOException("OLE2 mini sector " + miniSector + " is outside the mini stream");
+        }
+        return sectorPosition(miniStreamSectors[(int) streamSector]) + (offset & (sectorSize - 1));
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        final byte[] bytes = new byte[length];
+        if (copyToBuffer(position, bytes, 0, length) < length) {
+            throw new IOException(UNEXPECTED_END + position);
+        }
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /*
+     * Streams may be read on several threads, but window readers aren't thread safe.
+     */
+    private int copyToBuffer(long position, byte[] buffer, int offset, int length) throws IOException {
+        synchronized (reader) {
+            return ArchiveFileUtils.copyToBuffer(reader, position, buffer, offset, length);
+        }
+    }
+
+    /**
+     * A storage or stream in the compound file, with its path from the root.
+     */
+    static final class Entry {
+        private final String path;
+        private final DirectoryEntry directoryEntry;
+
+        private Entry(String path, DirectoryEntry directoryEntry) {
+            this.path = path;
+            this.directoryEntry = directoryEntry;
+        }
+
+        /**
+         * @return The path of the entry from the root of the compound file.
+         */
+        String getPath() {
+            return path;
+        }
+
+        /**
+         * @return Whether the entry is a storage, which contains other entries.
+         */
+        boolean isStorage() {
+            return directoryEntry.getType() == TYPE_STORAGE;
+        }
+
+        /**
+         * @return Whether the entry is a stream.
+         */
+        boolean isStream() {
+            return directoryEntry.getType() == TYPE_STREAM;
+        }
+
+        /**
+         * @return The size of the stream, or zero for a storage.
+         */
+        long getSize() {
+            return isStream() ? directoryEntry.getSize() : 0;
+        }
+    }
+
+    /**
+     * An entry in the directory of the compound file.
+     */
+    private static final class DirectoryEntry {
+        private final String name;
+        private final int type;
+        private final int leftSibling;
+        private final int rightSibling;
+        private final int child;
+        private final int startSector;
+        private final long size;
+
+        DirectoryEntry(ByteBuffer entry, boolean largeSectors) {
+            final int nameLength = Math.min(Short.toUnsignedInt(entry.getShort(NAME_LENGTH_OFFSET)), MAX_NAME_BYTES);
+            // The name length includes a terminating null character.
+            final byte[] nameBytes = new byte[Math.max(0, nameLength - 2)];
+            entry.get(0, nameBytes);
+            name = new String(nameBytes, StandardCharsets.UTF_16LE);
+            type = entry.get(TYPE_OFFSET);
+            leftSibling = entry.getInt(LEFT_SIBLING_OFFSET);
+            rightSibling = entry.getInt(RIGHT_SIBLING_OFFSET);
+            child = entry.getInt(CHILD_OFFSET);
+            startSector = entry.getInt(START_SECTOR_OFFSET);
+            // Files with 512 byte sectors may have junk in the high 32 bits of the size.
+            size = largeSectors ? entry.getLong(STREAM_SIZE_OFFSET) : entry.getInt(STREAM_SIZE_OFFSET) & UNSIGNED_INT_MASK;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        int getType() {
+            return type;
+        }
+
+        int getLeftSibling() {
+            return leftSibling;
+        }
+
+        int getRightSibling() {
+            return rightSibling;
+        }
+
+        int getChild() {
+            return child;
+        }
+
+        int getStartSector() {
+            return startSector;
+        }
+
+        long getSize() {
+            return size;
+        }
+    }
+
+    /**
+     * Reads a stream by following its chain of sectors or mini sectors, reading each sector as it is reached.
+     */
+    private final class SectorChainInputStream extends InputStream {
+        private final boolean mini;
+        private final int blockSize;
+        private int sector;
+        private int positionInBlock;
+        private long remaining;
+
+        SectorChainInputStream(int startSector, long size, boolean mini) {
+            this.mini = mini;
+            this.blockSize = mini ? 1 << miniSectorShift : sectorSize;
+            this.sector = startSector;
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] oneByte = new byte[1];
+            return read(oneByte, 0, 1) < 0 ? -1 : Byte.toUnsignedInt(oneByte[0]);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            if (length == 0) {
+                return 0;
+            }
+            if (positionInBlock == blockSize) {
+                sector = nextSector(mini ? miniFatSectors : fatSectors, sector);
+                positionInBlock = 0;
+            }
+            if (sector < 0) {
+                throw new IOException("OLE2 stream ends before its size");
+            }
+            final int toRead = (int) Math.min(Math.min(length, blockSize - positionInBlock), remaining);
+            final long position = (mini ? miniSectorPosition(sector) : sectorPosition(sector)) + positionInBlock;
+            final int bytesRead = copyToBuffer(position, buffer, offset, toRead);
+            if (bytesRead <= 0) {
+                throw new IOException(UNEXPECTED_END + position);
+            }
+            positionInBlock += bytesRead;
+            remaining -= bytesRead;
+            return bytesRead;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, remaining);
+        }
+    }
+}
@@ -34,10 +34,14 @@ package uk.gov.nationalarchives.droid.container.ole2;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
+import net.byteseek.io.reader.WindowReader;
 import org.apache.poi.poifs.filesystem.DirectoryNode;
 import org.apache.poi.poifs.filesystem.DocumentNode;
 import org.slf4j.Logger;
@@ -65,9 +69,52 @@ public class Ole2IdentifierEngine extends AbstractIdentifierEngine {
                     + "Try running with a larger heap size!";
     private final Logger log = LoggerFactory.getLogger(Ole2IdentifierEngine.class);
 
-    //CHECKSTYLE:OFF - cyclomatic complexity too high.
     @Override
     public void process(IdentificationRequest<InputStream> request, ContainerSignatureMatchCollection matches) throws IOException {
+        // Files can be read by POIFS without loading them into memory, but only one entry at a time.  For other
+        // requests, or to read several entries at a time, the compound file is read through the request's window
+        // reader, falling back to POIFS if it can't be read directly.
+        if (getEntryThreads() > 0 || !FileSystemIdentificationRequest.class.isAssignableFrom(request.getClass())) {
+            final WindowReader windowReader = request.getWindowReader();
+            if (windowReader != null) {
+                CompoundFileReader compoundFile = null;
+                try {
+                    compoundFile = new CompoundFileReader(windowReader);
+                } catch (IOException e) {
+                    log.debug("Reading the OLE2 compound file with POIFS: " + e.getMessage());
+                }
+                if (compoundFile != null) {
+                    processCompoundFile(request, matches, compoundFile);
+                    return;
+                }
+            }
+        }
+        processPoifs(request, matches);
+    }
+
+    private void processCompoundFile(IdentificationRequest<InputStream> request, ContainerSignatureMatchCollection matches,
+                                     CompoundFileReader compoundFile) {
+        try {
+            // Match the names of all the entries before reading the streams any signatures need:
+            final Map<String, CompoundFileReader.Entry> streams = new HashMap<>();
+            final Map<String, String> entries = new LinkedHashMap<>();
+            for (CompoundFileReader.Entry entry : compoundFile.getEntries()) {
+                final String entryName = entry.getPath();
+                if (matchFileEntry(request, matches, entryName) && entry.isStream()
+                        && streams.putIfAbsent(entryName, entry) == null) {
+                    entries.put(entryName, entryName);
+                }
+            }
+            matchEntries(matches.getContainerSignatureMatches(), entries,
+                entryName -> compoundFile.openStream(streams.get(entryName)));
+        } catch (IOException e) {
+            log.error(e.getMessage());
+        }
+    }
+
+    //CHECKSTYLE:OFF - cyclomatic complexity too high.
+    private void processPoifs(IdentificationRequest<InputStream> request, ContainerSignatureMatchCollection matches)
+            throws IOException {
         //CHECKSTYLE:ON
         InputStream in = null;
         POIFSFileSystem reader = null;
@@ -100,32 +147,9 @@ public class Ole2IdentifierEngine extends AbstractIdentifierEngine {
                 Entry entry = info.getEntry();
                 String entryName = info.getPath();
                 DirectoryNode parent = info.getParent();
-
-                boolean needsBinaryMatch = false;
-
-                for (ContainerSignatureMatch match : matches.getContainerSignatureMatches()) {
-                    match.matchFileEntry(entryName, request.getFileName());
-                    if (match.needsBinaryMatch(entryName)) {
-                        needsBinaryMatch = true;
-                    }
-                }
-
-                if (needsBinaryMatch && entry instanceof DocumentNode) {
-                    DocumentInputStream docIn = null;
-                    ByteReader byteReader = null;
-                    try {
-                        docIn = parent.createDocumentInputStream(entry.getName());
-                        byteReader = newByteReader(docIn);
-                        for (ContainerSignatureMatch match : matches.getContainerSignatureMatches()) {
-                            match.matchBinaryContent(entryName, byteReader);
-                        }
-                    } finally {
-                        if (byteReader != null) {
-                            byteReader.close();
-                        }
-                        if (docIn != null) {
-                            docIn.close();
-                        }
+                if (matchFileEntry(request, matches, entryName) && entry instanceof DocumentNode) {
+                    try (DocumentInputStream docIn = parent.createDocumentInputStream(entry.getName())) {
+                        matchBinaryContent(matches, entryName, docIn);
                     }
                 }
             }
@@ -142,6 +166,31 @@ public class Ole2IdentifierEngine extends AbstractIdentifierEngine {
         }
     }
 
+    /*
+     * Matches the name of an entry against the signatures, returning whether any of them need to match its content.
+     */
+    private boolean matchFileEntry(IdentificationRequest<InputStream> request, ContainerSignatureMatchCollection matches,
+                                   String entryName) {
+        boolean needsBinaryMatch = false;
+        for (ContainerSignatureMatch match : matches.getContainerSignatureMatches()) {
+            match.matchFileEntry(entryName, request.getFileName());
+            if (match.needsBinaryMatch(entryName)) {
+                needsBinaryMatch = true;
+            }
+        }
+        return needsBinaryMatch;
+    }
+
+    private void matchBinaryContent(ContainerSignatureMatchCollection matches, String entryName, InputStream stream)
+            throws IOException {
+        final List<ContainerSignatureMatch> matchList = matches.getContainerSignatureMatches();
+        try (ByteReader byteReader = newByteReader(stream, getBytesNeeded(entryName, matchList))) {
+            for (ContainerSignatureMatch match : matchList) {
+                match.matchBinaryContent(entryName, byteReader);
+            }
+        }
+    }
+
     /**
      * A class which iterates over all the file entries in an OLE2 file.
      * It can optionally process children in sub folders, or just do the immediate children of the root.
@@ -37,17 +37,20 @@ import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.nationalarchives.droid.container.AbstractIdentifierEngine;
+import uk.gov.nationalarchives.droid.container.ContainerSignatureIndex;
 import uk.gov.nationalarchives.droid.container.ContainerSignatureMatch;
 import uk.gov.nationalarchives.droid.container.ContainerSignatureMatchCollection;
-import uk.gov.nationalarchives.droid.container.FileMatcher;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.ByteseekWindowWrapper;
-import uk.gov.nationalarchives.droid.core.signature.ByteReader;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 import java.util.zip.ZipException;
 
 /**
@@ -56,23 +59,21 @@ import java.util.zip.ZipException;
  */
 public class ZipIdentifierEngine extends AbstractIdentifierEngine {
 
-    private static final FileMatcher FILE_MATCHER = new FileMatcher();
-
     private static final Logger LOG = LoggerFactory.getLogger(ZipIdentifierEngine.class);
 
     @Override
     public void process(IdentificationRequest<InputStream> request, ContainerSignatureMatchCollection matches) throws IOException {
 
-        try (ZipFile zipFile = new ZipFile(new ByteseekWindowWrapper(request.getWindowReader()), ZipFile.DEFAULT_CHARSET, true, false)) {
-            // For each entry:
-            for (String entryName : matches.getAllFileEntries()) {
-                final ZipEntry entry = getEntry(entryName, zipFile, request.getFileName());
-                if (entry != null) {
-                    // Get a stream for the entry and a byte reader over the stream:
-                    InputStream stream = zipFile.getInputStream(entry.getName());
-                    matchEntry(matches, entryName, stream);
-                }
+        try (EntryZipFile zipFile = new EntryZipFile(new ByteseekWindowWrapper(request.getWindowReader()))) {
+            // Resolve the signature files against the central directory in a single pass:
+            final ContainerSignatureIndex.EntryResolver resolver = matches.getIndex().newResolver(request.getFileName());
+            for (Iterator<? extends ZipEntry> it = zipFile.entries().asIterator(); it.hasNext();) {
+                final ZipEntry entry = it.next();
+                resolver.addEntry(entry.getName(), entry.isDirectory());
             }
+            // Entries read on other threads are inflated without holding the zip file's lock:
+            matchResolvedEntries(matches, resolver,
+                    getEntryThreads() > 0 ? zipFile::getInflatingInputStream : zipFile::getInputStream);
         } catch (ZipException ze) {
             LOG.warn("Initial zip file parsing failed. Will try again with commons-compress {}", ze.getMessage());
             processFallback(request, matches);
@@ -84,60 +85,67 @@ public class ZipIdentifierEngine extends AbstractIdentifierEngine {
                 .setIgnoreLocalFileHeader(true)
                 .setSeekableByteChannel(new ByteseekWindowWrapper(request.getWindowReader()))
                 .get()) {
-            // For each entry:
-            for (String entryName : matches.getAllFileEntries()) {
-                final ZipArchiveEntry entry = getFallbackEntry(entryName, zipFile, request.getFileName());
-                if (entry != null) {
-                    // Get a stream for the entry and a byte reader over the stream:
-                    InputStream stream = zipFile.getInputStream(entry);
-                    matchEntry(matches, entryName, stream);
-                }
+            final ContainerSignatureIndex.EntryResolver resolver = matches.getIndex().newResolver(request.getFileName());
+            for (Iterator<? extends ZipArchiveEntry> it = zipFile.getEntries().asIterator(); it.hasNext();) {
+                final ZipArchiveEntry entry = it.next();
+                resolver.addEntry(entry.getName(), entry.isDirectory());
             }
+            // Opening an entry reads its local header, which commons-compress doesn't synchronize:
+            matchResolvedEntries(matches, resolver, entryName -> {
+                synchronized (zipFile) {
+                    return zipFile.getInputStream(zipFile.getEntry(entryName));
+                }
+            });
         }
     }
 
-    private void matchEntry(ContainerSignatureMatchCollection matches, String entryName, InputStream stream) throws IOException {
-        try (ByteReader reader = newByteReader(stream)) {
-            // For each signature to match:
-            List<ContainerSignatureMatch> matchList = matches.getContainerSignatureMatches();
+    /*
+     * Only the signatures which found all their files in the container are matched, and an entry
+     * is only read if one of those signatures has a binary signature for it.
+     */
+    private void matchResolvedEntries(ContainerSignatureMatchCollection matches,
+                                      ContainerSignatureIndex.EntryResolver resolver,
+                                      EntryOpener opener) throws IOException {
+        final List<ContainerSignatureMatch> matchList = matches.getCandidateMatches(resolver.getCandidateSignatures());
+        final Map<String, String> resolvedEntries = resolver.getResolvedEntries();
+        for (String filePath : resolvedEntries.keySet()) {
             for (ContainerSignatureMatch match : matchList) {
-                match.matchBinaryContent(entryName, reader);
-            }
-        } finally {
-            if (stream != null) {
-                stream.close();
+                match.matchResolvedFile(filePath);
             }
         }
+        matchEntries(matchList, resolvedEntries, opener);
     }
 
-    private static ZipEntry getEntry(String entryName, ZipFile zipFile, String containerFileName) {
-        ZipEntry entry = zipFile.entry(entryName);
-        if (entry == null) {
-            for (Iterator<? extends ZipEntry> it = zipFile.entries().asIterator(); it.hasNext();) {
-                ZipEntry eachEntry = it.next();
-                if (!eachEntry.isDirectory()) {
-                    if (FILE_MATCHER.fileMatches(entryName, eachEntry.getName(), containerFileName)) {
-                        return eachEntry;
-                    }
+    /**
+     * A zip file which can open deflated entries to be inflated without holding its lock.
+     * <p>
+     * Every read of a stream from a truevfs ZipFile holds a lock on the whole file, so entries
+     * read on several threads would be inflated one at a time.  Reading the compressed data
+     * still holds the lock, but the inflater only does so to fill its buffer.
+     */
+    private static final class EntryZipFile extends ZipFile {
 
-                }
-            }
+        EntryZipFile(SeekableByteChannel channel) throws IOException {
+            super(channel, DEFAULT_CHARSET, true, false);
         }
-        return entry;
-    }
 
-    private static ZipArchiveEntry getFallbackEntry(String entryName, org.apache.commons.compress.archivers.zip.ZipFile zipFile, String containerFileName) {
-        ZipArchiveEntry entry = zipFile.getEntry(entryName);
-        if (entry == null) {
-            for (Iterator<? extends ZipArchiveEntry> it = zipFile.getEntries().asIterator(); it.hasNext();) {
-                ZipArchiveEntry eachEntry = it.next();
-                if (!eachEntry.isDirectory()) {
-                    if (FILE_MATCHER.fileMatches(entryName, eachEntry.getName(), containerFileName)) {
-                        return eachEntry;
+        InputStream getInflatingInputStream(String entryName) throws IOException {
+            final ZipEntry entry = entry(entryName);
+            if (entry == null || entry.getMethod() != ZipEntry.DEFLATED || entry.isEncrypted()) {
+                return getInputStream(entryName);
+            }
+            final InputStream compressed = getInputStream(entryName, false, false);
+            final Inflater inflater = new Inflater(true);
+            return new InflaterInputStream(compressed, inflater) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
                     }
                 }
-            }
+            };
         }
-        return entry;
     }
 }
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.container;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import uk.gov.nationalarchives.droid.container.zip.ZipIdentifierEngine;
+import uk.gov.nationalarchives.droid.core.signature.droid6.InternalSignature;
+import uk.gov.nationalarchives.droid.core.signature.droid6.InternalSignatureCollection;
+
+public class ContainerEntryMatcherTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<String> opened = Collections.synchronizedList(new ArrayList<>());
+    private AbstractIdentifierEngine engine;
+    private Map<String, String> entries;
+
+    @Before
+    public void setup() {
+        final ContainerFileIdentificationRequestFactory requestFactory = new ContainerFileIdentificationRequestFactory();
+        requestFactory.setTempDirLocation(temporaryFolder.getRoot().toPath());
+        engine = new ZipIdentifierEngine();
+        engine.setRequestFactory(requestFactory);
+        entries = new LinkedHashMap<>();
+        for (String entry : new String[] {"a", "b", "c"}) {
+            entries.put(entry, entry);
+        }
+    }
+
+    @Test
+    public void testDoesNotReadEntriesOnlyNeededBySignaturesWhichCanNoLongerMatch() throws Exception {
+        final ContainerSignatureMatch failsOnA = newMatch(Map.of("a", false, "b", true));
+        final ContainerSignatureMatch matchesC = newMatch(Map.of("c", true));
+
+        new ContainerEntryMatcher(engine, List.of(failsOnA, matchesC)).matchEntries(entries, this::open, null);
+
+        assertFalse(failsOnA.isMatch());
+        assertTrue(matchesC.isMatch());
+        assertEquals(List.of("a", "c"), opened);
+    }
+
+    @Test
+    public void testStopsReadingEntriesOnceEverySignatureIsResolved() throws Exception {
+        final ContainerSignatureMatch matchesA = newMatch(Map.of("a", true));
+        final ContainerSignatureMatch missingFile = newMatch(Map.of("c", true, "d", true));
+
+        new ContainerEntryMatcher(engine, List.of(matchesA, missingFile)).matchEntries(entries, this::open, null);
+
+        assertTrue(matchesA.isMatch());
+        assertFalse(missingFile.isMatch());
+        assertEquals(List.of("a"), opened);
+    }
+
+    @Test
+    public void testMatchesTheSameWithAnExecutor() throws Exception {
+        final ContainerSignatureMatch failsOnA = newMatch(Map.of("a", false, "b", true));
+        final ContainerSignatureMatch matchesBAndC = newMatch(Map.of("b", true, "c", true));
+        final ContainerSignatureMatch failsOnC = newMatch(Map.of("c", false));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            new ContainerEntryMatcher(engine, List.of(failsOnA, matchesBAndC, failsOnC))
+                    .matchEntries(entries, this::open, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertFalse(failsOnA.isMatch());
+        assertTrue(matchesBAndC.isMatch());
+        assertFalse(failsOnC.isMatch());
+    }
+
+    private ByteArrayInputStream open(String entryName) {
+        opened.add(entryName);
+        return new ByteArrayInputStream(entryName.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /*
+     * A signature whose files each have a binary signature, which does or doesn't match.
+     */
+    private ContainerSignatureMatch newMatch(Map<String, Boolean> fileMatches) {
+        final Map<String, ContainerFile> files = new HashMap<>();
+        for (Map.Entry<String, Boolean> fileMatch : fileMatches.entrySet()) {
+            final InternalSignatureCollection binarySignatures = mock(InternalSignatureCollection.class);
+            when(binarySignatures.getBytesNeededFromBOF(anyLong())).thenReturn(-1L);
+            when(binarySignatures.getMatchingSignatures(any(), anyLong())).thenReturn(
+                    fileMatch.getValue() ? List.of(mock(InternalSignature.class)) : List.of());
+            final ContainerFile file = mock(ContainerFile.class);
+            when(file.getCompiledBinarySignatures()).thenReturn(binarySignatures);
+            files.put(fileMatch.getKey(), file);
+        }
+        final ContainerSignature signature = mock(ContainerSignature.class);
+        when(signature.getFiles()).thenReturn(files);
+        return new ContainerSignatureMatch(signature, -1L);
+    }
+}
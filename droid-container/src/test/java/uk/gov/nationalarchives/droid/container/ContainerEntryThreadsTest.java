@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.container;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import uk.gov.nationalarchives.droid.container.ole2.Ole2Identifier;
+import uk.gov.nationalarchives.droid.container.ole2.Ole2IdentifierEngine;
+import uk.gov.nationalarchives.droid.container.zip.ZipIdentifier;
+import uk.gov.nationalarchives.droid.container.zip.ZipIdentifierEngine;
+import uk.gov.nationalarchives.droid.core.interfaces.DroidCore;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ArchiveFormatResolver;
+import uk.gov.nationalarchives.droid.core.interfaces.archive.ContainerIdentifierFactory;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+
+/**
+ * Checks that containers are identified the same whether their entries are read one at a time or several at a time.
+ */
+public class ContainerEntryThreadsTest {
+
+    private static final String CONTAINER_SIGNATURE_FILE = "container-signature-20260119.xml";
+    private static final int ENTRY_THREADS = 4;
+    private static final int MEDIA_ENTRIES = 200;
+    private static final int MEDIA_SIZE = 10000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testIdentifiesZipContainersTheSameWithEntryThreads() throws Exception {
+        for (String resource : new String[] {"word_ooxml.docx", "Book1.xlsx", "odf_text.odt"}) {
+            assertSameIdentification("ZIP", getResourcePath(resource));
+        }
+    }
+
+    @Test
+    public void testIdentifiesOle2ContainersTheSameWithEntryThreads() throws Exception {
+        for (String resource : new String[] {"word97.doc", "OmniPagePro18-Sample2.opd"}) {
+            assertSameIdentification("OLE2", getResourcePath(resource));
+        }
+    }
+
+    @Test
+    public void testIdentifiesLargePackagesTheSameWithEntryThreads() throws Exception {
+        // A docx with many more entries than there are threads to read them:
+        final Path docx = temporaryFolder.newFile("large.docx").toPath();
+        try (ZipFile source = new ZipFile(getResourcePath("word_ooxml.docx").toFile());
+             ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(docx))) {
+            for (ZipEntry entry : Collections.list(source.entries())) {
+                zip.putNextEntry(new ZipEntry(entry.getName()));
+                try (InputStream in = source.getInputStream(entry)) {
+                    in.transferTo(zip);
+                }
+                zip.closeEntry();
+            }
+            final byte[] content = new byte[MEDIA_SIZE];
+            for (int i = 0; i < MEDIA_ENTRIES; i++) {
+                Arrays.fill(content, (byte) i);
+                zip.putNextEntry(new ZipEntry("word/media/image" + i + ".bin"));
+                zip.write(content);
+                zip.closeEntry();
+            }
+        }
+        assertSameIdentification("ZIP", docx);
+    }
+
+    private void assertSameIdentification(String containerType, Path file) throws Exception {
+        final Set<String> oneAtATime = identify(containerType, file, 0);
+        assertFalse(file + " is identified", oneAtATime.isEmpty());
+        assertEquals(file.toString(), oneAtATime, identify(containerType, file, ENTRY_THREADS));
+    }
+
+    private Set<String> identify(String containerType, Path file, int entryThreads) throws Exception {
+        final AbstractContainerIdentifier identifier;
+        final AbstractIdentifierEngine engine;
+        if ("ZIP".equals(containerType)) {
+            identifier = new ZipIdentifier();
+            engine = new ZipIdentifierEngine();
+        } else {
+            identifier = new Ole2Identifier();
+            engine = new Ole2IdentifierEngine();
+        }
+        final ContainerFileIdentificationRequestFactory requestFactory = new ContainerFileIdentificationRequestFactory();
+        requestFactory.setTempDirLocation(temporaryFolder.getRoot().toPath());
+        engine.setRequestFactory(requestFactory);
+        engine.setEntryThreads(entryThreads);
+        identifier.setIdentifierEngine(engine);
+        identifier.setContainerType(containerType);
+        identifier.setSignatureReader(new ContainerSignatureFileReader(getResourcePath(CONTAINER_SIGNATURE_FILE)));
+        identifier.setContainerIdentifierFactory(mock(ContainerIdentifierFactory.class));
+        identifier.setContainerFormatResolver(mock(ArchiveFormatResolver.class));
+        identifier.setDroidCore(mock(DroidCore.class));
+        identifier.init();
+
+        final RequestMetaData metaData = new RequestMetaData(Files.size(file), 1L, file.getFileName().toString());
+        final Set<String> puids = new TreeSet<>();
+        try (IdentificationRequest<Path> request = new FileSystemIdentificationRequest(metaData,
+                new RequestIdentifier(file.toUri()))) {
+            request.open(file);
+            for (IdentificationResult result : identifier.submit(request).getResults()) {
+                puids.add(result.getPuid());
+            }
+        }
+        return puids;
+    }
+
+    private Path getResourcePath(String resource) throws Exception {
+        final URL url = getClass().getClassLoader().getResource(resource);
+        return Paths.get(url.toURI());
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.container;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+import org.junit.Test;
+
+public class ContainerSignatureIndexTest {
+
+    @Test
+    public void testAllFileEntriesAreUniqueAcrossSignatures() {
+        ContainerSignatureIndex index = new ContainerSignatureIndex(List.of(
+                signature("[Content_Types].xml", "word/document.xml"),
+                signature("[Content_Types].xml", "xl/workbook.xml")));
+
+        assertEquals(3, index.getAllFileEntries().size());
+        assertEquals(Set.of("[Content_Types].xml", "word/document.xml", "xl/workbook.xml"),
+                new HashSet<>(index.getAllFileEntries()));
+    }
+
+    @Test
+    public void testResolvesExactNamesIncludingDirectories() {
+        ContainerSignatureIndex index = new ContainerSignatureIndex(List.of(
+                signature("mimetype", "header/siardversion/2.1/")));
+        ContainerSignatureIndex.EntryResolver resolver = index.newResolver("test.zip");
+        resolver.addEntry("header/siardversion/2.1/", true);
+        resolver.addEntry("content.xml", false);
+        resolver.addEntry("mimetype", false);
+
+        Map<String, String> resolved = resolver.getResolvedEntries();
+        assertEquals("mimetype", resolved.get("mimetype"));
+        assertEquals("header/siardversion/2.1/", resolved.get("header/siardversion/2.1/"));
+        assertTrue(resolver.getCandidateSignatures().get(0));
+    }
+
+    @Test
+    public void testCandidatesExcludeSignaturesWithMissingFiles() {
+        ContainerSignatureIndex index = new ContainerSignatureIndex(List.of(
+                signature("[Content_Types].xml", "word/document.xml"),
+                signature("[Content_Types].xml", "xl/workbook.xml"),
+                signature("mimetype")));
+        ContainerSignatureIndex.EntryResolver resolver = index.newResolver("test.docx");
+        resolver.addEntry("[Content_Types].xml", false);
+        resolver.addEntry("word/document.xml", false);
+
+        BitSet candidates = resolver.getCandidateSignatures();
+        assertTrue(candidates.get(0));
+        assertFalse(candidates.get(1));
+        assertFalse(candidates.get(2));
+        assertEquals(2, resolver.getResolvedEntries().size());
+    }
+
+    @Test
+    public void testPatternsResolveToFirstMatchingFileUnlessThereIsAnExactMatch() {
+        ContainerSignatureIndex index = new ContainerSignatureIndex(List.of(
+                signature("*.xml", "{containerFileName}.json")));
+        ContainerSignatureIndex.EntryResolver resolver = index.newResolver("project.zip");
+        resolver.addEntry("a.xml", false);
+        resolver.addEntry("b.xml", false);
+        resolver.addEntry("dir.xml", true);
+        resolver.addEntry("project.json", false);
+
+        Map<String, String> resolved = resolver.getResolvedEntries();
+        assertEquals("a.xml", resolved.get("*.xml"));
+        assertEquals("project.json", resolved.get("{containerFileName}.json"));
+
+        resolver.addEntry("*.xml", false);
+        assertEquals("*.xml", resolver.getResolvedEntries().get("*.xml"));
+    }
+
+    @Test
+    public void testResolvesTheSameFilesAsTheFileMatcher() {
+        ContainerMatchUtils.getContainerTestData().forEach(testData -> {
+            ContainerSignatureIndex index = new ContainerSignatureIndex(List.of(signature(testData.pattern())));
+
+            testData.willMatch().forEach(willMatch -> {
+                ContainerSignatureIndex.EntryResolver resolver = index.newResolver(testData.containerName());
+                resolver.addEntry(willMatch, false);
+                assertEquals(willMatch, resolver.getResolvedEntries().get(testData.pattern()));
+            });
+
+            testData.willNotMatch().forEach(willNotMatch -> {
+                ContainerSignatureIndex.EntryResolver resolver = index.newResolver(testData.containerName());
+                resolver.addEntry(willNotMatch, false);
+                assertTrue(resolver.getResolvedEntries().isEmpty());
+                assertFalse(resolver.getCandidateSignatures().get(0));
+            });
+        });
+    }
+
+    @Test
+    public void testLiteralsIgnoreCaseOnlyWhereTheFileMatcherDoes() {
+        ContainerSignatureIndex index = new ContainerSignatureIndex(List.of(signature("META-INF/manifest.xml")));
+        ContainerSignatureIndex.EntryResolver resolver = index.newResolver("test.jar");
+        resolver.addEntry("Meta-Inf/Manifest.xml", false);
+
+        boolean fileMatcherMatches = new FileMatcher().fileMatches("META-INF/manifest.xml", "Meta-Inf/Manifest.xml", null);
+        assertEquals(fileMatcherMatches, resolver.getResolvedEntries().containsKey("META-INF/manifest.xml"));
+        assertEquals(fileMatcherMatches, resolver.getCandidateSignatures().get(0));
+    }
+
+    @Test
+    public void testLiteralsResolveToTheFirstFileDifferingInCaseUnlessThereIsAnExactMatch() {
+        ContainerSignatureIndex index = new ContainerSignatureIndex(List.of(signature("META-INF/manifest.xml")), true);
+        ContainerSignatureIndex.EntryResolver resolver = index.newResolver("test.jar");
+        resolver.addEntry("meta-inf/MANIFEST.XML", true);
+        resolver.addEntry("Meta-Inf/Manifest.xml", false);
+        resolver.addEntry("meta-inf/manifest.xml", false);
+
+        assertEquals("Meta-Inf/Manifest.xml", resolver.getResolvedEntries().get("META-INF/manifest.xml"));
+        assertTrue(resolver.getCandidateSignatures().get(0));
+
+        resolver.addEntry("META-INF/manifest.xml", false);
+        assertEquals("META-INF/manifest.xml", resolver.getResolvedEntries().get("META-INF/manifest.xml"));
+    }
+
+    private static ContainerSignature signature(String... paths) {
+        Map<String, ContainerFile> files = new HashMap<>();
+        for (String path : paths) {
+            files.put(path, new ContainerFile());
+        }
+        ContainerSignature sig = mock(ContainerSignature.class);
+        when(sig.getFiles()).thenReturn(files);
+        return sig;
+    }
+}
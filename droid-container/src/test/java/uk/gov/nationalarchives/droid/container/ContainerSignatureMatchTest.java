@@ -32,6 +32,7 @@
 package uk.gov.nationalarchives.droid.container;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
@@ -41,6 +42,7 @@ import static org.mockito.Mockito.*;
 
 import org.junit.Test;
 import uk.gov.nationalarchives.droid.core.signature.ByteReader;
+import uk.gov.nationalarchives.droid.core.signature.droid6.InternalSignature;
 import uk.gov.nationalarchives.droid.core.signature.droid6.InternalSignatureCollection;
 
 /**
@@ -158,4 +160,30 @@ public class ContainerSignatureMatchTest {
         verify(mockSignatures, times(1)).getMatchingSignatures(mockBinaryContent, -1L);
     }
 
+    @Test
+    public void shouldOnlyNeedTheBytesTheBinarySignaturesCanRead() {
+        ContainerFile nameOnly = new ContainerFile();
+        ContainerFile binary = mock(ContainerFile.class);
+
+        Map<String, ContainerFile> files = new HashMap<String, ContainerFile>();
+        files.put("mimetype", nameOnly);
+        files.put("content.xml", binary);
+
+        ContainerSignature sig = mock(ContainerSignature.class);
+        when(sig.getFiles()).thenReturn(files);
+
+        InternalSignatureCollection mockSignatures = mock(InternalSignatureCollection.class);
+        when(mockSignatures.getBytesNeededFromBOF(65536L)).thenReturn(1024L);
+        when(binary.getCompiledBinarySignatures()).thenReturn(mockSignatures);
+
+        ContainerSignatureMatch match = new ContainerSignatureMatch(sig, 65536L);
+
+        assertEquals(0L, match.getBytesNeeded("mimetype"));
+        assertEquals(0L, match.getBytesNeeded("other.xml"));
+        assertEquals(1024L, match.getBytesNeeded("content.xml"));
+
+        when(mockSignatures.getMatchingSignatures(null, 65536L)).thenReturn(List.of(mock(InternalSignature.class)));
+        match.matchBinaryContent("content.xml", null);
+        assertEquals(0L, match.getBytesNeeded("content.xml"));
+    }
 }
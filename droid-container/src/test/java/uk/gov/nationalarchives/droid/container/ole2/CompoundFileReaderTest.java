@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.container.ole2;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import net.byteseek.io.reader.ByteArrayReader;
+import net.byteseek.io.reader.FileReader;
+import org.apache.poi.poifs.filesystem.DirectoryEntry;
+import org.apache.poi.poifs.filesystem.DocumentEntry;
+import org.apache.poi.poifs.filesystem.DocumentInputStream;
+import org.apache.poi.poifs.filesystem.Entry;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.junit.Test;
+
+public class CompoundFileReaderTest {
+
+    @Test
+    public void testReadsTheSameEntriesAndStreamsAsPoifsForWord97() throws Exception {
+        assertSameAsPoifs("word97.doc");
+    }
+
+    @Test
+    public void testReadsTheSameEntriesAndStreamsAsPoifsForOmniPage() throws Exception {
+        assertSameAsPoifs("OmniPagePro18-Sample2.opd");
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsFilesWhichAreNotCompoundFiles() throws IOException {
+        new CompoundFileReader(new ByteArrayReader(new byte[1024]));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsTruncatedCompoundFiles() throws Exception {
+        final byte[] compoundFile = Files.readAllBytes(getFile("word97.doc").toPath());
+        new CompoundFileReader(new ByteArrayReader(Arrays.copyOf(compoundFile, 1024)));
+    }
+
+    private void assertSameAsPoifs(String resourceName) throws Exception {
+        final File file = getFile(resourceName);
+        final Map<String, byte[]> expected = new HashMap<>();
+        try (POIFSFileSystem poifs = new POIFSFileSystem(file)) {
+            addEntries(poifs.getRoot(), "", expected);
+        }
+        assertFalse(expected.isEmpty());
+
+        try (FileReader reader = new FileReader(file)) {
+            final CompoundFileReader compoundFile = new CompoundFileReader(reader);
+            final Map<String, byte[]> actual = new HashMap<>();
+            for (CompoundFileReader.Entry entry : compoundFile.getEntries()) {
+                if (entry.isStream()) {
+                    try (InputStream stream = compoundFile.openStream(entry)) {
+                        actual.put(entry.getPath(), stream.readAllBytes());
+                    }
+                } else {
+                    assertTrue(entry.isStorage());
+                    actual.put(entry.getPath(), null);
+                }
+            }
+            assertEquals(expected.keySet(), actual.keySet());
+            for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+                assertArrayEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+            }
+        }
+    }
+
+    private void addEntries(DirectoryEntry directory, String parentPath, Map<String, byte[]> entries) throws IOException {
+        for (Entry entry : directory) {
+            final String path = parentPath + entry.getName().trim();
+            if (entry instanceof DirectoryEntry) {
+                entries.put(path, null);
+                addEntries((DirectoryEntry) entry, path + '/', entries);
+            } else {
+                try (DocumentInputStream in = new DocumentInputStream((DocumentEntry) entry)) {
+                    entries.put(path, in.readAllBytes());
+                }
+            }
+        }
+    }
+
+    private File getFile(String resourceName) throws URISyntaxException {
+        return new File(getClass().getClassLoader().getResource(resourceName).toURI());
+    }
+}
@@ -31,6 +31,7 @@
  */
 package uk.gov.nationalarchives.droid.container.ole2;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -44,9 +45,11 @@ import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import net.byteseek.io.reader.FileReader;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -117,6 +120,44 @@ public class Ole2RootFileTest {
         assertEquals("fmt/666", results.getResults().iterator().next().getPuid());
     }
 
+    @Test
+    public void testIdentifyWordDocumentFromWindowReaderWithoutReadingTheSourceStream() throws Exception {
+
+        ContainerSignature sig = new ContainerSignature();
+        sig.setId(100);
+        sig.setDescription("Word 97 OLE2");
+
+        ContainerFile containerFile = new ContainerFile();
+        containerFile.setPath("WordDocument");
+        sig.setFiles(Arrays.asList(new ContainerFile[] {containerFile}));
+
+        Map<Integer, List<FileFormatMapping>> formats = new HashMap<Integer, List<FileFormatMapping>>();
+        FileFormatMapping fileFormat = new FileFormatMapping();
+        fileFormat.setPuid("fmt/666");
+        List<FileFormatMapping> formatMapping = new ArrayList<FileFormatMapping>();
+        formatMapping.add(fileFormat);
+        formats.put(100, formatMapping);
+
+        ole2Identifier.addContainerSignature(sig);
+        ole2Identifier.setFormats(formats);
+
+        File word97File = new File(getClass().getClassLoader().getResource("word97.doc").toURI());
+
+        try (FileReader word97Reader = new FileReader(word97File)) {
+            RequestMetaData metaData = mock(RequestMetaData.class);
+            IdentificationRequest request = mock(IdentificationRequest.class);
+            when(request.getWindowReader()).thenReturn(word97Reader);
+            when(request.getRequestMetaData()).thenReturn(metaData);
+            RequestIdentifier requestIdentifier = mock(RequestIdentifier.class);
+            when(request.getIdentifier()).thenReturn(requestIdentifier);
+
+            IdentificationResultCollection results = ole2Identifier.submit(request);
+
+            assertEquals("fmt/666", results.getResults().iterator().next().getPuid());
+            verify(request, never()).getSourceInputStream();
+        }
+    }
+
     @Test
     public void testIdentifyWordDocumentFromRootFileAndCompObj() throws IOException {
         
@@ -31,9 +31,16 @@
  */
 package uk.gov.nationalarchives.droid.core.interfaces;
 
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -43,20 +50,27 @@ import java.util.concurrent.atomic.AtomicInteger;
 /**
  * @author rflitcroft
  * Executor service which which will block new tasks until a thread is available to service a task.
+ * <p>
+ * The executor created by {@link #newExecutorService()} follows the configured {@link ExecutorStrategy}.
+ * The caller runs pool keeps its default of ten threads; the other strategies default to the number of processors.
  */
 public class BlockingThreadPoolExecutorFactory {
 
     private static final int DEFAULT_CORE_POOL_SIZE = 10;
     private static final int DEFAULT_MAX_CORE_POOL_SIZE = 10;
-    
-    //private static final int DEFAULT_CORE_POOL_SIZE = 4;
-    //private static final int DEFAULT_MAX_CORE_POOL_SIZE = 4;
+    private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+    private static final int VIRTUAL_THREADS_PER_PROCESSOR = 16;
+    private static final int QUEUE_SIZE_PER_THREAD = 4;
     
     private static final int DEFAULT_KEEP_ALIVE_TIME_MILLIS = 1000;
+    private static final String SHUT_DOWN_MESSAGE = "Executor has been shut down.";
     
     private int corePoolSize = DEFAULT_CORE_POOL_SIZE;
     private int maxPoolSize = DEFAULT_MAX_CORE_POOL_SIZE;
     private long keepAliveTimeMillis = DEFAULT_KEEP_ALIVE_TIME_MILLIS;
+    private ExecutorStrategy strategy = ExecutorStrategy.CALLER_RUNS;
+    private int threads;
+    private int workQueueSize;
     
     /**
      * Returns a new instance of a BlockingThreadPoolExecutor.
@@ -74,19 +88,132 @@ public class BlockingThreadPoolExecutorFactory {
                 workQueue, tf, rejectedExecutionHandler);
         return executor;
     }
+
+    /**
+     * Returns a new executor service following the configured strategy.
+     * @return a new executor service.
+     */
+    public ExecutorService newExecutorService() {
+        final ExecutorService executor;
+        switch (strategy) {
+            case WORK_STEALING:
+                executor = new ForkJoinPool(getThreads(PROCESSORS),
+                        ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+                break;
+            case VIRTUAL_THREADS:
+                executor = new BoundedVirtualThreadExecutor(getThreads(PROCESSORS * VIRTUAL_THREADS_PER_PROCESSOR));
+                break;
+            case BOUNDED_QUEUE:
+                final int poolSize = getThreads(PROCESSORS);
+                final int queueSize = workQueueSize > 0 ? workQueueSize : poolSize * QUEUE_SIZE_PER_THREAD;
+                executor = new ThreadPoolExecutor(poolSize, poolSize, keepAliveTimeMillis, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<Runnable>(queueSize), new MyThreadFactory(),
+                        new WaitForSpaceUnlessPoolShutdownPolicy());
+                break;
+            default:
+                final int callerRunsSize = getThreads(maxPoolSize);
+                executor = new ThreadPoolExecutor(callerRunsSize, callerRunsSize, keepAliveTimeMillis,
+                        TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>(), new MyThreadFactory(),
+                        new CallerRunsUnlessPoolShutdownPolicy());
+        }
+        return executor;
+    }
+
+    private int getThreads(int defaultThreads) {
+        return threads > 0 ? threads : defaultThreads;
+    }
     
     private static final class CallerRunsUnlessPoolShutdownPolicy implements RejectedExecutionHandler {
         @Override
         public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
             
             if (executor.isShutdown()) {
-                throw new RejectedExecutionException("Executor has been shut down.");
+                throw new RejectedExecutionException(SHUT_DOWN_MESSAGE);
             } 
             
             r.run();
         }
     }
     
+    private static final class WaitForSpaceUnlessPoolShutdownPolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException(SHUT_DOWN_MESSAGE);
+            }
+            try {
+                executor.getQueue().put(r);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting to queue a task.", e);
+            }
+        }
+    }
+
+    /**
+     * Runs each task on a new virtual thread, with a semaphore limiting the tasks running at once.
+     * When the limit is reached, the thread submitting a task waits for a running task to finish.
+     */
+    private static final class BoundedVirtualThreadExecutor extends AbstractExecutorService {
+
+        private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        private final Semaphore permits;
+
+        private BoundedVirtualThreadExecutor(int maxTasks) {
+            permits = new Semaphore(maxTasks);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException(SHUT_DOWN_MESSAGE);
+            }
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting to run a task.", e);
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            executor.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return executor.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return executor.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return executor.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return executor.awaitTermination(timeout, unit);
+        }
+    }
+
     private static final class MyThreadFactory implements ThreadFactory {
         
         private final ThreadGroup group;
@@ -136,8 +263,25 @@ public class BlockingThreadPoolExecutorFactory {
     }
 
     /**
-     * @param workQueueSize the workQueueSize to set
+     * @param workQueueSize the size of the queue used by the bounded queue strategy,
+     *                      or zero for four tasks per thread.
      */
     public void setWorkQueueSize(int workQueueSize) {
+        this.workQueueSize = workQueueSize;
+    }
+
+    /**
+     * @param strategy the strategy of executors created by {@link #newExecutorService()}.
+     */
+    public void setStrategy(ExecutorStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * @param threads the number of threads for executors created by {@link #newExecutorService()},
+     *                or zero for the default of the strategy.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
     }
 }
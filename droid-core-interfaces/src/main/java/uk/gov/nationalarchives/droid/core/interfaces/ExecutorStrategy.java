@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces;
+
+import java.util.Locale;
+
+/**
+ * How the executor which identifies the resources of a profile runs its tasks.
+ */
+public enum ExecutorStrategy {
+
+    /**
+     * A fixed pool of ten platform threads with no queue.  When every thread is busy, the thread submitting
+     * a resource identifies it itself.
+     */
+    CALLER_RUNS,
+
+    /**
+     * A work-stealing fork join pool, with one thread per processor unless configured otherwise.
+     */
+    WORK_STEALING,
+
+    /**
+     * A new virtual thread for each resource, up to a limit on the resources identified at once.  When the limit
+     * is reached, the thread submitting a resource waits.  This suits remote sources, where identification mostly
+     * waits for I/O.
+     */
+    VIRTUAL_THREADS,
+
+    /**
+     * A fixed pool of platform threads with a bounded queue.  When the queue is full, the thread submitting
+     * a resource waits for space, so walking never does identification work itself.
+     */
+    BOUNDED_QUEUE;
+
+    /**
+     * Gets a strategy from its name, ignoring case and allowing hyphens in place of underscores.
+     * @param name The name of the strategy, e.g. "work-stealing".
+     * @return The strategy with the name.
+     * @throws IllegalArgumentException if there is no strategy with the name.
+     */
+    public static ExecutorStrategy fromName(String name) {
+        return valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+}
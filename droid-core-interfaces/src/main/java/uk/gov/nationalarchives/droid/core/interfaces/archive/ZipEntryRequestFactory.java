@@ -35,6 +35,7 @@ import java.io.InputStream;
 
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.WindowBufferPool;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.ZipEntryIdentificationRequest;
 
 /**
@@ -45,6 +46,8 @@ import uk.gov.nationalarchives.droid.core.interfaces.resource.ZipEntryIdentifica
  */
 public class ZipEntryRequestFactory extends AbstractArchiveRequestFactory<InputStream> {
 
+    private WindowBufferPool bufferPool;
+
     /**
      * {@inheritDoc}
      */
@@ -52,7 +55,17 @@ public class ZipEntryRequestFactory extends AbstractArchiveRequestFactory<InputS
     public final ZipEntryIdentificationRequest newRequest(RequestMetaData metaData,
                                                           RequestIdentifier identifier) {
         
-        return new ZipEntryIdentificationRequest(metaData, identifier, getTempDirLocation());
+        final ZipEntryIdentificationRequest request =
+                new ZipEntryIdentificationRequest(metaData, identifier, getTempDirLocation());
+        request.setBufferPool(bufferPool);
+        return request;
+    }
+
+    /**
+     * @param bufferPool the pool requests borrow windows from, or null to allocate new windows.
+     */
+    public void setBufferPool(WindowBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
     }
     
 }
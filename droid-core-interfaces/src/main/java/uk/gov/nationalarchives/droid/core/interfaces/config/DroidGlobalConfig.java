@@ -343,6 +343,15 @@ public class DroidGlobalConfig {
     public Path getSignatureFileDir() {
         return signatureFilesDir;
     }
+
+    /**
+     *
+     * @return the directory where snapshots of prepared droid signature files reside.
+     * It is created when the first snapshot is written.
+     */
+    public Path getSignatureSnapshotDir() {
+        return droidWorkDir.resolve("signature_snapshots");
+    }
     
     /**
      * 
@@ -167,6 +167,72 @@ public enum DroidGlobalProperty {
     /** Whether to allow loading files from S3. */
     FILES_FROM_S3("profile.s3", PropertyType.BOOLEAN, true),
 
+    /** Whether to load binary signature files from precompiled snapshots, writing them on first use. */
+    SIGNATURE_SNAPSHOTS("profile.signatureSnapshots", PropertyType.BOOLEAN, true),
+
+    /** Whether to read local files with a FileChannel reader instead of a soft cached byteseek FileReader. */
+    FILE_CHANNEL_READER("profile.fileChannelReader", PropertyType.BOOLEAN, true),
+
+    /** The maximum bytes of window buffers pooled for reuse by FileChannel reads and container entries. */
+    BUFFER_POOL_SIZE("profile.bufferPoolSize", PropertyType.LONG, true),
+
+    /** How identification tasks are run: CALLER_RUNS, WORK_STEALING, VIRTUAL_THREADS or BOUNDED_QUEUE. */
+    EXECUTOR("profile.executor", PropertyType.TEXT, true),
+
+    /** The number of threads which match binary signatures, or zero for the default of the executor. */
+    EXECUTOR_THREADS("profile.executorThreads", PropertyType.INTEGER, true),
+
+    /** The size of the queue of identification tasks for the BOUNDED_QUEUE executor. */
+    EXECUTOR_QUEUE_SIZE("profile.executorQueueSize", PropertyType.INTEGER, true),
+
+    /** The number of threads which match container signatures. */
+    CONTAINER_THREADS("profile.containerThreads", PropertyType.INTEGER, true),
+
+    /** The number of threads which read the entries of large containers, or zero to read them one at a time. */
+    CONTAINER_ENTRY_THREADS("profile.containerEntryThreads", PropertyType.INTEGER, true),
+
+    /** The number of threads which generate hashes. */
+    HASH_THREADS("profile.hashThreads", PropertyType.INTEGER, true),
+
+    /** The number of threads which hand identification results to the database or output file. */
+    PERSIST_THREADS("profile.persistThreads", PropertyType.INTEGER, true),
+
+    /** The number of threads which expand archives. */
+    ARCHIVE_THREADS("profile.archiveThreads", PropertyType.INTEGER, true),
+
+    /** The number of requests which can wait for each stage of identification. */
+    STAGE_QUEUE_CAPACITY("profile.stageQueueCapacity", PropertyType.INTEGER, true),
+
+    /** How long a stage of identification waits for space in the next stage before running a request itself. */
+    STAGE_MAX_WAIT_MILLIS("profile.stageMaxWaitMillis", PropertyType.LONG, true),
+
+    /** The number of threads which list directories ahead of the walk. */
+    WALKER_THREADS("profile.walkerThreads", PropertyType.INTEGER, true),
+
+    /** Whether to read the attributes of files and directories as their parent directory is listed. */
+    WALKER_READ_ATTRIBUTES("profile.walkerReadAttributes", PropertyType.BOOLEAN, true),
+
+    /** The number of threads, each with their own connection, which write results to the profile database. */
+    DATABASE_WRITERS("profile.databaseWriters", PropertyType.INTEGER, true),
+
+    /** The number of results batched up by each database writer before they are committed. */
+    DATABASE_BATCH_SIZE("profile.databaseBatchSize", PropertyType.INTEGER, true),
+
+    /** The longest time in milliseconds a result waits in a batch before it is committed. */
+    DATABASE_BATCH_LATENCY("profile.databaseBatchLatency", PropertyType.INTEGER, true),
+
+    /** The number of results which can wait for each database writer. */
+    DATABASE_QUEUE_SIZE("profile.databaseQueueSize", PropertyType.INTEGER, true),
+
+    /** Whether to build the secondary indexes of a new profile database once its results have been loaded. */
+    DEFER_DATABASE_INDEXES("profile.deferDatabaseIndexes", PropertyType.BOOLEAN, true),
+
+    /** Whether to load a profile database with only its primary keys, building everything else at the end. */
+    BULK_LOAD("profile.bulkLoad", PropertyType.BOOLEAN, true),
+
+    /** The number of results written in each record batch of Arrow output. */
+    ARROW_BATCH_ROWS("profile.arrowBatchRows", PropertyType.INTEGER, true),
+
     /** The last updated time of the binary signature file .*/
     BINARY_SIGNATURE_LAST_UPDATED("profile.binarySignatureLastUpdated", PropertyType.LONG, true),
 
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.hash;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.byteseek.io.reader.WindowReader;
+import net.byteseek.io.reader.windows.Window;
+
+/**
+ * Calculates several hashes of the same content in a single pass, feeding each block
+ * of bytes read to every digest before reading the next one.
+ * <p>
+ * Content can be hashed from an input stream, or from the WindowReader of an identification
+ * request, which lets hashing reuse any windows the reader has already fetched and cached while
+ * identifying it.  This matters most for remote resources, which would otherwise be downloaded
+ * again for each algorithm.
+ */
+public class CompositeHashGenerator {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final List<String> algorithms;
+
+    /**
+     * Constructs a CompositeHashGenerator for a list of algorithms.
+     *
+     * @param algorithms The names of the MessageDigest algorithms to calculate, e.g. "MD5" or "SHA-256".
+     * @throws IllegalArgumentException if any of the algorithms is not available.
+     */
+    public CompositeHashGenerator(final List<String> algorithms) {
+        this.algorithms = List.copyOf(algorithms);
+        createDigests(); // fail fast if an algorithm is not supported.
+    }
+
+    /**
+     * Calculates all the hashes of an input stream, reading it once.
+     *
+     * @param in the input stream
+     * @return a map of algorithm names to lower case hex hashes, in the order the algorithms were given.
+     * @throws IOException if there was an error reading the input stream.
+     */
+    public Map<String, String> hash(final InputStream in) throws IOException {
+        final List<MessageDigest> digests = createDigests();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int bytesRead = in.read(buffer);
+        while (bytesRead >= 0) {
+            update(digests, buffer, 0, bytesRead);
+            bytesRead = in.read(buffer);
+        }
+        return getHashes(digests);
+    }
+
+    /**
+     * Calculates all the hashes of the content of a WindowReader, reading each window once.
+     *
+     * @param reader the window reader
+     * @return a map of algorithm names to lower case hex hashes, in the order the algorithms were given.
+     * @throws IOException if there was an error reading a window.
+     */
+    public Map<String, String> hash(final WindowReader reader) throws IOException {
+        final List<MessageDigest> digests = createDigests();
+        long position = 0;
+        Window window = reader.getWindow(position);
+        while (window != null) {
+            final int offset = (int) (position - window.getWindowPosition());
+            final int length = window.length() - offset;
+            update(digests, window.getArray(), offset, length);
+            position += length;
+            window = reader.getWindow(position);
+        }
+        return getHashes(digests);
+    }
+
+    private List<MessageDigest> createDigests() {
+        final List<MessageDigest> digests = new ArrayList<>(algorithms.size());
+        for (String algorithm : algorithms) {
+            try {
+                digests.add(MessageDigest.getInstance(algorithm));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalArgumentException(e.getMessage(), e);
+            }
+        }
+        return digests;
+    }
+
+    private static void update(final List<MessageDigest> digests, final byte[] bytes, final int offset,
+                               final int length) {
+        for (MessageDigest digest : digests) {
+            digest.update(bytes, offset, length);
+        }
+    }
+
+    private Map<String, String> getHashes(final List<MessageDigest> digests) {
+        final HexFormat hex = HexFormat.of();
+        final Map<String, String> hashes = new LinkedHashMap<>();
+        for (int i = 0; i < digests.size(); i++) {
+            hashes.put(algorithms.get(i), hex.formatHex(digests.get(i).digest()));
+        }
+        return hashes;
+    }
+}
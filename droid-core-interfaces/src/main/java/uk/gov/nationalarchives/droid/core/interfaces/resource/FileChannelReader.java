@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.byteseek.io.reader.AbstractReader;
+import net.byteseek.io.reader.cache.WindowCache;
+import net.byteseek.io.reader.windows.HardWindow;
+import net.byteseek.io.reader.windows.Window;
+
+/**
+ * A WindowReader which reads a file with positional reads from a FileChannel.
+ * <p>
+ * Unlike the byteseek FileReader, reads don't have to seek a shared RandomAccessFile under a lock first, and each
+ * window is read straight into an array of exactly the length it needs, with no soft references for the garbage
+ * collector to process.  Windows are only held by the cache, so are released when the reader is closed.
+ * <p>
+ * If the reader is given a {@link WindowBufferPool}, windows are read into buffers borrowed from the pool,
+ * which are given back to it when the reader is closed.
+ */
+public class FileChannelReader extends AbstractReader {
+
+    private final FileChannel channel;
+    private final long length;
+    private final WindowBufferPool bufferPool;
+    private final List<byte[]> borrowedBuffers;
+
+    /**
+     * Opens a file to read.
+     *
+     * @param file The file to read.
+     * @param windowSize The size of windows to read.
+     * @param cache The cache for windows.
+     * @throws IOException If the file could not be opened.
+     */
+    public FileChannelReader(final Path file, final int windowSize, final WindowCache cache) throws IOException {
+        this(file, windowSize, cache, null);
+    }
+
+    /**
+     * Opens a file to read, with windows borrowed from a buffer pool.
+     *
+     * @param file The file to read.
+     * @param cache The cache for windows.
+     * @param bufferPool The pool to borrow windows from, whose buffer size is the window size.
+     * @throws IOException If the file could not be opened.
+     */
+    public FileChannelReader(final Path file, final WindowCache cache, final WindowBufferPool bufferPool)
+            throws IOException {
+        this(file, bufferPool.getBufferSize(), cache, bufferPool);
+    }
+
+    private FileChannelReader(final Path file, final int windowSize, final WindowCache cache,
+                              final WindowBufferPool bufferPool) throws IOException {
+        super(windowSize, cache);
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.length = channel.size();
+        this.bufferPool = bufferPool;
+        this.borrowedBuffers = bufferPool == null ? null : new ArrayList<>();
+    }
+
+    @Override
+    protected Window createWindow(final long windowStart) throws IOException {
+        if (windowStart < 0 || windowStart >= length) {
+            return null;
+        }
+        final int windowLength = (int) Math.min(windowSize, length - windowStart);
+        final byte[] bytes = bufferPool == null ? new byte[windowLength] : bufferPool.borrow();
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, windowLength);
+        int bytesRead = 0;
+        while (buffer.hasRemaining() && bytesRead >= 0) {
+            bytesRead = channel.read(buffer, windowStart + buffer.position());
+        }
+        final int totalRead = buffer.position();
+        if (bufferPool != null) {
+            if (totalRead == 0) {
+                bufferPool.release(bytes);
+            } else {
+                borrowedBuffers.add(bytes);
+            }
+        }
+        return totalRead > 0 ? new HardWindow(bytes, windowStart, totalRead) : null;
+    }
+
+    @Override
+    public long length() throws IOException {
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            releaseBuffers();
+            channel.close();
+        }
+    }
+
+    private void releaseBuffers() {
+        if (bufferPool != null) {
+            for (byte[] buffer : borrowedBuffers) {
+                bufferPool.release(buffer);
+            }
+            borrowedBuffers.clear();
+        }
+    }
+}
@@ -33,6 +33,7 @@ package uk.gov.nationalarchives.droid.core.interfaces.resource;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 import net.byteseek.io.reader.ReaderInputStream;
@@ -52,6 +53,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
 public class FileSystemIdentificationRequest implements IdentificationRequest<Path> {
 
     private static final int TOP_TAIL_BUFFER_CAPACITY = 8 * 1024 * 1024; // buffer 8Mb on the top and tail of files.
+    private static final int FILE_CHANNEL_WINDOW_SIZE = 4 * 1024;
 
     private String extension;
     private final String fileName;
@@ -60,6 +62,8 @@ public class FileSystemIdentificationRequest implements IdentificationRequest<Pa
     private RequestMetaData requestMetaData;
     private Path file;
     private WindowReader fileReader;
+    private final boolean useFileChannel;
+    private WindowBufferPool bufferPool;
 
     /**
      * Constructs a new identification request.
@@ -67,7 +71,19 @@ public class FileSystemIdentificationRequest implements IdentificationRequest<Pa
      * @param identifier the request's identifier
      */
     public FileSystemIdentificationRequest(final RequestMetaData metaData, final RequestIdentifier identifier) {
+        this(metaData, identifier, false);
+    }
+
+    /**
+     * Constructs a new identification request.
+     * @param metaData the metaData about the binary.
+     * @param identifier the request's identifier
+     * @param useFileChannel whether to read the file with a {@link FileChannelReader} rather than a byteseek FileReader.
+     */
+    public FileSystemIdentificationRequest(final RequestMetaData metaData, final RequestIdentifier identifier,
+                                           final boolean useFileChannel) {
         this.identifier = identifier;
+        this.useFileChannel = useFileChannel;
         requestMetaData = metaData;
         size = metaData.getSize();
         fileName = metaData.getName();
@@ -78,15 +94,34 @@ public class FileSystemIdentificationRequest implements IdentificationRequest<Pa
      */
     @Override
     public void open(final Path theFile) throws IOException {
-        // Use a caching strategy that uses soft references, to allow the GC to reclaim
-        // cached file bytes in low memory conditions.
-        final WindowCache cache = new TopAndTailFixedLengthCache(theFile.toFile().length(), TOP_TAIL_BUFFER_CAPACITY);
-        fileReader = new FileReader(theFile.toFile(), cache);
-        ((FileReader) fileReader).useSoftWindows(true);
+        // Cache the top and tail of the file, which hold every window of a file no larger than both.  Windows in
+        // between are not cached: the byteseek FileReader keeps them as soft windows, which the GC can reclaim
+        // in low memory conditions.
+        // The size read as the file was found saves asking the file system for it again.
+        final long length = size >= 0 ? size : Files.size(theFile);
+        final WindowCache cache = new TopAndTailFixedLengthCache(length, TOP_TAIL_BUFFER_CAPACITY);
+        if (useFileChannel && bufferPool != null && length <= 2L * TOP_TAIL_BUFFER_CAPACITY) {
+            // All the windows of files this size stay in the cache until it is closed, so pooling them holds no more.
+            fileReader = new FileChannelReader(theFile, cache, bufferPool);
+        } else if (useFileChannel) {
+            fileReader = new FileChannelReader(theFile, FILE_CHANNEL_WINDOW_SIZE, cache);
+        } else {
+            fileReader = new FileReader(theFile.toFile(), cache);
+            ((FileReader) fileReader).useSoftWindows(true);
+        }
         this.file = theFile;
         fileReader.getWindow(0); // force read of first block to generate any IO exceptions.
     }
 
+    /**
+     * Sets a pool to borrow windows from when the file is read with a {@link FileChannelReader}.
+     * Files larger than the cached top and tail of a file are not read into pooled windows.
+     * @param bufferPool The pool of window buffers, or null to allocate new windows.
+     */
+    public void setBufferPool(final WindowBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -53,12 +53,28 @@ public class HttpIdentificationRequest implements IdentificationRequest<URI> {
     private final RequestMetaData requestMetaData;
     private final long size;
     private final HttpClient client;
+    private final int maxRangeSize;
     private HttpUtils.HttpMetadata httpMetadata;
     private String extension;
+    private RemoteBlockCache blockCache;
+    private String blockCacheVersion;
 
     public HttpIdentificationRequest(final RequestMetaData requestMetaData, final RequestIdentifier identifier, HttpClient httpClient) {
+        this(requestMetaData, identifier, httpClient, RemoteWindowReader.DEFAULT_MAX_RANGE_SIZE);
+    }
+
+    /**
+     * @param requestMetaData The metadata of the resource.
+     * @param identifier The identifier of the resource.
+     * @param httpClient The client to read the resource with.
+     * @param maxRangeSize The largest range to read in a single request, which the ranges grow to as the
+     *                     resource is scanned.
+     */
+    public HttpIdentificationRequest(final RequestMetaData requestMetaData, final RequestIdentifier identifier,
+                                     final HttpClient httpClient, final int maxRangeSize) {
         this.identifier = identifier;
         this.client = httpClient;
+        this.maxRangeSize = maxRangeSize;
         this.requestMetaData = requestMetaData;
         this.httpMetadata = new HttpUtils(httpClient).getHttpMetadata(identifier.getUri());
         this.httpReader = buildWindowReader(identifier.getUri());
@@ -68,7 +84,20 @@ public class HttpIdentificationRequest implements IdentificationRequest<URI> {
     private HttpWindowReader buildWindowReader(final URI theFile) {
         final WindowCache cache = new TopAndTailFixedLengthCache(this.size, TOP_TAIL_BUFFER_CAPACITY);
         HttpUtils.HttpMetadata currentMetadata = this.httpMetadata == null ? new HttpUtils(client).getHttpMetadata(theFile) : this.httpMetadata;
-        return new HttpWindowReader(cache, currentMetadata, this.client);
+        final HttpWindowReader reader = new HttpWindowReader(cache, currentMetadata, this.client, maxRangeSize);
+        reader.setBlockCache(blockCache, theFile + "#" + blockCacheVersion);
+        return reader;
+    }
+
+    /**
+     * Shares the windows read for this request with other requests through a block cache.
+     * Must be called before the request is opened.
+     * @param blockCache The block cache, or null for none.
+     * @param version The version of the resource, e.g. its ETag, which changes whenever its content does.
+     */
+    public final void setBlockCache(final RemoteBlockCache blockCache, final String version) {
+        this.blockCache = blockCache;
+        this.blockCacheVersion = version;
     }
 
     /**
@@ -157,4 +186,12 @@ public class HttpIdentificationRequest implements IdentificationRequest<URI> {
     public WindowReader getWindowReader() {
         return this.httpReader;
     }
+
+    /**
+     * Gets the largest range read in a single request.
+     * @return the maximum range size
+     */
+    public int getMaxRangeSize() {
+        return maxRangeSize;
+    }
 }
@@ -31,11 +31,7 @@
  */
 package uk.gov.nationalarchives.droid.core.interfaces.resource;
 
-import net.byteseek.io.reader.AbstractReader;
 import net.byteseek.io.reader.cache.WindowCache;
-import net.byteseek.io.reader.windows.SoftWindow;
-import net.byteseek.io.reader.windows.SoftWindowRecovery;
-import net.byteseek.io.reader.windows.Window;
 
 import java.io.IOException;
 import java.net.URI;
@@ -43,19 +39,35 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 
-public class HttpWindowReader extends AbstractReader implements SoftWindowRecovery {
+public class HttpWindowReader extends RemoteWindowReader {
 
     private final HttpClient httpClient;
 
-    private final Long length;
-
     private final URI uri;
 
+    private final long fileSize;
+
+    /**
+     * Creates a reader which reads ranges of up to {@link #DEFAULT_MAX_RANGE_SIZE}.
+     * @param cache The cache for windows.
+     * @param httpMetadata The metadata of the resource to read.
+     * @param httpClient The client to read the resource with.
+     */
     public HttpWindowReader(WindowCache cache, HttpUtils.HttpMetadata httpMetadata, HttpClient httpClient) {
-        super(cache);
+        this(cache, httpMetadata, httpClient, DEFAULT_MAX_RANGE_SIZE);
+    }
+
+    /**
+     * @param cache The cache for windows.
+     * @param httpMetadata The metadata of the resource to read.
+     * @param httpClient The client to read the resource with.
+     * @param maxRangeSize The largest range to read in a single request.
+     */
+    public HttpWindowReader(WindowCache cache, HttpUtils.HttpMetadata httpMetadata, HttpClient httpClient, int maxRangeSize) {
+        super(cache, httpMetadata.fileSize(), maxRangeSize);
         this.uri = httpMetadata.uri();
         this.httpClient = httpClient;
-        this.length = httpMetadata.fileSize();
+        this.fileSize = httpMetadata.fileSize();
     }
 
     private HttpResponse<byte[]> responseWithRange(long rangeStart, long rangeEnd) throws IOException {
@@ -72,27 +84,17 @@ public class HttpWindowReader extends AbstractReader implements SoftWindowRecove
         }
     }
 
+    /**
+     * Servers which don't support ranges don't report a length, so windows are read until a request returns
+     * no bytes.
+     */
     @Override
-    protected Window createWindow(long windowStart) throws IOException {
-        if (windowStart >= 0) {
-            byte[] bytes  = responseWithRange(windowStart, (windowStart + this.windowSize -1)).body();
-            int totalRead = bytes.length;
-            if (totalRead > 0) {
-                return new SoftWindow(bytes, windowStart, totalRead, this);
-            }
-
-        }
-        return null;
-    }
-
-    @Override
-    public long length() throws IOException {
-        return this.length;
+    protected boolean isPastEnd(long position) {
+        return fileSize > 0 && position >= fileSize;
     }
 
     @Override
-    public byte[] reloadWindowBytes(Window window) throws IOException {
-        long windowStart = window.getWindowPosition();
-        return responseWithRange(windowStart, (windowStart + this.windowSize -1)).body();
+    protected byte[] readRange(long rangeStart, long rangeEnd) throws IOException {
+        return responseWithRange(rangeStart, rangeEnd).body();
     }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.io.IOException;
+import java.util.List;
+
+import net.byteseek.io.reader.AbstractReader;
+import net.byteseek.io.reader.cache.NoCache;
+import net.byteseek.io.reader.windows.HardWindow;
+import net.byteseek.io.reader.windows.Window;
+
+/**
+ * A WindowReader over the whole of a stream which has already been read into buffers borrowed from a
+ * {@link WindowBufferPool}.  Each buffer is a window, so no cache is needed to hold them; the buffers are
+ * given back to the pool when the reader is closed.
+ */
+public class PooledStreamReader extends AbstractReader {
+
+    private final WindowBufferPool bufferPool;
+    private final List<byte[]> buffers;
+    private final long length;
+
+    /**
+     * @param bufferPool The pool the buffers were borrowed from, whose buffer size is the window size.
+     * @param buffers The buffers holding the stream, in order, each full apart from the last.
+     * @param length The number of bytes in the stream.
+     */
+    public PooledStreamReader(final WindowBufferPool bufferPool, final List<byte[]> buffers, final long length) {
+        super(bufferPool.getBufferSize(), new NoCache());
+        this.bufferPool = bufferPool;
+        this.buffers = buffers;
+        this.length = length;
+    }
+
+    @Override
+    protected Window createWindow(final long windowStart) throws IOException {
+        if (windowStart < 0 || windowStart >= length) {
+            return null;
+        }
+        final int windowLength = (int) Math.min(windowSize, length - windowStart);
+        return new HardWindow(buffers.get((int) (windowStart / windowSize)), windowStart, windowLength);
+    }
+
+    @Override
+    public long length() throws IOException {
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            for (byte[] buffer : buffers) {
+                bufferPool.release(buffer);
+            }
+            buffers.clear();
+        }
+    }
+}
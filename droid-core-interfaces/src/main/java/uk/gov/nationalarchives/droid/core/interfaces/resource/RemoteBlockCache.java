@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of blocks read from remote resources, which can be shared by all the requests made by an API instance
+ * or a profile, so that reading the same ranges of the same resource again does not fetch them again.
+ * <p>
+ * Blocks are keyed by the resource, its version, the size of the block and its position.  The version should
+ * change whenever the content of the resource does, e.g. an S3 ETag, so stale blocks are never returned.
+ * The cache holds at most its capacity in bytes, evicting the least recently used blocks first.
+ * It is safe to use from several threads at once.
+ */
+public class RemoteBlockCache {
+
+    private record BlockKey(String resource, int blockSize, long position) { }
+
+    private final long capacity;
+    private final Map<BlockKey, byte[]> blocks = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * @param capacity The maximum number of bytes to cache.
+     */
+    public RemoteBlockCache(final long capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity of a block cache must be at least one byte: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Gets a block from the cache.
+     * @param resource The resource and its version.
+     * @param blockSize The size of blocks read from the resource.
+     * @param position The position of the block.
+     * @return The bytes of the block, or null if it is not cached.
+     */
+    public synchronized byte[] get(final String resource, final int blockSize, final long position) {
+        final byte[] block = blocks.get(new BlockKey(resource, blockSize, position));
+        if (block == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return block;
+    }
+
+    /**
+     * Whether a block is in the cache, without counting as a use of it.
+     * @param resource The resource and its version.
+     * @param blockSize The size of blocks read from the resource.
+     * @param position The position of the block.
+     * @return true if the block is cached.
+     */
+    public synchronized boolean contains(final String resource, final int blockSize, final long position) {
+        return blocks.containsKey(new BlockKey(resource, blockSize, position));
+    }
+
+    /**
+     * Adds a block to the cache, evicting the least recently used blocks if the cache is then over capacity.
+     * The bytes are not copied, so must not be changed once added.
+     * @param resource The resource and its version.
+     * @param blockSize The size of blocks read from the resource.
+     * @param position The position of the block.
+     * @param block The bytes of the block.
+     */
+    public synchronized void put(final String resource, final int blockSize, final long position, final byte[] block) {
+        if (block.length <= capacity) {
+            final byte[] previous = blocks.put(new BlockKey(resource, blockSize, position), block);
+            size += block.length - (previous == null ? 0 : previous.length);
+            final Iterator<byte[]> eldest = blocks.values().iterator();
+            while (size > capacity) {
+                size -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * @return The number of bytes cached.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * @return The number of times a block was found in the cache.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return The number of times a block was not found in the cache.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+}
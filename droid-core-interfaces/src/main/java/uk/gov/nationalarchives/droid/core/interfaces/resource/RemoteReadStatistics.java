@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the ranged requests made to read remote resources, and the bytes they returned.
+ * Statistics are safe to update and read from several threads at once.
+ */
+public class RemoteReadStatistics {
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong bytesFetched = new AtomicLong();
+
+    /**
+     * Records a single request.
+     * @param bytes The number of bytes the request returned.
+     */
+    public void recordRequest(final long bytes) {
+        requestCount.incrementAndGet();
+        bytesFetched.addAndGet(bytes);
+    }
+
+    /**
+     * Adds the counts from other statistics to these ones.
+     * @param other The statistics to add.
+     */
+    public void add(final RemoteReadStatistics other) {
+        requestCount.addAndGet(other.getRequestCount());
+        bytesFetched.addAndGet(other.getBytesFetched());
+    }
+
+    /**
+     * @return The number of requests made.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return The total number of bytes returned by all requests.
+     */
+    public long getBytesFetched() {
+        return bytesFetched.get();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[requests=" + getRequestCount() + ", bytes=" + getBytesFetched() + "]";
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.byteseek.io.reader.AbstractReader;
+import net.byteseek.io.reader.cache.WindowCache;
+import net.byteseek.io.reader.windows.SoftWindow;
+import net.byteseek.io.reader.windows.SoftWindowRecovery;
+import net.byteseek.io.reader.windows.Window;
+
+/**
+ * A WindowReader for remote resources which are read with ranged requests, adapting the size of the ranges
+ * it asks for to the way the resource is being read.
+ * <p>
+ * Windows are small, up to {@link #MIN_RANGE_SIZE}, so a signature which only looks at the first few bytes of a
+ * resource only fetches those.  When the window asked for is next to the range last fetched, either just after
+ * it or just before it, the resource is being scanned, so the next range doubles in size, up to the maximum range
+ * size, and the adjacent windows are fetched together in a single request.  A request for a window anywhere else
+ * starts again with a single window.  Ranges stop short of windows which are already cached.
+ * <p>
+ * The windows fetched ahead of the one asked for are held until they are asked for, or until the next range is
+ * fetched, so memory use is bounded by the maximum range size in addition to the window cache.
+ * <p>
+ * A {@link RemoteBlockCache} shared between readers can also be set, which is checked before fetching a window
+ * and which is given every window fetched, so other readers of the same resource don't fetch it again.
+ */
+public abstract class RemoteWindowReader extends AbstractReader implements SoftWindowRecovery {
+
+    /**
+     * The window size used when the maximum range size is larger than this.
+     */
+    public static final int MIN_RANGE_SIZE = 64 * 1024;
+
+    /**
+     * The largest range read in a single request by readers which are not given a maximum range size.
+     */
+    public static final int DEFAULT_MAX_RANGE_SIZE = 4 * 1024 * 1024;
+
+    private final long length;
+    private final int maxWindowsPerRange;
+    private final RemoteReadStatistics statistics = new RemoteReadStatistics();
+    private final Map<Long, Window> readAhead = new HashMap<>();
+
+    private RemoteBlockCache blockCache;
+    private String resourceKey;
+    private int windowsPerRange = 1;
+    private long lastRangeStart = -1;
+    private long lastRangeEnd = -1;
+
+    /**
+     * @param cache The cache for windows.
+     * @param length The length of the remote resource.
+     * @param maxRangeSize The largest range to read in a single request.
+     */
+    protected RemoteWindowReader(final WindowCache cache, final long length, final int maxRangeSize) {
+        super(Math.min(maxRangeSize, MIN_RANGE_SIZE), cache);
+        this.length = length;
+        this.maxWindowsPerRange = length > 0 ? Math.max(1, maxRangeSize / windowSize) : 1;
+    }
+
+    /**
+     * Reads a range of bytes from the remote resource.
+     *
+     * @param rangeStart The position of the first byte to read.
+     * @param rangeEnd The position of the last byte to read, inclusive.  It may be past the end of the resource.
+     * @return The bytes read.
+     * @throws IOException If the range could not be read.
+     */
+    protected abstract byte[] readRange(long rangeStart, long rangeEnd) throws IOException;
+
+    @Override
+    protected Window createWindow(final long windowStart) throws IOException {
+        if (windowStart < 0 || isPastEnd(windowStart)) {
+            return null;
+        }
+        final Window window = readAhead.remove(windowStart);
+        if (window != null) {
+            return window;
+        }
+        final byte[] block = blockCache == null ? null : blockCache.get(resourceKey, windowSize, windowStart);
+        return block != null ? new SoftWindow(block, windowStart, block.length, this) : fetchWindows(windowStart);
+    }
+
+    /**
+     * @param position A position in the resource.
+     * @return Whether the position is past the end of the resource.
+     */
+    protected boolean isPastEnd(final long position) {
+        return position >= length;
+    }
+
+    @Override
+    public long length() throws IOException {
+        return length;
+    }
+
+    @Override
+    public byte[] reloadWindowBytes(final Window window) throws IOException {
+        final long windowStart = window.getWindowPosition();
+        return fetch(windowStart, windowStart + windowSize);
+    }
+
+    /**
+     * Sets a block cache to share windows with other readers of the same resource.
+     *
+     * @param blockCache The block cache, or null for none.
+     * @param resourceKey Identifies the resource and its version in the block cache.
+     */
+    public void setBlockCache(final RemoteBlockCache blockCache, final String resourceKey) {
+        this.blockCache = blockCache;
+        this.resourceKey = resourceKey;
+    }
+
+    /**
+     * @return The requests made and bytes fetched by this reader.
+     */
+    public RemoteReadStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Fetches a single window, or gets it from the block cache, without changing how far this reader reads ahead.
+     *
+     * @param windowStart The position of the window.
+     * @return The bytes of the window.
+     * @throws IOException If the window could not be read.
+     */
+    protected byte[] fetchWindowBytes(final long windowStart) throws IOException {
+        byte[] bytes = blockCache == null ? null : blockCache.get(resourceKey, windowSize, windowStart);
+        if (bytes == null) {
+            bytes = fetch(windowStart, windowStart + windowSize);
+            addToBlockCache(windowStart, bytes);
+        }
+        return bytes;
+    }
+
+    private Window fetchWindows(final long windowStart) throws IOException {
+        final boolean forwards = windowStart == lastRangeEnd;
+        final boolean backwards = windowStart + windowSize == lastRangeStart;
+        windowsPerRange = forwards || backwards ? Math.min(windowsPerRange * 2, maxWindowsPerRange) : 1;
+        final long rangeStart = backwards ? extendBackwards(windowStart) : windowStart;
+        final long rangeEnd = backwards ? windowStart + windowSize : extendForwards(windowStart);
+
+        final byte[] bytes = fetch(rangeStart, rangeEnd);
+        lastRangeStart = rangeStart;
+        lastRangeEnd = rangeEnd;
+        readAhead.clear();
+        if (bytes.length == 0) {
+            return null;
+        }
+        if (rangeEnd - rangeStart == windowSize) {
+            addToBlockCache(windowStart, bytes);
+            return new SoftWindow(bytes, windowStart, bytes.length, this);
+        }
+        return splitWindows(bytes, rangeStart, windowStart);
+    }
+
+    private long extendBackwards(final long windowStart) throws IOException {
+        long rangeStart = windowStart;
+        for (int count = 1; count < windowsPerRange && rangeStart > 0
+                && isNotCached(rangeStart - windowSize); count++) {
+            rangeStart -= windowSize;
+        }
+        return rangeStart;
+    }
+
+    private long extendForwards(final long windowStart) throws IOException {
+        final long lastWindowStart = ((length - 1) / windowSize) * windowSize;
+        long rangeEnd = windowStart + windowSize;
+        for (int count = 1; count < windowsPerRange && rangeEnd <= lastWindowStart
+                && isNotCached(rangeEnd); count++) {
+            rangeEnd += windowSize;
+        }
+        return rangeEnd;
+    }
+
+    private Window splitWindows(final byte[] bytes, final long rangeStart, final long windowStart) {
+        Window requested = null;
+        for (int offset = 0; offset < bytes.length; offset += windowSize) {
+            final int windowLength = Math.min(windowSize, bytes.length - offset);
+            final long position = rangeStart + offset;
+            final byte[] windowBytes = Arrays.copyOfRange(bytes, offset, offset + windowLength);
+            addToBlockCache(position, windowBytes);
+            final Window window = new SoftWindow(windowBytes, position, windowLength, this);
+            if (position == windowStart) {
+                requested = window;
+            } else {
+                readAhead.put(position, window);
+            }
+        }
+        return requested;
+    }
+
+    private boolean isNotCached(final long windowStart) throws IOException {
+        return cache.getWindow(windowStart) == null
+                && (blockCache == null || !blockCache.contains(resourceKey, windowSize, windowStart));
+    }
+
+    private void addToBlockCache(final long windowStart, final byte[] bytes) {
+        if (blockCache != null && bytes.length > 0) {
+            blockCache.put(resourceKey, windowSize, windowStart, bytes);
+        }
+    }
+
+    private byte[] fetch(final long rangeStart, final long rangeEnd) throws IOException {
+        final byte[] bytes = readRange(rangeStart, rangeEnd - 1);
+        statistics.recordRequest(bytes.length);
+        return bytes;
+    }
+}
@@ -31,12 +31,16 @@
  */
 package uk.gov.nationalarchives.droid.core.interfaces.resource;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.io.FilenameUtils;
 
@@ -47,6 +51,7 @@ import net.byteseek.io.reader.cache.TopAndTailStreamCache;
 import net.byteseek.io.reader.cache.TwoLevelCache;
 import net.byteseek.io.reader.cache.WindowCache;
 import net.byteseek.io.reader.InputStreamReader;
+import net.byteseek.io.reader.WindowReader;
 
 /**
  * 
@@ -161,6 +166,58 @@ public final class ResourceUtils {
         return reader;
     }
 
+    /**
+     * Creates a reader for a stream, reading it into buffers borrowed from a pool if it is no longer than
+     * its top and tail, which would be held in memory until the reader is closed anyway.
+     * <p>
+     * The stream is read until it ends or is found to be longer than that.  A longer stream is read by a reader
+     * backed by a cache, as {@link #getStreamReader(InputStream, Path, int, boolean)} creates, starting with
+     * the bytes already read.
+     *
+     * @param in The input stream to back the reader.
+     * @param tempDir The directory in which to create temporary files for caching.
+     * @param topTailCapacity The amount of memory to cache on the top and tail of each stream.
+     * @param closeStream Whether to close the underlying input stream when this reader is closed.
+     * @param bufferPool The pool to borrow buffers from.
+     * @return A reader of the stream.
+     * @throws IOException if the stream could not be read.
+     */
+    public static WindowReader getStreamReader(final InputStream in, final Path tempDir, final int topTailCapacity,
+                                               final boolean closeStream, final WindowBufferPool bufferPool)
+        throws IOException {
+        final long maxPooledLength = 2L * topTailCapacity;
+        final List<byte[]> buffers = new ArrayList<>();
+        long length = 0;
+        try {
+            while (length <= maxPooledLength) {
+                final byte[] buffer = bufferPool.borrow();
+                buffers.add(buffer);
+                final int bytesRead = readBuffer(in, buffer);
+                length += bytesRead;
+                if (bytesRead < buffer.length) {
+                    if (closeStream) {
+                        in.close();
+                    }
+                    return new PooledStreamReader(bufferPool, buffers, length);
+                }
+            }
+        } catch (IOException e) {
+            for (byte[] buffer : buffers) {
+                bufferPool.release(buffer);
+            }
+            throw e;
+        }
+        final byte[] head = new byte[(int) length];
+        int position = 0;
+        for (byte[] buffer : buffers) {
+            System.arraycopy(buffer, 0, head, position, buffer.length);
+            position += buffer.length;
+            bufferPool.release(buffer);
+        }
+        return getStreamReader(new SequenceInputStream(new ByteArrayInputStream(head), in), tempDir,
+                topTailCapacity, closeStream);
+    }
+
 
     /**
      * @param tempDir The temp directory to create the temporary file in.
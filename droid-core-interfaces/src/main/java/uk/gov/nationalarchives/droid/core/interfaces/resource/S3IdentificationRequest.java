@@ -43,6 +43,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.Executor;
 
 
 public class S3IdentificationRequest implements IdentificationRequest<S3Uri> {
@@ -56,6 +57,8 @@ public class S3IdentificationRequest implements IdentificationRequest<S3Uri> {
     private final S3Client s3client;
     private final S3Utils.S3ObjectMetadata s3ObjectMetadata;
     private String extension;
+    private RemoteBlockCache blockCache;
+    private String blockCacheKey;
 
     public S3IdentificationRequest(final RequestMetaData requestMetaData, final RequestIdentifier identifier, final S3Client s3Client, final int windowSize) {
         this.identifier = identifier;
@@ -69,9 +72,22 @@ public class S3IdentificationRequest implements IdentificationRequest<S3Uri> {
 
     }
 
-    private WindowReader buildWindowReader() {
+    private S3WindowReader buildWindowReader() {
         final WindowCache cache = new TopAndTailFixedLengthCache(this.s3ObjectMetadata.contentLength(), TOP_TAIL_BUFFER_CAPACITY);
-        return new S3WindowReader(cache, s3ObjectMetadata, s3client, windowSize);
+        final S3WindowReader reader = new S3WindowReader(cache, s3ObjectMetadata, s3client, windowSize);
+        reader.setBlockCache(blockCache, blockCacheKey);
+        return reader;
+    }
+
+    /**
+     * Shares the windows read for this request with other requests through a block cache.
+     * Must be called before the request is opened.
+     * @param blockCache The block cache, or null for none.
+     * @param version The version of the resource, e.g. its ETag, which changes whenever its content does.
+     */
+    public final void setBlockCache(final RemoteBlockCache blockCache, final String version) {
+        this.blockCache = blockCache;
+        this.blockCacheKey = identifier.getUri() + "#" + version;
     }
 
     /**
@@ -83,6 +99,18 @@ public class S3IdentificationRequest implements IdentificationRequest<S3Uri> {
         s3Reader.getWindow(0);
     }
 
+    /**
+     * Opens the request, reading the first and last windows of the object at the same time.
+     * @param theFile The S3 object to open.
+     * @param executor The executor to read the last window on.
+     * @throws IOException If either window could not be read.
+     */
+    public final void open(final S3Uri theFile, final Executor executor) throws IOException {
+        final S3WindowReader reader = buildWindowReader();
+        reader.readTopAndTail(executor);
+        this.s3Reader = reader;
+    }
+
     /**
      * {@inheritDoc}
      */
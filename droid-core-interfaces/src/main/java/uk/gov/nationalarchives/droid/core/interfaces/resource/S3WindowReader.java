@@ -31,11 +31,8 @@
  */
 package uk.gov.nationalarchives.droid.core.interfaces.resource;
 
-import net.byteseek.io.reader.AbstractReader;
 import net.byteseek.io.reader.cache.WindowCache;
 import net.byteseek.io.reader.windows.SoftWindow;
-import net.byteseek.io.reader.windows.SoftWindowRecovery;
-import net.byteseek.io.reader.windows.Window;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
@@ -44,8 +41,12 @@ import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
-public class S3WindowReader extends AbstractReader implements SoftWindowRecovery {
+public class S3WindowReader extends RemoteWindowReader {
 
     private static final int BUFFER_LENGTH = 8192;
 
@@ -53,33 +54,55 @@ public class S3WindowReader extends AbstractReader implements SoftWindowRecovery
 
     private final S3Client s3Client;
 
-    private final Long length;
-
     public S3WindowReader(WindowCache cache, S3Utils.S3ObjectMetadata s3ObjectMetadata, S3Client s3Client, int windowSize) {
-        super(windowSize, cache);
+        super(cache, s3ObjectMetadata.contentLength(), windowSize);
         this.s3Client = s3Client;
-        this.length = s3ObjectMetadata.contentLength();
         this.s3ObjectMetadata = s3ObjectMetadata;
     }
 
-    @Override
-    protected Window createWindow(long windowStart) throws IOException {
-        if (windowStart >= 0 && windowStart < length) {
-            byte[] bytes = bytesForRange(windowStart);
-            int totalRead = bytes.length;
-            if (totalRead > 0) {
-                return new SoftWindow(bytes, windowStart, totalRead, this);
+    /**
+     * Reads the first window and the window holding the last byte at the same time, caching them both, so
+     * identifying the object waits for one round trip rather than two before it can look at both ends of it.
+     *
+     * @param executor The executor to read the last window on while the first is read on the calling thread.
+     * @throws IOException If either window could not be read.
+     */
+    public void readTopAndTail(Executor executor) throws IOException {
+        final long length = length();
+        final long tailStart = length > 0 ? ((length - 1) / windowSize) * windowSize : 0;
+        if (tailStart == 0) {
+            getWindow(0);
+            return;
+        }
+        CompletableFuture<byte[]> tailBytes = CompletableFuture.supplyAsync(() -> {
+            try {
+                return fetchWindowBytes(tailStart);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
+        }, executor);
+        getWindow(0);
+        try {
+            byte[] bytes = tailBytes.join();
+            cache.addWindow(new SoftWindow(bytes, tailStart, bytes.length, this));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException uioe) {
+                throw uioe.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw e;
         }
-        return null;
     }
 
-    private byte[] bytesForRange(long windowStart) throws IOException {
+    @Override
+    protected byte[] readRange(long rangeStart, long rangeEnd) throws IOException {
         String key = this.s3ObjectMetadata.key().orElseThrow(() -> new RuntimeException(this.s3ObjectMetadata.key() + " not found"));
         GetObjectRequest getS3ObjectRequest = GetObjectRequest.builder()
                 .bucket(this.s3ObjectMetadata.bucket())
                 .key(key)
-                .range("bytes=" + windowStart + "-" + (windowStart + this.windowSize -1))
+                .range("bytes=" + rangeStart + "-" + rangeEnd)
                 .build();
         try (ResponseInputStream<GetObjectResponse> response = s3Client.getObject(getS3ObjectRequest)) {
             return toByteArray(response);
@@ -96,15 +119,4 @@ public class S3WindowReader extends AbstractReader implements SoftWindowRecovery
             return out.toByteArray();
         }
     }
-
-    @Override
-    public long length() throws IOException {
-        return this.length;
-    }
-
-    @Override
-    public byte[] reloadWindowBytes(Window window) throws IOException {
-        long windowStart = window.getWindowPosition();
-        return bytesForRange(windowStart);
-    }
 }
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of window buffers which readers can borrow instead of allocating and zeroing new arrays for every
+ * request, and give back when the request is closed.
+ * <p>
+ * Buffers are held in stripes chosen by the borrowing thread, so threads rarely contend for the same stripe,
+ * but a thread will take a buffer from another stripe rather than allocate one.  The pool never holds more
+ * than its maximum pooled bytes: buffers given back to a full pool are left for the garbage collector.
+ * Buffers are not cleared when they are given back, so a borrower must only read the bytes it has written.
+ * It is safe to use from several threads at once.
+ */
+public class WindowBufferPool {
+
+    /**
+     * The default size of buffers in the pool.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 4 * 1024;
+
+    private static final double PERCENT = 100.0;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final int bufferSize;
+    private final long maxPooledBytes;
+    private final Deque<byte[]>[] stripes;
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final AtomicLong peakPooledBytes = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Creates a pool of buffers of the default size.
+     * @param maxPooledBytes The maximum number of bytes the pool will hold.
+     */
+    public WindowBufferPool(final long maxPooledBytes) {
+        this(DEFAULT_BUFFER_SIZE, maxPooledBytes);
+    }
+
+    /**
+     * Creates a pool of buffers.
+     * @param bufferSize The size of the buffers in the pool.
+     * @param maxPooledBytes The maximum number of bytes the pool will hold.
+     */
+    @SuppressWarnings("unchecked")
+    public WindowBufferPool(final int bufferSize, final long maxPooledBytes) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("The size of pooled buffers must be at least one byte: " + bufferSize);
+        }
+        if (maxPooledBytes < 0) {
+            throw new IllegalArgumentException("The maximum pooled bytes cannot be negative: " + maxPooledBytes);
+        }
+        this.bufferSize = bufferSize;
+        this.maxPooledBytes = maxPooledBytes;
+        final int numStripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2);
+        this.stripes = new Deque[numStripes];
+        for (int i = 0; i < numStripes; i++) {
+            stripes[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Borrows a buffer from the pool, or allocates a new one if the pool is empty.
+     * @return A buffer of the pool's buffer size, whose contents are undefined.
+     */
+    public byte[] borrow() {
+        final int first = stripeIndex();
+        for (int i = 0; i < stripes.length; i++) {
+            final Deque<byte[]> stripe = stripes[(first + i) & (stripes.length - 1)];
+            final byte[] buffer;
+            synchronized (stripe) {
+                buffer = stripe.pollFirst();
+            }
+            if (buffer != null) {
+                pooledBytes.addAndGet(-bufferSize);
+                hitCount.incrementAndGet();
+                return buffer;
+            }
+        }
+        missCount.incrementAndGet();
+        return new byte[bufferSize];
+    }
+
+    /**
+     * Gives a buffer back to the pool.  Buffers which are not the pool's buffer size, or which would take
+     * the pool over its maximum pooled bytes, are not pooled.
+     * @param buffer The buffer to give back.  It must not be used again by the caller.
+     */
+    public void release(final byte[] buffer) {
+        if (buffer == null || buffer.length != bufferSize || !reserve()) {
+            return;
+        }
+        final Deque<byte[]> stripe = stripes[stripeIndex()];
+        synchronized (stripe) {
+            stripe.offerFirst(buffer);
+        }
+    }
+
+    /**
+     * Empties the pool, logging how well it was used.
+     */
+    public void clear() {
+        for (Deque<byte[]> stripe : stripes) {
+            synchronized (stripe) {
+                pooledBytes.addAndGet(-(long) stripe.size() * bufferSize);
+                stripe.clear();
+            }
+        }
+        if (hitCount.get() + missCount.get() > 0) {
+            log.info(toString());
+        }
+    }
+
+    /**
+     * @return The size of the buffers in the pool.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return The maximum number of bytes the pool will hold.
+     */
+    public long getMaxPooledBytes() {
+        return maxPooledBytes;
+    }
+
+    /**
+     * @return The number of bytes currently held by the pool.
+     */
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    /**
+     * @return The largest number of bytes the pool has held at once.
+     */
+    public long getPeakPooledBytes() {
+        return peakPooledBytes.get();
+    }
+
+    /**
+     * @return The number of buffers borrowed from the pool.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return The number of buffers allocated because the pool was empty.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return The proportion of borrowed buffers which came from the pool, from 0 to 1.
+     */
+    public double getHitRate() {
+        final long hits = hitCount.get();
+        final long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[buffer size: %d, hit rate: %.1f%%, hits: %d, misses: %d, peak pooled bytes: %d of %d]",
+                getClass().getSimpleName(), bufferSize, getHitRate() * PERCENT, hitCount.get(), missCount.get(),
+                peakPooledBytes.get(), maxPooledBytes);
+    }
+
+    private boolean reserve() {
+        long current;
+        long next;
+        do {
+            current = pooledBytes.get();
+            next = current + bufferSize;
+            if (next > maxPooledBytes) {
+                return false;
+            }
+        } while (!pooledBytes.compareAndSet(current, next));
+        peakPooledBytes.accumulateAndGet(next, Math::max);
+        return true;
+    }
+
+    private int stripeIndex() {
+        return (int) Thread.currentThread().threadId() & (stripes.length - 1);
+    }
+}
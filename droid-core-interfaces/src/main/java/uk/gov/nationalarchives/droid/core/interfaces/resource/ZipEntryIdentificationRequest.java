@@ -62,6 +62,7 @@ public class ZipEntryIdentificationRequest implements IdentificationRequest<Inpu
     private WindowReader reader;
 
     private boolean closeStream = true;
+    private WindowBufferPool bufferPool;
 
 
     private Logger log = LoggerFactory.getLogger(this.getClass());
@@ -101,7 +102,12 @@ public class ZipEntryIdentificationRequest implements IdentificationRequest<Inpu
      */
     @Override
     public final void open(final InputStream in) throws IOException {
-        reader = ResourceUtils.getStreamReader(in, tempDir, TOP_TAIL_CAPACITY, closeStream);
+        if (bufferPool != null && size <= 2L * TOP_TAIL_CAPACITY) {
+            // Entries this size are held in memory until the request is closed, so pooling them holds no more.
+            reader = ResourceUtils.getStreamReader(in, tempDir, TOP_TAIL_CAPACITY, closeStream, bufferPool);
+        } else {
+            reader = ResourceUtils.getStreamReader(in, tempDir, TOP_TAIL_CAPACITY, closeStream);
+        }
         // Force read of entire input stream to build reader and remove dependence on source input stream.
         final long readSize = reader.length(); // getting the size of a reader backed by a stream forces a stream read.
         if (readSize != size) {
@@ -118,6 +124,15 @@ public class ZipEntryIdentificationRequest implements IdentificationRequest<Inpu
         }
     }
     
+    /**
+     * Sets a pool to borrow windows from when the entry is read.  Entries larger than the cached top and tail
+     * of an entry, or which turn out to be larger when they are read, are not read into pooled windows.
+     * @param bufferPool The pool of window buffers, or null to allocate new windows.
+     */
+    public void setBufferPool(final WindowBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
     /**
      * Releases resources for this resource.
      * @throws IOException if the resource could not be closed
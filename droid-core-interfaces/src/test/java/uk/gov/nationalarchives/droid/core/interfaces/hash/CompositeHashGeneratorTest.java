@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.hash;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import net.byteseek.io.reader.InputStreamReader;
+import net.byteseek.io.reader.WindowReader;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CompositeHashGeneratorTest {
+
+    private static final List<String> ALGORITHMS = List.of("MD5", "SHA-1", "SHA-256", "SHA-512");
+
+    private final byte[] content = createContent(100_000);
+
+    @Test
+    public void should_generate_all_hashes_from_an_input_stream() throws IOException {
+        Map<String, String> hashes = new CompositeHashGenerator(ALGORITHMS).hash(new ByteArrayInputStream(content));
+        assertExpectedHashes(hashes);
+    }
+
+    @Test
+    public void should_generate_all_hashes_from_a_window_reader_with_many_windows() throws IOException {
+        try (WindowReader reader = new InputStreamReader(new ByteArrayInputStream(content), 4096)) {
+            reader.getWindow(50_000); // read some windows out of order first.
+            Map<String, String> hashes = new CompositeHashGenerator(ALGORITHMS).hash(reader);
+            assertExpectedHashes(hashes);
+        }
+    }
+
+    @Test
+    public void should_hash_empty_content() throws IOException {
+        try (WindowReader reader = new InputStreamReader(new ByteArrayInputStream(new byte[0]), 4096)) {
+            Map<String, String> hashes = new CompositeHashGenerator(List.of("MD5")).hash(reader);
+            assertEquals(DigestUtils.md5Hex(new byte[0]), hashes.get("MD5"));
+        }
+    }
+
+    @Test
+    public void should_reject_an_unknown_algorithm() {
+        assertThrows(IllegalArgumentException.class, () -> new CompositeHashGenerator(List.of("NOT-A-HASH")));
+    }
+
+    private void assertExpectedHashes(Map<String, String> hashes) {
+        assertEquals(List.copyOf(ALGORITHMS), List.copyOf(hashes.keySet()));
+        assertEquals(DigestUtils.md5Hex(content), hashes.get("MD5"));
+        assertEquals(DigestUtils.sha1Hex(content), hashes.get("SHA-1"));
+        assertEquals(DigestUtils.sha256Hex(content), hashes.get("SHA-256"));
+        assertEquals(DigestUtils.sha512Hex(content), hashes.get("SHA-512"));
+    }
+
+    private static byte[] createContent(int length) {
+        byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+}
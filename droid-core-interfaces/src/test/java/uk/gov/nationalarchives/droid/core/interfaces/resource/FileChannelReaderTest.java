@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import net.byteseek.io.reader.cache.NoCache;
+import net.byteseek.io.reader.windows.Window;
+import org.junit.jupiter.api.Test;
+
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileChannelReaderTest {
+
+    @Test
+    public void testReadsEveryWindowOfTheFile() throws IOException, URISyntaxException {
+        Path file = getTestFile();
+        byte[] expected = Files.readAllBytes(file);
+        try (FileChannelReader reader = new FileChannelReader(file, 100, NoCache.NO_CACHE)) {
+            assertEquals(expected.length, reader.length());
+            for (long position = 0; position < expected.length; position += 100) {
+                Window window = reader.getWindow(position);
+                assertEquals(position, window.getWindowPosition());
+                assertEquals(Math.min(100, expected.length - position), window.length());
+                assertArrayEquals(Arrays.copyOfRange(expected, (int) position, (int) position + window.length()),
+                        Arrays.copyOf(window.getArray(), window.length()));
+            }
+            assertNull(reader.getWindow(expected.length + 100));
+            assertNull(reader.getWindow(-1));
+        }
+    }
+
+    @Test
+    public void testReadsIntoPooledWindowsAndGivesThemBackOnClose() throws IOException, URISyntaxException {
+        Path file = getTestFile();
+        byte[] expected = Files.readAllBytes(file);
+        WindowBufferPool pool = new WindowBufferPool(100, 1024 * 1024);
+        int windows = (expected.length + 99) / 100;
+        try (FileChannelReader reader = new FileChannelReader(file, NoCache.NO_CACHE, pool)) {
+            for (long position = 0; position < expected.length; position += 100) {
+                Window window = reader.getWindow(position);
+                assertEquals(Math.min(100, expected.length - position), window.length());
+                assertArrayEquals(Arrays.copyOfRange(expected, (int) position, (int) position + window.length()),
+                        Arrays.copyOf(window.getArray(), window.length()));
+            }
+            assertEquals(0, pool.getPooledBytes());
+        }
+        assertEquals(windows * 100L, pool.getPooledBytes());
+        assertEquals(windows, pool.getMissCount());
+
+        try (FileChannelReader reader = new FileChannelReader(file, NoCache.NO_CACHE, pool)) {
+            assertEquals(expected[expected.length - 1], (byte) reader.readByte(expected.length - 1));
+        }
+        assertEquals(1, pool.getHitCount());
+    }
+
+    @Test
+    public void testIdentificationRequestCanReadWithAFileChannel() throws IOException, URISyntaxException {
+        Path file = getTestFile();
+        byte[] expected = Files.readAllBytes(file);
+        RequestMetaData metaData = new RequestMetaData((long) expected.length, 1L, "testXmlFile.xml");
+        try (FileSystemIdentificationRequest request =
+                     new FileSystemIdentificationRequest(metaData, new RequestIdentifier(file.toUri()), true)) {
+            request.open(file);
+            assertInstanceOf(FileChannelReader.class, request.getWindowReader());
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], request.getByte(i));
+            }
+            assertThrows(IOException.class, () -> request.getByte(expected.length));
+        }
+    }
+
+    private Path getTestFile() throws URISyntaxException {
+        return Paths.get(getClass().getResource("/testXmlFile.xml").toURI());
+    }
+}
@@ -41,6 +41,9 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -85,4 +88,35 @@ public class HttpWindowReaderTest {
         when(httpClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenThrow(new IOException("Error contacting server"));
         assertThrows(IOException.class, () -> new HttpWindowReader(windowCache, httpMetadata, httpClient).getWindow(0));
     }
+
+    @Test
+    public void testWindowReaderGrowsRangesWhenReadingSequentially() throws Exception {
+        WindowCache windowCache = mock(WindowCache.class);
+        byte[] content = new byte[RemoteWindowReader.MIN_RANGE_SIZE * 8];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        List<String> ranges = new ArrayList<>();
+        HttpClient httpClient = mock(HttpClient.class);
+        when(httpClient.send(any(HttpRequest.class), any(HttpResponse.BodyHandler.class))).thenAnswer(invocation -> {
+            HttpRequest request = invocation.getArgument(0);
+            String range = request.headers().firstValue("Range").orElseThrow().split("=")[1];
+            ranges.add(range);
+            int rangeStart = Integer.parseInt(range.split("-")[0]);
+            int rangeEnd = Math.min(Integer.parseInt(range.split("-")[1]), content.length - 1);
+            HttpResponse<byte[]> response = mock(HttpResponse.class);
+            when(response.body()).thenReturn(Arrays.copyOfRange(content, rangeStart, rangeEnd + 1));
+            return response;
+        });
+        HttpUtils.HttpMetadata httpMetadata = new HttpUtils.HttpMetadata((long) content.length, 0L, URI.create("https://example.com"));
+        HttpWindowReader httpWindowReader = new HttpWindowReader(windowCache, httpMetadata, httpClient);
+
+        for (long position = 0; position < content.length; position += RemoteWindowReader.MIN_RANGE_SIZE) {
+            Window window = httpWindowReader.getWindow(position);
+            assertNotNull(window);
+            assertEquals(position, window.getWindowPosition());
+            assertEquals(content[(int) position + 1], window.getByte(1));
+        }
+        assertEquals(List.of("0-65535", "65536-196607", "196608-458751", "458752-524287"), ranges);
+    }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RemoteBlockCacheTest {
+
+    @Test
+    public void testReturnsCachedBlocksForTheSameResourceVersionBlockSizeAndPosition() {
+        RemoteBlockCache cache = new RemoteBlockCache(100);
+        byte[] block = {1, 2, 3};
+        cache.put("s3://bucket/key#etag", 10, 20, block);
+
+        assertArrayEquals(block, cache.get("s3://bucket/key#etag", 10, 20));
+        assertNull(cache.get("s3://bucket/key#other", 10, 20));
+        assertNull(cache.get("s3://bucket/key#etag", 20, 20));
+        assertNull(cache.get("s3://bucket/key#etag", 10, 30));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void testEvictsTheLeastRecentlyUsedBlocksWhenOverCapacity() {
+        RemoteBlockCache cache = new RemoteBlockCache(10);
+        cache.put("resource", 4, 0, new byte[4]);
+        cache.put("resource", 4, 4, new byte[4]);
+        cache.get("resource", 4, 0);
+        cache.put("resource", 4, 8, new byte[4]);
+
+        assertTrue(cache.contains("resource", 4, 0));
+        assertTrue(cache.contains("resource", 4, 8));
+        assertNull(cache.get("resource", 4, 4));
+        assertEquals(8, cache.size());
+    }
+
+    @Test
+    public void testDoesNotCacheBlocksLargerThanItsCapacity() {
+        RemoteBlockCache cache = new RemoteBlockCache(10);
+        cache.put("resource", 20, 0, new byte[20]);
+        assertNull(cache.get("resource", 20, 0));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testRejectsAnEmptyCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new RemoteBlockCache(0));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import net.byteseek.io.reader.cache.NoCache;
+import net.byteseek.io.reader.windows.Window;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RemoteWindowReaderTest {
+
+    private static final int WINDOW = RemoteWindowReader.MIN_RANGE_SIZE;
+
+    private final byte[] content = createContent(WINDOW * 16 + 100);
+
+    @Test
+    public void testReadingForwardsWidensTheRangesRequested() throws IOException {
+        InMemoryReader reader = new InMemoryReader(content, WINDOW * 4);
+        for (long position = 0; position < content.length; position += WINDOW) {
+            assertWindowContent(reader.getWindow(position));
+        }
+        assertEquals(List.of("0-65535", "65536-196607", "196608-458751", "458752-720895",
+                "720896-983039", "983040-1114111"), reader.ranges);
+        assertEquals(6, reader.getStatistics().getRequestCount());
+        assertEquals(content.length, reader.getStatistics().getBytesFetched());
+    }
+
+    @Test
+    public void testReadingBackwardsWidensTheRangesRequested() throws IOException {
+        InMemoryReader reader = new InMemoryReader(content, WINDOW * 4);
+        for (long position = WINDOW * 16; position >= 0; position -= WINDOW) {
+            assertWindowContent(reader.getWindow(position));
+        }
+        assertEquals(List.of("1048576-1114111", "917504-1048575", "655360-917503", "393216-655359",
+                "131072-393215", "0-131071"), reader.ranges);
+    }
+
+    @Test
+    public void testJumpingStartsAgainWithASingleWindow() throws IOException {
+        InMemoryReader reader = new InMemoryReader(content, WINDOW * 4);
+        assertWindowContent(reader.getWindow(0));
+        assertWindowContent(reader.getWindow(WINDOW));
+        assertWindowContent(reader.getWindow(WINDOW * 10));
+        assertEquals(List.of("0-65535", "65536-196607", "655360-720895"), reader.ranges);
+    }
+
+    @Test
+    public void testSmallMaximumRangeReadsOneWindowAtATime() throws IOException {
+        InMemoryReader reader = new InMemoryReader(content, 1024);
+        assertWindowContent(reader.getWindow(0));
+        assertWindowContent(reader.getWindow(1024));
+        assertWindowContent(reader.getWindow(2048));
+        assertEquals(List.of("0-1023", "1024-2047", "2048-3071"), reader.ranges);
+    }
+
+    @Test
+    public void testNoWindowPastTheEnd() throws IOException {
+        InMemoryReader reader = new InMemoryReader(content, WINDOW * 4);
+        assertNull(reader.getWindow(WINDOW * 17));
+        assertEquals(0, reader.getStatistics().getRequestCount());
+    }
+
+    @Test
+    public void testReadersSharingABlockCacheDoNotFetchTheSameWindowsAgain() throws IOException {
+        RemoteBlockCache blockCache = new RemoteBlockCache(content.length);
+        InMemoryReader first = new InMemoryReader(content, WINDOW * 4);
+        first.setBlockCache(blockCache, "resource#1");
+        for (long position = 0; position < content.length; position += WINDOW) {
+            first.getWindow(position);
+        }
+
+        InMemoryReader second = new InMemoryReader(content, WINDOW * 4);
+        second.setBlockCache(blockCache, "resource#1");
+        for (long position = 0; position < content.length; position += WINDOW) {
+            assertWindowContent(second.getWindow(position));
+        }
+        assertEquals(0, second.getStatistics().getRequestCount());
+
+        InMemoryReader changed = new InMemoryReader(content, WINDOW * 4);
+        changed.setBlockCache(blockCache, "resource#2");
+        assertWindowContent(changed.getWindow(0));
+        assertEquals(1, changed.getStatistics().getRequestCount());
+    }
+
+    private void assertWindowContent(Window window) throws IOException {
+        int position = (int) window.getWindowPosition();
+        assertArrayEquals(Arrays.copyOfRange(content, position, position + window.length()), window.getArray());
+    }
+
+    private static byte[] createContent(int length) {
+        byte[] bytes = new byte[length];
+        new Random(7).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static final class InMemoryReader extends RemoteWindowReader {
+
+        private final byte[] content;
+        private final List<String> ranges = new ArrayList<>();
+
+        InMemoryReader(byte[] content, int maxRangeSize) {
+            super(NoCache.NO_CACHE, content.length, maxRangeSize);
+            this.content = content;
+        }
+
+        @Override
+        protected byte[] readRange(long rangeStart, long rangeEnd) {
+            ranges.add(rangeStart + "-" + rangeEnd);
+            return Arrays.copyOfRange(content, (int) rangeStart, (int) Math.min(rangeEnd + 1, content.length));
+        }
+    }
+}
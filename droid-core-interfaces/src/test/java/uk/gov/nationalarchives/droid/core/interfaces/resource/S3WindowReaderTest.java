@@ -31,6 +31,7 @@
  */
 package uk.gov.nationalarchives.droid.core.interfaces.resource;
 
+import net.byteseek.io.reader.cache.TopAndTailFixedLengthCache;
 import net.byteseek.io.reader.cache.WindowCache;
 import net.byteseek.io.reader.windows.SoftWindow;
 import net.byteseek.io.reader.windows.Window;
@@ -44,7 +45,9 @@ import software.amazon.awssdk.services.s3.model.S3Exception;
 
 import java.net.URI;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -111,6 +114,35 @@ public class S3WindowReaderTest {
         assertNull(s3WindowReader.createWindow(5));
     }
 
+    @Test
+    public void testReadTopAndTailCachesTheFirstAndLastWindows() throws Exception {
+        S3Client s3Client = mockS3Client();
+        S3Uri s3Uri = S3Uri.builder().uri(URI.create("s3://bucket/key")).build();
+        S3Utils.S3ObjectMetadata s3ObjectMetadata = new S3Utils.S3ObjectMetadata("bucket", Optional.of("key"), s3Uri, 6L, 1L);
+        S3WindowReader s3WindowReader = new S3WindowReader(new TopAndTailFixedLengthCache(6L, 4L), s3ObjectMetadata, s3Client, 2);
+
+        s3WindowReader.readTopAndTail(Executors.newVirtualThreadPerTaskExecutor());
+        assertNotNull(s3WindowReader.getWindow(0));
+        assertNotNull(s3WindowReader.getWindow(4));
+
+        List<String> ranges = Mockito.mockingDetails(s3Client).getInvocations().stream()
+                .map(invocation -> ((GetObjectRequest) invocation.getArguments()[0]).range())
+                .sorted()
+                .toList();
+        assertEquals(List.of("bytes=0-1", "bytes=4-5"), ranges);
+    }
+
+    @Test
+    public void testReadTopAndTailReturnsErrorOnS3Failure() {
+        S3Client s3Client = mock(S3Client.class);
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenThrow(S3Exception.builder().message("Error contacting s3").build());
+        S3Uri s3Uri = S3Uri.builder().uri(URI.create("s3://bucket/key")).build();
+        S3Utils.S3ObjectMetadata s3ObjectMetadata = new S3Utils.S3ObjectMetadata("bucket", Optional.of("key"), s3Uri, 6L, 1L);
+        S3WindowReader s3WindowReader = new S3WindowReader(new TopAndTailFixedLengthCache(6L, 4L), s3ObjectMetadata, s3Client, 2);
+
+        assertThrows(S3Exception.class, () -> s3WindowReader.readTopAndTail(Executors.newVirtualThreadPerTaskExecutor()));
+    }
+
 
     @Test
     public void testWindowReaderReturnsErrorOnS3Failure() throws Exception {
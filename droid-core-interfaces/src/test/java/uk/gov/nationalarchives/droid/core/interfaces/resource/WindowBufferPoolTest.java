@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.interfaces.resource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WindowBufferPoolTest {
+
+    @Test
+    public void testAllocatesWhenEmptyAndReusesBuffersGivenBack() {
+        WindowBufferPool pool = new WindowBufferPool(16, 1024);
+        byte[] buffer = pool.borrow();
+        assertEquals(16, buffer.length);
+        assertEquals(0, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+
+        pool.release(buffer);
+        assertEquals(16, pool.getPooledBytes());
+        assertSame(buffer, pool.borrow());
+        assertEquals(1, pool.getHitCount());
+        assertEquals(0.5, pool.getHitRate());
+        assertEquals(0, pool.getPooledBytes());
+    }
+
+    @Test
+    public void testDoesNotPoolMoreThanTheMaximumBytes() {
+        WindowBufferPool pool = new WindowBufferPool(16, 40);
+        List<byte[]> buffers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            buffers.add(pool.borrow());
+        }
+        buffers.forEach(pool::release);
+        assertEquals(32, pool.getPooledBytes());
+        assertEquals(32, pool.getPeakPooledBytes());
+
+        pool.borrow();
+        pool.borrow();
+        assertEquals(0, pool.getPooledBytes());
+        assertEquals(32, pool.getPeakPooledBytes());
+    }
+
+    @Test
+    public void testIgnoresBuffersOfTheWrongSize() {
+        WindowBufferPool pool = new WindowBufferPool(16, 1024);
+        pool.release(new byte[8]);
+        pool.release(null);
+        assertEquals(0, pool.getPooledBytes());
+    }
+
+    @Test
+    public void testClearEmptiesThePool() {
+        WindowBufferPool pool = new WindowBufferPool(1024);
+        assertEquals(WindowBufferPool.DEFAULT_BUFFER_SIZE, pool.getBufferSize());
+        pool.release(pool.borrow());
+        pool.clear();
+        assertEquals(0, pool.getPooledBytes());
+        pool.borrow();
+        assertEquals(2, pool.getMissCount());
+    }
+
+    @Test
+    public void testBorrowsFromOtherThreadsStripes() throws Exception {
+        WindowBufferPool pool = new WindowBufferPool(16, 1024);
+        byte[] buffer = pool.borrow();
+        pool.release(buffer);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<byte[]> borrowed = executor.submit(pool::borrow);
+            assertSame(buffer, borrowed.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRejectsInvalidSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new WindowBufferPool(0, 1024));
+        assertThrows(IllegalArgumentException.class, () -> new WindowBufferPool(16, -1));
+    }
+}
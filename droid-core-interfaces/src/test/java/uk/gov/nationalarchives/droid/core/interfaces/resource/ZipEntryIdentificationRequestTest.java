@@ -31,6 +31,7 @@
  */
 package uk.gov.nationalarchives.droid.core.interfaces.resource;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
@@ -205,6 +206,50 @@ public class ZipEntryIdentificationRequestTest {
         assertEquals(metaData, zipResource.getRequestMetaData());
         
     }
+
+    @Test
+    public void testReadsSmallEntriesIntoPooledWindows() throws IOException {
+        WindowBufferPool pool = new WindowBufferPool(16, 1024);
+        byte[] bytes = new byte[40];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        ZipEntryIdentificationRequest request = new ZipEntryIdentificationRequest(
+                new RequestMetaData(40L, null, "small.bin"), identifier, tmpDir);
+        request.setBufferPool(pool);
+        request.open(new ByteArrayInputStream(bytes));
+
+        assertEquals(40, request.size());
+        assertInstanceOf(PooledStreamReader.class, request.getWindowReader());
+        for (int i = 0; i < bytes.length; i++) {
+            assertEquals(bytes[i], request.getByte(i));
+        }
+        assertEquals(3, pool.getMissCount());
+
+        request.close();
+        assertEquals(48, pool.getPooledBytes());
+    }
+
+    @Test
+    public void testReadsEntriesLongerThanTheyStateWithoutPooledWindows() throws IOException {
+        WindowBufferPool pool = new WindowBufferPool(64 * 1024, 16 * 1024 * 1024);
+        byte[] bytes = new byte[5 * 1024 * 1024];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i % 251);
+        }
+        ZipEntryIdentificationRequest request = new ZipEntryIdentificationRequest(
+                new RequestMetaData(10L, null, "large.bin"), identifier, tmpDir);
+        request.setBufferPool(pool);
+        request.open(new ByteArrayInputStream(bytes));
+
+        assertEquals(bytes.length, request.size());
+        assertFalse(request.getWindowReader() instanceof PooledStreamReader);
+        assertEquals(pool.getMissCount() * pool.getBufferSize(), pool.getPooledBytes());
+        for (int i : new int[] {0, 65535, 65536, 4 * 1024 * 1024 + 1, bytes.length - 1}) {
+            assertEquals(bytes[i], request.getByte(i));
+        }
+        request.close();
+    }
     
 
 }
@@ -31,13 +31,18 @@
  */
 package uk.gov.nationalarchives.droid.core;
 
+import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import uk.gov.nationalarchives.droid.core.interfaces.DroidCore;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationMethod;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
@@ -58,9 +63,12 @@ import uk.gov.nationalarchives.droid.core.signature.droid6.FFSignatureFile;
  */
 public class BinarySignatureIdentifier implements DroidCore {
 
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
     private FFSignatureFile sigFile;
     private SignatureFileParser sigFileParser = new SignatureFileParser();
     private URI signatureFile;
+    private SignatureFileSnapshot snapshot;
     
     /**
      * Default constructor.
@@ -73,8 +81,36 @@ public class BinarySignatureIdentifier implements DroidCore {
      * @throws SignatureParseException When a signature could not be parsed
      */
     public void init() throws SignatureParseException {
-        sigFile = sigFileParser.parseSigFile(Paths.get(signatureFile));
-        sigFile.prepareForUse();
+        final Path signaturePath = Paths.get(signatureFile);
+        FFSignatureFile prepared = loadSnapshot(signaturePath);
+        if (prepared == null) {
+            prepared = sigFileParser.parseSigFile(signaturePath);
+            prepared.prepareForUse();
+            saveSnapshot(signaturePath, prepared);
+        }
+        sigFile = prepared;
+    }
+
+    private FFSignatureFile loadSnapshot(final Path signaturePath) {
+        FFSignatureFile prepared = null;
+        if (snapshot != null) {
+            try {
+                prepared = snapshot.load(signaturePath);
+            } catch (IOException e) {
+                log.warn("Could not load signature file snapshot - parsing signature file instead: " + e.getMessage());
+            }
+        }
+        return prepared;
+    }
+
+    private void saveSnapshot(final Path signaturePath, final FFSignatureFile prepared) {
+        if (snapshot != null) {
+            try {
+                snapshot.save(signaturePath, prepared);
+            } catch (IOException e) {
+                log.warn("Could not save signature file snapshot: " + e.getMessage());
+            }
+        }
     }
     
     /**
@@ -86,6 +122,18 @@ public class BinarySignatureIdentifier implements DroidCore {
         this.signatureFile = Paths.get(signatureFile).toUri();
     }
 
+    /**
+     * Sets the directory in which snapshots of prepared signature files are kept.
+     * If a snapshot exists for the signature file it is loaded instead of parsing the
+     * signature file, otherwise one is written after the signature file is parsed.
+     *
+     * @param snapshotDir the snapshot directory, or null or empty to disable snapshots.
+     */
+    public void setSignatureSnapshotDir(final String snapshotDir) {
+        this.snapshot = snapshotDir == null || snapshotDir.isEmpty()
+                ? null : new SignatureFileSnapshot(Paths.get(snapshotDir));
+    }
+
 
     /**
      * {@inheritDoc}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import uk.gov.nationalarchives.droid.core.signature.droid6.FFSignatureFile;
+
+/**
+ * Reads and writes compact binary snapshots of prepared binary signature files.
+ * <p>
+ * Parsing a signature file and compiling all of its sequences takes a few seconds, which
+ * is paid every time a profile or the API starts up.  A snapshot records the signature model
+ * after it has been compiled, so it can be rebuilt directly without XML parsing or compiling
+ * any sequences.  Snapshots are named by the SHA-256 hash of the signature file they were made
+ * from, so a snapshot can never be used for a different signature file.
+ * <p>
+ * The byteseek matchers are not serializable, so each matcher is stored as the set of bytes
+ * matched at each of its positions, and rebuilt from those sets when the snapshot is read.
+ * If anything changes in how signatures are prepared, FORMAT_VERSION must be incremented,
+ * so that any existing snapshots are rebuilt.
+ */
+public final class SignatureFileSnapshot {
+
+    /** The file extension given to signature file snapshots. */
+    public static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    /** Identifies a file as a signature file snapshot. */
+    static final int MAGIC = 0x44524F53; // DROS
+
+    /** The version of the snapshot format, which must be incremented if the format or signature preparation changes. */
+    static final int FORMAT_VERSION = 1;
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 65536;
+
+    private final Path snapshotDir;
+
+    /**
+     * Constructs a SignatureFileSnapshot which reads and writes snapshots in a directory.
+     *
+     * @param snapshotDir The directory containing signature file snapshots.
+     */
+    public SignatureFileSnapshot(final Path snapshotDir) {
+        this.snapshotDir = snapshotDir;
+    }
+
+    /**
+     * @return The directory containing signature file snapshots.
+     */
+    public Path getSnapshotDir() {
+        return snapshotDir;
+    }
+
+    /**
+     * Returns the path of the snapshot for a signature file, whether it exists or not.
+     *
+     * @param signatureFile The signature file.
+     * @return The path of the snapshot for the signature file.
+     * @throws IOException If the signature file could not be read.
+     */
+    public Path getSnapshotPath(final Path signatureFile) throws IOException {
+        return snapshotDir.resolve(hash(signatureFile) + SNAPSHOT_EXTENSION);
+    }
+
+    /**
+     * Loads a prepared signature file from its snapshot, if a snapshot exists for it.
+     *
+     * @param signatureFile The signature file to load a snapshot for.
+     * @return A signature file which is prepared for use, or null if there is no snapshot for it.
+     * @throws IOException If the snapshot could not be read, or is not a valid snapshot.
+     */
+    public FFSignatureFile load(final Path signatureFile) throws IOException {
+        final String hash = hash(signatureFile);
+        final Path snapshotFile = snapshotDir.resolve(hash + SNAPSHOT_EXTENSION);
+        if (!Files.isRegularFile(snapshotFile)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return SignatureSnapshotReader.readSignatureFile(buffer, hash);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Signature file snapshot is truncated or corrupt: " + snapshotFile, e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of a signature file.  The snapshot is written to a temporary file
+     * which is then moved into place, so readers never see a partially written snapshot.
+     *
+     * @param signatureFile The signature file the prepared signature file was parsed from.
+     * @param preparedSignatures The signature file, which must have been prepared for use
+     *                           but not yet had any signatures removed from it.
+     * @return The path of the snapshot written.
+     * @throws IOException If the snapshot could not be written.
+     */
+    public Path save(final Path signatureFile, final FFSignatureFile preparedSignatures) throws IOException {
+        final String hash = hash(signatureFile);
+        final Path snapshotFile = snapshotDir.resolve(hash + SNAPSHOT_EXTENSION);
+        Files.createDirectories(snapshotDir);
+        final Path tempFile = Files.createTempFile(snapshotDir, hash, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile), BUFFER_SIZE))) {
+                SignatureSnapshotWriter.writeSignatureFile(out, preparedSignatures, hash);
+            }
+            try {
+                Files.move(tempFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        return snapshotFile;
+    }
+
+    private static String hash(final Path signatureFile) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(signatureFile), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import net.byteseek.matcher.bytes.AnyByteMatcher;
+import net.byteseek.matcher.bytes.ByteMatcher;
+import net.byteseek.matcher.bytes.ByteMatcherFactory;
+import net.byteseek.matcher.bytes.OptimalByteMatcherFactory;
+import net.byteseek.matcher.sequence.ByteMatcherSequenceMatcher;
+import net.byteseek.matcher.sequence.ByteSequenceMatcher;
+import net.byteseek.matcher.sequence.SequenceMatcher;
+
+import uk.gov.nationalarchives.droid.core.signature.FileFormat;
+import uk.gov.nationalarchives.droid.core.signature.FileFormatCollection;
+import uk.gov.nationalarchives.droid.core.signature.droid6.ByteSequence;
+import uk.gov.nationalarchives.droid.core.signature.droid6.FFSignatureFile;
+import uk.gov.nationalarchives.droid.core.signature.droid6.InternalSignature;
+import uk.gov.nationalarchives.droid.core.signature.droid6.InternalSignatureCollection;
+import uk.gov.nationalarchives.droid.core.signature.droid6.SideFragment;
+import uk.gov.nationalarchives.droid.core.signature.droid6.SubSequence;
+import uk.gov.nationalarchives.droid.core.signature.xml.SimpleElement;
+
+/**
+ * Reads a prepared signature file from the {@link SignatureFileSnapshot} format.
+ */
+final class SignatureSnapshotReader {
+
+    private static final String ID = "ID";
+    private static final String VERSION = "Version";
+
+    private SignatureSnapshotReader() {
+    }
+
+    /**
+     * Reads a signature file and prepares it for use.
+     *
+     * @param in The buffer to read from.
+     * @param hash The hash of the signature file the snapshot must have been made from.
+     * @return A signature file prepared for use.
+     * @throws IOException If the buffer does not contain a snapshot of the signature file.
+     */
+    static FFSignatureFile readSignatureFile(final ByteBuffer in, final String hash) throws IOException {
+        if (in.getInt() != SignatureFileSnapshot.MAGIC) {
+            throw new IOException("Not a signature file snapshot.");
+        }
+        final int formatVersion = in.getInt();
+        if (formatVersion != SignatureFileSnapshot.FORMAT_VERSION) {
+            throw new IOException("Unsupported signature file snapshot version: " + formatVersion);
+        }
+        final String snapshotHash = readString(in);
+        if (!hash.equals(snapshotHash)) {
+            throw new IOException("Snapshot was made from a different signature file: " + snapshotHash);
+        }
+
+        final FFSignatureFile signatureFile = new FFSignatureFile();
+        setAttribute(signatureFile, VERSION, readString(in));
+        setAttribute(signatureFile, "DateCreated", readString(in));
+
+        final FileFormatCollection formats = new FileFormatCollection();
+        final int numFormats = in.getInt();
+        for (int formatIndex = 0; formatIndex < numFormats; formatIndex++) {
+            formats.addFileFormat(readFileFormat(in));
+        }
+        signatureFile.setFileFormatCollection(formats);
+
+        final InternalSignatureCollection signatures = new InternalSignatureCollection();
+        final int numSignatures = in.getInt();
+        for (int signatureIndex = 0; signatureIndex < numSignatures; signatureIndex++) {
+            signatures.addInternalSignature(readSignature(in));
+        }
+        signatureFile.setInternalSignatureCollection(signatures);
+
+        // All the sequences are already compiled, so this just links signatures to formats,
+        // sorts them and builds the lookups which are not stored in the snapshot.
+        signatureFile.prepareForUse();
+        return signatureFile;
+    }
+
+    private static FileFormat readFileFormat(final ByteBuffer in) {
+        final FileFormat format = new FileFormat();
+        format.setAttributeValue(ID, Integer.toString(in.getInt()));
+        setAttribute(format, "Name", readString(in));
+        setAttribute(format, VERSION, readString(in));
+        setAttribute(format, "PUID", readString(in));
+        setAttribute(format, "MIMEType", readString(in));
+        final int numExtensions = in.getInt();
+        for (int extensionIndex = 0; extensionIndex < numExtensions; extensionIndex++) {
+            format.setExtension(readString(in));
+        }
+        final int numSignatures = in.getInt();
+        for (int signatureIndex = 0; signatureIndex < numSignatures; signatureIndex++) {
+            format.setInternalSignatureID(Integer.toString(in.getInt()));
+        }
+        final int numPriorities = in.getInt();
+        for (int priorityIndex = 0; priorityIndex < numPriorities; priorityIndex++) {
+            format.setHasPriorityOverFileFormatID(Integer.toString(in.getInt()));
+        }
+        return format;
+    }
+
+    private static InternalSignature readSignature(final ByteBuffer in) {
+        final InternalSignature signature = new InternalSignature();
+        signature.setAttributeValue(ID, Integer.toString(in.getInt()));
+        if (in.get() != 0) {
+            signature.setAttributeValue("Specificity", "Specific");
+        }
+        final int numSequences = in.getInt();
+        for (int sequenceIndex = 0; sequenceIndex < numSequences; sequenceIndex++) {
+            final ByteSequence sequence = new ByteSequence();
+            sequence.setReference(readString(in));
+            if (in.get() == 0) {
+                sequence.setEndianness("Little-endian");
+            }
+            sequence.setIndirectOffsetLength(Integer.toString(in.getInt()));
+            sequence.setIndirectOffsetLocation(Integer.toString(in.getInt()));
+            final int numSubSequences = in.getInt();
+            for (int subSequenceIndex = 0; subSequenceIndex < numSubSequences; subSequenceIndex++) {
+                final int minSeqOffset = in.getInt();
+                final int maxSeqOffset = in.getInt();
+                final SequenceMatcher anchor = readMatcher(in);
+                final List<List<SideFragment>> leftFragments = readFragments(in);
+                final List<List<SideFragment>> rightFragments = readFragments(in);
+                sequence.addSubSequence(new SubSequence(anchor, leftFragments, rightFragments,
+                        minSeqOffset, maxSeqOffset));
+            }
+            signature.addByteSequence(sequence);
+        }
+        return signature;
+    }
+
+    private static List<List<SideFragment>> readFragments(final ByteBuffer in) {
+        final int numPositions = in.getInt();
+        final List<List<SideFragment>> fragments = new ArrayList<>(numPositions);
+        for (int positionIndex = 0; positionIndex < numPositions; positionIndex++) {
+            final int numAlternatives = in.getInt();
+            final List<SideFragment> alternatives = new ArrayList<>(numAlternatives);
+            for (int alternativeIndex = 0; alternativeIndex < numAlternatives; alternativeIndex++) {
+                final int position = in.getInt();
+                final int minOffset = in.getInt();
+                final int maxOffset = in.getInt();
+                alternatives.add(new SideFragment(readMatcher(in), minOffset, maxOffset, position));
+            }
+            fragments.add(alternatives);
+        }
+        return fragments;
+    }
+
+    private static SequenceMatcher readMatcher(final ByteBuffer in) {
+        final int length = in.getInt();
+        final ByteMatcher[] matchers = new ByteMatcher[length];
+        boolean allSingleBytes = true;
+        for (int position = 0; position < length; position++) {
+            final ByteMatcher matcher = readByteMatcher(in);
+            allSingleBytes &= matcher.getNumberOfMatchingBytes() == 1;
+            matchers[position] = matcher;
+        }
+        if (length == 1) {
+            return matchers[0];
+        }
+        if (allSingleBytes) {
+            final byte[] bytes = new byte[length];
+            for (int position = 0; position < length; position++) {
+                bytes[position] = matchers[position].getMatchingBytes()[0];
+            }
+            return new ByteSequenceMatcher(bytes);
+        }
+        return new ByteMatcherSequenceMatcher(matchers);
+    }
+
+    private static ByteMatcher readByteMatcher(final ByteBuffer in) {
+        final int numMatchingBytes = in.getShort();
+        if (numMatchingBytes == SignatureSnapshotWriter.BYTE_VALUES) {
+            return AnyByteMatcher.ANY_BYTE_MATCHER;
+        }
+        final boolean inverted = numMatchingBytes > SignatureSnapshotWriter.HALF_BYTE_VALUES;
+        final int numBytes = inverted ? SignatureSnapshotWriter.BYTE_VALUES - numMatchingBytes : numMatchingBytes;
+        final List<Byte> bytes = new ArrayList<>(numBytes);
+        for (int byteIndex = 0; byteIndex < numBytes; byteIndex++) {
+            bytes.add(in.get());
+        }
+        return OptimalByteMatcherFactory.FACTORY.create(bytes,
+                inverted ? ByteMatcherFactory.INVERTED : ByteMatcherFactory.NOT_INVERTED);
+    }
+
+    private static String readString(final ByteBuffer in) {
+        final int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void setAttribute(final SimpleElement element, final String name, final String value) {
+        if (value != null) {
+            element.setAttributeValue(name, value);
+        }
+    }
+}
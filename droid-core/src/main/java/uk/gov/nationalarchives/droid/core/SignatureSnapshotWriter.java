@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import net.byteseek.matcher.bytes.ByteMatcher;
+import net.byteseek.matcher.sequence.SequenceMatcher;
+
+import uk.gov.nationalarchives.droid.core.signature.FileFormat;
+import uk.gov.nationalarchives.droid.core.signature.droid6.ByteSequence;
+import uk.gov.nationalarchives.droid.core.signature.droid6.FFSignatureFile;
+import uk.gov.nationalarchives.droid.core.signature.droid6.InternalSignature;
+import uk.gov.nationalarchives.droid.core.signature.droid6.SideFragment;
+import uk.gov.nationalarchives.droid.core.signature.droid6.SubSequence;
+
+/**
+ * Writes a prepared signature file in the {@link SignatureFileSnapshot} format.
+ */
+final class SignatureSnapshotWriter {
+
+    /** The number of possible byte values. */
+    static final int BYTE_VALUES = 256;
+
+    /** Positions matching more bytes than this are written as the bytes they do not match. */
+    static final int HALF_BYTE_VALUES = 128;
+
+    private static final int BYTEMASK = 0xFF;
+
+    private SignatureSnapshotWriter() {
+    }
+
+    /**
+     * Writes a prepared signature file.
+     *
+     * @param out The stream to write to.
+     * @param signatureFile The prepared signature file.
+     * @param hash The hash of the signature file it was parsed from.
+     * @throws IOException If there was a problem writing.
+     */
+    static void writeSignatureFile(final DataOutputStream out, final FFSignatureFile signatureFile,
+                                   final String hash) throws IOException {
+        out.writeInt(SignatureFileSnapshot.MAGIC);
+        out.writeInt(SignatureFileSnapshot.FORMAT_VERSION);
+        writeString(out, hash);
+        writeString(out, signatureFile.getVersion());
+        writeString(out, signatureFile.getDateCreated());
+
+        final int numFormats = signatureFile.getNumFileFormats();
+        out.writeInt(numFormats);
+        for (int formatIndex = 0; formatIndex < numFormats; formatIndex++) {
+            writeFileFormat(out, signatureFile.getFileFormat(formatIndex));
+        }
+
+        final List<InternalSignature> signatures = signatureFile.getSignatures();
+        out.writeInt(signatures.size());
+        for (InternalSignature signature : signatures) {
+            writeSignature(out, signature);
+        }
+    }
+
+    private static void writeFileFormat(final DataOutputStream out, final FileFormat format) throws IOException {
+        out.writeInt(format.getID());
+        writeString(out, format.getName());
+        writeString(out, format.getVersion());
+        writeString(out, format.getPUID());
+        writeString(out, format.getMimeType());
+        final List<String> extensions = format.getExtensions();
+        out.writeInt(extensions.size());
+        for (String extension : extensions) {
+            writeString(out, extension);
+        }
+        final int numSignatures = format.getNumInternalSignatures();
+        out.writeInt(numSignatures);
+        for (int signatureIndex = 0; signatureIndex < numSignatures; signatureIndex++) {
+            out.writeInt(format.getInternalSignatureID(signatureIndex));
+        }
+        final int numPriorities = format.getNumHasPriorityOver();
+        out.writeInt(numPriorities);
+        for (int priorityIndex = 0; priorityIndex < numPriorities; priorityIndex++) {
+            out.writeInt(format.getHasPriorityOver(priorityIndex));
+        }
+    }
+
+    // Specificity is no longer used, but is kept in the snapshot so signatures loaded from it are the same as
+    // signatures parsed from the signature file.
+    @SuppressWarnings("deprecation")
+    private static void writeSignature(final DataOutputStream out, final InternalSignature signature)
+        throws IOException {
+        out.writeInt(signature.getID());
+        out.writeBoolean(signature.isSpecific());
+        final List<ByteSequence> sequences = signature.getByteSequences();
+        out.writeInt(sequences.size());
+        for (ByteSequence sequence : sequences) {
+            writeString(out, sequence.getReference());
+            out.writeBoolean(sequence.isBigEndian());
+            out.writeInt(sequence.getIndirectOffsetLength());
+            out.writeInt(sequence.getIndirectOffsetLocation());
+            final List<SubSequence> subSequences = sequence.getSubSequences();
+            out.writeInt(subSequences.size());
+            for (SubSequence subSequence : subSequences) {
+                out.writeInt(subSequence.getMinSeqOffset());
+                out.writeInt(subSequence.getMaxSeqOffset());
+                writeMatcher(out, subSequence.getAnchorMatcher());
+                writeFragments(out, subSequence.getLeftFragments());
+                writeFragments(out, subSequence.getRightFragments());
+            }
+        }
+    }
+
+    private static void writeFragments(final DataOutputStream out, final List<List<SideFragment>> fragments)
+        throws IOException {
+        out.writeInt(fragments.size());
+        for (List<SideFragment> alternatives : fragments) {
+            out.writeInt(alternatives.size());
+            for (SideFragment fragment : alternatives) {
+                out.writeInt(fragment.getPosition());
+                out.writeInt(fragment.getMinOffset());
+                out.writeInt(fragment.getMaxOffset());
+                writeMatcher(out, fragment.getMatcher());
+            }
+        }
+    }
+
+    /*
+     * Each position is written as the number of bytes it matches, followed by either the bytes
+     * it matches, or the bytes it does not match if that is shorter.  A position matching
+     * any byte has no bytes written after its count.
+     */
+    private static void writeMatcher(final DataOutputStream out, final SequenceMatcher matcher) throws IOException {
+        final int length = matcher.length();
+        out.writeInt(length);
+        for (int position = 0; position < length; position++) {
+            final ByteMatcher byteMatcher = matcher.getMatcherForPosition(position);
+            final byte[] matchingBytes = byteMatcher.getMatchingBytes();
+            out.writeShort(matchingBytes.length);
+            if (matchingBytes.length <= HALF_BYTE_VALUES) {
+                out.write(matchingBytes);
+            } else {
+                final boolean[] matches = new boolean[BYTE_VALUES];
+                for (byte value : matchingBytes) {
+                    matches[value & BYTEMASK] = true;
+                }
+                for (int value = 0; value < BYTE_VALUES; value++) {
+                    if (!matches[value]) {
+                        out.writeByte(value);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            final byte[] bytes = value.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+}
@@ -224,6 +224,14 @@ public class ByteSequence extends uk.gov.nationalarchives.droid.core.signature.x
         return anchoredToEOF;
     }
 
+    /**
+     *
+     * @return Whether the offset of the byte sequence is read from the file itself.
+     */
+    public final boolean hasIndirectOffset() {
+        return hasIndirectOffset;
+    }
+
     /**
      * 
      * @return The sort order of this byte sequence.
@@ -240,6 +248,30 @@ public class ByteSequence extends uk.gov.nationalarchives.droid.core.signature.x
         return reference;
     }
 
+    /**
+     *
+     * @return Whether an indirect offset is read as big-endian.
+     */
+    public final boolean isBigEndian() {
+        return bigEndian;
+    }
+
+    /**
+     *
+     * @return The length of the indirect offset.
+     */
+    public final int getIndirectOffsetLength() {
+        return indirectOffsetLength;
+    }
+
+    /**
+     *
+     * @return The location of the indirect offset.
+     */
+    public final int getIndirectOffsetLocation() {
+        return indirectOffsetLocation;
+    }
+
     /**
      * 
      * @param sseq The subsequence to add to the byte sequence.
@@ -562,6 +594,51 @@ public class ByteSequence extends uk.gov.nationalarchives.droid.core.signature.x
         return matchResult;
     }
 
+    /**
+     * Returns how many bytes from the start of a file could be read when matching this byte sequence.
+     * <p>Only the first subsequence of a sequence anchored to the beginning of a file is searched
+     * for at a bounded offset.  Other subsequences are searched for up to maxBytesToScan,
+     * with any right fragments extending beyond it, and a sequence anchored to the end of a file or
+     * with an indirect offset may need the whole file.</p>
+     *
+     * @param maxBytesToScan the maximum number of bytes to scan from the start of a file,
+     * or zero or a negative number meaning a full file scan is possible.
+     * @return the number of bytes from the start of a file needed to match this sequence,
+     * or -1 if the whole file may be needed.
+     */
+    public final long getBytesNeededFromBOF(final long maxBytesToScan) {
+        if (anchoredToEOF || hasIndirectOffset || isInvalidByteSequence) {
+            return -1;
+        }
+        long bytesNeeded = 0;
+        final int numSequences = subSequences.size();
+        for (int subSequenceIndex = 0; subSequenceIndex < numSequences; subSequenceIndex++) {
+            final SubSequence subseq = subSequences.get(subSequenceIndex);
+            final long rightFragmentsLength = getMaxFragmentsLength(subseq.getRightFragments());
+            if (anchoredToBOF && subSequenceIndex == 0) {
+                bytesNeeded = subseq.getMaxSeqOffset() + getMaxFragmentsLength(subseq.getLeftFragments())
+                        + subseq.getNumBytes() + rightFragmentsLength;
+            } else if (maxBytesToScan > 0) {
+                bytesNeeded = Math.max(bytesNeeded, maxBytesToScan + 1 + rightFragmentsLength);
+            } else {
+                return -1;
+            }
+        }
+        return bytesNeeded;
+    }
+
+    private static long getMaxFragmentsLength(final List<List<SideFragment>> fragments) {
+        long length = 0;
+        for (final List<SideFragment> alternatives : fragments) {
+            long longest = 0;
+            for (final SideFragment fragment : alternatives) {
+                longest = Math.max(longest, (long) fragment.getMaxOffset() + fragment.getNumBytes());
+            }
+            length += longest;
+        }
+        return length;
+    }
+
     /**
      * 
      * @param prettyPrint whether to pretty print the regular expression.
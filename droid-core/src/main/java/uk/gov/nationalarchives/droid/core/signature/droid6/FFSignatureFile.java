@@ -327,6 +327,7 @@ public class FFSignatureFile extends SimpleElement {
         this.setAllSignatureFileFormats();
         this.intSigs.prepareForUse();
         intSigs.sortSignatures(new InternalSignatureComparator());
+        intSigs.buildSignatureIndex();
         buildFileExtensions();
     }
     
@@ -368,13 +369,9 @@ public class FFSignatureFile extends SimpleElement {
                 iFileSig < numFormatInternalSignatures;
                 iFileSig++) {  //loop through internal signatures for each file format
                 final int iFileSigID = this.getFileFormat(iFormat).getInternalSignatureID(iFileSig);
-                //loop through all internal signatures to find one with a matching ID
-                final int numTotalInternalSignatures = this.getNumInternalSignatures(); 
-                for (int iIntSig = 0; iIntSig < numTotalInternalSignatures; iIntSig++) {
-                    if (this.getInternalSignature(iIntSig).getID() == iFileSigID) {
-                        this.getInternalSignature(iIntSig).addFileFormat(this.getFileFormat(iFormat));
-                        break;
-                    }
+                final InternalSignature signature = intSigs.getInternalSignature(iFileSigID);
+                if (signature != null) {
+                    signature.addFileFormat(this.getFileFormat(iFormat));
                 }
             }
         }
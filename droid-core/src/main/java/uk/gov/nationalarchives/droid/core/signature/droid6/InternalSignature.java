@@ -350,6 +350,26 @@ public class InternalSignature extends SimpleElement {
         }
     }
 
+    /**
+     * Returns how many bytes from the start of a file could be read when matching this signature.
+     *
+     * @param maxBytesToScan the maximum number of bytes to scan from the start of a file,
+     * or zero or a negative number meaning a full file scan is possible.
+     * @return the number of bytes from the start of a file needed to match this signature,
+     * or -1 if the whole file may be needed.
+     */
+    public final long getBytesNeededFromBOF(final long maxBytesToScan) {
+        long bytesNeeded = 0;
+        for (final ByteSequence sequence : byteSequences) {
+            final long sequenceBytesNeeded = sequence.getBytesNeededFromBOF(maxBytesToScan);
+            if (sequenceBytesNeeded < 0) {
+                return -1;
+            }
+            bytesNeeded = Math.max(bytesNeeded, sequenceBytesNeeded);
+        }
+        return bytesNeeded;
+    }
+
     /* getters */
     
     /**
@@ -53,6 +53,7 @@
  */
 package uk.gov.nationalarchives.droid.core.signature.droid6;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -81,10 +82,15 @@ public class InternalSignatureCollection extends SimpleElement {
     
     private List<InternalSignature> intSigs = new ArrayList<>(DEFAULT_COLLECTION_SIZE);
     private Map<Integer, InternalSignature> sigsByID = new HashMap<>();
+    private volatile SignatureIndex signatureIndex;
+    private volatile boolean signatureIndexStale;
 
     /**
      * Runs all the signatures against the target file,
      * adding a hit for each of them, if any of them match.
+     *
+     * <p>If a signature index has been built, only the signatures which the index
+     * says could match the file are run.</p>
      * 
      * @param targetFile The file to match the signatures against.
      * @param maxBytesToScan The maximum bytes to scan.
@@ -94,15 +100,20 @@ public class InternalSignatureCollection extends SimpleElement {
         //BNO: intSigs here represents all the available binary signatures..
         List<InternalSignature> matchingSigs = new ArrayList<InternalSignature>();
         if (targetFile.getNumBytes() > 0) {
+            final boolean debug = targetFile.getRequest().isDebug();
+            final boolean[] candidates = debug ? null : getCandidateSignatures(targetFile);
             final int stop = intSigs.size();
             for (int sigIndex = 0; sigIndex < stop; sigIndex++) {
+                if (candidates != null && !candidates[sigIndex]) {
+                    continue;
+                }
                 final InternalSignature internalSig = intSigs.get(sigIndex);
                 boolean matches = internalSig.matches(targetFile, maxBytesToScan);
                 if (matches) {
                     matchingSigs.add(internalSig);
                 }
 
-                if (targetFile.getRequest().isDebug()) {
+                if (debug) {
                     outputDebugInformation((DebugFileSystemIdentificationRequest) targetFile.getRequest(), sigIndex, internalSig, matches);
                 }
             }
@@ -110,6 +121,36 @@ public class InternalSignatureCollection extends SimpleElement {
         return matchingSigs;
     }
 
+    /*
+     * Returns which signatures could match the target file according to the signature index,
+     * or null if there is no index, or it could not be used.
+     */
+    private boolean[] getCandidateSignatures(ByteReader targetFile) {
+        final SignatureIndex index = getSignatureIndex();
+        if (index != null && index.getNumSignatures() == intSigs.size()) {
+            try {
+                return index.getCandidates(targetFile.getWindowReader(), targetFile.getNumBytes());
+            } catch (IOException e) {
+                getLog().debug("Could not use the signature index, running all signatures: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Returns the signature index, rebuilding it first if signatures were removed or re-sorted since it was built.
+     */
+    private SignatureIndex getSignatureIndex() {
+        if (signatureIndexStale) {
+            synchronized (this) {
+                if (signatureIndexStale) {
+                    buildSignatureIndex();
+                }
+            }
+        }
+        return signatureIndex;
+    }
+
     private void outputDebugInformation(DebugFileSystemIdentificationRequest request, int sigIndex, InternalSignature internalSig, boolean matches) {
         if (sigIndex == 0) {
             System.out.println("SignatureID,BytesReadFromFile,BytesReadFromCache,Matched");
@@ -124,6 +165,27 @@ public class InternalSignatureCollection extends SimpleElement {
     }
 
 
+    /**
+     * Returns how many bytes from the start of a file could be read when matching the signatures.
+     *
+     * @param maxBytesToScan the maximum number of bytes to scan from the start of a file,
+     * or zero or a negative number meaning a full file scan is possible.
+     * @return the number of bytes from the start of a file needed to match any of the signatures,
+     * or -1 if the whole file may be needed.
+     */
+    public long getBytesNeededFromBOF(long maxBytesToScan) {
+        // Signatures are only matched against files with at least one byte.
+        long bytesNeeded = 1;
+        for (final InternalSignature signature : intSigs) {
+            final long signatureBytesNeeded = signature.getBytesNeededFromBOF(maxBytesToScan);
+            if (signatureBytesNeeded < 0) {
+                return -1;
+            }
+            bytesNeeded = Math.max(bytesNeeded, signatureBytesNeeded);
+        }
+        return bytesNeeded;
+    }
+
     /**
      * Prepares the internal signatures in the collection for use.
      */
@@ -153,6 +215,8 @@ public class InternalSignatureCollection extends SimpleElement {
     public final void addInternalSignature(final InternalSignature iSig) {
         intSigs.add(iSig);
         sigsByID.put(iSig.getID(), iSig);
+        signatureIndex = null;
+        signatureIndexStale = false;
     }
     
     
@@ -163,6 +227,7 @@ public class InternalSignatureCollection extends SimpleElement {
     public final void removeInternalSignature(final InternalSignature iSig) {
         intSigs.remove(iSig);
         sigsByID.remove(iSig.getID());
+        markSignatureIndexStale();
     }
     
     
@@ -203,6 +268,32 @@ public class InternalSignatureCollection extends SimpleElement {
      */
     public void sortSignatures(final Comparator<InternalSignature> compareWith) {
         Collections.sort(intSigs, compareWith);
+        markSignatureIndexStale();
+    }
+
+    /*
+     * An index which has already been built is rebuilt the next time it is used, so removing
+     * many signatures only rebuilds it once.
+     */
+    private void markSignatureIndexStale() {
+        if (signatureIndex != null) {
+            signatureIndexStale = true;
+        }
+    }
+
+    /**
+     * Builds an index over the fixed bytes of BOF and EOF anchored sequences, so each file only
+     * has to be fully matched against signatures which could possibly match it.
+     * Must be called after the signatures are prepared for use and sorted.  The index is
+     * rebuilt when next used if signatures are subsequently removed or re-sorted, and is
+     * discarded if signatures are added.
+     */
+    public synchronized void buildSignatureIndex() {
+        final SignatureIndex index = new SignatureIndex(intSigs);
+        getLog().debug(String.format("Built signature index: %d of %d signatures can be excluded without full matching.",
+                index.getNumIndexedSignatures(), index.getNumSignatures()));
+        signatureIndex = index;
+        signatureIndexStale = false;
     }
 
 }
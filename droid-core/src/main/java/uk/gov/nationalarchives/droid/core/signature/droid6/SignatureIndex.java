@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.signature.droid6;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.byteseek.io.reader.WindowReader;
+import net.byteseek.matcher.bytes.ByteMatcher;
+import net.byteseek.matcher.sequence.SequenceMatcher;
+
+/**
+ * A precompiled index over the fixed bytes of BOF and EOF anchored byte sequences,
+ * used to cut down the number of signatures which need to be fully matched against a file.
+ *
+ * <p>For each signature, the index looks for a BOF anchored byte sequence whose first
+ * subsequence has no left fragments and a fixed offset.  The anchor of such a subsequence
+ * must match at exactly that offset for the signature to match at all, so the single bytes
+ * at the start of the anchor are added to a trie for that offset.  EOF anchored sequences
+ * are handled in the same way in reverse: the last subsequence must have no right fragments
+ * and a fixed offset, and the single bytes at the end of its anchor are added backwards to
+ * a trie for that offset from the end of the file.</p>
+ *
+ * <p>Matching a file walks each trie once, reading the bytes at its offset, and records
+ * every signature whose key was found.  A signature is a candidate if all of its keys
+ * were found; signatures with no keys are always candidates.  Only candidate signatures
+ * then need to run the full fragment matching.  The index is immutable once built, so it
+ * can be used by several identification threads at once.</p>
+ */
+public final class SignatureIndex {
+
+    private static final int BYTEMASK = 0xFF;
+
+    private final int numSignatures;
+    private final int[] keysPerSignature;
+    private final int numIndexedSignatures;
+    private final long[] bofOffsets;
+    private final TrieNode[] bofTries;
+    private final long[] eofOffsets;
+    private final TrieNode[] eofTries;
+
+    /**
+     * Builds an index over a list of prepared and sorted internal signatures.
+     * The candidate array returned by {@link #getCandidates(WindowReader, long)} is indexed
+     * in the same order as the list passed in here.
+     *
+     * @param signatures The signatures to index.
+     */
+    public SignatureIndex(final List<InternalSignature> signatures) {
+        this.numSignatures = signatures.size();
+        this.keysPerSignature = new int[numSignatures];
+        final Map<Long, TrieNode> bofTriesByOffset = new TreeMap<>();
+        final Map<Long, TrieNode> eofTriesByOffset = new TreeMap<>();
+        int indexed = 0;
+        for (int sigIndex = 0; sigIndex < numSignatures; sigIndex++) {
+            final InternalSignature signature = signatures.get(sigIndex);
+            final Key bofKey = getKey(signature, false);
+            if (bofKey != null) {
+                bofTriesByOffset.computeIfAbsent(bofKey.offset, k -> new TrieNode()).add(bofKey.bytes, 0, sigIndex);
+                keysPerSignature[sigIndex]++;
+            }
+            final Key eofKey = getKey(signature, true);
+            if (eofKey != null) {
+                eofTriesByOffset.computeIfAbsent(eofKey.offset, k -> new TrieNode()).add(eofKey.bytes, 0, sigIndex);
+                keysPerSignature[sigIndex]++;
+            }
+            if (keysPerSignature[sigIndex] > 0) {
+                indexed++;
+            }
+        }
+        this.numIndexedSignatures = indexed;
+        this.bofOffsets = getOffsets(bofTriesByOffset);
+        this.bofTries = bofTriesByOffset.values().toArray(new TrieNode[0]);
+        this.eofOffsets = getOffsets(eofTriesByOffset);
+        this.eofTries = eofTriesByOffset.values().toArray(new TrieNode[0]);
+    }
+
+    /**
+     * @return The number of signatures in the index.
+     */
+    public int getNumSignatures() {
+        return numSignatures;
+    }
+
+    /**
+     * @return The number of signatures which can be excluded by the index without full matching.
+     */
+    public int getNumIndexedSignatures() {
+        return numIndexedSignatures;
+    }
+
+    /**
+     * Reads the fixed BOF positions of the file forwards, and the fixed EOF positions backwards,
+     * once each, and returns which signatures could still match it.
+     *
+     * @param reader The reader for the file to match.
+     * @param length The length of the file.
+     * @return An array with an entry for each signature, which is true if the signature must be fully matched.
+     * @throws IOException If there was a problem reading the file.
+     */
+    public boolean[] getCandidates(final WindowReader reader, final long length) throws IOException {
+        final int[] keysFound = new int[numSignatures];
+        walkTries(reader, bofOffsets, bofTries, 1, keysFound);
+        final long lastPosition = length - 1;
+        final long[] eofPositions = new long[eofOffsets.length];
+        for (int trieIndex = 0; trieIndex < eofPositions.length; trieIndex++) {
+            eofPositions[trieIndex] = lastPosition - eofOffsets[trieIndex];
+        }
+        walkTries(reader, eofPositions, eofTries, -1, keysFound);
+        final boolean[] candidates = new boolean[numSignatures];
+        for (int sigIndex = 0; sigIndex < numSignatures; sigIndex++) {
+            candidates[sigIndex] = keysFound[sigIndex] == keysPerSignature[sigIndex];
+        }
+        return candidates;
+    }
+
+    /*
+     * Walks each trie from its position in the file, in the direction given,
+     * counting a key found for each signature on the nodes visited.
+     */
+    private static void walkTries(final WindowReader reader, final long[] positions, final TrieNode[] tries,
+                                  final int direction, final int[] keysFound) throws IOException {
+        final int numTries = tries.length;
+        for (int trieIndex = 0; trieIndex < numTries; trieIndex++) {
+            long position = positions[trieIndex];
+            TrieNode node = tries[trieIndex];
+            while (node != null) {
+                node.countSignatures(keysFound);
+                if (!node.hasChildren() || position < 0) {
+                    break;
+                }
+                final int byteValue = reader.readByte(position);
+                position += direction;
+                node = byteValue < 0 ? null : node.getChild((byte) byteValue);
+            }
+        }
+    }
+
+    private static long[] getOffsets(final Map<Long, TrieNode> triesByOffset) {
+        final long[] offsets = new long[triesByOffset.size()];
+        int trieIndex = 0;
+        for (Long offset : triesByOffset.keySet()) {
+            offsets[trieIndex++] = offset;
+        }
+        return offsets;
+    }
+
+    /*
+     * Returns the key with the most fixed bytes from the BOF or EOF sequences in the signature,
+     * or null if the signature has no sequence anchored to that end which can be indexed.
+     */
+    private static Key getKey(final InternalSignature signature, final boolean anchoredToEOF) {
+        Key bestKey = null;
+        for (ByteSequence sequence : signature.getByteSequences()) {
+            final boolean anchored = anchoredToEOF ? sequence.isAnchoredToEOF() : sequence.isAnchoredToBOF();
+            final int numSubSequences = sequence.getNumberOfSubSequences();
+            if (anchored && !sequence.hasIndirectOffset() && numSubSequences > 0) {
+                final List<SubSequence> subSequences = sequence.getSubSequences();
+                final Key key = anchoredToEOF ? getEofKey(subSequences.get(numSubSequences - 1))
+                                              : getBofKey(subSequences.get(0));
+                if (key != null && (bestKey == null || key.bytes.length > bestKey.bytes.length)) {
+                    bestKey = key;
+                }
+            }
+        }
+        return bestKey;
+    }
+
+    private static Key getBofKey(final SubSequence subSequence) {
+        final SequenceMatcher anchor = subSequence.getAnchorMatcher();
+        if (anchor == null || subSequence.getNumFragmentPositions(true) > 0
+                || subSequence.getMinSeqOffset() != subSequence.getMaxSeqOffset()) {
+            return null;
+        }
+        final int anchorLength = anchor.length();
+        int keyLength = 0;
+        while (keyLength < anchorLength && isSingleByte(anchor, keyLength)) {
+            keyLength++;
+        }
+        if (keyLength == 0) {
+            return null;
+        }
+        final byte[] keyBytes = new byte[keyLength];
+        for (int position = 0; position < keyLength; position++) {
+            keyBytes[position] = anchor.getMatcherForPosition(position).getMatchingBytes()[0];
+        }
+        return new Key(subSequence.getMinSeqOffset(), keyBytes);
+    }
+
+    // The bytes of an EOF key are held in reverse order, starting from the end of the anchor.
+    private static Key getEofKey(final SubSequence subSequence) {
+        final SequenceMatcher anchor = subSequence.getAnchorMatcher();
+        if (anchor == null || subSequence.getNumFragmentPositions(false) > 0
+                || subSequence.getMinSeqOffset() != subSequence.getMaxSeqOffset()) {
+            return null;
+        }
+        final int lastPosition = anchor.length() - 1;
+        int keyLength = 0;
+        while (keyLength <= lastPosition && isSingleByte(anchor, lastPosition - keyLength)) {
+            keyLength++;
+        }
+        if (keyLength == 0) {
+            return null;
+        }
+        final byte[] keyBytes = new byte[keyLength];
+        for (int position = 0; position < keyLength; position++) {
+            keyBytes[position] = anchor.getMatcherForPosition(lastPosition - position).getMatchingBytes()[0];
+        }
+        return new Key(subSequence.getMinSeqOffset(), keyBytes);
+    }
+
+    private static boolean isSingleByte(final SequenceMatcher anchor, final int position) {
+        final ByteMatcher matcher = anchor.getMatcherForPosition(position);
+        return matcher.getNumberOfMatchingBytes() == 1;
+    }
+
+    /**
+     * The offset from the start or end of the file, and the bytes which must appear there.
+     */
+    private static final class Key {
+        private final long offset;
+        private final byte[] bytes;
+
+        Key(final long offset, final byte[] bytes) {
+            this.offset = offset;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * A node in a byte trie, holding the indexes of the signatures whose keys end at it.
+     * Children are held in parallel arrays sorted by byte value, as most nodes only have one or two.
+     */
+    private static final class TrieNode {
+        private static final TrieNode[] NO_CHILDREN = new TrieNode[0];
+        private static final int[] NO_SIGNATURES = new int[0];
+
+        private byte[] childBytes = new byte[0];
+        private TrieNode[] children = NO_CHILDREN;
+        private int[] signatureIndexes = NO_SIGNATURES;
+
+        void add(final byte[] key, final int position, final int signatureIndex) {
+            if (position == key.length) {
+                signatureIndexes = Arrays.copyOf(signatureIndexes, signatureIndexes.length + 1);
+                signatureIndexes[signatureIndexes.length - 1] = signatureIndex;
+            } else {
+                TrieNode child = getChild(key[position]);
+                if (child == null) {
+                    child = addChild(key[position]);
+                }
+                child.add(key, position + 1, signatureIndex);
+            }
+        }
+
+        boolean hasChildren() {
+            return children.length > 0;
+        }
+
+        TrieNode getChild(final byte value) {
+            final int childIndex = findChild(value);
+            return childIndex >= 0 ? children[childIndex] : null;
+        }
+
+        void countSignatures(final int[] keysFound) {
+            for (int signatureIndex : signatureIndexes) {
+                keysFound[signatureIndex]++;
+            }
+        }
+
+        private TrieNode addChild(final byte value) {
+            final int insertPos = -(findChild(value) + 1);
+            final int numChildren = children.length;
+            final byte[] newBytes = new byte[numChildren + 1];
+            final TrieNode[] newChildren = new TrieNode[numChildren + 1];
+            System.arraycopy(childBytes, 0, newBytes, 0, insertPos);
+            System.arraycopy(children, 0, newChildren, 0, insertPos);
+            System.arraycopy(childBytes, insertPos, newBytes, insertPos + 1, numChildren - insertPos);
+            System.arraycopy(children, insertPos, newChildren, insertPos + 1, numChildren - insertPos);
+            final TrieNode child = new TrieNode();
+            newBytes[insertPos] = value;
+            newChildren[insertPos] = child;
+            childBytes = newBytes;
+            children = newChildren;
+            return child;
+        }
+
+        // Binary search on the unsigned values of the child bytes.
+        private int findChild(final byte value) {
+            final int target = value & BYTEMASK;
+            int low = 0;
+            int high = childBytes.length - 1;
+            while (low <= high) {
+                final int middle = (low + high) >>> 1;
+                final int middleValue = childBytes[middle] & BYTEMASK;
+                if (middleValue < target) {
+                    low = middle + 1;
+                } else if (middleValue > target) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResult;
+import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+import uk.gov.nationalarchives.droid.core.signature.FileFormat;
+import uk.gov.nationalarchives.droid.core.signature.droid6.FFSignatureFile;
+import uk.gov.nationalarchives.droid.core.signature.droid6.InternalSignature;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SignatureFileSnapshotTest {
+
+    private static final Path SIGFILE = Paths.get("test_sig_files/DROID_SignatureFile_V122.xml");
+    private static final Path OTHER_SIGFILE = Paths.get("test_sig_files/DROID_SignatureFile_V114.xml");
+    private static final Path TEST_FILES_DIR = Paths.get("test-skeletons/fmt");
+
+    private static FFSignatureFile parsed;
+
+    @TempDir
+    Path snapshotDir;
+
+    @BeforeAll
+    public static void parseSignatureFile() throws Exception {
+        parsed = new SignatureFileParser().parseSigFile(SIGFILE);
+        parsed.prepareForUse();
+    }
+
+    @Test
+    public void testLoadReturnsNullWhenNoSnapshotExists() throws IOException {
+        assertNull(new SignatureFileSnapshot(snapshotDir).load(SIGFILE));
+    }
+
+    @Test
+    public void testSnapshotIsNamedByHashOfSignatureFile() throws IOException {
+        SignatureFileSnapshot snapshot = new SignatureFileSnapshot(snapshotDir);
+        Path written = snapshot.save(SIGFILE, parsed);
+        assertEquals(snapshot.getSnapshotPath(SIGFILE), written);
+        assertTrue(Files.isRegularFile(written));
+        assertNull(snapshot.load(OTHER_SIGFILE));
+    }
+
+    @Test
+    public void testLoadedSnapshotHasSameFormatsAndSignatures() throws IOException {
+        SignatureFileSnapshot snapshot = new SignatureFileSnapshot(snapshotDir);
+        snapshot.save(SIGFILE, parsed);
+        FFSignatureFile loaded = snapshot.load(SIGFILE);
+
+        assertNotNull(loaded);
+        assertEquals(parsed.getVersion(), loaded.getVersion());
+        assertEquals(parsed.getDateCreated(), loaded.getDateCreated());
+        assertEquals(parsed.getNumFileFormats(), loaded.getNumFileFormats());
+        for (int i = 0; i < parsed.getNumFileFormats(); i++) {
+            FileFormat expected = parsed.getFileFormat(i);
+            FileFormat actual = loaded.getFileFormat(i);
+            assertEquals(expected.getID(), actual.getID());
+            assertEquals(expected.getPUID(), actual.getPUID());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getVersion(), actual.getVersion());
+            assertEquals(expected.getMimeType(), actual.getMimeType());
+            assertEquals(expected.getExtensions(), actual.getExtensions());
+            assertEquals(expected.getFormatIdsHasPriorityOver(), actual.getFormatIdsHasPriorityOver());
+        }
+        assertEquals(signatureIds(parsed), signatureIds(loaded));
+    }
+
+    @Test
+    public void testLoadedSnapshotIdentifiesFilesTheSameAsTheSignatureFile() throws Exception {
+        BinarySignatureIdentifier fromXml = new BinarySignatureIdentifier();
+        fromXml.setSignatureFile(SIGFILE.toString());
+        fromXml.init();
+
+        new SignatureFileSnapshot(snapshotDir).save(SIGFILE, fromXml.getSigFile());
+        BinarySignatureIdentifier fromSnapshot = new BinarySignatureIdentifier();
+        fromSnapshot.setSignatureFile(SIGFILE.toString());
+        fromSnapshot.setSignatureSnapshotDir(snapshotDir.toString());
+        fromSnapshot.init();
+
+        List<Path> files;
+        try (Stream<Path> list = Files.list(TEST_FILES_DIR)) {
+            files = list.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        assertTrue(files.size() > 0);
+        for (Path file : files) {
+            assertEquals(identify(fromXml, file), identify(fromSnapshot, file), file.toString());
+        }
+    }
+
+    @Test
+    public void testIdentifierWritesSnapshotOnFirstLoad() throws Exception {
+        BinarySignatureIdentifier identifier = new BinarySignatureIdentifier();
+        identifier.setSignatureFile(SIGFILE.toString());
+        identifier.setSignatureSnapshotDir(snapshotDir.toString());
+        identifier.init();
+
+        assertTrue(Files.isRegularFile(new SignatureFileSnapshot(snapshotDir).getSnapshotPath(SIGFILE)));
+        assertEquals(signatureIds(parsed), signatureIds(identifier.getSigFile()));
+    }
+
+    @Test
+    public void testCorruptSnapshotIsRejected() throws Exception {
+        SignatureFileSnapshot snapshot = new SignatureFileSnapshot(snapshotDir);
+        Path written = snapshot.save(SIGFILE, parsed);
+        byte[] bytes = Files.readAllBytes(written);
+        Files.write(written, Arrays.copyOf(bytes, bytes.length / 2));
+
+        assertThrows(IOException.class, () -> snapshot.load(SIGFILE));
+
+        // The identifier falls back to parsing the signature file:
+        BinarySignatureIdentifier identifier = new BinarySignatureIdentifier();
+        identifier.setSignatureFile(SIGFILE.toString());
+        identifier.setSignatureSnapshotDir(snapshotDir.toString());
+        identifier.init();
+        assertEquals(signatureIds(parsed), signatureIds(identifier.getSigFile()));
+    }
+
+    private static List<Integer> signatureIds(FFSignatureFile signatureFile) {
+        List<Integer> ids = new ArrayList<>();
+        for (InternalSignature signature : signatureFile.getSignatures()) {
+            ids.add(signature.getID());
+        }
+        return ids;
+    }
+
+    private static List<String> identify(BinarySignatureIdentifier identifier, Path file) throws IOException {
+        RequestMetaData metaData = new RequestMetaData(Files.size(file),
+                Files.getLastModifiedTime(file).toMillis(), file.getFileName().toString());
+        RequestIdentifier requestIdentifier = new RequestIdentifier(file.toUri());
+        try (FileSystemIdentificationRequest request = new FileSystemIdentificationRequest(metaData, requestIdentifier)) {
+            request.open(file);
+            List<String> puids = new ArrayList<>();
+            for (IdentificationResult result : identifier.matchBinarySignatures(request).getResults()) {
+                puids.add(result.getPuid());
+            }
+            return puids;
+        }
+    }
+}
@@ -36,16 +36,20 @@ import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import uk.gov.nationalarchives.droid.core.interfaces.BlockingThreadPoolExecutorFactory;
+import uk.gov.nationalarchives.droid.core.interfaces.ExecutorStrategy;
 
 import static org.junit.Assert.*;
 
@@ -169,6 +173,96 @@ public class ThreadPoolExecutorTest {
         }
     }
 
+    @Test
+    public void testWorkStealingStrategyCreatesForkJoinPool() throws Exception {
+        factory.setStrategy(ExecutorStrategy.WORK_STEALING);
+        factory.setThreads(3);
+
+        ExecutorService executor = factory.newExecutorService();
+        try {
+            assertTrue(executor instanceof ForkJoinPool);
+            assertEquals(3, ((ForkJoinPool) executor).getParallelism());
+            assertEquals("done", executor.submit(() -> "done").get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testVirtualThreadStrategyRunsTasksOnVirtualThreads() throws Exception {
+        factory.setStrategy(ExecutorStrategy.VIRTUAL_THREADS);
+
+        ExecutorService executor = factory.newExecutorService();
+        try {
+            assertTrue(executor.submit(() -> Thread.currentThread().isVirtual()).get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testVirtualThreadStrategyBlocksSubmitterAtTheLimit() throws Exception {
+        factory.setStrategy(ExecutorStrategy.VIRTUAL_THREADS);
+        factory.setThreads(2);
+        startLatch = new CountDownLatch(2);
+
+        final ExecutorService executor = factory.newExecutorService();
+        final AtomicBoolean submitted = new AtomicBoolean();
+        Thread t = new Thread(() -> {
+            executor.submit(new TestTask());
+            executor.submit(new TestTask());
+            executor.submit(new TestTask());
+            submitted.set(true);
+        });
+        t.start();
+
+        startLatch.await();
+        t.join(200);
+        // Two tasks running: the third submission waits for one of them to finish.
+        assertFalse(submitted.get());
+
+        stopLatch.countDown();
+        t.join(5000);
+        assertTrue(submitted.get());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBoundedQueueStrategyBlocksSubmitterWhenQueueIsFull() throws Exception {
+        factory.setStrategy(ExecutorStrategy.BOUNDED_QUEUE);
+        factory.setThreads(1);
+        factory.setWorkQueueSize(1);
+        startLatch = new CountDownLatch(1);
+
+        final ExecutorService executor = factory.newExecutorService();
+        final AtomicBoolean submitted = new AtomicBoolean();
+        Thread t = new Thread(() -> {
+            executor.submit(new TestTask());
+            executor.submit(new TestTask());
+            executor.submit(new TestTask());
+            submitted.set(true);
+        });
+        t.start();
+
+        startLatch.await();
+        t.join(200);
+        // One task running and one queued: the third submission waits for space.
+        assertFalse(submitted.get());
+
+        stopLatch.countDown();
+        t.join(5000);
+        assertTrue(submitted.get());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testStrategyNamesAreCaseAndHyphenInsensitive() {
+        assertEquals(ExecutorStrategy.WORK_STEALING, ExecutorStrategy.fromName(" work-stealing "));
+        assertEquals(ExecutorStrategy.CALLER_RUNS, ExecutorStrategy.fromName("CALLER_RUNS"));
+    }
+
     private final class TestTask implements Callable<Object> {
         
         @Override
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.signature.droid6;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import net.byteseek.io.reader.ByteArrayReader;
+import uk.gov.nationalarchives.droid.core.IdentificationRequestByteReaderAdapter;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
+import uk.gov.nationalarchives.droid.core.signature.ByteReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class InternalSignatureTest {
+
+    @Test
+    public void testBofSignaturesOnlyNeedTheBytesTheyCanMatch() {
+        assertEquals(4, signature("BOFoffset", "'PK' 03 04").getBytesNeededFromBOF(-1));
+        assertEquals(8, signature("BOFoffset", "{4} 'ftyp'").getBytesNeededFromBOF(-1));
+        assertEquals(8, signature("BOFoffset", "{4} 'ftyp'").getBytesNeededFromBOF(65536));
+        assertEquals(16, signature("BOFoffset", "{2-8} 'ftyp' {0-2} 'is'").getBytesNeededFromBOF(-1));
+    }
+
+    @Test
+    public void testUnboundedSignaturesAreLimitedByMaxBytesToScan() {
+        assertEquals(-1, signature("Variable", "'DROID'").getBytesNeededFromBOF(-1));
+        assertEquals(-1, signature("Variable", "'DROID'").getBytesNeededFromBOF(0));
+        assertEquals(1025, signature("Variable", "'DROID'").getBytesNeededFromBOF(1024));
+        assertEquals(1025, signature("BOFoffset", "'PK' * 'DROID'").getBytesNeededFromBOF(1024));
+        assertEquals(-1, signature("BOFoffset", "'PK' * 'DROID'").getBytesNeededFromBOF(-1));
+    }
+
+    @Test
+    public void testEofSignaturesNeedTheWholeFile() {
+        assertEquals(-1, signature("EOFoffset", "'%%EOF'").getBytesNeededFromBOF(-1));
+        assertEquals(-1, signature("EOFoffset", "'%%EOF'").getBytesNeededFromBOF(1024));
+    }
+
+    @Test
+    public void testSignaturesStillMatchTheBytesTheyNeed() throws IOException {
+        String contents = "%PDF-1.4 and then a lot more content which could be very long indeed";
+        assertMatchesTruncated(signature("BOFoffset", "'%PDF-' [30:39]"), contents, -1);
+        assertMatchesTruncated(signature("BOFoffset", "{0-4} 'PDF' {1} '1.4'"), contents, -1);
+        assertMatchesTruncated(signature("Variable", "'content'"), contents, 40);
+    }
+
+    private static void assertMatchesTruncated(InternalSignature signature, String contents, long maxBytesToScan) {
+        byte[] bytes = contents.getBytes(StandardCharsets.ISO_8859_1);
+        long bytesNeeded = signature.getBytesNeededFromBOF(maxBytesToScan);
+        assertTrue(bytesNeeded > 0 && bytesNeeded < bytes.length);
+        assertTrue(signature.matches(reader(bytes), maxBytesToScan));
+        assertTrue(signature.matches(reader(Arrays.copyOf(bytes, (int) bytesNeeded)), maxBytesToScan));
+    }
+
+    private static ByteReader reader(byte[] bytes) {
+        IdentificationRequest request = mock(IdentificationRequest.class);
+        when(request.size()).thenReturn((long) bytes.length);
+        when(request.getWindowReader()).thenReturn(new ByteArrayReader(bytes));
+        return new IdentificationRequestByteReaderAdapter(request);
+    }
+
+    private static InternalSignature signature(String reference, String sequence) {
+        ByteSequence byteSequence = new ByteSequence();
+        byteSequence.setReference(reference);
+        byteSequence.setSequence(sequence);
+        InternalSignature signature = new InternalSignature();
+        signature.setID("1");
+        signature.addByteSequence(byteSequence);
+        signature.prepareForUse();
+        return signature;
+    }
+}
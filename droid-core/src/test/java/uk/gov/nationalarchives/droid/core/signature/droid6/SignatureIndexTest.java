@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.core.signature.droid6;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.byteseek.io.reader.ByteArrayReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SignatureIndexTest {
+
+    @Test
+    public void testOnlySignaturesWithMatchingLeadingBytesAreCandidates() throws IOException {
+        List<InternalSignature> sigs = new ArrayList<>();
+        sigs.add(signature(1, "BOFoffset", "'PK' 03 04"));
+        sigs.add(signature(2, "BOFoffset", "'%PDF-1.'"));
+        sigs.add(signature(3, "BOFoffset", "'%PDF-' [30:39]"));
+        sigs.add(signature(4, "BOFoffset", "{4} 'ftyp'"));
+        sigs.add(signature(5, "Variable", "'DROID'"));
+        sigs.add(signature(6, "BOFoffset", "[30:39] 'XYZ'"));
+        SignatureIndex index = new SignatureIndex(sigs);
+
+        assertEquals(6, index.getNumSignatures());
+        assertEquals(4, index.getNumIndexedSignatures());
+
+        boolean[] candidates = candidates(index, "%PDF-1.4 blah");
+        assertFalse(candidates[0]);
+        assertTrue(candidates[1]);
+        assertTrue(candidates[2]);
+        assertFalse(candidates[3]);
+        assertTrue(candidates[4]);
+        assertTrue(candidates[5]);
+
+        candidates = candidates(index, "\0\0\0\0ftypisom");
+        assertFalse(candidates[0]);
+        assertFalse(candidates[1]);
+        assertFalse(candidates[2]);
+        assertTrue(candidates[3]);
+    }
+
+    @Test
+    public void testFilesShorterThanKeysAreNotCandidates() throws IOException {
+        List<InternalSignature> sigs = new ArrayList<>();
+        sigs.add(signature(1, "BOFoffset", "'PK' 03 04"));
+        SignatureIndex index = new SignatureIndex(sigs);
+        assertFalse(candidates(index, "PK")[0]);
+        assertTrue(candidates(index, "PK\3\4")[0]);
+    }
+
+    @Test
+    public void testEofKeysAreMatchedBackwardsFromTheEndOfTheFile() throws IOException {
+        List<InternalSignature> sigs = new ArrayList<>();
+        sigs.add(signature(1, "EOFoffset", "'%%EOF'"));
+        sigs.add(signature(2, "EOFoffset", "'%%EOF' {2}"));
+        sigs.add(signature(3, "EOFoffset", "'END' [30:39]"));
+        SignatureIndex index = new SignatureIndex(sigs);
+        assertEquals(2, index.getNumIndexedSignatures()); // no fixed bytes at the end of the third.
+
+        boolean[] candidates = candidates(index, "%PDF-1.4 ... %%EOF");
+        assertTrue(candidates[0]);
+        assertFalse(candidates[1]);
+        assertTrue(candidates[2]);
+
+        candidates = candidates(index, "%PDF-1.4 ... %%EOF\r\n");
+        assertFalse(candidates[0]);
+        assertTrue(candidates[1]);
+
+        assertFalse(candidates(index, "OF")[0]);
+    }
+
+    @Test
+    public void testSignaturesWithBofAndEofKeysNeedBothToBeCandidates() throws IOException {
+        ByteSequence bof = new ByteSequence();
+        bof.setReference("BOFoffset");
+        bof.setSequence("'%PDF-'");
+        ByteSequence eof = new ByteSequence();
+        eof.setReference("EOFoffset");
+        eof.setSequence("'%%EOF'");
+        InternalSignature signature = new InternalSignature();
+        signature.setID("1");
+        signature.addByteSequence(bof);
+        signature.addByteSequence(eof);
+        signature.prepareForUse();
+        List<InternalSignature> sigs = new ArrayList<>();
+        sigs.add(signature);
+        SignatureIndex index = new SignatureIndex(sigs);
+
+        assertTrue(candidates(index, "%PDF-1.4 ... %%EOF")[0]);
+        assertFalse(candidates(index, "%PDF-1.4 ... truncated")[0]);
+        assertFalse(candidates(index, "Not a PDF %%EOF")[0]);
+    }
+
+    private static boolean[] candidates(SignatureIndex index, String contents) throws IOException {
+        byte[] bytes = contents.getBytes(StandardCharsets.ISO_8859_1);
+        return index.getCandidates(new ByteArrayReader(bytes), bytes.length);
+    }
+
+    private static InternalSignature signature(int id, String reference, String sequence) {
+        ByteSequence byteSequence = new ByteSequence();
+        byteSequence.setReference(reference);
+        byteSequence.setSequence(sequence);
+        InternalSignature signature = new InternalSignature();
+        signature.setID(Integer.toString(id));
+        signature.addByteSequence(byteSequence);
+        signature.prepareForUse();
+        return signature;
+    }
+}
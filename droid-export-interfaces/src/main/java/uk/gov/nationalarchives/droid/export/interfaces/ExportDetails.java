@@ -39,6 +39,7 @@ package uk.gov.nationalarchives.droid.export.interfaces;
  * - whether BOM is to be used
  * - Which columns to export
  * - Is there an export template to be used
+ * - How many profiles can be read at the same time
  *
  */
 public final class ExportDetails {
@@ -50,6 +51,7 @@ public final class ExportDetails {
     private final String columnsToWrite;
     private final String exportTemplatePath;
     private final ExportOutputOptions outputOptions;
+    private final int parallelProfiles;
 
     /**
      * Private constructor. The consumer can get the ExportDetails instance using ExportDetailsBuilder.
@@ -60,8 +62,9 @@ public final class ExportDetails {
      * @param quoteAllFields whether the export fields should be enclosed in double quotes
      * @param columnsToWrite List of columns to write
      * @param exportTemplatePath absolute path to an export template, if one is being used.
+     * @param parallelProfiles the number of profiles which can be read at the same time.
      */
-    private ExportDetails(ExportOptions exportOptions, ExportOutputOptions outputOptions, String outputEncoding, boolean bomFlag, boolean quoteAllFields, String columnsToWrite, String exportTemplatePath) {
+    private ExportDetails(ExportOptions exportOptions, ExportOutputOptions outputOptions, String outputEncoding, boolean bomFlag, boolean quoteAllFields, String columnsToWrite, String exportTemplatePath, int parallelProfiles) {
         this.exportOptions = exportOptions;
         this.outputOptions = outputOptions;
         this.outputEncoding = outputEncoding;
@@ -69,6 +72,7 @@ public final class ExportDetails {
         this.quoteAllFields = quoteAllFields;
         this.columnsToWrite = columnsToWrite;
         this.exportTemplatePath = exportTemplatePath;
+        this.parallelProfiles = parallelProfiles;
     }
 
     /**
@@ -123,6 +127,13 @@ public final class ExportDetails {
         return exportTemplatePath;
     }
 
+    /**
+     * @return The number of profiles which can be read at the same time when exporting more than one profile.
+     */
+    public int getParallelProfiles() {
+        return parallelProfiles;
+    }
+
     /**
      * Builder class to build the ExportDetails as a fluent API.
      */
@@ -134,6 +145,7 @@ public final class ExportDetails {
         private boolean quoteAllFields = true;
         private String columnsToWrite;
         private String exportTemplatePath;
+        private int parallelProfiles = 1;
 
         public ExportDetailsBuilder withExportOptions(ExportOptions options) {
             this.exportOptions = options;
@@ -169,8 +181,13 @@ public final class ExportDetails {
             return this;
         }
 
+        public ExportDetailsBuilder withParallelProfiles(int profiles) {
+            this.parallelProfiles = profiles;
+            return this;
+        }
+
         public ExportDetails build() {
-            return new ExportDetails(exportOptions, outputOptions, outputEncoding, bomFlag, quoteAllFields, columnsToWrite, exportTemplatePath);
+            return new ExportDetails(exportOptions, outputOptions, outputEncoding, bomFlag, quoteAllFields, columnsToWrite, exportTemplatePath, parallelProfiles);
         }
     }
 }
@@ -40,5 +40,10 @@ public enum ExportOutputOptions {
     /**
      * Exports csv.
      */
-    CSV_OUTPUT
+    CSV_OUTPUT,
+
+    /**
+     * Exports an Apache Arrow IPC file, a columnar binary format, with a row for each format identification.
+     */
+    ARROW_OUTPUT
 }
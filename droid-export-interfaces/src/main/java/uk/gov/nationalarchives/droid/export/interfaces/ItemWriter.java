@@ -31,6 +31,7 @@
  */
 package uk.gov.nationalarchives.droid.export.interfaces;
 
+import java.io.OutputStream;
 import java.io.Writer;
 import java.util.List;
 import java.util.Map;
@@ -53,6 +54,12 @@ public interface ItemWriter<T> {
      * @param writer the writer to use
      */
     void open(Writer writer);
+
+    /**
+     * Opens an output stream for writing binary output, such as Arrow.
+     * @param outputStream the output stream to use
+     */
+    void open(OutputStream outputStream);
     
     /**
      * Closes the writer.
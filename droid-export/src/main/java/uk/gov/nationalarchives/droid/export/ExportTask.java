@@ -31,6 +31,7 @@
  */
 package uk.gov.nationalarchives.droid.export;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -41,11 +42,16 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
@@ -65,6 +71,12 @@ import uk.gov.nationalarchives.droid.profile.ProfileInstanceManager;
 import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
 
 /**
+ * Exports one or more profiles to a single output.
+ * <p>
+ * Profiles are written out in the order given.  If more than one profile can be read at the same time,
+ * each profile is read on its own thread into a bounded queue of chunks, and the export thread writes
+ * out the chunks of each profile in turn, so the output is the same as reading them one after another.
+ *
  * @author rflitcroft, Brian O'Reilly
  *
  */
@@ -74,6 +86,14 @@ public class ExportTask implements Runnable {
     private static final int BOM_1 = 0xEF;
     private static final int BOM_2 = 0xBB;
     private static final int BOM_3 = 0xBF;
+    private static final String EXPORT_INTERRUPTED = "Export interrupted";
+    private static final String CANCELLED = "Cancelled";
+
+    // The most chunks read from a profile which can wait to be written out.
+    private static final int CHUNKS_PER_PROFILE = 4;
+
+    // Marks the end of the chunks read from a profile.
+    private static final List<ProfileResourceNode> END_OF_PROFILE = new ArrayList<>(0);
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -86,6 +106,7 @@ public class ExportTask implements Runnable {
     private final boolean bom;
     private final ItemWriter<ProfileResourceNode> itemWriter;
     private final ProfileContextLocator profileContextLocator;
+    private final int parallelProfiles;
 
     private volatile boolean cancelled;
     
@@ -110,6 +131,7 @@ public class ExportTask implements Runnable {
         this.bom = exportDetails.bomFlag();
         this.itemWriter = itemWriter;
         this.profileContextLocator = profileContextLocator;
+        this.parallelProfiles = Math.min(Math.max(exportDetails.getParallelProfiles(), 1), profileIds.size());
     }
 
     /**
@@ -124,21 +146,51 @@ public class ExportTask implements Runnable {
      */
     @Override
     public void run() {
-        final Writer writer;
         final String destinationDescription = destination == null ? "System.out" : destination;
-        if (destination == null) {
-            writer = new PrintWriter(System.out);
+        if (outputOptions == ExportOutputOptions.ARROW_OUTPUT) {
+            final OutputStream outputStream;
+            if (destination == null) {
+                outputStream = new BufferedOutputStream(System.out);
+            } else {
+                try {
+                    outputStream = newOutputFileStream();
+                } catch (IOException e) {
+                    throw ioFailure(destinationDescription, e);
+                }
+            }
+            doExport(() -> itemWriter.open(outputStream), destinationDescription);
         } else {
-            try {
-                writer = newOutputFileWriter();
-            } catch (IOException e) {
-                String message = String.format("IO exception occurred trying to read from: %s",
-                        destinationDescription);
-                log.error(message, e);
-                throw new RuntimeException(message, e);
+            final Writer writer;
+            if (destination == null) {
+                writer = new PrintWriter(System.out);
+            } else {
+                try {
+                    writer = newOutputFileWriter();
+                } catch (IOException e) {
+                    throw ioFailure(destinationDescription, e);
+                }
             }
+            doExport(() -> itemWriter.open(writer), destinationDescription);
         }
-        doExport(writer, destinationDescription);
+    }
+
+    private RuntimeException ioFailure(final String destinationDescription, final IOException e) {
+        String message = String.format("IO exception occurred trying to read from: %s",
+                destinationDescription);
+        log.error(message, e);
+        return new RuntimeException(message, e);
+    }
+
+    /**
+     * Creates a new output stream for binary output to the output file.
+     * No byte order mark or character encoding applies to binary output.
+     *
+     * @return The output stream for the output file
+     * @throws IOException if an IO error occurs during establishing
+     *  an output stream for the file
+     */
+    protected OutputStream newOutputFileStream() throws IOException {
+        return new BufferedOutputStream(Files.newOutputStream(Paths.get(destination)));
     }
 
     /**
@@ -184,7 +236,7 @@ public class ExportTask implements Runnable {
     }
 
 
-    private void doExport(final Writer writer, final String destinationDescription) {
+    private void doExport(final Runnable openItemWriter, final String destinationDescription) {
         log.info(String.format("Exporting profiles to: [%s]", destinationDescription));
 
         //BNO - amended to add header customisations for different hash algorithms
@@ -192,37 +244,18 @@ public class ExportTask implements Runnable {
         itemWriter.setOptions(options);
         itemWriter.setOutputOptions(outputOptions);
         itemWriter.setHeaders(headerCustomisations);
-        itemWriter.open(writer);
+        openItemWriter.run();
         
-        StopWatch stopWatch = new StopWatch();
         try {
-            for (String profileId : profileIds) {
-                stopWatch.start();
-                if (!profileContextLocator.hasProfileContext(profileId)) {
-                    final String message = String.format(PROJECT_NOT_AVAILABLE_FOR_EXPORT, profileId);
-                    log.warn(message);
-                    throw new RuntimeException(message);
-                }
-                ProfileInstance profile = profileContextLocator.getProfileInstance(profileId);
-                ProfileInstanceManager profileContext = profileContextLocator.openProfileInstanceManager(profile);
-                ItemReader<ProfileResourceNode> reader = profileContext.getNodeItemReader();
-                ItemReaderCallback<ProfileResourceNode> callback = new ItemReaderCallback<ProfileResourceNode>() {
-                    @Override
-                    public void onItem(List<? extends ProfileResourceNode> itemChunk)
-                        throws JobCancellationException {
+            if (parallelProfiles > 1) {
+                exportInParallel();
+            } else {
+                for (String profileId : profileIds) {
+                    readProfile(profileId, itemChunk -> {
                         itemWriter.write(itemChunk);
-                        if (cancelled) {
-                            log.info("Export interrupted");
-                            throw new JobCancellationException("Cancelled");
-                        }
-                    }
-                };
-
-                Filter filter = filterOverride != null ? filterOverride : profile.getFilter();
-                reader.readAll(callback, filter);
-                stopWatch.stop();
-                log.info(String.format("Time for export [%s]: %s ms", profileId, stopWatch.getTime()));
-                stopWatch.reset();
+                        checkCancelled();
+                    });
+                }
             }
         } catch (JobCancellationException e) {
             String message = String.format("Export cancelled - deleting export destination: %s",
@@ -248,6 +281,116 @@ public class ExportTask implements Runnable {
         }
     }
     
+    private void readProfile(final String profileId, final ItemReaderCallback<ProfileResourceNode> callback)
+        throws JobCancellationException {
+        StopWatch stopWatch = StopWatch.createStarted();
+        final ProfileInstance profile;
+        final ProfileInstanceManager profileContext;
+        synchronized (profileContextLocator) {
+            if (!profileContextLocator.hasProfileContext(profileId)) {
+                final String message = String.format(PROJECT_NOT_AVAILABLE_FOR_EXPORT, profileId);
+                log.warn(message);
+                throw new RuntimeException(message);
+            }
+            profile = profileContextLocator.getProfileInstance(profileId);
+            profileContext = profileContextLocator.openProfileInstanceManager(profile);
+        }
+        ItemReader<ProfileResourceNode> reader = profileContext.getNodeItemReader();
+        Filter filter = filterOverride != null ? filterOverride : profile.getFilter();
+        reader.readAll(callback, filter);
+        stopWatch.stop();
+        log.info(String.format("Time for export [%s]: %s ms", profileId, stopWatch.getTime()));
+    }
+
+    private void checkCancelled() throws JobCancellationException {
+        if (cancelled) {
+            log.info(EXPORT_INTERRUPTED);
+            throw new JobCancellationException(CANCELLED);
+        }
+    }
+
+    /*
+     * Reads the profiles on a pool of threads, and writes out each profile's chunks in turn on this thread.
+     * Profiles start reading in the order they are written, so the profile being written out
+     * always has a thread reading it.
+     */
+    private void exportInParallel() throws JobCancellationException {
+        final ExecutorService readers = Executors.newFixedThreadPool(parallelProfiles);
+        try {
+            final List<ProfileReader> profileReaders = new ArrayList<>(profileIds.size());
+            for (String profileId : profileIds) {
+                final ProfileReader profileReader = new ProfileReader(profileId);
+                profileReaders.add(profileReader);
+                readers.execute(profileReader);
+            }
+            for (ProfileReader profileReader : profileReaders) {
+                profileReader.writeChunks();
+            }
+        } finally {
+            readers.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads a profile into a bounded queue of chunks, to be written out by the export thread.
+     */
+    private final class ProfileReader implements Runnable {
+
+        private final String profileId;
+        private final BlockingQueue<List<? extends ProfileResourceNode>> chunks =
+                new ArrayBlockingQueue<>(CHUNKS_PER_PROFILE);
+        private volatile RuntimeException failure;
+
+        private ProfileReader(final String profileId) {
+            this.profileId = profileId;
+        }
+
+        @Override
+        public void run() {
+            try {
+                readProfile(profileId, itemChunk -> {
+                    checkCancelled();
+                    try {
+                        chunks.put(itemChunk);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt(); // so we don't wait to put the end of the profile.
+                        throw new JobCancellationException(CANCELLED);
+                    }
+                });
+            } catch (JobCancellationException e) {
+                log.debug(String.format("Stopped reading profile %s for export", profileId));
+            //CHECKSTYLE:OFF - any failure must be passed back to the export thread.
+            } catch (RuntimeException e) {
+            //CHECKSTYLE:ON
+                failure = e;
+            } finally {
+                try {
+                    chunks.put(END_OF_PROFILE);
+                } catch (InterruptedException e) {
+                    log.debug(String.format("Interrupted ending the export of profile %s", profileId));
+                }
+            }
+        }
+
+        private void writeChunks() throws JobCancellationException {
+            try {
+                List<? extends ProfileResourceNode> itemChunk = chunks.take();
+                while (itemChunk != END_OF_PROFILE) {
+                    itemWriter.write(itemChunk);
+                    checkCancelled();
+                    itemChunk = chunks.take();
+                }
+            } catch (InterruptedException e) {
+                log.info(EXPORT_INTERRUPTED);
+                throw new JobCancellationException(CANCELLED);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            checkCancelled();
+        }
+    }
+
     private Map<String, String> getHeaderCustomisationsFromProfiles() {
 
         // Brian O'Reilly, July 2014:
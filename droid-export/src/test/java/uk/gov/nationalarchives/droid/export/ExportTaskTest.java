@@ -35,18 +35,33 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
 import uk.gov.nationalarchives.droid.export.interfaces.ExportDetails;
+import uk.gov.nationalarchives.droid.export.interfaces.ItemReader;
+import uk.gov.nationalarchives.droid.export.interfaces.ItemReaderCallback;
 import uk.gov.nationalarchives.droid.export.interfaces.ItemWriter;
+import uk.gov.nationalarchives.droid.profile.ProfileContextLocator;
+import uk.gov.nationalarchives.droid.profile.ProfileInstance;
+import uk.gov.nationalarchives.droid.profile.ProfileInstanceManager;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 
 /**
@@ -89,4 +104,47 @@ public class ExportTaskTest {
 
         verify(pmExportTask, times(1)).newOutputFileWriterEncoded(encoding, tempFile.toPath());
     }
+
+    @Test
+    public void testParallelExportWritesProfilesInOrder() throws Exception {
+        File tempFile = temporaryFolder.newFile("export-task-test-parallel");
+        ProfileContextLocator locator = mock(ProfileContextLocator.class);
+        List<List<ProfileResourceNode>> chunks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            List<ProfileResourceNode> first = Collections.singletonList(new ProfileResourceNode(URI.create("file:/" + i + "/a")));
+            List<ProfileResourceNode> second = Collections.singletonList(new ProfileResourceNode(URI.create("file:/" + i + "/b")));
+            chunks.add(first);
+            chunks.add(second);
+            // the first profile is the slowest to read, so the others are read before it finishes.
+            mockProfile(locator, "profile" + i, 300 - i * 150, first, second);
+        }
+        ExportDetails exportDetails = new ExportDetails.ExportDetailsBuilder().withParallelProfiles(3).build();
+
+        new ExportTask(tempFile.getAbsolutePath(), Arrays.asList("profile0", "profile1", "profile2"), null,
+                exportDetails, itemWriter, locator).run();
+
+        InOrder inOrder = inOrder(itemWriter);
+        for (List<ProfileResourceNode> chunk : chunks) {
+            inOrder.verify(itemWriter).write(chunk);
+        }
+        inOrder.verify(itemWriter).close();
+    }
+
+    private static void mockProfile(ProfileContextLocator locator, String profileId, long readMillis,
+                                    List<ProfileResourceNode> first, List<ProfileResourceNode> second) throws Exception {
+        ProfileInstance profile = mock(ProfileInstance.class);
+        ProfileInstanceManager profileManager = mock(ProfileInstanceManager.class);
+        ItemReader<ProfileResourceNode> reader = mock(ItemReader.class);
+        when(locator.hasProfileContext(profileId)).thenReturn(true);
+        when(locator.getProfileInstance(profileId)).thenReturn(profile);
+        when(locator.openProfileInstanceManager(profile)).thenReturn(profileManager);
+        when(profileManager.getNodeItemReader()).thenReturn(reader);
+        doAnswer(invocation -> {
+            ItemReaderCallback<ProfileResourceNode> callback = invocation.getArgument(0);
+            callback.onItem(first);
+            Thread.sleep(readMillis);
+            callback.onItem(second);
+            return null;
+        }).when(reader).readAll(any(), any());
+    }
 }
@@ -45,10 +45,13 @@ import uk.gov.nationalarchives.droid.export.interfaces.ExportTemplateColumnDef;
 import uk.gov.nationalarchives.droid.export.interfaces.ItemWriter;
 import uk.gov.nationalarchives.droid.profile.datawriter.DataWriterProvider;
 import uk.gov.nationalarchives.droid.profile.datawriter.FormattedDataWriter;
+import uk.gov.nationalarchives.droid.profile.datawriter.OutputArrow;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -70,6 +73,9 @@ public class ItemWriterImpl implements ItemWriter<ProfileResourceNode> {
     private CsvWriter csvWriter;
     private Writer writer;
     private FormattedDataWriter.OutputJson outputJson;
+    private OutputStream outputStream;
+    private OutputArrow outputArrow;
+    private int arrowBatchRows = OutputArrow.DEFAULT_BATCH_ROWS;
     private ExportOptions options = ExportOptions.ONE_ROW_PER_FILE;
     private ExportOutputOptions outputOptions;
 
@@ -77,6 +83,7 @@ public class ItemWriterImpl implements ItemWriter<ProfileResourceNode> {
     private String[] allHeaders;
     private boolean quoteAllFields;
     private ExportTemplate exportTemplate;
+    private FormattedDataWriter dataWriter;
 
     /**
      * Empty bean constructor.
@@ -118,7 +125,12 @@ public class ItemWriterImpl implements ItemWriter<ProfileResourceNode> {
 
     @Override
     public void write(List<? extends ProfileResourceNode> nodes) {
-        FormattedDataWriter dataWriter = DataWriterProvider.getDataWriter(columnsToWriteMap, exportTemplate);
+        FormattedDataWriter dataWriter = getDataWriter();
+        if (outputArrow != null) {
+            // Arrow output has a fixed set of columns, so it always has a row per format identification.
+            dataWriter.writeArrowForOneRowPerFormat(nodes, allHeaders, outputArrow);
+            return;
+        }
         switch (options) {
             case ONE_ROW_PER_FILE: {
                 if (outputOptions == ExportOutputOptions.JSON_OUTPUT) {
@@ -170,6 +182,16 @@ public class ItemWriterImpl implements ItemWriter<ProfileResourceNode> {
         }
     }
 
+    /*
+     * The data writer is reused for each write, until the columns or template to write change.
+     */
+    private FormattedDataWriter getDataWriter() {
+        if (dataWriter == null) {
+            dataWriter = DataWriterProvider.getDataWriter(columnsToWriteMap, exportTemplate);
+        }
+        return dataWriter;
+    }
+
     /**
      * @param csvWriter the csvWriter to write to.
      */
@@ -195,6 +217,22 @@ public class ItemWriterImpl implements ItemWriter<ProfileResourceNode> {
         }
     }
 
+    @Override
+    public void open(final OutputStream stream) {
+        this.outputStream = stream;
+        this.outputArrow = new OutputArrow(stream, arrowBatchRows);
+        if (allHeaders == null) {
+            allHeaders = Arrays.copyOf(WriterConstants.HEADERS, WriterConstants.HEADERS.length);
+        }
+    }
+
+    /**
+     * @param arrowBatchRows the number of rows in each record batch of an Arrow file.
+     */
+    public void setArrowBatchRows(int arrowBatchRows) {
+        this.arrowBatchRows = arrowBatchRows;
+    }
+
     @Override
     public void setOptions(ExportOptions options) {
         this.options = options;
@@ -206,19 +244,29 @@ public class ItemWriterImpl implements ItemWriter<ProfileResourceNode> {
     }
     
     /**
-     * Closes the CSV writer.
+     * Closes the CSV writer, or completes the Arrow file and closes its output stream.
      */
     @Override
     public void close() {
         try {
-            if (outputJson != null) {
-                outputJson.completeStream();
+            if (outputArrow != null) {
+                if (!outputArrow.hasColumns()) { // nothing was written, but the file still needs its columns.
+                    getDataWriter().writeArrowForOneRowPerFormat(Collections.emptyList(), allHeaders, outputArrow);
+                }
+                outputArrow.completeStream();
+                outputStream.close();
+            } else {
+                if (outputJson != null) {
+                    outputJson.completeStream();
+                }
+                writer.close();
             }
-            writer.close();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        csvWriter.close();
+        if (csvWriter != null) {
+            csvWriter.close();
+        }
     }
     
     /**
@@ -266,6 +314,7 @@ public class ItemWriterImpl implements ItemWriter<ProfileResourceNode> {
 
     @Override
     public void setColumnsToWrite(String columnNames) {
+        dataWriter = null;
         Set<String> headersToWrite = getColumnsToWrite(columnNames);
         if (headersToWrite == null) {
             populateDefaultColumnsToWrite();
@@ -296,6 +345,7 @@ public class ItemWriterImpl implements ItemWriter<ProfileResourceNode> {
     @Override
     public void setExportTemplate(ExportTemplate template) {
         this.exportTemplate = template;
+        this.dataWriter = null;
     }
 
     private Set<String> getColumnsToWrite(String columnNames) {
@@ -74,6 +74,19 @@ public class ProfileContextLocator {
     private static final String SIG_PROFILE = "profile\\.\\d+\\.template";
     private static final String DEFAULT_HASH_ALGORITH = "md5";
     private static final int DEFAULT_MAX_BYTES_TO_SCAN = 65536;
+    private static final long DEFAULT_BUFFER_POOL_SIZE = 32L * 1024 * 1024;
+    private static final DroidGlobalProperty[] EXECUTION_PROPERTIES = {
+        DroidGlobalProperty.EXECUTOR, DroidGlobalProperty.EXECUTOR_THREADS, DroidGlobalProperty.EXECUTOR_QUEUE_SIZE,
+        DroidGlobalProperty.CONTAINER_THREADS, DroidGlobalProperty.CONTAINER_ENTRY_THREADS,
+        DroidGlobalProperty.HASH_THREADS, DroidGlobalProperty.PERSIST_THREADS,
+        DroidGlobalProperty.ARCHIVE_THREADS, DroidGlobalProperty.STAGE_QUEUE_CAPACITY,
+        DroidGlobalProperty.STAGE_MAX_WAIT_MILLIS,
+        DroidGlobalProperty.WALKER_THREADS, DroidGlobalProperty.WALKER_READ_ATTRIBUTES,
+        DroidGlobalProperty.DATABASE_WRITERS, DroidGlobalProperty.DATABASE_BATCH_SIZE,
+        DroidGlobalProperty.DATABASE_BATCH_LATENCY, DroidGlobalProperty.DATABASE_QUEUE_SIZE,
+        DroidGlobalProperty.DEFER_DATABASE_INDEXES, DroidGlobalProperty.BULK_LOAD,
+        DroidGlobalProperty.ARROW_BATCH_ROWS,
+    };
 
     private final Logger log = LoggerFactory.getLogger(getClass());
     private DroidGlobalConfig globalConfig;
@@ -81,6 +94,7 @@ public class ProfileContextLocator {
     private enum TemplateStatus { NO_TEMPLATE, BLANK_TEMPLATE, SIGNATURE_TEMPLATE };
 
     private Map<String, ProfileInstance> profileInstances = new HashMap<>();
+    private Map<String, PropertiesConfiguration> profileConfigs = new HashMap<>();
     
     private ProfileInstanceLocator profileInstanceLocator;
 
@@ -138,6 +152,7 @@ public class ProfileContextLocator {
      */
     public void removeProfileContext(String id) {
         profileInstances.remove(id);
+        profileConfigs.remove(id);
         profileInstanceLocator.closeProfileInstance(id);
         
     }
@@ -175,6 +190,15 @@ public class ProfileContextLocator {
         final Properties props = new Properties();
         props.setProperty("defaultThrottle", String.valueOf(profile.getThrottle()));
         props.setProperty("signatureFilePath", signatureFile.toAbsolutePath().toString());
+        props.setProperty("signatureSnapshotDir", getSignatureSnapshotDir());
+        // Settings which only affect how a profile runs can be overridden when it is created, but aren't saved with it.
+        final PropertiesConfiguration profileConfig = profileConfigs.getOrDefault(profile.getUuid(),
+                globalConfig.getProperties());
+        props.setProperty("fileChannelReader", String.valueOf(profileConfig.getBoolean(
+                DroidGlobalProperty.FILE_CHANNEL_READER.getName(), false)));
+        props.setProperty("bufferPoolSize", String.valueOf(profileConfig.getLong(
+                DroidGlobalProperty.BUFFER_POOL_SIZE.getName(), DEFAULT_BUFFER_POOL_SIZE)));
+        setExecutionProperties(profileConfig, props);
         props.setProperty("submissionQueueFile", submissionQueueFile.toAbsolutePath().toString());
         props.setProperty("tempDirLocation", globalConfig.getTempDir().toAbsolutePath().toString());
         props.setProperty("profileHome", profileHome.toAbsolutePath().toString());
@@ -258,6 +282,28 @@ public class ProfileContextLocator {
     }
     //CHECKSTYLE:ON
     
+    /**
+     * Passes on the executor and identification pipeline settings which have been configured, leaving the
+     * profile context to use its defaults for the rest.
+     * @param config The configuration of the profile.
+     * @param props The properties used to initialise the profile context.
+     */
+    private void setExecutionProperties(final PropertiesConfiguration config, final Properties props) {
+        for (DroidGlobalProperty property : EXECUTION_PROPERTIES) {
+            final String value = config.getString(property.getName());
+            if (value != null && !value.isEmpty()) {
+                final String name = property.getName();
+                props.setProperty(name.substring(name.indexOf('.') + 1), value);
+            }
+        }
+    }
+
+    private String getSignatureSnapshotDir() {
+        final boolean useSnapshots = globalConfig.getProperties().getBoolean(
+                DroidGlobalProperty.SIGNATURE_SNAPSHOTS.getName(), true);
+        return useSnapshots ? globalConfig.getSignatureSnapshotDir().toAbsolutePath().toString() : "";
+    }
+
     private void setCreateSchemaProperties(boolean create, Properties props) {
         if (create) {
             props.setProperty(HIBERNATE_GENERATE_DDL, "true");
@@ -471,6 +517,7 @@ public class ProfileContextLocator {
         boolean debug = mergedConfig.containsKey("profile.debug") && mergedConfig.getBoolean(DroidGlobalProperty.DEBUG.getName());
         profileInstance.setDebug(debug);
         addProfileContext(profileInstance);
+        profileConfigs.put(id, mergedConfig);
         return profileInstance;
     }
 
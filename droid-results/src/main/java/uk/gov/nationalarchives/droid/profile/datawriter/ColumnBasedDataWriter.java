@@ -99,18 +99,25 @@ public class ColumnBasedDataWriter extends FormattedDataWriter {
     public void writeDataRowsForOneRowPerFormat(List<? extends ProfileResourceNode> nodes, CsvWriter csvWriter) {
         for (ProfileResourceNode node : nodes) {
             for (Format format : node.getFormatIdentifications()) {
-                List<String> nodeEntries = new ArrayList<>();
-                addNodeColumnsInDefaultOrder(nodeEntries, node);
-                addColumn(nodeEntries, WriterConstants.HEADER_NAME_PUID, format.getPuid());
-                addColumn(nodeEntries, WriterConstants.HEADER_NAME_MIME_TYPE, format.getMimeType());
-                addColumn(nodeEntries, WriterConstants.HEADER_NAME_FORMAT_NAME, format.getName());
-                addColumn(nodeEntries, WriterConstants.HEADER_NAME_FORMAT_VERSION, format.getVersion());
-                csvWriter.writeRow(nodeEntries);
+                csvWriter.writeRow(getOneRowPerFormatNodeEntries(node, format));
             }
         }
         csvWriter.flush();
     }
 
+    @Override
+    public void writeArrowForOneRowPerFormat(List<? extends ProfileResourceNode> nodes, String[] headers, OutputArrow outputArrow) {
+        if (!outputArrow.hasColumns()) {
+            super.setCustomisedHeaders(headers);
+            outputArrow.setColumns(getHeadersToWrite(getCustomisedHeaders()));
+        }
+        for (ProfileResourceNode node : nodes) {
+            for (Format format : node.getFormatIdentifications()) {
+                outputArrow.writeRow(getOneRowPerFormatNodeEntries(node, format));
+            }
+        }
+    }
+
     @Override
     public void writeJsonForOneRowPerFormat(List<? extends ProfileResourceNode> nodes, String[] headers, OutputJson outputJson) {
         String hashHeader = headers[WriterConstants.HASH_ARRAY_INDEX];
@@ -160,6 +167,16 @@ public class ColumnBasedDataWriter extends FormattedDataWriter {
         csvWriter.flush();
     }
 
+    private List<String> getOneRowPerFormatNodeEntries(ProfileResourceNode node, Format format) {
+        List<String> nodeEntries = new ArrayList<>();
+        addNodeColumnsInDefaultOrder(nodeEntries, node);
+        addColumn(nodeEntries, WriterConstants.HEADER_NAME_PUID, format.getPuid());
+        addColumn(nodeEntries, WriterConstants.HEADER_NAME_MIME_TYPE, format.getMimeType());
+        addColumn(nodeEntries, WriterConstants.HEADER_NAME_FORMAT_NAME, format.getName());
+        addColumn(nodeEntries, WriterConstants.HEADER_NAME_FORMAT_VERSION, format.getVersion());
+        return nodeEntries;
+    }
+
     private void addNodeJsonEntriesInDefaultOrder(ObjectNode objectNode, ProfileResourceNode resourceNode, String hashHeader) {
         NodeMetaData metaData = resourceNode.getMetaData();
         addEntry(objectNode, WriterConstants.HEADER_NAME_ID, resourceNode.getId());
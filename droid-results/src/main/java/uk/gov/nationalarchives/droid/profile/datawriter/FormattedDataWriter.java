@@ -72,6 +72,7 @@ public abstract  class FormattedDataWriter {
     public abstract void writeHeadersForOneRowPerFormat(List<? extends ProfileResourceNode> nodes, String[] headers, CsvWriter csvWriter);
     public  abstract void writeDataRowsForOneRowPerFormat(List<? extends ProfileResourceNode> nodes, CsvWriter csvWriter);
     public  abstract void writeJsonForOneRowPerFormat(List<? extends ProfileResourceNode> nodes, String[] headers, OutputJson outputJson);
+    public abstract void writeArrowForOneRowPerFormat(List<? extends ProfileResourceNode> nodes, String[] headers, OutputArrow outputArrow);
 
     protected static String nullSafeName(Enum<?> value) {
         return value == null ? WriterConstants.EMPTY_STRING : value.toString();
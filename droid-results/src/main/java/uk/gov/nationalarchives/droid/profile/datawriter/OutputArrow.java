@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.profile.datawriter;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import uk.gov.nationalarchives.droid.core.interfaces.config.RuntimeConfig;
+import uk.gov.nationalarchives.droid.profile.WriterConstants;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes rows of string values as an Apache Arrow IPC file, a columnar binary format which can be
+ * read directly by analytics tools such as pandas, polars, DuckDB and Spark.
+ * <p>
+ * Every column is a nullable UTF-8 string column.  Columns which hold a small set of repeated
+ * values (PUIDs, mime types, format names and versions, methods, statuses, types and extension
+ * mismatches) are dictionary encoded, with each distinct value held once in a dictionary.
+ * <p>
+ * The Arrow file format needs each dictionary to be complete before the first record batch, but the
+ * values of a dictionary are only all known once every row has been written.  Rows are buffered until
+ * a batch of them is full, however many rows are written at a time, when they are spilled as a record batch
+ * of strings and dictionary indices to a temporary Arrow stream.  Memory use is bounded by the size of a
+ * batch rather than the size of the export, and the file is not filled with small record batches when rows
+ * arrive a few at a time.  When the stream is completed, the file is written by an {@link ArrowFileWriter}: the schema,
+ * then the dictionaries, then the spilled record batches, so it can also be read as an Arrow stream.
+ */
+public class OutputArrow {
+
+    private static final Set<String> DICTIONARY_COLUMNS = Set.of(
+            WriterConstants.HEADER_NAME_METHOD, WriterConstants.HEADER_NAME_STATUS,
+            WriterConstants.HEADER_NAME_TYPE, WriterConstants.HEADER_NAME_EXTENSION_MISMATCH,
+            WriterConstants.HEADER_NAME_PUID, WriterConstants.HEADER_NAME_MIME_TYPE,
+            WriterConstants.HEADER_NAME_FORMAT_NAME, WriterConstants.HEADER_NAME_FORMAT_VERSION);
+
+    /**
+     * The number of rows in each record batch by default.
+     */
+    public static final int DEFAULT_BATCH_ROWS = 10000;
+
+    private static final ArrowType.Int INDEX_TYPE = new ArrowType.Int(Integer.SIZE, true);
+    private static final String SPILL_FILE_PREFIX = "droid-arrow-";
+    private static final String SPILL_FILE_SUFFIX = ".tmp";
+
+    private final OutputStream outputStream;
+    private final int batchRows;
+    private final BufferAllocator allocator = new RootAllocator();
+    private final List<Column> columns = new ArrayList<>();
+    private VectorSchemaRoot batch;
+    private Path spillFile;
+    private ArrowStreamWriter spillWriter;
+    private int rowCount;
+
+    /**
+     * Starts a new Arrow file written to the output stream.
+     * @param outputStream The output stream to write the file to.
+     */
+    public OutputArrow(OutputStream outputStream) {
+        this(outputStream, DEFAULT_BATCH_ROWS);
+    }
+
+    /**
+     * Starts a new Arrow file written to the output stream.
+     * @param outputStream The output stream to write the file to.
+     * @param batchRows The number of rows in each record batch.
+     */
+    public OutputArrow(OutputStream outputStream, int batchRows) {
+        if (batchRows < 1) {
+            throw new IllegalArgumentException("An Arrow record batch needs at least one row: " + batchRows);
+        }
+        this.outputStream = outputStream;
+        this.batchRows = batchRows;
+    }
+
+    /**
+     * @return Whether the columns of the file have been set yet.
+     */
+    public boolean hasColumns() {
+        return batch != null;
+    }
+
+    /**
+     * Sets the columns of the file.  The columns can only be set once; if they have already been set,
+     * this does nothing.
+     * @param columnNames The names of the columns.
+     */
+    public void setColumns(List<String> columnNames) {
+        if (batch == null) {
+            long dictionaryId = 0;
+            final List<FieldVector> vectors = new ArrayList<>();
+            for (String columnName : columnNames) {
+                final boolean dictionaryEncoded = DICTIONARY_COLUMNS.contains(columnName);
+                final Column column = new Column(columnName, dictionaryEncoded ? dictionaryId++ : -1, allocator);
+                columns.add(column);
+                vectors.add(column.values);
+            }
+            batch = new VectorSchemaRoot(vectors);
+            try {
+                spillFile = createSpillFile();
+                spillWriter = new ArrowStreamWriter(batch, new DictionaryProvider.MapDictionaryProvider(),
+                        new BufferedOutputStream(Files.newOutputStream(spillFile)));
+                spillWriter.start();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Adds a row to the current batch of rows, spilling the batch once it is full.
+     * @param values The values of the row, one for each column, which can be null.
+     */
+    public void writeRow(List<String> values) {
+        for (int i = 0; i < columns.size(); i++) {
+            columns.get(i).set(rowCount, values.get(i));
+        }
+        rowCount++;
+        if (rowCount >= batchRows) {
+            flush();
+        }
+    }
+
+    /**
+     * Spills the current batch of rows out as a record batch, even if it is not full.
+     */
+    public void flush() {
+        if (rowCount > 0) {
+            batch.setRowCount(rowCount);
+            try {
+                spillWriter.writeBatch();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            for (Column column : columns) {
+                column.values.reset();
+            }
+            rowCount = 0;
+        }
+    }
+
+    /**
+     * Writes out the file: its schema, the dictionaries and all the rows written to it.
+     * The output stream is not closed.
+     */
+    public void completeStream() {
+        setColumns(Collections.emptyList());
+        flush();
+        try {
+            spillWriter.close();
+            writeFile();
+            outputStream.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            release();
+        }
+    }
+
+    private void writeFile() throws IOException {
+        final DictionaryProvider.MapDictionaryProvider dictionaries = new DictionaryProvider.MapDictionaryProvider();
+        final List<FieldVector> vectors = new ArrayList<>();
+        for (Column column : columns) {
+            vectors.add(column.fileValues);
+            if (column.dictionary != null) {
+                column.dictionary.getVector().setValueCount(column.indices.size());
+                dictionaries.put(column.dictionary);
+            }
+        }
+        try (VectorSchemaRoot file = new VectorSchemaRoot(vectors);
+             ArrowFileWriter writer = new ArrowFileWriter(file, dictionaries,
+                     Channels.newChannel(CloseShieldOutputStream.wrap(outputStream)));
+             InputStream in = new BufferedInputStream(Files.newInputStream(spillFile));
+             ArrowStreamReader reader = new ArrowStreamReader(in, allocator)) {
+            writer.start();
+            final VectorSchemaRoot spilled = reader.getVectorSchemaRoot();
+            while (reader.loadNextBatch()) {
+                for (int i = 0; i < columns.size(); i++) {
+                    spilled.getVector(i).makeTransferPair(file.getVector(i)).transfer();
+                }
+                file.setRowCount(spilled.getRowCount());
+                writer.writeBatch();
+            }
+            writer.end();
+        }
+    }
+
+    private void release() {
+        for (Column column : columns) {
+            column.close();
+        }
+        allocator.close();
+        if (spillFile != null) {
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                spillFile.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    private static Path createSpillFile() throws IOException {
+        final String droidTempDir = System.getProperty(RuntimeConfig.DROID_TEMP_DIR);
+        return droidTempDir == null ? Files.createTempFile(SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX)
+                : Files.createTempFile(Paths.get(droidTempDir), SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX);
+    }
+
+    /**
+     * A column of the file.  A column holds the values of the current batch of rows: the strings themselves,
+     * or their indices in the dictionary of all the values seen so far if the column is dictionary encoded.
+     */
+    private static final class Column {
+        private final FieldVector values;
+        private final FieldVector fileValues;
+        private final Dictionary dictionary;
+        private final Map<String, Integer> indices;
+
+        Column(String name, long dictionaryId, BufferAllocator allocator) {
+            if (dictionaryId < 0) {
+                values = new VarCharVector(name, allocator);
+                fileValues = new VarCharVector(name, allocator);
+                dictionary = null;
+                indices = null;
+            } else {
+                final DictionaryEncoding encoding = new DictionaryEncoding(dictionaryId, false, INDEX_TYPE);
+                values = new IntVector(name, allocator);
+                fileValues = new IntVector(new Field(name, new FieldType(true, INDEX_TYPE, encoding), null), allocator);
+                dictionary = new Dictionary(new VarCharVector(name, allocator), encoding);
+                indices = new HashMap<>();
+            }
+        }
+
+        void set(int row, String value) {
+            if (dictionary == null) {
+                final VarCharVector strings = (VarCharVector) values;
+                if (value == null) {
+                    strings.setNull(row);
+                } else {
+                    strings.setSafe(row, value.getBytes(StandardCharsets.UTF_8));
+                }
+            } else {
+                final IntVector indexes = (IntVector) values;
+                if (value == null) {
+                    indexes.setNull(row);
+                } else {
+                    indexes.setSafe(row, indices.computeIfAbsent(value, this::addToDictionary));
+                }
+            }
+        }
+
+        private int addToDictionary(String value) {
+            final int index = indices.size();
+            ((VarCharVector) dictionary.getVector()).setSafe(index, value.getBytes(StandardCharsets.UTF_8));
+            return index;
+        }
+
+        void close() {
+            values.close();
+            fileValues.close();
+            if (dictionary != null) {
+                dictionary.getVector().close();
+            }
+        }
+    }
+}
@@ -116,6 +116,21 @@ public class TemplateBasedDataWriter extends FormattedDataWriter{
         }
     }
 
+    @Override
+    public void writeArrowForOneRowPerFormat(List<? extends ProfileResourceNode> nodes, String[] headers, OutputArrow outputArrow) {
+        if (!outputArrow.hasColumns()) {
+            super.setCustomisedHeaders(headers);
+            outputArrow.setColumns(getHeadersToWrite(1));
+        }
+        Map<Integer, ExportTemplateColumnDef> columnPositions = template.getColumnOrderMap();
+        int maxCols = columnPositions.keySet().stream().max(Integer::compare).get();
+        for (ProfileResourceNode node : nodes) {
+            for (Format format : node.getFormatIdentifications()) {
+                outputArrow.writeRow(getOneRowPerFormatNodeEntries(node, format, maxCols, columnPositions));
+            }
+        }
+    }
+
     @Override
     public void writeHeadersForOneRowPerFile(List<? extends ProfileResourceNode> nodes, String[] headers, CsvWriter csvWriter) {
         super.setCustomisedHeaders(headers);
@@ -34,11 +34,11 @@ package uk.gov.nationalarchives.droid.profile.export;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.SQLDataException;
 import java.sql.SQLException;
-import java.util.Map;
-import java.util.List;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import javax.sql.DataSource;
@@ -49,26 +49,34 @@ import org.springframework.jdbc.core.JdbcTemplate;
 
 import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
 import uk.gov.nationalarchives.droid.core.interfaces.filter.Filter;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.expressions.QueryBuilder;
 import uk.gov.nationalarchives.droid.export.interfaces.ItemReader;
 import uk.gov.nationalarchives.droid.export.interfaces.ItemReaderCallback;
 import uk.gov.nationalarchives.droid.export.interfaces.JobCancellationException;
 import uk.gov.nationalarchives.droid.profile.JDBCProfileDao;
-import uk.gov.nationalarchives.droid.profile.NodeMetaData;
 import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
 import uk.gov.nationalarchives.droid.profile.ProfileResourceNodeFilter;
+import uk.gov.nationalarchives.droid.profile.SqlUtils;
 import uk.gov.nationalarchives.droid.profile.referencedata.Format;
 import uk.gov.nationalarchives.droid.results.handlers.JDBCBatchResultHandlerDao;
 
 /**
+ * Reads profile resource nodes a page at a time, in prefix order.
+ * <p>
+ * Each page starts after the prefix of the last node read (keyset pagination), so no page has to
+ * sort or skip over the nodes before it.  Any filter is applied in the database, and the identifications
+ * for each page are read in a single query, so a filtered export only reads the nodes it will write.
+ *
  * @author Brian O'Reilly (based on SQLItemReader).
  */
 public class JDBCSqlItemReader implements ItemReader<ProfileResourceNode> {
 
     private static final String PUID = "PUID";
-    private static final String NODE_ID = "NODE_ID";
     private static final String NAME = "NAME";
     private static final String MIME_TYPE = "MIME_TYPE";
     private static final String VERSION = "VERSION";
+    private static final String NODE_ALIAS = "p";
+    private static final String FORMAT_ALIAS = "f";
 
     private static final String EMPTY_FOLTER_SUBSELECT = " CASE \n"
             + "\t\t  WHEN p.RESOURCE_TYPE = 0 THEN \n"
@@ -77,15 +85,30 @@ public class JDBCSqlItemReader implements ItemReader<ProfileResourceNode> {
             + "\t\t  \t\telse false\n"
             + "\t\t  \tEND\n"
             + "\t\t  ELSE false\n"
-            + "\t\tEND as EMPTY_DIR,  ";
-
-
-    private static final String SELECT_PROFILE_ALL_FIELDS = "select p.*, ";
+            + "\t\tEND as EMPTY_DIR ";
+
+    //CHECKSTYLE:OFF Sql Statements can break the rules, e.g. commas quite legitimate...
+    private static final String SELECT_NODES = "select p.*, " + EMPTY_FOLTER_SUBSELECT
+            + "from profile_resource_node p where p.prefix > ?";
+    private static final String FILTER_ON_FORMATS = " and exists (select 1 from identification f"
+            + " where f.node_id = p.node_id and (%s))";
+    private static final String FILTER_ON_FORMAT_METADATA = " and exists (select 1 from identification fi"
+            + " inner join format f on f.puid = fi.puid where fi.node_id = p.node_id and (%s))";
+    private static final String ORDER_BY_PREFIX = " order by p.prefix fetch first %d rows only";
+    private static final String SELECT_IDENTIFICATIONS = "select node_id, puid from identification where node_id in (%s)"
+            + " order by node_id, puid";
+    //CHECKSTYLE:ON
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
-    private ResultSet cursor;
-    private PreparedStatement profileStatement;
+    private Connection connection;
+    private PreparedStatement nodeStatement;
+    private PreparedStatement identificationStatement;
+    private Object[] filterValues = new Object[0];
+    private final List<ProfileResourceNode> page = new ArrayList<>();
+    private int pageIndex;
+    private String lastPrefix;
+    private boolean lastPage;
     private int fetchSize;
     private int chunkSize;
     private DataSource datasource;
@@ -125,56 +148,16 @@ public class JDBCSqlItemReader implements ItemReader<ProfileResourceNode> {
         this.datasource = resultHandlerDao.getDatasource();
     }
 
-    /**
-     * Reads the next profileResourceNode from the cursor.
-     * @return The ProfileResourceNode to read, or null if there are no further nodes.
-     */
-     private ProfileResourceNode readNode() {
-        try {
-            if (cursor.next()) {
-                ProfileResourceNode profileResourceNode;
-                profileResourceNode = JDBCProfileDao.PROFILE_RESOURCE_NODE_ROW_MAPPER_WITH_EMPTY_FOLDER.mapRow(cursor, 0);
-                NodeMetaData metaData = profileResourceNode.getMetaData();
-
-                int numberOfIdentifications =  cursor.getInt("id_count");
-
-                for (int i = numberOfIdentifications; i > 0; i--) {
-                    String puid = cursor.getString(PUID);
-                    if (cursor.getLong(NODE_ID) == profileResourceNode.getId()) {
-                        Format format = this.identificationReader.getFormatForPuid(puid);
-                        profileResourceNode.addFormatIdentification(format);
-                    } else {
-                        throw new SQLDataException("Unexpected node ID during traversal of identification results!");
-                    }
-
-                    if (i > 1) {
-                        if (!cursor.next()) {
-                            break;
-                        }
-                    }
-                }
-
-                if (metaData.getResourceType() != ResourceType.FOLDER
-                    && profileResourceNode.getIdentificationCount() == null) {
-                    profileResourceNode.setZeroIdentifications();
-                }
-
-                return new ProfileResourceNode(profileResourceNode);
-            }
-        } catch (SQLException ex) {
-            log.error("SQL Exception error reading Profile resource Node in JDBCSqlItemReader class", ex);
-        }
-
-        return null;
-    }
-
     /**
      *
-     * @return The item read from the  cursor (which must be a ProfileResourceNode or subclass thereof
+     * @return The next node which passes the filter, or null if there are no further nodes.
      * BNO: Not particularly elegant, but one way of working around the limitations of Java generics...
      */
     public ProfileResourceNode read() {
-        return readNode();
+        if (pageIndex == page.size() && !lastPage) {
+            readPage();
+        }
+        return pageIndex < page.size() ? page.get(pageIndex++) : null;
     }
 
     /**
@@ -186,9 +169,8 @@ public class JDBCSqlItemReader implements ItemReader<ProfileResourceNode> {
     public void readAll(ItemReaderCallback<ProfileResourceNode> callback, Filter itemFilter) throws JobCancellationException {
         open(itemFilter);
 
-        this.identificationReader = new IdentificationReader();
-        boolean filterExists = itemFilter != null && itemFilter.isEnabled();
-        ProfileResourceNodeFilter nodeFilter = new ProfileResourceNodeFilter(filterExists ? itemFilter : null);
+        // The database applies the filter already; this catches any differences in how it compares values.
+        ProfileResourceNodeFilter nodeFilter = new ProfileResourceNodeFilter(isFiltered(itemFilter) ? itemFilter : null);
         try {
             List<ProfileResourceNode> chunk = new ArrayList<>();
 
@@ -205,7 +187,6 @@ public class JDBCSqlItemReader implements ItemReader<ProfileResourceNode> {
 
             if (!chunk.isEmpty()) {
                 callback.onItem(chunk);
-                chunk = new ArrayList<>();
             }
         } finally {
             close();
@@ -220,7 +201,21 @@ public class JDBCSqlItemReader implements ItemReader<ProfileResourceNode> {
      */
     //@Override
     public void open(Filter itemFilter) {
-        this.cursor = getProfileCursor();
+        this.identificationReader = new IdentificationReader();
+        this.page.clear();
+        this.pageIndex = 0;
+        this.lastPrefix = "";
+        this.lastPage = false;
+        try {
+            connection = datasource.getConnection();
+            nodeStatement = connection.prepareStatement(getNodeQuery(itemFilter));
+            nodeStatement.setFetchSize(fetchSize);
+            identificationStatement = connection.prepareStatement(getIdentificationQuery());
+            identificationStatement.setFetchSize(fetchSize);
+        } catch (SQLException ex) {
+            log.error("A database exception occurred retrieving nodes ", ex);
+            lastPage = true;
+        }
     }
 
     /**
@@ -229,39 +224,25 @@ public class JDBCSqlItemReader implements ItemReader<ProfileResourceNode> {
     //@Override
     public void close() {
         try {
-            if (this.cursor != null) {
-                this.cursor.close();
+            if (this.nodeStatement != null) {
+                this.nodeStatement.close();
             }
-
-            if (this.profileStatement != null) {
-                this.profileStatement.close();
+            if (this.identificationStatement != null) {
+                this.identificationStatement.close();
+            }
+            if (this.connection != null) {
+                this.connection.close();
             }
         } catch (SQLException e) {
             log.error("Error cleaning up JDBSCSqlItemReader", e);
+        } finally {
+            nodeStatement = null;
+            identificationStatement = null;
+            connection = null;
+            page.clear();
         }
     }
 
-    /**
-     * Get a cursor over all of the results, with the forward-only flag set.
-     *
-     * @return a forward-only {@link ResultSet}
-     */
-    private ResultSet getProfileCursor()  {
-        ResultSet profileResultSet = null;
-        try {
-            final Connection conn = datasource.getConnection();
-            String queryString = SELECT_PROFILE_ALL_FIELDS;
-            queryString += EMPTY_FOLTER_SUBSELECT;
-            queryString += "(select count('x') from identification i1 where i1.node_id = p.node_id) AS id_count, i.PUID ";
-            queryString += "from profile_resource_node p  inner join identification i on p.node_id = i.node_id order by p.uri,p.node_id";
-            profileStatement = conn.prepareStatement(queryString);
-            profileResultSet = profileStatement.executeQuery();
-        } catch (SQLException ex) {
-            log.error("A database exception occurred retrieving nodes ", ex);
-        }
-        return profileResultSet;
-    }
-
     /**
      * Set the cursor fetch size.
      * @param fetchSize  The number of records to fetch each time.
@@ -272,18 +253,111 @@ public class JDBCSqlItemReader implements ItemReader<ProfileResourceNode> {
 
     /**
      * @param chunkSize
-     *            the chunkSize to set
+     *            the chunkSize to set; this is also the number of nodes read from the database in each page.
      */
     public void setChunkSize(int chunkSize) {
         this.chunkSize = chunkSize;
     }
 
+    private static boolean isFiltered(Filter filter) {
+        return filter != null && filter.isEnabled() && !filter.getCriteria().isEmpty();
+    }
+
+    /*
+     * Builds the query for a page of nodes, with the filter translated to SQL in the same way as the
+     * profile tree and reports.  Criteria on formats are tested against each of a node's identifications.
+     */
+    private String getNodeQuery(Filter filter) {
+        final StringBuilder query = new StringBuilder(SELECT_NODES);
+        filterValues = new Object[0];
+        if (isFiltered(filter)) {
+            final QueryBuilder queryBuilder = SqlUtils.getQueryBuilder(filter);
+            final String ejbFilter = queryBuilder.toEjbQl();
+            if (!ejbFilter.isEmpty()) {
+                final String sqlFilter = SqlUtils.transformEJBtoSQLFields(ejbFilter, NODE_ALIAS, FORMAT_ALIAS);
+                if (ejbFilter.contains("format.mimeType") || ejbFilter.contains("format.name")) {
+                    query.append(String.format(FILTER_ON_FORMAT_METADATA, sqlFilter));
+                } else if (ejbFilter.contains("format.")) {
+                    query.append(String.format(FILTER_ON_FORMATS, sqlFilter));
+                } else {
+                    query.append(" and (").append(sqlFilter).append(')');
+                }
+                filterValues = queryBuilder.getValues();
+            }
+        }
+        return query.append(String.format(ORDER_BY_PREFIX, chunkSize)).toString();
+    }
+
+    /*
+     * The identification query always has a parameter for each node in a full page, so it can be reused
+     * for every page.  Unused parameters in the last page repeat its last node id.
+     */
+    private String getIdentificationQuery() {
+        final StringBuilder parameters = new StringBuilder(chunkSize * 2);
+        for (int i = 0; i < chunkSize; i++) {
+            parameters.append(i == 0 ? "?" : ",?");
+        }
+        return String.format(SELECT_IDENTIFICATIONS, parameters);
+    }
+
+    private void readPage() {
+        page.clear();
+        pageIndex = 0;
+        try {
+            int position = 1;
+            nodeStatement.setString(position, lastPrefix);
+            for (Object value : filterValues) {
+                SqlUtils.setNonNullableParameter(++position, SqlUtils.transformParameterToSQLValue(value), nodeStatement);
+            }
+            try (ResultSet nodes = nodeStatement.executeQuery()) {
+                while (nodes.next()) {
+                    page.add(JDBCProfileDao.PROFILE_RESOURCE_NODE_ROW_MAPPER_WITH_EMPTY_FOLDER.mapRow(nodes, page.size()));
+                }
+            }
+            lastPage = page.size() < chunkSize;
+            if (!page.isEmpty()) {
+                lastPrefix = page.get(page.size() - 1).getPrefix();
+                addIdentifications();
+            }
+        } catch (SQLException ex) {
+            log.error("SQL Exception error reading Profile resource Nodes in JDBCSqlItemReader class", ex);
+            page.clear();
+            lastPage = true;
+        }
+    }
+
+    private void addIdentifications() throws SQLException {
+        final Map<Long, ProfileResourceNode> nodesById = new HashMap<>(page.size() * 2);
+        int position = 0;
+        for (ProfileResourceNode node : page) {
+            nodesById.put(node.getId(), node);
+            identificationStatement.setLong(++position, node.getId());
+        }
+        final long lastNodeId = page.get(page.size() - 1).getId();
+        while (position < chunkSize) {
+            identificationStatement.setLong(++position, lastNodeId);
+        }
+
+        try (ResultSet identifications = identificationStatement.executeQuery()) {
+            while (identifications.next()) {
+                final ProfileResourceNode node = nodesById.get(identifications.getLong(1));
+                final Format format = identificationReader.getFormatForPuid(identifications.getString(2));
+                if (node != null && format != null) {
+                    node.addFormatIdentification(format);
+                }
+            }
+        }
+
+        for (ProfileResourceNode node : page) {
+            if (node.getMetaData().getResourceType() != ResourceType.FOLDER
+                    && node.getIdentificationCount() == null) {
+                node.setZeroIdentifications();
+            }
+        }
+    }
+
     private class IdentificationReader {
 
-        private static final String FORMAT_QUERY_RANGE = "SELECT T1.NODE_ID, T1.PUID, T2.MIME_TYPE, T2.NAME, T2.VERSION "
-                + "FROM IDENTIFICATION AS T1 INNER JOIN FORMAT AS T2 ON T1.PUID = T2.PUID "
-                + "WHERE T1.NODE_ID BETWEEN ? AND ?";
-        //CHECKSTYLE:ON
         private static final String SELECT_FORMATS               = "SELECT * FROM FORMAT";
         private Map<String, Format> formats;
 
@@ -36,13 +36,18 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.DataSource;
@@ -71,38 +76,35 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
     //CHECKSTYLE:OFF  Various formatting issues with SQL Statements.  E.g. some longer than 120 lines but
     // splitting them likely to hamper rather than assist readability here.
 
-    // How many results in the batch before committing.
-    public static final int BATCH_LIMIT = 100;
+    // The default number of results in the batch before committing.
+    public static final int BATCH_LIMIT = 1000;
 
-    // A "poison-pill" node info to signal to the writing thread that
-    // it should terminate and commit any results so far.
-    private static final NodeInfo COMMIT_SO_FAR = new NodeInfo(null, false);
+    // The default longest time in milliseconds a result waits in a batch before committing.
+    public static final int DEFAULT_BATCH_LATENCY = 500;
 
-    private static final String INSERT_PROFILE_RESOURCE_NODE =
+    // The default number of results which can wait for each writer.
+    public static final int DEFAULT_QUEUE_SIZE = 4096;
+
+    // How often a thread waiting on a database writer checks that the writer is still running.
+    private static final long WRITER_CHECK_MILLIS = 1000;
+
+    private static final String INSERT_PROFILE_RESOURCE_NODE_INTO =
             "INSERT INTO PROFILE_RESOURCE_NODE " +
                     "(NODE_ID,EXTENSION_MISMATCH,FINISHED_TIMESTAMP,IDENTIFICATION_COUNT," +
                     " EXTENSION,HASH,IDENTIFICATION_METHOD,LAST_MODIFIED_DATE,NAME,NODE_STATUS," +
-                    " RESOURCE_TYPE,FILE_SIZE,PARENT_ID,PREFIX,PREFIX_PLUS_ONE,URI) " +
-                    "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+                    " RESOURCE_TYPE,FILE_SIZE,PARENT_ID,PREFIX,PREFIX_PLUS_ONE,URI) VALUES ";
+    private static final String PROFILE_RESOURCE_NODE_VALUES = "(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+    private static final String INSERT_PROFILE_RESOURCE_NODE =
+            INSERT_PROFILE_RESOURCE_NODE_INTO + PROFILE_RESOURCE_NODE_VALUES;
 
     private static final String INSERT_IDENTIFICATIONS       = "INSERT INTO IDENTIFICATION (NODE_ID,PUID) VALUES ";
-    private static final String INSERT_ZERO_IDENTIFICATIONS  = INSERT_IDENTIFICATIONS + "(?,'')";
-    private static final String INSERT_ONE_IDENTIFICATION    = INSERT_IDENTIFICATIONS + "(?,?)";
-    private static final String INSERT_TWO_IDENTIFICATIONS   = INSERT_IDENTIFICATIONS + "(?,?),(?,?)";
-    private static final String INSERT_THREE_IDENTIFICATIONS = INSERT_IDENTIFICATIONS + "(?,?),(?,?),(?,?)";
-    private static final String INSERT_FOUR_IDENTIFICATIONS  = INSERT_IDENTIFICATIONS + "(?,?),(?,?),(?,?),(?,?)";
-    private static final String INSERT_FIVE_IDENTIFICATIONS  = INSERT_IDENTIFICATIONS + "(?,?),(?,?),(?,?),(?,?),(?,?)";
-    private static final String INSERT_SIX_IDENTIFICATIONS   = INSERT_IDENTIFICATIONS + "(?,?),(?,?),(?,?),(?,?),(?,?),(?,?)";
-    private static final String INSERT_SEVEN_IDENTIFICATIONS = INSERT_IDENTIFICATIONS + "(?,?),(?,?),(?,?),(?,?),(?,?),(?,?),(?,?)";
-    private static final String INSERT_EIGHT_IDENTIFICATIONS = INSERT_IDENTIFICATIONS + "(?,?),(?,?),(?,?),(?,?),(?,?),(?,?),(?,?),(?,?)";
-    private static final String INSERT_NINE_IDENTIFICATIONS  = INSERT_IDENTIFICATIONS + "(?,?),(?,?),(?,?),(?,?),(?,?),(?,?),(?,?),(?,?),(?,?)";
-    private static final String INSERT_TEN_IDENTIFICATIONS   = INSERT_IDENTIFICATIONS + "(?,?),(?,?),(?,?),(?,?),(?,?),(?,?),(?,?),(?,?),(?,?),(?,?)";
-
-    private static final String[] INSERT_IDENTIFICATION      = {
-        INSERT_ZERO_IDENTIFICATIONS, INSERT_ONE_IDENTIFICATION,
-        INSERT_TWO_IDENTIFICATIONS, INSERT_THREE_IDENTIFICATIONS, INSERT_FOUR_IDENTIFICATIONS,
-        INSERT_FIVE_IDENTIFICATIONS, INSERT_SIX_IDENTIFICATIONS, INSERT_SEVEN_IDENTIFICATIONS,
-        INSERT_EIGHT_IDENTIFICATIONS, INSERT_NINE_IDENTIFICATIONS, INSERT_TEN_IDENTIFICATIONS, };
+    private static final String IDENTIFICATION_VALUES        = "(?,?)";
+    private static final String INSERT_ONE_IDENTIFICATION    = INSERT_IDENTIFICATIONS + IDENTIFICATION_VALUES;
+
+    // How many rows are inserted by each multi-row insert statement.  Whole groups of rows in a batch
+    // are inserted with these, and any left over with the single row statements.
+    private static final int NODES_PER_INSERT = 10;
+    private static final int IDENTIFICATIONS_PER_INSERT = 20;
 
     private static final String UPDATE_NODE_STATUS = "UPDATE PROFILE_RESOURCE_NODE SET NODE_STATUS = ? WHERE NODE_ID = ?";
     private static final String DELETE_NODE = "DELETE FROM PROFILE_RESOURCE_NODE WHERE NODE_ID = ?";
@@ -150,10 +152,42 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
     private static final String CREATE_IDX_PREFIX_PLUS_ONE_ON_PRN = "CREATE INDEX IDX_PREFIX_PLUS_ONE ON PROFILE_RESOURCE_NODE (PREFIX_PLUS_ONE)";
     //private static String CREATE_IDX_TEXT_ENCODING_ON_PRN = "CREATE INDEX IDX_TEXT_ENCODING ON PROFILE_RESOURCE_NODE (TEXT_ENCODING)";
     //private static String CREATE_IDX_URI_ON_PRN = "CREATE INDEX IDX_URI ON PROFILE_RESOURCE_NODE (URI)";
-    private static final String IDENTIFICATION_CONSTRAINT_1 = "ALTER TABLE IDENTIFICATION ADD CONSTRAINT FK_FH484CCWWL4E5W9QUQKE4N6RI " +
-            "FOREIGN KEY (PUID) REFERENCES FORMAT";
-    private static final String IDENTIFICATION_CONSTRAINT_2 = "ALTER TABLE IDENTIFICATION ADD CONSTRAINT FK_TPXMO6PPUXECKDRELN5PT5E39 " +
-            "FOREIGN KEY (NODE_ID) REFERENCES PROFILE_RESOURCE_NODE";
+    private static final String FK_IDENTIFICATION_FORMAT = "FK_FH484CCWWL4E5W9QUQKE4N6RI";
+    private static final String FK_IDENTIFICATION_NODE = "FK_TPXMO6PPUXECKDRELN5PT5E39";
+    private static final String IDENTIFICATION_CONSTRAINT_1 = "ALTER TABLE IDENTIFICATION ADD CONSTRAINT " + FK_IDENTIFICATION_FORMAT +
+            " FOREIGN KEY (PUID) REFERENCES FORMAT";
+    private static final String IDENTIFICATION_CONSTRAINT_2 = "ALTER TABLE IDENTIFICATION ADD CONSTRAINT " + FK_IDENTIFICATION_NODE +
+            " FOREIGN KEY (NODE_ID) REFERENCES PROFILE_RESOURCE_NODE";
+
+    // Secondary indexes which are only used to filter and report on a profile, so can be dropped while a new
+    // profile is bulk loaded and built once at the end.  The parent id index is kept, as the tree of results
+    // is browsed by it while a profile runs.
+    private static final String[][] DEFERRED_INDEXES = {
+        {"IDX_ID_COUNT", CREATE_IDX_ID_COUNT_ON_PRN},
+        {"IDX_PRN_EXTENSION", CREATE_IDX_PRN_EXT_ON_PRN},
+        {"IDX_PRN_ID_METHOD", CREATE_IDX_PRN_ID_METHOD_ON_PRN},
+        {"IDX_PRN_LAST_MODIFIED", CREATE_IDX_PRN_LAST_MODIFIED_ON_PRN},
+        {"IDX_PRN_NAME", CREATE_IDX_PRN_NAME_ON_PRN},
+        {"IDX_PRN_NODE_STATUS", CREATE_IDX_PRN_NODE_STATUS_ON_PRN},
+        {"IDX_PRN_ID_RESOURCETYPE", CREATE_IDX_ID_RESOURCE_ON_PRN},
+        {"IDX_PRN_FILE_SIZE", CREATE_IDX_PRN_FILE_SIZE_ON_PRN},
+        {"IDX_PREFIX", CREATE_IDX_PREFIX_ON_PRN},
+        {"IDX_PREFIX_PLUS_ONE", CREATE_IDX_PREFIX_PLUS_ONE_ON_PRN},
+    };
+    // A bulk load runs with only the primary keys, dropping the parent id index and the foreign keys as well.
+    private static final String[][] BULK_LOAD_INDEXES = {
+        {"IDX_PARENT_ID", CREATE_IDX_PARENT_ID_ON_PRN},
+    };
+    private static final String[][] BULK_LOAD_CONSTRAINTS = {
+        {FK_IDENTIFICATION_FORMAT, IDENTIFICATION_CONSTRAINT_1},
+        {FK_IDENTIFICATION_NODE, IDENTIFICATION_CONSTRAINT_2},
+    };
+    private static final String DROP_INDEX = "DROP INDEX ";
+    private static final String DROP_CONSTRAINT = "ALTER TABLE IDENTIFICATION DROP CONSTRAINT ";
+    private static final String PROFILE_RESOURCE_NODE = "PROFILE_RESOURCE_NODE";
+    private static final String IDENTIFICATION = "IDENTIFICATION";
+    private static final String INDEX_NAME = "INDEX_NAME";
+    private static final String FK_NAME = "FK_NAME";
 
     private static final String CREATE_UCASE_PRN_EXTN_COL = "ALTER TABLE PROFILE_RESOURCE_NODE ADD COLUMN U_EXTENSION GENERATED ALWAYS AS (UPPER(EXTENSION))";
     private static final String CREATE_UCASE_PRN_NAME_COL = "ALTER TABLE PROFILE_RESOURCE_NODE ADD COLUMN U_NAME GENERATED ALWAYS AS (UPPER(NAME))";
@@ -167,7 +201,6 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
     private static boolean freshTemplate;
     private static final Object LOCKER = new Object();
 
-    private static final int BLOCKING_QUEUE_SIZE = 256;
     private static final int MOST_RECENTLY_ADDED_NODE_CACHE_SIZE = 512;
     private static final int PUID_FORMAT_MAP_SIZE = 2500;
 
@@ -179,11 +212,22 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
     private List<Format> formats;
     private Map<String, Format> puidFormatMap = new HashMap<String, Format>(PUID_FORMAT_MAP_SIZE);
 
-    private BlockingQueue<NodeInfo> blockingQueue = new ArrayBlockingQueue<NodeInfo>(BLOCKING_QUEUE_SIZE);
     private MostRecentlyAddedNodeCache nodeCache  = new MostRecentlyAddedNodeCache(MOST_RECENTLY_ADDED_NODE_CACHE_SIZE);
 
-    private Thread databaseWriterThread;
-    private DatabaseWriter writer;
+    private int writerThreads = 1;
+    private int batchSize = BATCH_LIMIT;
+    private int batchLatency = DEFAULT_BATCH_LATENCY;
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+    private boolean deferIndexes = true;
+    private boolean bulkLoad;
+
+    private volatile List<DatabaseWriter> writers = Collections.emptyList();
+
+    // Whether the secondary indexes can still be dropped before the first node is inserted, and whether they
+    // have been, so must be built again when the results are committed.
+    private final Object indexLock = new Object();
+    private volatile boolean indexesDeferrable;
+    private volatile boolean indexesDeferred;
 
     /**
      * Empty bean constructor.
@@ -332,13 +376,20 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
         for (final Format format : formats) {
             puidFormatMap.put(format.getPuid(), format);
         }
-        nodeIds = new AtomicLong(getMaxNodeId() + 1);
+        final long maxNodeId = getMaxNodeId();
+        nodeIds = new AtomicLong(maxNodeId + 1);
+
+        // Only an empty profile is loaded without its secondary indexes - building them again over an existing
+        // profile would cost more than it saved - unless a bulk load is asked for.  Any left dropped by a run
+        // which did not finish are built again.
+        indexesDeferrable = deferIndexes && maxNodeId == 0 || bulkLoad;
+        createMissingIndexes();
 
         //Formats will not have been populated if this method is called from init() and this is the first run for a new
         // template (See comments under init(), scenario (ii)).  In which case, we delay creating the writer until the
         // format-puid mapping is populated om the subsequent call from initialiseForNewTemplate().
-        if (formats.size() > 0 && this.writer == null) {
-            createAndRunDatabaseWriterThread();
+        if (formats.size() > 0 && this.writers.isEmpty()) {
+            createAndRunDatabaseWriterThreads();
         }
 
     }
@@ -439,20 +490,38 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
     @Override
     public void save(final ProfileResourceNode node, final ResourceId parentId) {
 
+        if (writers.isEmpty()) {
+            log.error("Cannot save a node before the database writers have been initialised: " + node);
+            return;
+        }
         final boolean insertNode = node.getId() == null;
         if (insertNode) {
+            if (indexesDeferrable) {
+                dropDeferredIndexes();
+            }
             setNodeIds(node, parentId);
         }
         try {
             synchronized (nodeCache) { // different threads can add nodes.
                 nodeCache.put(node.getId(), node);
             }
-            blockingQueue.put(new NodeInfo(node, insertNode));
+            if (!getWriter(node.getId()).put(new NodeInfo(node, insertNode))) {
+                log.error("Could not save a node because its database writer has stopped: " + node.getUri());
+            }
         } catch (InterruptedException e) {
             log.debug("Saving was interrupted while putting a new node into the queue.", e);
         }
     }
 
+    /*
+     * Nodes are shared between the writers by id, so a node is always inserted and updated on the same
+     * connection, and its identifications are inserted after it in the same batch.
+     */
+    private DatabaseWriter getWriter(long nodeId) {
+        final List<DatabaseWriter> nodeWriters = writers;
+        return nodeWriters.get((int) (nodeId % nodeWriters.size()));
+    }
+
     @Override
     public void setFilter(Filter filter) {
         // We don't filter resources saved to the database currently - this is only for writing to CSV files.
@@ -462,13 +531,112 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
 
     @Override
     public void commit() {
+        final List<DatabaseWriter> nodeWriters = writers;
+        final NodeInfo commitSoFar = new NodeInfo(new CountDownLatch(nodeWriters.size()));
         try {
-            blockingQueue.put(COMMIT_SO_FAR);
+            for (final DatabaseWriter nodeWriter : nodeWriters) {
+                if (!nodeWriter.put(commitSoFar)) {
+                    log.error("Could not commit the results of a database writer which has stopped.");
+                    commitSoFar.committed();
+                }
+            }
+            // A writer which stops before committing will never count down, so check on them while waiting.
+            while (!commitSoFar.awaitCommit(WRITER_CHECK_MILLIS)) {
+                if (nodeWriters.stream().anyMatch(DatabaseWriter::isStopped)) {
+                    log.error("A database writer stopped before committing its results.");
+                    break;
+                }
+            }
+            if (indexesDeferred) {
+                createDeferredIndexes();
+            }
         } catch (InterruptedException e) {
             log.debug("Interrupted while requesting a commit.", e);
         }
     }
 
+    private void dropDeferredIndexes() {
+        synchronized (indexLock) {
+            if (indexesDeferrable) {
+                indexesDeferrable = false;
+                log.debug("Dropping secondary indexes while the profile is loaded.");
+                executeDeferredStatements(true, bulkLoad);
+                indexesDeferred = true;
+            }
+        }
+    }
+
+    private void createDeferredIndexes() {
+        synchronized (indexLock) {
+            if (indexesDeferred) {
+                createMissingIndexes();
+                indexesDeferred = false;
+            }
+        }
+    }
+
+    private void createMissingIndexes() {
+        executeDeferredStatements(false, true);
+    }
+
+    /*
+     * Drops the deferred indexes and constraints which exist, or creates those which do not,
+     * logging the progress of creating them as it can take some time for a large profile.
+     */
+    private void executeDeferredStatements(boolean drop, boolean includeBulkLoad) {
+        try (Connection conn = datasource.getConnection()) {
+            final Set<String> existing = getIndexAndConstraintNames(conn);
+            final List<String[]> statements = new ArrayList<>();
+            addDeferredStatements(statements, DEFERRED_INDEXES, existing, drop, DROP_INDEX);
+            if (includeBulkLoad) {
+                addDeferredStatements(statements, BULK_LOAD_INDEXES, existing, drop, DROP_INDEX);
+                addDeferredStatements(statements, BULK_LOAD_CONSTRAINTS, existing, drop, DROP_CONSTRAINT);
+            }
+            final long started = System.currentTimeMillis();
+            for (int i = 0; i < statements.size(); i++) {
+                final String[] statement = statements.get(i);
+                if (!drop) {
+                    log.info(String.format("Building profile database index %d of %d: %s",
+                            i + 1, statements.size(), statement[0]));
+                }
+                try (PreparedStatement ddlStatement = conn.prepareStatement(statement[1])) {
+                    ddlStatement.execute();
+                }
+                conn.commit();
+            }
+            if (!drop && !statements.isEmpty()) {
+                log.info(String.format("Built %d profile database indexes in %d ms",
+                        statements.size(), System.currentTimeMillis() - started));
+            }
+        } catch (SQLException e) {
+            log.error("A database exception occurred maintaining the profile database indexes.", e);
+        }
+    }
+
+    private static Set<String> getIndexAndConstraintNames(Connection conn) throws SQLException {
+        final Set<String> names = new HashSet<>();
+        try (ResultSet indexes = conn.getMetaData().getIndexInfo(null, null, PROFILE_RESOURCE_NODE, false, true)) {
+            while (indexes.next()) {
+                names.add(indexes.getString(INDEX_NAME));
+            }
+        }
+        try (ResultSet foreignKeys = conn.getMetaData().getImportedKeys(null, null, IDENTIFICATION)) {
+            while (foreignKeys.next()) {
+                names.add(foreignKeys.getString(FK_NAME));
+            }
+        }
+        return names;
+    }
+
+    private static void addDeferredStatements(List<String[]> statements, String[][] deferred, Set<String> existing,
+                                              boolean drop, String dropStatement) {
+        for (String[] definition : deferred) {
+            if (existing.contains(definition[0]) == drop) {
+                statements.add(new String[] {definition[0], drop ? dropStatement + definition[0] : definition[1]});
+            }
+        }
+    }
+
     private void setNodeIds(ProfileResourceNode node, ResourceId parentId) {
 
         final Long nodeId = nodeIds.incrementAndGet();
@@ -693,22 +861,23 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
         //CHECKSTYLE:ON
     }
 
-    private void createAndRunDatabaseWriterThread() {
-        writer = new DatabaseWriter(blockingQueue, datasource, BATCH_LIMIT);
-        try {
-            writer.init();
-        } catch (SQLException e) {
-            //TODO: not a runtime exception - what to use here?
-            throw new RuntimeException("Could not initialise the database writer - fatal error.", e);
+    private void createAndRunDatabaseWriterThreads() {
+        final int numWriters = Math.max(1, writerThreads);
+        final List<DatabaseWriter> newWriters = new ArrayList<>(numWriters);
+        for (int i = 0; i < numWriters; i++) {
+            final DatabaseWriter writer = new DatabaseWriter(queueSize, datasource, batchSize, batchLatency);
+            try {
+                writer.init();
+            } catch (SQLException e) {
+                //TODO: not a runtime exception - what to use here?
+                throw new RuntimeException("Could not initialise the database writer - fatal error.", e);
+            }
+            newWriters.add(writer);
         }
-        databaseWriterThread = new Thread(writer);
-
-        try {
-            databaseWriterThread.join();
-            databaseWriterThread.start();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        for (int i = 0; i < numWriters; i++) {
+            new Thread(newWriters.get(i), "database-writer-" + i).start();
         }
+        writers = newWriters;
     }
 
     /**
@@ -717,7 +886,62 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
     public void cleanup() {
         //System.out.println("In cleanUp() not doing anything...");
         //System.out.println("Cleaning up JDBCBatchResultHandlerDao, calling closeResources()");
-        this.writer.closeResources();
+        for (final DatabaseWriter writer : writers) {
+            writer.closeResources();
+        }
+    }
+
+    /**
+     * Sets the number of threads, each with their own connection, which write results to the database.
+     * Must be set before the writers are started by {@link #init()}.
+     * @param writerThreads The number of writer threads.
+     */
+    public void setWriterThreads(int writerThreads) {
+        this.writerThreads = writerThreads;
+    }
+
+    /**
+     * Sets how many results each writer batches up before committing them.
+     * @param batchSize The number of results in a batch.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the longest time in milliseconds a result waits in a batch before it is committed,
+     * or zero to wait until the batch is full.
+     * @param batchLatency The longest time to wait in milliseconds.
+     */
+    public void setBatchLatency(int batchLatency) {
+        this.batchLatency = batchLatency;
+    }
+
+    /**
+     * Sets how many results can wait to be batched by each writer before saving a result blocks.
+     * @param queueSize The size of each writer's queue.
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Sets whether the secondary indexes of a new profile are dropped while it is loaded,
+     * and built again when the results are committed.
+     * @param deferIndexes Whether to defer building the secondary indexes.
+     */
+    public void setDeferIndexes(boolean deferIndexes) {
+        this.deferIndexes = deferIndexes;
+    }
+
+    /**
+     * Sets whether the profile is bulk loaded with only its primary keys, building all its other indexes
+     * and constraints when the results are committed at the end of the run.  Building them again takes
+     * time whenever a run finishes or is paused, so this suits large profiles run from the command line.
+     * @param bulkLoad Whether to bulk load the profile.
+     */
+    public void setBulkLoad(boolean bulkLoad) {
+        this.bulkLoad = bulkLoad;
     }
 
     /**
@@ -740,12 +964,23 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
 
         private ProfileResourceNode node;
         private boolean insertNode;
+        private CountDownLatch committed;
 
         public NodeInfo(ProfileResourceNode node, boolean insertNode) {
             this.node = node;
             this.insertNode = insertNode;
         }
 
+        /**
+         * A "poison-pill" node info to signal to each writing thread that
+         * it should commit any results so far.
+         *
+         * @param committed A latch counted down by each writer once it has committed.
+         */
+        public NodeInfo(CountDownLatch committed) {
+            this.committed = committed;
+        }
+
         public ProfileResourceNode getNode() {
             return node;
         }
@@ -753,6 +988,18 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
         public boolean isInsertNode() {
             return insertNode;
         }
+
+        public boolean isCommit() {
+            return committed != null;
+        }
+
+        public void committed() {
+            committed.countDown();
+        }
+
+        public boolean awaitCommit(long timeoutMillis) throws InterruptedException {
+            return committed.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
@@ -785,8 +1032,8 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
     }
 
     /**
-     * Class to run in a thread which takes from the blocking queue and batch commits
-     * to the database.
+     * Class to run in a thread which takes from its blocking queue and batch commits
+     * to the database, when the batch is full or its oldest result has waited long enough.
      */
     private static class DatabaseWriter implements Runnable {
 
@@ -806,23 +1053,40 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
         private static final int INSERT_NODE_FINISHED_INDEX = 3;
         private static final int INSERT_NODE_MISMATCH_INDEX = 2;
         private static final int INSERT_NODE_ID_INDEX = 1;
+        private static final int INSERT_NODE_PARAMETERS = INSERT_NODE_URI_INDEX;
 
         private final Logger log = LoggerFactory.getLogger(getClass());
         private BlockingQueue<NodeInfo> blockingQueue;
         private DataSource datasource;
         private Connection connection;
         private PreparedStatement insertNodeStatement;
+        private PreparedStatement insertNodesStatement;
+        private PreparedStatement insertIdentificationStatement;
+        private PreparedStatement insertIdentificationsStatement;
         private PreparedStatement updateNodeStatement;
-        private Map<Integer, PreparedStatement> insertIdentifications;
-        private volatile int batchCount;
         private final int batchLimit;
+        private final long batchLatencyNanos;
 
-        DatabaseWriter(final BlockingQueue<NodeInfo> blockingQueue,
+        // The results batched up since the last commit.
+        private final List<ProfileResourceNode> nodesToInsert;
+        private final List<ProfileResourceNode> nodesToUpdate;
+        private final List<Long> identificationNodeIds;
+        private final List<String> identificationPuids;
+        private long flushDeadline;
+        private volatile boolean stopped;
+
+        DatabaseWriter(final int queueSize,
                        final DataSource datasource,
-                       final int batchLimit) {
-            this.blockingQueue = blockingQueue;
-            this.datasource    = datasource;
-            this.batchLimit    = batchLimit;
+                       final int batchLimit,
+                       final int batchLatency) {
+            this.blockingQueue     = new ArrayBlockingQueue<NodeInfo>(queueSize);
+            this.datasource        = datasource;
+            this.batchLimit        = Math.max(1, batchLimit);
+            this.batchLatencyNanos = TimeUnit.MILLISECONDS.toNanos(batchLatency);
+            this.nodesToInsert     = new ArrayList<>(this.batchLimit);
+            this.nodesToUpdate     = new ArrayList<>();
+            this.identificationNodeIds = new ArrayList<>(this.batchLimit);
+            this.identificationPuids   = new ArrayList<>(this.batchLimit);
         }
 
         /**
@@ -835,14 +1099,35 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
         public void init() throws SQLException {
             connection = datasource.getConnection();
             insertNodeStatement = connection.prepareStatement(INSERT_PROFILE_RESOURCE_NODE);
+            insertNodesStatement = connection.prepareStatement(
+                    buildMultiRowInsert(INSERT_PROFILE_RESOURCE_NODE_INTO, PROFILE_RESOURCE_NODE_VALUES, NODES_PER_INSERT));
+            insertIdentificationStatement = connection.prepareStatement(INSERT_ONE_IDENTIFICATION);
+            insertIdentificationsStatement = connection.prepareStatement(
+                    buildMultiRowInsert(INSERT_IDENTIFICATIONS, IDENTIFICATION_VALUES, IDENTIFICATIONS_PER_INSERT));
             updateNodeStatement = connection.prepareStatement(UPDATE_NODE_STATUS);
-            final int maxStatements = 64;
+        }
 
-            insertIdentifications = new HashMap<Integer, PreparedStatement>(maxStatements);
-            for (int i = 0; i < INSERT_IDENTIFICATION.length; i++) {
-                final PreparedStatement insertStatement = connection.prepareStatement(INSERT_IDENTIFICATION[i]);
-                insertIdentifications.put(i, insertStatement);
+        /**
+         * Puts a node to save, or a request to commit, on the queue of this writer.
+         *
+         * @param info The node info to put on the queue.
+         * @return false if the writer has stopped, so the node info will never be taken from the queue.
+         * @throws InterruptedException if interrupted while waiting for space in the queue.
+         */
+        public boolean put(final NodeInfo info) throws InterruptedException {
+            while (!blockingQueue.offer(info, WRITER_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (stopped) {
+                    return false;
+                }
             }
+            return !stopped;
+        }
+
+        /**
+         * @return Whether the writer has stopped taking nodes from its queue.
+         */
+        public boolean isStopped() {
+            return stopped;
         }
 
         @Override
@@ -850,45 +1135,101 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
             try {
                 // Loop until we're interrupted.
                 while (true) {
-                    final NodeInfo info = blockingQueue.take(); // this will block if there's nothing in the queue.
-                    if (info == COMMIT_SO_FAR) {
-                        commit();
-                    } else {
-                        try {
-                            if (info.insertNode) { // are we inserting a node, or updating one already saved?
-                                batchInsertNode(info.getNode());
-                            } else {
-                                updateNodeStatus(info.getNode());
-                            }
-                        } catch (SQLException e) {
-                            log.error("A database problem occurred inserting a node: " + info.getNode(), e);
-                        }
+                    final NodeInfo info = takeNext(); // this will block if there's nothing in the queue.
+                    //CHECKSTYLE:OFF - one bad result must not stop the writer, or commits would wait for it forever.
+                    try {
+                        process(info);
+                    } catch (RuntimeException e) {
+                        log.error("The database writer could not save a result.", e);
                     }
+                    //CHECKSTYLE:ON
                 }
             } catch (InterruptedException e) {
                 log.debug("The database writer thread was interrupted.", e);
+            } finally {
+                stopped = true;
             }
             //TODO: unless the thread is interrupted, how does it clean up resources?
             System.out.println("Calling closeResources() from  the run method");
             closeResources();
         }
 
+        private void process(final NodeInfo info) {
+            if (info == null) { // the oldest result in the batch has waited long enough.
+                commit();
+            } else if (info.isCommit()) {
+                try {
+                    commit();
+                } finally {
+                    info.committed();
+                }
+            } else {
+                addToBatch(info);
+            }
+        }
+
+        private NodeInfo takeNext() throws InterruptedException {
+            if (getBatchCount() == 0 || batchLatencyNanos <= 0) {
+                return blockingQueue.take();
+            }
+            return blockingQueue.poll(flushDeadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
 
+        private int getBatchCount() {
+            return nodesToInsert.size() + nodesToUpdate.size();
+        }
+
+        private void addToBatch(final NodeInfo info) {
+            if (getBatchCount() == 0) {
+                flushDeadline = System.nanoTime() + batchLatencyNanos;
+            }
+            final ProfileResourceNode node = info.getNode();
+            if (info.isInsertNode()) { // are we inserting a node, or updating one already saved?
+                nodesToInsert.add(node);
+                addIdentifications(node);
+            } else if (node.getId() == null) {
+                log.error("A node was flagged for status update, but it did not have an id already.  Parent id was: "
+                        + node.getParentId());
+            } else if (node.getMetaData() == null) {
+                log.error("A node was flagged for status update, but had no status metadata. Node id was: "
+                        + node.getId());
+            } else {
+                nodesToUpdate.add(node);
+            }
+            if (getBatchCount() >= batchLimit) {
+                commit();
+            }
+        }
+
+        private void addIdentifications(final ProfileResourceNode node) {
+            //TODO: check for NULL format weirdness...
+            final Long nodeId = node.getId();
+            final Integer numIdentifications = node.getIdentificationCount();
+            if (numIdentifications == null || numIdentifications == 0) {
+                identificationNodeIds.add(nodeId);
+                identificationPuids.add("");
+            } else {
+                for (final Format format : node.getFormatIdentifications()) {
+                    if (!Format.NULL.equals(format)) { // not counted as an identification.
+                        identificationNodeIds.add(nodeId);
+                        String p = format.getPuid();
+                        identificationPuids.add(p == null ? "" : p);
+                    }
+                }
+            }
+        }
 
         private void closeResources() {
             //System.out.println("In JDBCBatchResultHandlerDao - closeResources()");
-            for (final PreparedStatement statement : insertIdentifications.values()) {
+            final PreparedStatement[] statements = {insertNodeStatement, insertNodesStatement,
+                insertIdentificationStatement, insertIdentificationsStatement, updateNodeStatement, };
+            for (final PreparedStatement statement : statements) {
                 try {
                     statement.close();
                 } catch (SQLException s) {
-                    log.error("A problem occurred closing an identification prepared statement.", s);
+                    log.error("A problem occurred closing a prepared statement.", s);
                 }
             }
-            try {
-                insertNodeStatement.close();
-            } catch (SQLException s) {
-                log.error("A problem occurred closing a node insert prepared statement.", s);
-            }
             try {
                 connection.close();
             } catch (SQLException s) {
@@ -896,13 +1237,123 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
             }
         }
 
+        /**
+         * Commits everything batched so far.
+         * <p>
+         * New nodes are inserted first, followed by their identifications and then any status updates,
+         * so updates of nodes inserted in the same batch find them.
+         */
+        public void commit() {
+            if (getBatchCount() > 0) {
+                try {
+                    insertNodes();
+                    insertIdentifications();
+                    updateNodeStatuses();
+                    connection.commit();
+                    //CHECKSTYLE:OFF - whatever went wrong, the results in the batch are saved one at a time instead.
+                } catch (SQLException | RuntimeException e) {
+                    //CHECKSTYLE:ON
+                    log.error("A problem occurred attempting to batch commit nodes into the database. "
+                            + "Saving them one at a time instead.", e);
+                    rollback();
+                    commitOneAtATime();
+                } finally {
+                    nodesToInsert.clear();
+                    nodesToUpdate.clear();
+                    identificationNodeIds.clear();
+                    identificationPuids.clear();
+                }
+            }
+        }
+
+        private void rollback() {
+            try {
+                insertNodesStatement.clearBatch();
+                insertNodeStatement.clearBatch();
+                insertIdentificationsStatement.clearBatch();
+                insertIdentificationStatement.clearBatch();
+                updateNodeStatement.clearBatch();
+                connection.rollback();
+            } catch (SQLException e) {
+                log.error("A problem occurred rolling back a failed batch of nodes.", e);
+            }
+        }
+
+        /**
+         * Commits each node in a failed batch on its own, with its identifications, so only the nodes
+         * which cannot be saved are lost.  Each of those is logged.
+         */
+        private void commitOneAtATime() {
+            final java.sql.Date finished = new java.sql.Date(new java.util.Date().getTime());
+            int identification = 0;
+            for (final ProfileResourceNode node : nodesToInsert) {
+                final Long nodeId = node.getId();
+                //CHECKSTYLE:OFF - a node which cannot be saved is logged, and the rest are still saved.
+                try {
+                    setNodeParameters(insertNodeStatement, 0, node, finished);
+                    insertNodeStatement.executeUpdate();
+                    for (int i = identification; i < identificationNodeIds.size()
+                            && identificationNodeIds.get(i).equals(nodeId); i++) {
+                        insertIdentificationStatement.setLong(1, nodeId);
+                        insertIdentificationStatement.setString(2, identificationPuids.get(i));
+                        insertIdentificationStatement.executeUpdate();
+                    }
+                    connection.commit();
+                } catch (SQLException | RuntimeException e) {
+                    //CHECKSTYLE:ON
+                    log.error("Could not save the result for " + node.getUri(), e);
+                    rollback();
+                }
+                while (identification < identificationNodeIds.size()
+                        && identificationNodeIds.get(identification).equals(nodeId)) {
+                    identification++;
+                }
+            }
+            for (final ProfileResourceNode node : nodesToUpdate) {
+                //CHECKSTYLE:OFF - a node which cannot be updated is logged, and the rest are still updated.
+                try {
+                    SqlUtils.setNullableEnumAsInt(1, node.getMetaData().getNodeStatus(), updateNodeStatement);
+                    updateNodeStatement.setLong(2, node.getId());
+                    updateNodeStatement.executeUpdate();
+                    connection.commit();
+                } catch (SQLException | RuntimeException e) {
+                    //CHECKSTYLE:ON
+                    log.error("Could not update the status of the result for " + node.getUri(), e);
+                    rollback();
+                }
+            }
+        }
+
+        private void insertNodes() throws SQLException {
+            final int numNodes = nodesToInsert.size();
+            final int multiRowNodes = numNodes - numNodes % NODES_PER_INSERT;
+            final java.sql.Date finished = new java.sql.Date(new java.util.Date().getTime());
+            for (int i = 0; i < multiRowNodes; i += NODES_PER_INSERT) {
+                for (int row = 0; row < NODES_PER_INSERT; row++) {
+                    setNodeParameters(insertNodesStatement, row * INSERT_NODE_PARAMETERS,
+                            nodesToInsert.get(i + row), finished);
+                }
+                insertNodesStatement.addBatch();
+            }
+            for (int i = multiRowNodes; i < numNodes; i++) {
+                setNodeParameters(insertNodeStatement, 0, nodesToInsert.get(i), finished);
+                insertNodeStatement.addBatch();
+            }
+            if (multiRowNodes > 0) {
+                insertNodesStatement.executeBatch();
+            }
+            if (multiRowNodes < numNodes) {
+                insertNodeStatement.executeBatch();
+            }
+        }
+
         //CHECKSTYLE:OFF  Too many statements..
-        private void batchInsertNode(final ProfileResourceNode node) throws SQLException {
-            // insert main node:
+        private void setNodeParameters(final PreparedStatement insertNode, final int offset,
+                                       final ProfileResourceNode node, final java.sql.Date finished)
+            throws SQLException {
             final long nodeId = node.getId();
             final NodeMetaData metadata = node.getMetaData();
             final String uri = node.getUri().toString();
-            final java.sql.Date finished = new java.sql.Date(new java.util.Date().getTime());
             final boolean mismatch = node.getExtensionMismatch();
             final String name = metadata.getName();
             final String hash = metadata.getHash(); // nullable
@@ -916,118 +1367,67 @@ public class JDBCBatchResultHandlerDao implements ResultHandlerDao {
             final Long nodeParentId = node.getParentId();
             final String nodePrefix = node.getPrefix();
             final String nodePrefixPlusOne = node.getPrefixPlusOne();
-            final PreparedStatement insertNode = insertNodeStatement;
-            insertNode.setLong(INSERT_NODE_ID_INDEX, nodeId);
-            insertNode.setBoolean(INSERT_NODE_MISMATCH_INDEX, mismatch);
-            SqlUtils.setNullableTimestamp(INSERT_NODE_FINISHED_INDEX, finished, insertNode);
-            SqlUtils.setNullableInteger(INSERT_NODE_NUM_IDENTS_INDEX,  numIdentifications, insertNode);
-            SqlUtils.setNullableString(INSERT_NODE_EXT_INDEX,  extension, insertNode);
-            SqlUtils.setNullableString(INSERT_NODE_HASH_INDEX,  hash, insertNode);
-            SqlUtils.setNullableEnumAsInt(INSERT_NODE_METHOD_INDEX, method, insertNode);
-            SqlUtils.setNullableTimestamp(INSERT_NODE_MOD_DATE_INDEX, modDate, insertNode);
-            insertNode.setString(INSERT_NODE_NAME_INDEX,  name);
-            SqlUtils.setNullableEnumAsInt(INSERT_NODE_STATUS_INDEX, nodeStatus, insertNode);
-            SqlUtils.setNullableEnumAsInt(INSERT_NODE_RESOURCE_TYPE_INDEX, resourceType, insertNode);
-            SqlUtils.setNullableLong(INSERT_NODE_SIZE_INDEX, size, insertNode);
-            SqlUtils.setNullableLong(INSERT_NODE_PARENT_ID_INDEX, nodeParentId, insertNode);
-            SqlUtils.setNullableString(INSERT_NODE_PREFIX_INDEX, nodePrefix, insertNode);
-            SqlUtils.setNullableString(INSERT_NODE_PREFIX_PLUS_ONE_INDEX, nodePrefixPlusOne, insertNode);
-            insertNode.setString(INSERT_NODE_URI_INDEX, uri);
-            insertNode.addBatch();
-
-            // insert its identifications:
-            //TODO: check for NULL format weirdness...
-
-            final int identifications = numIdentifications == null ? 0 : numIdentifications;
-            final PreparedStatement statement = getIdentificationStatement(identifications);
-            if (identifications == 0) {
-                statement.setLong(1, nodeId);
-            } else {
-                int parameterCount = 1;
-                for (final Format format : node.getFormatIdentifications()) {
-                    statement.setLong(parameterCount++, nodeId);
-                    String p = format.getPuid();
-                    statement.setString(parameterCount++, p == null ? "" : p);
-                }
-            }
-            statement.addBatch();
-
-            commitBatchIfLargeEnough();
+            insertNode.setLong(offset + INSERT_NODE_ID_INDEX, nodeId);
+            insertNode.setBoolean(offset + INSERT_NODE_MISMATCH_INDEX, mismatch);
+            SqlUtils.setNullableTimestamp(offset + INSERT_NODE_FINISHED_INDEX, finished, insertNode);
+            SqlUtils.setNullableInteger(offset + INSERT_NODE_NUM_IDENTS_INDEX,  numIdentifications, insertNode);
+            SqlUtils.setNullableString(offset + INSERT_NODE_EXT_INDEX,  extension, insertNode);
+            SqlUtils.setNullableString(offset + INSERT_NODE_HASH_INDEX,  hash, insertNode);
+            SqlUtils.setNullableEnumAsInt(offset + INSERT_NODE_METHOD_INDEX, method, insertNode);
+            SqlUtils.setNullableTimestamp(offset + INSERT_NODE_MOD_DATE_INDEX, modDate, insertNode);
+            insertNode.setString(offset + INSERT_NODE_NAME_INDEX,  name);
+            SqlUtils.setNullableEnumAsInt(offset + INSERT_NODE_STATUS_INDEX, nodeStatus, insertNode);
+            SqlUtils.setNullableEnumAsInt(offset + INSERT_NODE_RESOURCE_TYPE_INDEX, resourceType, insertNode);
+            SqlUtils.setNullableLong(offset + INSERT_NODE_SIZE_INDEX, size, insertNode);
+            SqlUtils.setNullableLong(offset + INSERT_NODE_PARENT_ID_INDEX, nodeParentId, insertNode);
+            SqlUtils.setNullableString(offset + INSERT_NODE_PREFIX_INDEX, nodePrefix, insertNode);
+            SqlUtils.setNullableString(offset + INSERT_NODE_PREFIX_PLUS_ONE_INDEX, nodePrefixPlusOne, insertNode);
+            insertNode.setString(offset + INSERT_NODE_URI_INDEX, uri);
         }
         //CHECKSTYLE:ON
 
-        private void updateNodeStatus(final ProfileResourceNode node) throws SQLException {
-            final Long nodeId = node.getId();
-            if (nodeId != null) {
-                NodeMetaData nm = node.getMetaData();
-                if (nm != null) {
-                    SqlUtils.setNullableEnumAsInt(1, nm.getNodeStatus(), updateNodeStatement);
-                    updateNodeStatement.setLong(2, nodeId);
-                    updateNodeStatement.addBatch();
-                    commitBatchIfLargeEnough();
-                } else {
-                    log.error("A node was flagged for status update, but had no status metadata. Node id was: "
-                            + nodeId);
+        private void insertIdentifications() throws SQLException {
+            final int numIdentifications = identificationNodeIds.size();
+            final int multiRowIdentifications = numIdentifications - numIdentifications % IDENTIFICATIONS_PER_INSERT;
+            for (int i = 0; i < multiRowIdentifications; i += IDENTIFICATIONS_PER_INSERT) {
+                int parameterCount = 1;
+                for (int row = i; row < i + IDENTIFICATIONS_PER_INSERT; row++) {
+                    insertIdentificationsStatement.setLong(parameterCount++, identificationNodeIds.get(row));
+                    insertIdentificationsStatement.setString(parameterCount++, identificationPuids.get(row));
                 }
-            } else {
-                log.error("A node was flagged for status update, but it did not have an id already.  Parent id was: "
-                        + node.getParentId());
+                insertIdentificationsStatement.addBatch();
             }
-        }
-
-        private void commitBatchIfLargeEnough() {
-            // Commit if exceeded batch limit:
-            if (batchCount++ >= batchLimit) {
-                batchCount = 0;
-                try {
-                    // Insert new nodes:
-                    insertNodeStatement.executeBatch();
-
-                    // Update node status:
-                    updateNodeStatement.executeBatch();
-
-                    // Insert identifications of new nodes:
-                    for (final PreparedStatement identifications : insertIdentifications.values()) {
-                        identifications.executeBatch();
-                        //TODO: optimise? what about identification statements not used in this run?
-                    }
-                    connection.commit();
-                } catch (SQLException e) {
-                    log.error("A problem occurred attempting to batch commit nodes into the database. ", e);
-                }
+            for (int i = multiRowIdentifications; i < numIdentifications; i++) {
+                insertIdentificationStatement.setLong(1, identificationNodeIds.get(i));
+                insertIdentificationStatement.setString(2, identificationPuids.get(i));
+                insertIdentificationStatement.addBatch();
+            }
+            if (multiRowIdentifications > 0) {
+                insertIdentificationsStatement.executeBatch();
+            }
+            if (multiRowIdentifications < numIdentifications) {
+                insertIdentificationStatement.executeBatch();
             }
         }
 
-        /**
-         * Commits everything batched so far.
-         */
-        public void commit() {
-            batchCount = BATCH_LIMIT;
-            commitBatchIfLargeEnough();
-        }
-
-        private PreparedStatement getIdentificationStatement(final int numIdentifications) throws SQLException {
-            PreparedStatement statement = insertIdentifications.get(numIdentifications);
-            if (statement == null) {
-                final String newIdentificationSQL = buildInsertIdentificationString(numIdentifications);
-                statement = connection.prepareStatement(newIdentificationSQL);
-                insertIdentifications.put(numIdentifications, statement);
+        private void updateNodeStatuses() throws SQLException {
+            for (final ProfileResourceNode node : nodesToUpdate) {
+                SqlUtils.setNullableEnumAsInt(1, node.getMetaData().getNodeStatus(), updateNodeStatement);
+                updateNodeStatement.setLong(2, node.getId());
+                updateNodeStatement.addBatch();
+            }
+            if (!nodesToUpdate.isEmpty()) {
+                updateNodeStatement.executeBatch();
             }
-            return statement;
         }
 
-        private String buildInsertIdentificationString(final int numIdentifications) {
-
-            final int baseInsertStatementSize = 60;
-            final int sizeForEachIdentification = 6;
-
-            final StringBuilder builder =
-                    new StringBuilder(baseInsertStatementSize + numIdentifications * sizeForEachIdentification);
-            builder.append(INSERT_IDENTIFICATIONS);
-            for (int i = 0; i < numIdentifications - 1; i++) {
-                builder.append("(?,?),");
+        private static String buildMultiRowInsert(final String insert, final String values, final int numRows) {
+            final StringBuilder builder = new StringBuilder(insert.length() + numRows * (values.length() + 1));
+            builder.append(insert);
+            for (int i = 0; i < numRows - 1; i++) {
+                builder.append(values).append(',');
             }
-            builder.append("(?,?)");
+            builder.append(values);
             return builder.toString();
         }
     }
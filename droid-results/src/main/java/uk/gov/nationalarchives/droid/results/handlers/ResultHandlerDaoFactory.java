@@ -31,9 +31,12 @@
  */
 package uk.gov.nationalarchives.droid.results.handlers;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Writer;
 
@@ -41,8 +44,11 @@ import javax.sql.DataSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.FactoryBean;
 
+import uk.gov.nationalarchives.droid.export.interfaces.ExportOutputOptions;
 import uk.gov.nationalarchives.droid.export.interfaces.ItemWriter;
 
 /**
@@ -51,8 +57,11 @@ import uk.gov.nationalarchives.droid.export.interfaces.ItemWriter;
  * If there is a writer set, then the writer dao is created.  If no writer is present, then
  * the database result handler dao is created.  There must always be a data source, no matter
  * which result handler dao is created.
+ * <p>
+ * If the output options are for binary output, an output stream is opened on the output file
+ * instead of a writer, and the output is completed when the factory is destroyed.
  */
-public class ResultHandlerDaoFactory implements FactoryBean<ResultHandlerDao> {
+public class ResultHandlerDaoFactory implements FactoryBean<ResultHandlerDao>, DisposableBean {
 
     private static final String CONSOLE = "stdout"; //TODO: what should this be?
     private static final Logger LOG = LoggerFactory.getLogger(WriterResultHandlerDao.class);
@@ -60,6 +69,17 @@ public class ResultHandlerDaoFactory implements FactoryBean<ResultHandlerDao> {
     private DataSource datasource;
     private ItemWriter itemWriter;
     private Writer writer;
+    private OutputStream outputStream;
+    private String outputFilePath;
+    private ExportOutputOptions outputOptions;
+    private ResultHandlerDao resultHandlerDao;
+
+    private int databaseWriters = 1;
+    private int databaseBatchSize = JDBCBatchResultHandlerDao.BATCH_LIMIT;
+    private int databaseBatchLatency = JDBCBatchResultHandlerDao.DEFAULT_BATCH_LATENCY;
+    private int databaseQueueSize = JDBCBatchResultHandlerDao.DEFAULT_QUEUE_SIZE;
+    private boolean deferDatabaseIndexes = true;
+    private boolean bulkLoad;
 
     /**
      * Empty constructor.
@@ -113,16 +133,41 @@ public class ResultHandlerDaoFactory implements FactoryBean<ResultHandlerDao> {
      * @return A result handler to write the results to.
      */
     public ResultHandlerDao getObject() {
+        if (writer == null && outputStream == null) {
+            openOutputFile();
+        }
         final ResultHandlerDao result;
-        if (writer == null) {
-            result = new JDBCBatchResultHandlerDao(datasource);
+        if (outputStream != null) {
+            final WriterResultHandlerDao writerDao = new WriterResultHandlerDao(itemWriter, datasource);
+            writerDao.setOutputStream(outputStream);
+            result = writerDao;
+        } else if (writer == null) {
+            final JDBCBatchResultHandlerDao databaseDao = new JDBCBatchResultHandlerDao(datasource);
+            databaseDao.setWriterThreads(databaseWriters);
+            databaseDao.setBatchSize(databaseBatchSize);
+            databaseDao.setBatchLatency(databaseBatchLatency);
+            databaseDao.setQueueSize(databaseQueueSize);
+            databaseDao.setDeferIndexes(deferDatabaseIndexes);
+            databaseDao.setBulkLoad(bulkLoad);
+            result = databaseDao;
         } else {
             result = new WriterResultHandlerDao(itemWriter, writer, datasource);
         }
         result.init();
+        resultHandlerDao = result;
         return result;
     }
 
+    /**
+     * Completes the output of a writer result handler dao, if one was created.
+     */
+    @Override
+    public void destroy() {
+        if (resultHandlerDao instanceof WriterResultHandlerDao writerDao) {
+            writerDao.close();
+        }
+    }
+
     @Override
     public Class<?> getObjectType() {
         return ResultHandlerDao.class;
@@ -154,17 +199,39 @@ public class ResultHandlerDaoFactory implements FactoryBean<ResultHandlerDao> {
 
     /**
      * The path to a file where the data is written out to.
-     * If this is set, a Writer is constructed which writes the data out to that file.
+     * If this is set, a Writer (or an OutputStream for binary output) is constructed which writes
+     * the data out to that file when the result handler dao is created.
      * @param outputFilePath The path to a file where the data will be written.
      */
     public void setOutputFilePath(String outputFilePath) {
+        this.outputFilePath = outputFilePath;
+    }
+
+    /**
+     * Sets the output options, which say whether the output file is written as text or binary output.
+     * @param outputOptions The output options for the output file.
+     */
+    public void setOutputOptions(ExportOutputOptions outputOptions) {
+        this.outputOptions = outputOptions;
+    }
+
+    private void openOutputFile() {
         if (outputFilePath != null && !outputFilePath.trim().isEmpty()) {
+            final boolean binary = outputOptions == ExportOutputOptions.ARROW_OUTPUT;
             if (CONSOLE.equals(outputFilePath.toLowerCase())) {
-                writer = new PrintWriter(System.out);
+                if (binary) {
+                    outputStream = new BufferedOutputStream(CloseShieldOutputStream.wrap(System.out));
+                } else {
+                    writer = new PrintWriter(System.out);
+                }
             } else {
                 File outputFile = new File(outputFilePath);
                 try {
-                    writer = new FileWriter(outputFile, false);
+                    if (binary) {
+                        outputStream = new BufferedOutputStream(new FileOutputStream(outputFile, false));
+                    } else {
+                        writer = new FileWriter(outputFile, false);
+                    }
                 } catch (IOException e) {
                     if (LOG.isDebugEnabled()) {
                         LOG.debug(e.getMessage(), e);
@@ -176,4 +243,52 @@ public class ResultHandlerDaoFactory implements FactoryBean<ResultHandlerDao> {
         }
     }
 
+    /**
+     * Sets the number of threads which write results to the database.
+     * @param databaseWriters The number of database writer threads.
+     */
+    public void setDatabaseWriters(int databaseWriters) {
+        this.databaseWriters = databaseWriters;
+    }
+
+    /**
+     * Sets how many results each database writer batches up before committing them.
+     * @param databaseBatchSize The number of results in a batch.
+     */
+    public void setDatabaseBatchSize(int databaseBatchSize) {
+        this.databaseBatchSize = databaseBatchSize;
+    }
+
+    /**
+     * Sets the longest time in milliseconds a result waits in a batch before it is committed.
+     * @param databaseBatchLatency The longest time to wait in milliseconds, or zero to wait until a batch is full.
+     */
+    public void setDatabaseBatchLatency(int databaseBatchLatency) {
+        this.databaseBatchLatency = databaseBatchLatency;
+    }
+
+    /**
+     * Sets how many results can wait for each database writer.
+     * @param databaseQueueSize The size of each database writer's queue.
+     */
+    public void setDatabaseQueueSize(int databaseQueueSize) {
+        this.databaseQueueSize = databaseQueueSize;
+    }
+
+    /**
+     * Sets whether the secondary indexes of a new profile are built once its results have been loaded.
+     * @param deferDatabaseIndexes Whether to defer building the secondary indexes.
+     */
+    public void setDeferDatabaseIndexes(boolean deferDatabaseIndexes) {
+        this.deferDatabaseIndexes = deferDatabaseIndexes;
+    }
+
+    /**
+     * Sets whether the profile database is bulk loaded with only its primary keys.
+     * @param bulkLoad Whether to bulk load the profile database.
+     */
+    public void setBulkLoad(boolean bulkLoad) {
+        this.bulkLoad = bulkLoad;
+    }
+
 }
@@ -32,10 +32,16 @@
 package uk.gov.nationalarchives.droid.results.handlers;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.DataSource;
 
@@ -62,17 +68,32 @@ import uk.gov.nationalarchives.droid.profile.ProfileResourceNodeFilter;
  * but override the methods involved in writing out to a Writer, and those
  * which can't work if the results aren't being saved to the database
  * (e.g. loading previous results or deleting previous results).
+ * <p>
+ * Results are handed to a queue by the threads which save them, and a single writer thread
+ * takes them off in batches and writes them out, so saving a result does not wait for others to be written.
+ * Text output is still formatted one result at a time, so each CSV row has only the columns its own
+ * result needs, whichever batch it was written in.
+ * <p>
+ * Binary output, such as Arrow, is written to an OutputStream instead of a Writer.  It is only complete
+ * once {@link #close()} has been called.  Arrow output gathers results into record batches of a configured
+ * number of rows, however few results each batch taken off the queue holds.
  */
 public class WriterResultHandlerDao extends JDBCBatchResultHandlerDao {
 
     private static final Logger LOG = LoggerFactory.getLogger(WriterResultHandlerDao.class);
 
-    private final List<ProfileResourceNode> items = new ArrayList<>(1);
+    // The most results written out in one batch.
+    private static final int WRITE_BATCH_SIZE = 1000;
+
+    // Holds results to write, and latches to count down once everything before them is flushed.
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>(DEFAULT_QUEUE_SIZE);
 
     private ItemWriter itemWriter;
     private Writer writer;
-    private long nodeId = 1L;
-    private ProfileResourceNodeFilter filter = new ProfileResourceNodeFilter();
+    private OutputStream outputStream;
+    private final AtomicLong nodeId = new AtomicLong(1L);
+    private volatile ProfileResourceNodeFilter filter = new ProfileResourceNodeFilter();
+    private Thread writerThread;
 
     /**
      * Empty bean constructor.  You still need to set the Itemwriter and DataSource,
@@ -108,23 +129,34 @@ public class WriterResultHandlerDao extends JDBCBatchResultHandlerDao {
         try {
             super.init();
         } finally {
-            if (writer == null) { // If no writer is set, default to console output.
-                writer = new PrintWriter(System.out);
+            if (outputStream != null) {
+                itemWriter.open(outputStream);
+            } else {
+                if (writer == null) { // If no writer is set, default to console output.
+                    writer = new PrintWriter(System.out);
+                }
+                itemWriter.open(writer);
+            }
+            if (writerThread == null) {
+                writerThread = new Thread(this::writeResults, "result-writer");
+                writerThread.setDaemon(true);
+                writerThread.start();
             }
-            itemWriter.open(writer);
         }
     }
 
     @Override
-    public synchronized void save(ProfileResourceNode node, ResourceId parentId) {
-        node.setId(nodeId++);
+    public void save(ProfileResourceNode node, ResourceId parentId) {
+        node.setId(nodeId.getAndIncrement());
         if (parentId != null) {
             node.setParentId(parentId.getId());
         }
         if (filter.passesFilter(node)) { // only write the result if it passes the filter.
-            items.clear(); //TODO: we just output each result in a list of one - any value in batching them for output?
-            items.add(node);
-            itemWriter.write(items);
+            try {
+                queue.put(node);
+            } catch (InterruptedException e) {
+                LOG.debug("Saving was interrupted while putting a new node into the queue.", e);
+            }
         }
     }
 
@@ -133,15 +165,108 @@ public class WriterResultHandlerDao extends JDBCBatchResultHandlerDao {
         this.filter = new ProfileResourceNodeFilter(filter);
     }
 
+    /**
+     * Waits for all the results saved so far to be written out, and flushes the writer.
+     */
     @Override
-    public synchronized void commit() {
+    public void commit() {
+        if (writerThread == null) {
+            flushWriter();
+        } else {
+            final CountDownLatch flushed = new CountDownLatch(1);
+            try {
+                queue.put(flushed);
+                flushed.await();
+            } catch (InterruptedException e) {
+                LOG.debug("Interrupted while waiting for results to be written.", e);
+            }
+        }
+    }
+
+    private void writeResults() {
+        final List<Object> items = new ArrayList<>(WRITE_BATCH_SIZE);
+        final List<ProfileResourceNode> batch = new ArrayList<>(WRITE_BATCH_SIZE);
+        try {
+            while (true) {
+                items.add(queue.take()); // this will block if there's nothing in the queue.
+                queue.drainTo(items, WRITE_BATCH_SIZE - 1);
+                for (final Object item : items) {
+                    if (item instanceof CountDownLatch) {
+                        write(batch);
+                        flushWriter();
+                        ((CountDownLatch) item).countDown();
+                    } else {
+                        batch.add((ProfileResourceNode) item);
+                    }
+                }
+                write(batch);
+                items.clear();
+            }
+        } catch (InterruptedException e) {
+            LOG.debug("The result writer thread was interrupted.", e);
+        }
+    }
+
+    private void write(List<ProfileResourceNode> batch) {
+        if (!batch.isEmpty()) {
+            try {
+                if (outputStream != null) {
+                    writeItems(batch);
+                } else {
+                    for (final ProfileResourceNode node : batch) {
+                        writeItems(Collections.singletonList(node));
+                    }
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeItems(List<ProfileResourceNode> items) {
+        try {
+            itemWriter.write(items);
+        //CHECKSTYLE:OFF - a result which can't be written must not stop the writer thread.
+        } catch (RuntimeException e) {
+        //CHECKSTYLE:ON
+            LOG.error("Error writing results: " + e.getMessage(), e);
+        }
+    }
+
+    private void flushWriter() {
         try {
-            writer.flush();
+            if (outputStream != null) {
+                outputStream.flush();
+            } else {
+                writer.flush();
+            }
         } catch (IOException e) {
             LOG.error("Error flushing writer: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Waits for all the results saved so far to be written out, then stops the writer thread.
+     * Binary output is completed and its output stream closed.  A Writer is flushed but left open,
+     * as it may be writing to the console, or have more output appended to it.
+     */
+    public void close() {
+        commit();
+        if (writerThread != null) {
+            writerThread.interrupt();
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                LOG.debug("Interrupted while waiting for the result writer thread to stop.", e);
+                Thread.currentThread().interrupt();
+            }
+            writerThread = null;
+        }
+        if (outputStream != null) {
+            itemWriter.close();
+        }
+    }
+
    /**
      * <b>Note:</b> This result handler cannot load any prior results, and always returns null.
      * {@inheritDoc}
@@ -174,4 +299,12 @@ public class WriterResultHandlerDao extends JDBCBatchResultHandlerDao {
     public synchronized void setWriter(Writer writer) {
         this.writer = writer;
     }
+
+    /**
+     * Sets the OutputStream to which binary results are written.  If set, it is used instead of a Writer.
+     * @param outputStream The OutputStream to which binary results are written.
+     */
+    public synchronized void setOutputStream(OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
 }
@@ -32,6 +32,7 @@
 package uk.gov.nationalarchives.droid.submitter;
 
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.util.Date;
 
@@ -77,10 +78,25 @@ public class DirectoryEventHandler {
      * @return the id of the directory
      */
     public ResourceId onEvent(final Path dir, ResourceId parentId, int depth, boolean restricted) {
+        return onEvent(dir, null, parentId, depth, restricted);
+    }
+
+    /**
+     * Handles a directory, using its attributes if they have already been read.
+     * @param dir the directory to handle
+     * @param attributes the basic attributes of the directory, or null to read its last modified time
+     * @param parentId the directory's parent id
+     * @param depth the depth of the directory in the tree
+     * @param restricted true if access to the directory was restricted, false otherwise
+     * @return the id of the directory
+     */
+    public ResourceId onEvent(final Path dir, BasicFileAttributes attributes, ResourceId parentId, int depth,
+                              boolean restricted) {
         IdentificationResultImpl result = new IdentificationResultImpl();
         result.setMethod(IdentificationMethod.NULL);
 
-        final FileTime lastModified = FileUtil.lastModifiedQuietly(dir);
+        final FileTime lastModified = attributes == null ? FileUtil.lastModifiedQuietly(dir)
+                : attributes.lastModifiedTime();
         RequestMetaData metaData = new RequestMetaData(
                 -1L, //recursing causes performance hit and the size is never used for directories return -1L
                 lastModified == null ? new Date(0).getTime() : new Date(lastModified.toMillis()).getTime(),
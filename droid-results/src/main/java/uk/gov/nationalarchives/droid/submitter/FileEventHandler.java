@@ -34,6 +34,7 @@ package uk.gov.nationalarchives.droid.submitter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.util.Date;
 
@@ -70,6 +71,19 @@ public class FileEventHandler {
 
     private StringBuilder uriStringBuilder = new StringBuilder(URI_STRING_BUILDER_CAPACITY);
 
+    /**
+     * Checks whether the file system holding a file which could not be found is still there.
+     */
+    @FunctionalInterface
+    public interface FileSystemCheck {
+
+        /**
+         * @param file a file which could not be found
+         * @throws IOException if the file system holding the file is no longer available
+         */
+        void check(Path file) throws IOException;
+    }
+
     /**
      * Default Constructor.
      */
@@ -111,35 +125,90 @@ public class FileEventHandler {
      *            an optional node ID for the request.
      */
     public void onEvent(final Path file, ResourceId parentId, ResourceId nodeId) {
-
         final FileTime lastModified = FileUtil.lastModifiedQuietly(file);
-        RequestMetaData metaData = new RequestMetaData(
+        final RequestMetaData metaData = new RequestMetaData(
                 FileUtil.sizeQuietly(file),
                 lastModified == null ? new Date(0).getTime() : new Date(lastModified.toMillis()).getTime(),
                 FileUtil.fileName(file));
+        final IdentificationRequest<Path> request = newRequest(file, metaData, parentId, nodeId);
+        if (droidCore.passesIdentificationFilter(request)) {
+            try {
+                request.open(file);
+            } catch (IOException e) {
+                handleOpenFailure(request, file, Files.exists(file), e);
+                return;
+            }
+            submit(request);
+        }
+    }
 
-        RequestIdentifier identifier = new RequestIdentifier(file.toUri());
-        identifier.setParentResourceId(parentId);
-        identifier.setResourceId(nodeId);
-        IdentificationRequest<Path> request = requestFactory.newRequest(metaData, identifier);
+    /**
+     * Creates a job in the database and submits the job to the identification
+     * engine, using the attributes of the file read as its parent was listed.
+     * <p>
+     * The attributes show the file system was there when the parent was listed, but not that it still is;
+     * if the file cannot be found when it is opened, the file system is checked before the file is recorded
+     * as not found, so that a file system which has gone stops the walk.
+     *
+     * @param file
+     *            the node file to handle
+     * @param attributes
+     *            the basic attributes of the file
+     * @param parentId
+     *            the ID of the node's parent
+     * @param nodeId
+     *            an optional node ID for the request.
+     * @param fileSystemCheck
+     *            checks the file system is still available if the file cannot be found
+     * @throws IOException if the file cannot be found and its file system is no longer available
+     */
+    public void onEvent(final Path file, BasicFileAttributes attributes, ResourceId parentId, ResourceId nodeId,
+                        FileSystemCheck fileSystemCheck) throws IOException {
+        final RequestMetaData metaData = new RequestMetaData(attributes.size(),
+                attributes.lastModifiedTime().toMillis(), FileUtil.fileName(file));
+        final IdentificationRequest<Path> request = newRequest(file, metaData, parentId, nodeId);
         if (droidCore.passesIdentificationFilter(request)) {
             try {
                 request.open(file);
-                droidCore.submit(request);
-                submissionThrottle.apply();
             } catch (IOException e) {
-                IdentificationErrorType error = Files.exists(file) ? IdentificationErrorType.ACCESS_DENIED
-                        : IdentificationErrorType.FILE_NOT_FOUND;
-                if (error.equals(IdentificationErrorType.ACCESS_DENIED)) {
-                    log.warn(String.format("Access was denied to the file: [%s]", file.toAbsolutePath().toString()));
-                } else {
-                    log.warn(String.format("File not found: [%s]", file.toAbsolutePath().toString()));
+                final boolean exists = Files.exists(file);
+                if (!exists) {
+                    fileSystemCheck.check(file);
                 }
-                resultHandler.handleError(new IdentificationException(request, error, e));
-            } catch (InterruptedException e) {
-                log.debug("Interrupted while throttle active.", e);
+                handleOpenFailure(request, file, exists, e);
+                return;
             }
+            submit(request);
+        }
+    }
+
+    private IdentificationRequest<Path> newRequest(final Path file, final RequestMetaData metaData,
+                                                   final ResourceId parentId, final ResourceId nodeId) {
+        RequestIdentifier identifier = new RequestIdentifier(file.toUri());
+        identifier.setParentResourceId(parentId);
+        identifier.setResourceId(nodeId);
+        return requestFactory.newRequest(metaData, identifier);
+    }
+
+    private void submit(final IdentificationRequest<Path> request) {
+        try {
+            droidCore.submit(request);
+            submissionThrottle.apply();
+        } catch (InterruptedException e) {
+            log.debug("Interrupted while throttle active.", e);
+        }
+    }
+
+    private void handleOpenFailure(final IdentificationRequest<Path> request, final Path file, final boolean exists,
+                                   final IOException e) {
+        IdentificationErrorType error = exists ? IdentificationErrorType.ACCESS_DENIED
+                : IdentificationErrorType.FILE_NOT_FOUND;
+        if (error.equals(IdentificationErrorType.ACCESS_DENIED)) {
+            log.warn(String.format("Access was denied to the file: [%s]", file.toAbsolutePath().toString()));
+        } else {
+            log.warn(String.format("File not found: [%s]", file.toAbsolutePath().toString()));
         }
+        resultHandler.handleError(new IdentificationException(request, error, e));
     }
 
     /**
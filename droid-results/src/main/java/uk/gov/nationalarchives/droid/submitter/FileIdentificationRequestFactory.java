@@ -38,6 +38,7 @@ import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
 import uk.gov.nationalarchives.droid.core.interfaces.archive.IdentificationRequestFactory;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.FileSystemIdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
+import uk.gov.nationalarchives.droid.core.interfaces.resource.WindowBufferPool;
 
 /**
  * @author rflitcroft
@@ -45,13 +46,33 @@ import uk.gov.nationalarchives.droid.core.interfaces.resource.RequestMetaData;
  */
 public class FileIdentificationRequestFactory implements IdentificationRequestFactory<Path> {
 
+    private boolean useFileChannel;
+    private WindowBufferPool bufferPool;
+
     /**
      * {@inheritDoc}
      */
     @Override
     public final IdentificationRequest<Path> newRequest(RequestMetaData metaData,
                                                         RequestIdentifier identifier) {
-        return new FileSystemIdentificationRequest(metaData, identifier);
+        final FileSystemIdentificationRequest request =
+                new FileSystemIdentificationRequest(metaData, identifier, useFileChannel);
+        request.setBufferPool(bufferPool);
+        return request;
+    }
+
+    /**
+     * @param useFileChannel whether requests read files with a FileChannel reader.
+     */
+    public void setUseFileChannel(boolean useFileChannel) {
+        this.useFileChannel = useFileChannel;
+    }
+
+    /**
+     * @param bufferPool the pool which requests read with a FileChannel borrow their windows from.
+     */
+    public void setBufferPool(WindowBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
     }
     
 }
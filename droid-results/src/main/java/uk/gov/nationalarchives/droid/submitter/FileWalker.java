@@ -33,10 +33,12 @@ package uk.gov.nationalarchives.droid.submitter;
 
 import java.io.IOException;
 import java.net.URI;
-import java.nio.file.DirectoryStream;
+import java.nio.file.AccessDeniedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
@@ -53,7 +55,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import uk.gov.nationalarchives.droid.core.interfaces.ResourceId;
-import uk.gov.nationalarchives.droid.util.FileUtil;
 
 /**
  * A file walker which supports resume.
@@ -83,6 +84,8 @@ public class FileWalker {
     private FileWalkerHandler restrictedDirectoryHandler;
     private boolean fastForward;
     private List<ProgressEntry> recoveryRoad;
+    private ParallelDirectoryLister directoryLister;
+    private boolean readAttributes;
     
     /**
      * Default Constructor.
@@ -146,8 +149,18 @@ public class FileWalker {
             // initialise an empty progress queue and start from scratch
             progress = new ArrayDeque<>();
         }
-        
-        walk(Paths.get(root), 0);
+
+        if (directoryLister == null) {
+            walk(Paths.get(root), null, 0);
+        } else {
+            directoryLister.setRecursive(recursive);
+            directoryLister.setReadAttributes(readAttributes);
+            try {
+                walk(Paths.get(root), null, 0);
+            } finally {
+                directoryLister.discardAll();
+            }
+        }
     }
 
     private static List<ProgressEntry> reverseProgress(final Deque<ProgressEntry> progress) {
@@ -159,43 +172,71 @@ public class FileWalker {
         return reversed;
     }
 
-    private void walk(final Path directory, final int depth) throws IOException {
-        if (handleDirectory(directory, depth)) {
-            final List<Path> children = FileUtil.listFiles(directory, false, (DirectoryStream.Filter<Path>) null);
-            handleDirectoryStart(directory, depth, children.toArray(new Path[children.size()]));
+    private void walk(final Path directory, final BasicFileAttributes attributes, final int depth)
+        throws IOException {
+        if (handleDirectory(directory, attributes, depth)) {
+            final ParallelDirectoryLister.Listing children;
+            try {
+                children = listChildren(directory, depth);
+            } catch (AccessDeniedException | NoSuchFileException e) {
+                // Listing is what finds a directory which cannot be read, or which has gone since its parent
+                // was listed; either is restricted, unless the whole file system has gone with it.
+                if (e instanceof NoSuchFileException) {
+                    checkFileSystemAvailable(directory);
+                }
+                handleRestrictedDirectory(directory, attributes, depth);
+                return;
+            }
+            handleDirectoryStart(directory, attributes, depth, children.getChildren());
             if (recursive || depth == 0) {
                 final int childDepth = depth + 1;
-                for (final Path child : children) {
-                    if (Files.isDirectory(child)) {
-                        walk(child, childDepth);
+                for (int i = 0; i < children.size(); i++) {
+                    final Path child = children.getChild(i);
+                    if (children.isDirectory(i)) {
+                        walk(child, children.getAttributes(i), childDepth);
                     } else {
-                        handleFile(child, childDepth);
+                        handleFile(child, children.getAttributes(i), childDepth);
                     }
                 }
             }
             handleDirectoryEnd(directory, depth);
         } else { // can't access children - restricted directory.
-            handleRestrictedDirectory(directory, depth);
+            if (directoryLister != null) {
+                directoryLister.discard(directory);
+            }
+            handleRestrictedDirectory(directory, attributes, depth);
         }
     }
 
+    private ParallelDirectoryLister.Listing listChildren(final Path directory, final int depth) throws IOException {
+        if (directoryLister != null) {
+            // Listing ahead of a fast-forward would list directories which are about to be skipped.
+            return directoryLister.list(directory, depth, !fastForward);
+        }
+        return ParallelDirectoryLister.Listing.of(directory, recursive || depth == 0, readAttributes);
+    }
+
+    private static ResourceId handle(final FileWalkerHandler handler, final Path file,
+        final BasicFileAttributes attributes, final int depth, final ProgressEntry parent) throws IOException {
+        return attributes == null ? handler.handle(file, depth, parent) : handler.handle(file, attributes, depth, parent);
+    }
+
     /**
      *
      * @param dir file.
+     * @param attributes the attributes read when the directory was listed, or null if they were not read.
      * @param depth depth to which to check
      * @return false if directory yet to be processed, otherwise true
      * @throws IOException An error occurs in accessing the resource
      */
-    protected boolean handleDirectory(final Path dir, final int depth) throws IOException {
+    protected boolean handleDirectory(final Path dir, final BasicFileAttributes attributes, final int depth)
+        throws IOException {
         boolean processDir = true;
 
-        if (!Files.isReadable(dir)) {
-            return false;
-        }
-
-        if (!SubmitterUtils.isFileSystemAvailable(dir, topLevelAbsolutePath)) {
-            log.error(String.format(FILE_SYSTEM_UNAVAILABLE, dir.toAbsolutePath().toString()));
-            throw new IOException(dir.toAbsolutePath().toString());
+        // Attributes read as the parent was listed show the file system was there a moment ago; if it has
+        // gone since, listing the directory or opening the file fails, and the file system is checked then.
+        if (attributes == null) {
+            checkFileSystemAvailable(dir);
         }
 
         if (fastForward) {
@@ -216,12 +257,13 @@ public class FileWalker {
     /**
      *
      * @param directory directory to handle.
+     * @param attributes the attributes read when the directory was listed, or null if they were not read.
      * @param depth depth to which to check
      * @param children array of files
      * @throws IOException An error occurs in accessing the resource
      */
-    protected void handleDirectoryStart(final Path directory, final int depth, final Path[] children)
-        throws IOException {
+    protected void handleDirectoryStart(final Path directory, final BasicFileAttributes attributes, final int depth,
+        final Path[] children) throws IOException {
         
         // if we are fast forwarding, then just keep going...
         if (fastForward) {
@@ -229,22 +271,22 @@ public class FileWalker {
         }
 
         final ProgressEntry parent = progress.peek();
-        final ResourceId directoryId = directoryHandler.handle(directory, depth, parent);
+        final ResourceId directoryId = handle(directoryHandler, directory, attributes, depth, parent);
         progress.push(new ProgressEntry(directory, directoryId, children));
     }
 
     /**
      *
      * @param file file to hanndle.
+     * @param attributes the attributes read when the file was listed, or null if they were not read.
      * @param depth level to whhich to check
      * @throws IOException  An error occurs in accessing the resource
      */
-    protected void handleFile(final Path file, final int depth)
+    protected void handleFile(final Path file, final BasicFileAttributes attributes, final int depth)
         throws IOException {
 
-        if (!SubmitterUtils.isFileSystemAvailable(file, topLevelAbsolutePath)) {
-            log.error(String.format(FILE_SYSTEM_UNAVAILABLE, file.toAbsolutePath().toString()));
-            throw new IOException(file.toAbsolutePath().toString());
+        if (attributes == null) {
+            checkFileSystemAvailable(file);
         }
 
         if (fastForward) {
@@ -257,8 +299,8 @@ public class FileWalker {
         }
 
         final ProgressEntry progressEntry = progress.peek();
-        if (!Files.isDirectory(file)) {
-            fileHandler.handle(file, depth, progressEntry);
+        if (attributes == null ? !Files.isDirectory(file) : !attributes.isDirectory()) {
+            handle(fileHandler, file, attributes, depth, progressEntry);
         }
         progressEntry.removeChild(file);
     }
@@ -287,14 +329,27 @@ public class FileWalker {
     }
 
 
-    private void handleRestrictedDirectory(final Path directory, final int depth) throws IOException {
+    /**
+     * Stops the walk if the file system beneath its root is no longer available.
+     * @param file a file or directory beneath the root of the walk
+     * @throws IOException if the file system is no longer available
+     */
+    void checkFileSystemAvailable(final Path file) throws IOException {
+        if (!SubmitterUtils.isFileSystemAvailable(file, topLevelAbsolutePath)) {
+            log.error(String.format(FILE_SYSTEM_UNAVAILABLE, file.toAbsolutePath().toString()));
+            throw new IOException(file.toAbsolutePath().toString());
+        }
+    }
+
+    private void handleRestrictedDirectory(final Path directory, final BasicFileAttributes attributes, final int depth)
+        throws IOException {
         // if we are fast forwarding, then just keep going...
         if (fastForward) {
             return;
         }
 
         ProgressEntry parent = progress.peek();
-        restrictedDirectoryHandler.handle(directory, depth, parent);
+        handle(restrictedDirectoryHandler, directory, attributes, depth, parent);
         if (!progress.isEmpty()) {
             progress.peek().removeChild(directory);
         }
@@ -321,6 +376,21 @@ public class FileWalker {
         this.restrictedDirectoryHandler = restrictedDirectoryHandler;
     }
     
+    /**
+     * @param directoryLister lists directories ahead of the walk, or null to list each one as it is reached
+     */
+    public void setDirectoryLister(final ParallelDirectoryLister directoryLister) {
+        this.directoryLister = directoryLister;
+    }
+
+    /**
+     * @param readAttributes whether to read the basic attributes of each file and directory as its parent is
+     * listed, and hand them to the handlers, rather than look them up for each one separately
+     */
+    public void setReadAttributes(final boolean readAttributes) {
+        this.readAttributes = readAttributes;
+    }
+
     /**
      * @return the progress
      */
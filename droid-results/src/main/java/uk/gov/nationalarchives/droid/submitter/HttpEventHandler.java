@@ -49,6 +49,8 @@ import static uk.gov.nationalarchives.droid.core.interfaces.http.HttpUtil.create
 
 public class HttpEventHandler {
 
+    private static final int DEFAULT_MAX_RANGE_SIZE = 4 * 1024 * 1024;
+
     private AsynchDroid droidCore;
     private SubmissionThrottle submissionThrottle;
     private DroidGlobalConfig config;
@@ -69,7 +71,13 @@ public class HttpEventHandler {
         identifier.setResourceId(null);
 
         // Prepare the request
-        IdentificationRequest<URI> request = new HttpIdentificationRequest(metaData, identifier, getHttpClient(resource));
+        IdentificationRequest<URI> request;
+        long maxBytesToScan = config.getProperties().getLong("profile.maxBytesToScan", -1);
+        if (maxBytesToScan > 0 && maxBytesToScan < DEFAULT_MAX_RANGE_SIZE) {
+            request = new HttpIdentificationRequest(metaData, identifier, getHttpClient(resource), (int) maxBytesToScan);
+        } else {
+            request = new HttpIdentificationRequest(metaData, identifier, getHttpClient(resource), DEFAULT_MAX_RANGE_SIZE);
+        }
 
         if (droidCore.passesIdentificationFilter(request)) {
             try {
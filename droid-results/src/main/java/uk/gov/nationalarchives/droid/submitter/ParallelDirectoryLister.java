@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.submitter;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Lists the directories of a {@link FileWalker} ahead of the walk, on a pool of threads.
+ * <p>
+ * When a directory has been listed, its sub-directories are queued to be listed in turn, so the tree is
+ * crawled concurrently while the walker still visits it depth-first on a single thread. The walker takes
+ * each listing as it reaches the directory; if the listing has not started yet, the walker lists it itself
+ * rather than wait behind the queue. Directories are only listed ahead while fewer than a fixed number of
+ * listings are waiting to be walked, which bounds the memory used.
+ * <p>
+ * The number of entries found within the progress depth limit is counted as directories are listed, which
+ * gives the estimate of the size of the walk without walking the tree a second time.
+ */
+public class ParallelDirectoryLister {
+
+    private final ExecutorService executor;
+    private final Semaphore prefetchPermits;
+    private final int countDepthLimit;
+    private final Map<Path, Prefetch> prefetched = new ConcurrentHashMap<>();
+    private final AtomicLong discovered = new AtomicLong();
+    private volatile LongConsumer discoveryListener;
+    private volatile boolean recursive = true;
+    private volatile boolean readAttributes;
+
+    /**
+     * @param threads The number of threads which list directories.
+     * @param maxPrefetched The maximum number of listings made ahead of the walk waiting to be walked.
+     * @param countDepthLimit The depth down to which entries are counted, or -1 to count all of them.
+     */
+    public ParallelDirectoryLister(int threads, int maxPrefetched, int countDepthLimit) {
+        this.executor = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("directory-lister-", 1).daemon(true).factory());
+        this.prefetchPermits = new Semaphore(maxPrefetched);
+        this.countDepthLimit = countDepthLimit;
+    }
+
+    /**
+     * Lists a directory, using a listing made ahead of the walk if there is one.
+     * @param directory The directory to list.
+     * @param depth The depth of the directory in the walk.
+     * @param prefetch Whether to list the sub-directories of this directory ahead of the walk.
+     * @return The listing of the directory.
+     * @throws IOException if the directory could not be listed.
+     */
+    public Listing list(final Path directory, final int depth, final boolean prefetch) throws IOException {
+        final Prefetch task = take(directory);
+        if (task == null) {
+            return listNow(directory, depth, prefetch);
+        }
+        task.run();
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Drops any listing made ahead of the walk for a directory which the walker will not list.
+     * @param directory The directory to drop.
+     */
+    public void discard(final Path directory) {
+        final Prefetch task = take(directory);
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Drops all listings made ahead of the walk, when a walk has ended or been abandoned.
+     */
+    public void discardAll() {
+        for (final Path directory : prefetched.keySet()) {
+            discard(directory);
+        }
+    }
+
+    /**
+     * Drops all listings and stops the threads listing directories.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        discardAll();
+    }
+
+    /**
+     * @param recursive Whether the walk descends below the immediate children of its root.
+     */
+    public void setRecursive(final boolean recursive) {
+        this.recursive = recursive;
+    }
+
+    /**
+     * @param readAttributes Whether to read the basic attributes of each entry as directories are listed.
+     */
+    public void setReadAttributes(final boolean readAttributes) {
+        this.readAttributes = readAttributes;
+    }
+
+    /**
+     * @param discoveryListener Told the running count of entries found each time a directory is listed.
+     */
+    public void setDiscoveryListener(final LongConsumer discoveryListener) {
+        this.discoveryListener = discoveryListener;
+    }
+
+    /**
+     * @return The number of entries found within the progress depth limit so far.
+     */
+    public long getDiscoveredCount() {
+        return discovered.get();
+    }
+
+    /**
+     * @return The number of listings made ahead of the walk which it has not yet reached.
+     */
+    public int getPrefetchedCount() {
+        return prefetched.size();
+    }
+
+    private Listing listNow(final Path directory, final int depth, final boolean prefetch) throws IOException {
+        final boolean descend = recursive || depth == 0;
+        final Listing listing = Listing.of(directory, descend, readAttributes);
+        if (descend && (countDepthLimit < 0 || depth < countDepthLimit)) {
+            final long count = discovered.addAndGet(listing.size());
+            final LongConsumer listener = discoveryListener;
+            if (listener != null) {
+                listener.accept(count);
+            }
+        }
+        if (prefetch && descend) {
+            prefetchChildren(listing, depth + 1);
+        }
+        return listing;
+    }
+
+    private void prefetchChildren(final Listing listing, final int childDepth) {
+        for (int i = 0; i < listing.size(); i++) {
+            if (listing.isDirectory(i) && !prefetch(listing.getChild(i), childDepth)) {
+                break;
+            }
+        }
+    }
+
+    private boolean prefetch(final Path directory, final int depth) {
+        if (executor.isShutdown() || !prefetchPermits.tryAcquire()) {
+            return false;
+        }
+        final Prefetch task = new Prefetch(directory, depth);
+        if (prefetched.putIfAbsent(directory, task) != null) {
+            task.releasePermit();
+            return true;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            discard(directory);
+            return false;
+        }
+        return true;
+    }
+
+    private Prefetch take(final Path directory) {
+        final Prefetch task = prefetched.remove(directory);
+        if (task != null) {
+            task.releasePermit();
+        }
+        return task;
+    }
+
+    /**
+     * A listing of a directory waiting to be walked.
+     */
+    private final class Prefetch extends FutureTask<Listing> {
+
+        private boolean released;
+
+        Prefetch(final Path directory, final int depth) {
+            super(() -> listNow(directory, depth, true));
+        }
+
+        synchronized void releasePermit() {
+            if (!released) {
+                released = true;
+                prefetchPermits.release();
+            }
+        }
+    }
+
+    /**
+     * The children of a directory, which of them are directories themselves, and their basic attributes
+     * if they were read while listing.
+     */
+    public static final class Listing {
+
+        private final Path[] children;
+        private final boolean[] directories;
+        private final BasicFileAttributes[] attributes;
+
+        private Listing(final Path[] children, final boolean[] directories, final BasicFileAttributes[] attributes) {
+            this.children = children;
+            this.directories = directories;
+            this.attributes = attributes;
+        }
+
+        /**
+         * Lists a directory.
+         * @param directory The directory to list.
+         * @param classify Whether to find out which children are directories.
+         * @param readAttributes Whether to read the basic attributes of each child as the directory is listed,
+         * rather than asking whether each one is a directory afterwards.
+         * @return The listing of the directory.
+         * @throws java.nio.file.AccessDeniedException if the directory cannot be read.
+         * @throws IOException if the directory could not be listed.
+         */
+        public static Listing of(final Path directory, final boolean classify, final boolean readAttributes)
+            throws IOException {
+            if (classify && readAttributes) {
+                return withAttributes(directory);
+            }
+            final List<Path> found = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (final Path child : stream) {
+                    found.add(child);
+                }
+            }
+            final Path[] children = found.toArray(new Path[found.size()]);
+            final boolean[] directories = new boolean[children.length];
+            if (classify) {
+                for (int i = 0; i < children.length; i++) {
+                    directories[i] = Files.isDirectory(children[i]);
+                }
+            }
+            return new Listing(children, directories, null);
+        }
+
+        private static Listing withAttributes(final Path directory) throws IOException {
+            final List<Path> children = new ArrayList<>();
+            final List<BasicFileAttributes> attributes = new ArrayList<>();
+            // A walk one level deep visits each child with the attributes it read for it, which some
+            // platforms take from the directory entries themselves.
+            Files.walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1,
+                new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                        children.add(file);
+                        attributes.add(attrs);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(final Path file, final IOException exc)
+                        throws IOException {
+                        if (file.equals(directory)) {
+                            throw exc;
+                        }
+                        children.add(file);
+                        attributes.add(null);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            final boolean[] directories = new boolean[children.size()];
+            for (int i = 0; i < directories.length; i++) {
+                directories[i] = attributes.get(i) != null && attributes.get(i).isDirectory();
+            }
+            return new Listing(children.toArray(new Path[children.size()]), directories,
+                    attributes.toArray(new BasicFileAttributes[attributes.size()]));
+        }
+
+        /**
+         * @return The number of children.
+         */
+        public int size() {
+            return children.length;
+        }
+
+        /**
+         * @param index The index of a child.
+         * @return The child at the index.
+         */
+        public Path getChild(final int index) {
+            return children[index];
+        }
+
+        /**
+         * @param index The index of a child.
+         * @return Whether the child is a directory; always false unless the walk descends into the directory.
+         */
+        public boolean isDirectory(final int index) {
+            return directories[index];
+        }
+
+        /**
+         * @param index The index of a child.
+         * @return The basic attributes of the child, or null if they were not read as the directory was listed.
+         */
+        public BasicFileAttributes getAttributes(final int index) {
+            return attributes == null ? null : attributes[index];
+        }
+
+        /**
+         * @return A copy of the children of the directory.
+         */
+        public Path[] getChildren() {
+            return children.clone();
+        }
+    }
+}
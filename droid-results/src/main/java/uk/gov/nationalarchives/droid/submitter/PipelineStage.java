@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.submitter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One stage of the identification pipeline run by the {@link SubmissionGateway}, with its own threads and a
+ * bounded queue of tasks waiting for them.
+ * <p>
+ * When the queue is full, the thread handing a task to the stage waits up to the stage's maximum wait for
+ * space, then runs the task itself.  By default it does not wait at all.  Running tasks on the caller applies
+ * back pressure to earlier stages without blocking them for good, so a stage which feeds work back into an
+ * earlier one, such as archive expansion, can never deadlock the pipeline.  A stage which must never run
+ * tasks on its callers can wait for space indefinitely with {@link #WAIT_INDEFINITELY}.
+ */
+public class PipelineStage {
+
+    /**
+     * A maximum wait which makes callers wait for space in the queue for as long as it takes, rather than ever
+     * running tasks themselves.
+     */
+    public static final long WAIT_INDEFINITELY = -1;
+
+    private static final long KEEP_ALIVE_MILLIS = 1000;
+
+    private final String name;
+    private final ExecutorService executor;
+    private volatile int queueCapacity;
+    private volatile long maxWaitMillis;
+    private final Object space = new Object();
+    private final AtomicInteger waitingCallers = new AtomicInteger();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger peakQueueDepth = new AtomicInteger();
+    private final AtomicLong taskCount = new AtomicLong();
+    private final AtomicLong callerRunCount = new AtomicLong();
+
+    /**
+     * Creates a stage with its own threads, which are released when the stage is idle.
+     * @param name The name of the stage, which also names its threads.
+     * @param threads The number of threads which run the stage's tasks.
+     * @param queueCapacity The number of tasks which can wait for a thread.
+     */
+    public PipelineStage(String name, int threads, int queueCapacity) {
+        this(name, newExecutor(name, threads), queueCapacity);
+    }
+
+    /**
+     * Creates a stage which runs its tasks on an existing executor.
+     * @param name The name of the stage.
+     * @param executor The executor which runs the stage's tasks.
+     * @param queueCapacity The number of tasks which can wait for a thread.
+     */
+    public PipelineStage(String name, ExecutorService executor, int queueCapacity) {
+        this.name = name;
+        this.executor = executor;
+        setQueueCapacity(queueCapacity);
+    }
+
+    /**
+     * Runs a task on the stage.  If the stage's queue is full, waits up to the stage's maximum wait for space,
+     * then runs the task on the calling thread.
+     * @param task The task to run.
+     * @throws RejectedExecutionException if the stage has been shut down, or the caller is interrupted while
+     *                                    waiting for space.
+     */
+    public void execute(Runnable task) {
+        checkNotShutdown();
+        taskCount.incrementAndGet();
+        if (reserveSpace() || awaitSpace()) {
+            try {
+                executor.execute(() -> {
+                    releaseSpace();
+                    task.run();
+                });
+            } catch (RejectedExecutionException e) {
+                releaseSpace();
+                throw e;
+            }
+        } else {
+            callerRunCount.incrementAndGet();
+            task.run();
+        }
+    }
+
+    private boolean reserveSpace() {
+        final int depth = queueDepth.incrementAndGet();
+        if (depth > queueCapacity) {
+            queueDepth.decrementAndGet();
+            return false;
+        }
+        peakQueueDepth.accumulateAndGet(depth, Math::max);
+        return true;
+    }
+
+    private void releaseSpace() {
+        queueDepth.decrementAndGet();
+        if (waitingCallers.get() > 0) {
+            synchronized (space) {
+                space.notifyAll();
+            }
+        }
+    }
+
+    private boolean awaitSpace() {
+        final long waitMillis = maxWaitMillis;
+        if (waitMillis == 0) {
+            return false;
+        }
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        waitingCallers.incrementAndGet();
+        try {
+            synchronized (space) {
+                while (!reserveSpace()) {
+                    checkNotShutdown();
+                    if (waitMillis < 0) {
+                        space.wait();
+                    } else {
+                        final long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            return false;
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(space, remaining);
+                    }
+                }
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted waiting for the " + name + " stage.", e);
+        } finally {
+            waitingCallers.decrementAndGet();
+        }
+    }
+
+    private void checkNotShutdown() {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("The " + name + " stage has been shut down.");
+        }
+    }
+
+    /**
+     * Sets the number of threads which run the stage's tasks, if the stage created its own threads.
+     * @param threads The number of threads.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A pipeline stage needs at least one thread: " + threads);
+        }
+        if (executor instanceof ThreadPoolExecutor pool) {
+            if (threads > pool.getMaximumPoolSize()) {
+                pool.setMaximumPoolSize(threads);
+                pool.setCorePoolSize(threads);
+            } else {
+                pool.setCorePoolSize(threads);
+                pool.setMaximumPoolSize(threads);
+            }
+        }
+    }
+
+    /**
+     * @param queueCapacity The number of tasks which can wait for a thread.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("The queue capacity of a pipeline stage cannot be negative: "
+                    + queueCapacity);
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * @param maxWaitMillis The longest time a caller waits for space in a full queue before running a task
+     *                      itself, zero to run it straight away, or {@link #WAIT_INDEFINITELY} to wait for as
+     *                      long as it takes.
+     */
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        if (maxWaitMillis < 0 && maxWaitMillis != WAIT_INDEFINITELY) {
+            throw new IllegalArgumentException("The maximum wait of a pipeline stage cannot be negative: "
+                    + maxWaitMillis);
+        }
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * Stops the stage, interrupting any running tasks and any callers waiting for space.
+     */
+    public void shutdownNow() {
+        executor.shutdownNow();
+        synchronized (space) {
+            space.notifyAll();
+        }
+    }
+
+    /**
+     * @return The name of the stage.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The number of tasks waiting for, or being handed to, a thread of the stage.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return The number of tasks which can wait for a thread.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return The largest number of tasks which have waited for the stage at once.
+     */
+    public int getPeakQueueDepth() {
+        return peakQueueDepth.get();
+    }
+
+    /**
+     * @return The number of tasks given to the stage.
+     */
+    public long getTaskCount() {
+        return taskCount.get();
+    }
+
+    /**
+     * @return The longest time a caller waits for space in a full queue before running a task itself.
+     */
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * @return The number of tasks run by the thread which gave them to the stage, because its queue was full.
+     */
+    public long getCallerRunCount() {
+        return callerRunCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s stage[queue depth: %d, peak queue depth: %d, tasks: %d, run by caller: %d]",
+                name, queueDepth.get(), peakQueueDepth.get(), taskCount.get(), callerRunCount.get());
+    }
+
+    private static ExecutorService newExecutor(String name, int threads) {
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_MILLIS,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                Thread.ofPlatform().name(name + "-thread-", 1).factory());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
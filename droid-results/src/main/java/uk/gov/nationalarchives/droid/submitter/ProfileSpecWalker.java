@@ -67,4 +67,12 @@ public interface ProfileSpecWalker {
      */
     FileEventHandler getFileEventHandler();
 
+    /**
+     * @return true if the walk keeps the target count of the progress monitor up to date itself,
+     * so that no separate count of the profile is needed.
+     */
+    default boolean isEstimatingProgress() {
+        return false;
+    }
+
 }
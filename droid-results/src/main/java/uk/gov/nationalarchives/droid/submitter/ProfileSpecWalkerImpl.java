@@ -35,6 +35,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.List;
 
 
@@ -57,6 +58,7 @@ import uk.gov.nationalarchives.droid.submitter.ProfileWalkState.WalkStatus;
 public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
 
     private static final int URI_BUILDER_SIZE = 1204;
+    private static final int MAX_PREFETCHED_DIRECTORIES = 10000;
 
     private FileEventHandler fileEventHandler;
     private S3EventHandler s3EventHandler;
@@ -64,6 +66,8 @@ public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
     private DirectoryEventHandler directoryEventHandler;
     private ResultHandler resultHandler;
     private ProgressMonitor progressMonitor;
+    private int walkerThreads;
+    private boolean readAttributes;
 
     private transient volatile boolean cancelled;
 
@@ -103,37 +107,63 @@ public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
             startIndex = resources.indexOf(walkState.getCurrentResource());
         }
 
-        for (int i = startIndex; i < resources.size(); i++) {
-            AbstractProfileResource resource = resources.get(i);
-            if (!fastForward) {
-                walkState.setCurrentResource(resource);
-                walkState.setCurrentFileWalker(null);
-            }
+        final ParallelDirectoryLister directoryLister = newDirectoryLister(resources.size());
+        try {
+            for (int i = startIndex; i < resources.size(); i++) {
+                AbstractProfileResource resource = resources.get(i);
+                if (!fastForward) {
+                    walkState.setCurrentResource(resource);
+                    walkState.setCurrentFileWalker(null);
+                }
 
-            if (cancelled) {
-                break;
-            }
+                if (cancelled) {
+                    break;
+                }
 
-            if (resource.isS3Object()) {
-                S3Walker s3Walker = new S3Walker(progressMonitor, resultHandler, s3EventHandler);
-                s3Walker.walk(resource);
-            } else if (resource.isDirectory()) {
-                processDirectory(resource, fastForward, walkState);
-            } else if (resource.isHttpObject()) {
-                httpEventHandler.onHttpEvent(resource);
-            } else {
-                // The resource is not a directory
-                // Update the progress to say that we are dealing with this resource
-                progressMonitor.startJob(resource.getUri());
-                fileEventHandler.onEvent(Paths.get(resource.getUri()), null, null);
-            }
+                if (resource.isS3Object()) {
+                    S3Walker s3Walker = new S3Walker(progressMonitor, resultHandler, s3EventHandler);
+                    s3Walker.walk(resource);
+                } else if (resource.isDirectory()) {
+                    processDirectory(resource, fastForward, walkState, directoryLister);
+                } else if (resource.isHttpObject()) {
+                    httpEventHandler.onHttpEvent(resource);
+                } else {
+                    // The resource is not a directory
+                    // Update the progress to say that we are dealing with this resource
+                    progressMonitor.startJob(resource.getUri());
+                    fileEventHandler.onEvent(Paths.get(resource.getUri()), null, null);
+                }
 
-            fastForward = false;
+                fastForward = false;
+            }
+        } finally {
+            if (directoryLister != null) {
+                directoryLister.shutdown();
+            }
         }
         walkState.setWalkStatus(WalkStatus.FINISHED);
         progressMonitor.setTargetCount(progressMonitor.getIdentificationCount());
     }
 
+    private ParallelDirectoryLister newDirectoryLister(final int resourceCount) {
+        if (walkerThreads <= 1) {
+            return null;
+        }
+        final ParallelDirectoryLister directoryLister = new ParallelDirectoryLister(walkerThreads,
+                MAX_PREFETCHED_DIRECTORIES, ProfileSpecJobCounter.PROGRESS_DEPTH_LIMIT);
+        if (isEstimatingProgress()) {
+            // Each resource counts as one job, plus the entries found beneath the directories walked so far.
+            directoryLister.setDiscoveryListener(discovered -> raiseTargetCount(resourceCount + discovered));
+        }
+        return directoryLister;
+    }
+
+    private synchronized void raiseTargetCount(final long estimate) {
+        if (estimate > progressMonitor.getTargetCount()) {
+            progressMonitor.setTargetCount(estimate);
+        }
+    }
+
     /**
      * @param fileEventHandler an event handler to be fired when a file is encountered.
      */
@@ -176,6 +206,38 @@ public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
         return fileEventHandler;
     }
 
+    @Override
+    public boolean isEstimatingProgress() {
+        return walkerThreads > 1 && progressMonitor != null && progressMonitor.isMonitoring();
+    }
+
+    /**
+     * @param walkerThreads the number of threads listing directories ahead of the walk;
+     * one or fewer lists each directory on the walking thread as it is reached.
+     */
+    public void setWalkerThreads(int walkerThreads) {
+        this.walkerThreads = walkerThreads;
+    }
+
+    /**
+     * @param readAttributes whether to read the size and last modified time of files and directories
+     * as their parent directory is listed, rather than look them up for each one separately.
+     */
+    public void setReadAttributes(boolean readAttributes) {
+        this.readAttributes = readAttributes;
+    }
+
+
+    private void startJob(final Path file, final int depth) {
+        if (ProfileSpecJobCounter.PROGRESS_DEPTH_LIMIT < 0
+                || depth <= ProfileSpecJobCounter.PROGRESS_DEPTH_LIMIT) {
+            progressMonitor.startJob(toURI(file));
+        }
+    }
+
+    private static ResourceId parentId(final ProgressEntry parent) {
+        return parent == null ? null : parent.getResourceId();
+    }
 
     private URI toURI(final Path file) {
         return SubmitterUtils.toURI(file.toFile(), uriBuilder);
@@ -189,24 +251,32 @@ public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
         this.httpEventHandler = httpEventHandler;
     }
 
-    private void processDirectory(AbstractProfileResource resource, boolean fastForward, ProfileWalkState walkState) throws IOException {
+    private void processDirectory(AbstractProfileResource resource, boolean fastForward, ProfileWalkState walkState,
+                                  ParallelDirectoryLister directoryLister) throws IOException {
         FileWalker fileWalker;
         if (!fastForward) {
             walkState.setCurrentFileWalker(new FileWalker(resource.getUri(), resource.isRecursive()));
         }
 
         fileWalker = walkState.getCurrentFileWalker();
+        fileWalker.setDirectoryLister(directoryLister);
 
+        fileWalker.setReadAttributes(readAttributes);
         fileWalker.setFileHandler(new FileWalkerHandler() {
 
             @Override
             public ResourceId handle(final Path file, final int depth, final ProgressEntry parent) {
-                if (ProfileSpecJobCounter.PROGRESS_DEPTH_LIMIT < 0
-                        || depth <= ProfileSpecJobCounter.PROGRESS_DEPTH_LIMIT) {
-                    progressMonitor.startJob(toURI(file));
-                }
-                ResourceId parentId = parent == null ? null : parent.getResourceId();
-                fileEventHandler.onEvent(file, parentId, null);
+                startJob(file, depth);
+                fileEventHandler.onEvent(file, parentId(parent), null);
+                return null;
+            }
+
+            @Override
+            public ResourceId handle(final Path file, final BasicFileAttributes attributes, final int depth,
+                                     final ProgressEntry parent) throws IOException {
+                startJob(file, depth);
+                fileEventHandler.onEvent(file, attributes, parentId(parent), null,
+                        fileWalker::checkFileSystemAvailable);
                 return null;
             }
         });
@@ -214,24 +284,30 @@ public class ProfileSpecWalkerImpl implements ProfileSpecWalker {
         fileWalker.setDirectoryHandler(new FileWalkerHandler() {
             @Override
             public ResourceId handle(final Path file, final int depth, final ProgressEntry parent) {
-                if (ProfileSpecJobCounter.PROGRESS_DEPTH_LIMIT < 0
-                        || depth <= ProfileSpecJobCounter.PROGRESS_DEPTH_LIMIT) {
-                    progressMonitor.startJob(toURI(file));
-                }
-                ResourceId parentId = parent == null ? null : parent.getResourceId();
-                return directoryEventHandler.onEvent(file, parentId, depth, false);
+                startJob(file, depth);
+                return directoryEventHandler.onEvent(file, parentId(parent), depth, false);
+            }
+
+            @Override
+            public ResourceId handle(final Path file, final BasicFileAttributes attributes, final int depth,
+                                     final ProgressEntry parent) {
+                startJob(file, depth);
+                return directoryEventHandler.onEvent(file, attributes, parentId(parent), depth, false);
             }
         });
 
         fileWalker.setRestrictedDirectoryHandler(new FileWalkerHandler() {
             @Override
             public ResourceId handle(final Path file, final int depth, final ProgressEntry parent) {
-                if (ProfileSpecJobCounter.PROGRESS_DEPTH_LIMIT < 0
-                        || depth <= ProfileSpecJobCounter.PROGRESS_DEPTH_LIMIT) {
-                    progressMonitor.startJob(toURI(file));
-                }
-                ResourceId parentId = parent == null ? null : parent.getResourceId();
-                return directoryEventHandler.onEvent(file, parentId, depth, true);
+                startJob(file, depth);
+                return directoryEventHandler.onEvent(file, parentId(parent), depth, true);
+            }
+
+            @Override
+            public ResourceId handle(final Path file, final BasicFileAttributes attributes, final int depth,
+                                     final ProgressEntry parent) {
+                startJob(file, depth);
+                return directoryEventHandler.onEvent(file, attributes, parentId(parent), depth, true);
             }
         });
 
@@ -35,19 +35,25 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import uk.gov.nationalarchives.droid.core.interfaces.AsynchDroid;
 import uk.gov.nationalarchives.droid.core.interfaces.DroidCore;
+import uk.gov.nationalarchives.droid.core.interfaces.ExecutorStrategy;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationErrorType;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationException;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
@@ -70,6 +76,17 @@ import uk.gov.nationalarchives.droid.core.interfaces.hash.HashGenerator;
  * Acts as a DroidCore proxy by keeping track of in-flight identification
  * requests. Requests are removed from the queue when the droid ID task finishes
  * All requests should come through this pipeline.
+ * <p>
+ * Each request passes through a staged pipeline: binary signature matching on the executor service,
+ * then container matching, hashing and persisting the results, each stage with its own threads and
+ * bounded queue.  Archives are expanded in a final stage once their own results have been persisted.
+ * A slow stage only holds up the requests waiting for it, until its queue fills and the stage before
+ * it has to run its tasks as well.
+ * <p>
+ * Requests which are not archives are closed once they have been hashed, so the readers and buffers of
+ * requests waiting to be persisted are released straight away; only their results go on to the persist stage.
+ * The depths of the stage queues are logged periodically while requests are submitted, so back pressure in
+ * the pipeline can be seen as it happens.
  * @author rflitcroft
  *
  *
@@ -86,12 +103,18 @@ public class SubmissionGateway implements AsynchDroid {
      */
     private static final String ARCHIVE_ERROR = "Could not process the archival format(%s): %s\t%s\t%s";
 
+    private static final int DEFAULT_STAGE_THREADS = 2;
+    private static final int DEFAULT_STAGE_QUEUE_CAPACITY = 100;
+    private static final long DEFAULT_STAGE_MAX_WAIT_MILLIS = 500;
+    private static final long STAGE_REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
     //CHECKSTYLE:ON    
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final JobCounter jobCounter = new JobCounter();
     private DroidCore droidCore;
     private ResultHandler resultHandler;
     private ExecutorService executorService;
+    private ExecutorStrategy executorStrategy = ExecutorStrategy.CALLER_RUNS;
     private boolean processZip;
     private boolean processTar;
     private boolean processGzip;
@@ -117,10 +140,23 @@ public class SubmissionGateway implements AsynchDroid {
 
     private Set<IdentificationRequest> requests = Collections.synchronizedSet(new HashSet<IdentificationRequest>());
 
+    private PipelineStage binaryStage;
+    private final PipelineStage containerStage = new PipelineStage("container",
+            Runtime.getRuntime().availableProcessors(), DEFAULT_STAGE_QUEUE_CAPACITY);
+    private final PipelineStage hashStage = new PipelineStage("hash",
+            DEFAULT_STAGE_THREADS, DEFAULT_STAGE_QUEUE_CAPACITY);
+    private final PipelineStage persistStage = new PipelineStage("persist",
+            DEFAULT_STAGE_THREADS, DEFAULT_STAGE_QUEUE_CAPACITY);
+    private final PipelineStage archiveStage = new PipelineStage("archive",
+            DEFAULT_STAGE_THREADS, DEFAULT_STAGE_QUEUE_CAPACITY);
+    private int stageQueueCapacity = DEFAULT_STAGE_QUEUE_CAPACITY;
+    private final AtomicLong nextStageReport = new AtomicLong(System.nanoTime() + STAGE_REPORT_INTERVAL_NANOS);
+
     /**
      * Empty bean constructor.
      */
     public SubmissionGateway() {
+        setStageMaxWaitMillis(DEFAULT_STAGE_MAX_WAIT_MILLIS);
     }
 
     //CHECKSTYLE:OFF - too many parameters - but this is how many you need to instantiate safely.
@@ -142,6 +178,7 @@ public class SubmissionGateway implements AsynchDroid {
                              ArchiveFormatResolver archiveFormatResolver, ArchiveFormatResolver containerFormatResolver,
                              ArchiveHandlerFactory archiveHandlerFactory, ContainerIdentifierFactory containerFactory,
                              PauseAspect pauseControl, ReplaySubmitter replaySubmitter, long maxBytesToScan) {
+        this();
         setDroidCore(droidCore);
         setResultHandler(resultHandler);
         setExecutorService(executorService);
@@ -176,6 +213,7 @@ public class SubmissionGateway implements AsynchDroid {
         pauseControl.awaitUnpaused();
         jobCounter.increment();
         requests.add(request);
+        reportStageQueueDepths();
 
         // old code blocking identification:
         Callable<IdentificationResultCollection> callable = new Callable<IdentificationResultCollection>() {
@@ -187,11 +225,140 @@ public class SubmissionGateway implements AsynchDroid {
             }
         };
 
-        FutureTask<IdentificationResultCollection> task = new SubmissionFutureTask(callable, request);
-        executorService.submit(task);
+        FutureTask<IdentificationResultCollection> task = new FutureTask<>(callable);
+        try {
+            binaryStage.execute(() -> {
+                task.run();
+                afterBinaryMatch(request, task);
+            });
+        } catch (RejectedExecutionException e) {
+            closeRequest(request);
+            jobCounter.decrement();
+            throw e;
+        }
         return task;
     }
 
+    private void afterBinaryMatch(IdentificationRequest request, Future<IdentificationResultCollection> task) {
+        try {
+            final IdentificationResultCollection results = task.get();
+            nextStage(containerStage, request, () -> matchContainers(request, results));
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            log.error(cause.getStackTrace().toString(), cause);
+            resultHandler.handleError(new IdentificationException(
+                    request, IdentificationErrorType.OTHER, cause));
+            finishRequest(request);
+        } catch (InterruptedException e) {
+            log.debug(e.getMessage(), e);
+            finishRequest(request);
+        }
+    }
+
+    private void matchContainers(IdentificationRequest request, IdentificationResultCollection binaryResults) {
+        IdentificationResultCollection results = handleContainer(request, binaryResults);
+        String archiveFormat = null;
+        if (results == null) {
+            // no container results - process the normal results.
+            results = binaryResults;
+            droidCore.removeLowerPriorityHits(results);
+            results = handleExtensions(request, results);
+
+            // Are we processing archive formats?
+            if (archiveFormatResolver != null) {
+                archiveFormat = getArchiveFormat(results);
+            }
+        } else { // we have possible container formats:
+            droidCore.removeLowerPriorityHits(results);
+            results = handleExtensions(request, results);
+        }
+        final IdentificationResultCollection finalResults = results;
+        final String finalArchiveFormat = archiveFormat;
+        nextStage(hashStage, request, () -> {
+            generateHash(request);
+            if (finalArchiveFormat == null) {
+                // Nothing reads the request after this, so let go of its reader and buffers while it waits.
+                closeRequest(request);
+            }
+            nextStage(persistStage, request, () -> persist(request, finalResults, finalArchiveFormat));
+        });
+    }
+
+    private void persist(IdentificationRequest request, IdentificationResultCollection results, String archiveFormat) {
+        if (archiveFormat != null) {
+            handleArchive(request, results, archiveFormat);
+        } else { // just process the results so far:
+            ResourceId id = resultHandler.handle(results);
+            request.getIdentifier().setResourceId(id);
+            finishRequest(request);
+        }
+    }
+
+    /**
+     * Runs the next stage of the pipeline for a request.  If a stage fails unexpectedly, or the pipeline has been
+     * shut down, the request is finished with an error rather than being left in flight.
+     * @param stage The stage to run.
+     * @param request The request being identified.
+     * @param work The work of the stage for the request.
+     */
+    private void nextStage(PipelineStage stage, IdentificationRequest request, Runnable work) {
+        try {
+            stage.execute(() -> {
+                try {
+                    work.run();
+                    //CHECKSTYLE:OFF - a stage failing for one request must not leave it in flight.
+                } catch (RuntimeException e) {
+                    //CHECKSTYLE:ON
+                    log.error(e.getMessage(), e);
+                    resultHandler.handleError(new IdentificationException(
+                            request, IdentificationErrorType.OTHER, e));
+                    finishRequest(request);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug(e.getMessage(), e);
+            finishRequest(request);
+        }
+    }
+
+    private void finishRequest(IdentificationRequest request) {
+        closeRequest(request);
+        jobCounter.decrement();
+    }
+
+    private void closeRequest(IdentificationRequest request) {
+        if (requests.remove(request)) {
+            try {
+                request.close();
+            } catch (IOException e) {
+                log.error(String.format("Error closing request [%s]", request.getIdentifier().getUri()), e);
+            }
+        }
+    }
+
+    /**
+     * Logs the depths of the stage queues, at most once every reporting interval.  If any stage has a full
+     * queue, the depths are logged as information, as the pipeline is applying back pressure to the stages
+     * before it.
+     */
+    private void reportStageQueueDepths() {
+        final long now = System.nanoTime();
+        final long next = nextStageReport.get();
+        if (now - next >= 0 && nextStageReport.compareAndSet(next, now + STAGE_REPORT_INTERVAL_NANOS)) {
+            boolean full = false;
+            for (PipelineStage stage : getStages()) {
+                if (stage != null && stage.getQueueDepth() >= stage.getQueueCapacity()) {
+                    full = true;
+                }
+            }
+            if (full) {
+                log.info("Pipeline stage queues are full, depths: {}", getStageQueueDepths());
+            } else if (log.isDebugEnabled()) {
+                log.debug("Pipeline stage queue depths: {}", getStageQueueDepths());
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -200,7 +367,7 @@ public class SubmissionGateway implements AsynchDroid {
         replaySubmitter.replay();
     }
 
-    private void generateHash(IdentificationRequest request) throws IOException {
+    private void generateHash(IdentificationRequest request) {
         if (generateHash) {
             try {
                 InputStream in = request.getSourceInputStream();
@@ -265,6 +432,17 @@ public class SubmissionGateway implements AsynchDroid {
         }
         submissionQueue.add(request.getIdentifier());
         jobCounter.decrement();
+        try {
+            archiveStage.execute(() -> expandArchive(request, archiveFormat));
+        } catch (RejectedExecutionException e) {
+            log.debug(e.getMessage(), e);
+            submissionQueue.remove(request.getIdentifier());
+            jobCounter.decrementPostProcess();
+            closeRequest(request);
+        }
+    }
+
+    private void expandArchive(IdentificationRequest request, String archiveFormat) {
         try {
             //BNO: Does this always return the same archive handler for any given container format?
             //And will it end up using the same submission gateway, or a new one with a different thread pool?
@@ -289,12 +467,12 @@ public class SubmissionGateway implements AsynchDroid {
         } finally {
             submissionQueue.remove(request.getIdentifier());
             jobCounter.decrementPostProcess();
+            closeRequest(request);
         }
     }
 
     private IdentificationResultCollection handleContainer(IdentificationRequest request,
-                                                           IdentificationResultCollection results)
-            throws IOException {
+                                                           IdentificationResultCollection results) {
         // process a container format (ole2, odf, ooxml etc)
         String containerFormat = getContainerFormat(results);
         try {
@@ -431,6 +609,96 @@ public class SubmissionGateway implements AsynchDroid {
      */
     public void setExecutorService(ExecutorService executorService) {
         this.executorService = executorService;
+        this.binaryStage = new PipelineStage("binary", executorService, stageQueueCapacity);
+        setBinaryStageMaxWait();
+    }
+
+    /**
+     * @param executorStrategy the strategy of the executor service.  With a bounded queue, submitting a request
+     *                         waits for space in the binary stage rather than identifying the request itself.
+     */
+    public void setExecutorStrategy(ExecutorStrategy executorStrategy) {
+        this.executorStrategy = executorStrategy;
+        setBinaryStageMaxWait();
+    }
+
+    private void setBinaryStageMaxWait() {
+        if (binaryStage != null) {
+            binaryStage.setMaxWaitMillis(executorStrategy == ExecutorStrategy.BOUNDED_QUEUE
+                    ? PipelineStage.WAIT_INDEFINITELY : 0);
+        }
+    }
+
+    /**
+     * @param containerThreads the number of threads which match container signatures.
+     */
+    public void setContainerThreads(int containerThreads) {
+        containerStage.setThreads(containerThreads);
+    }
+
+    /**
+     * @param hashThreads the number of threads which generate hashes.
+     */
+    public void setHashThreads(int hashThreads) {
+        hashStage.setThreads(hashThreads);
+    }
+
+    /**
+     * @param persistThreads the number of threads which hand results to the result handler.
+     */
+    public void setPersistThreads(int persistThreads) {
+        persistStage.setThreads(persistThreads);
+    }
+
+    /**
+     * @param archiveThreads the number of threads which expand archives.
+     */
+    public void setArchiveThreads(int archiveThreads) {
+        archiveStage.setThreads(archiveThreads);
+    }
+
+    /**
+     * @param stageQueueCapacity the number of requests which can wait for each stage of the pipeline before
+     *                           the stage before it has to wait for space, or run them itself.
+     */
+    public void setStageQueueCapacity(int stageQueueCapacity) {
+        this.stageQueueCapacity = stageQueueCapacity;
+        for (PipelineStage stage : getStages()) {
+            if (stage != null) {
+                stage.setQueueCapacity(stageQueueCapacity);
+            }
+        }
+    }
+
+    /**
+     * @param stageMaxWaitMillis the longest time a stage waits for space in the queue of the stage after it,
+     *                           before running the request itself.  Zero runs it straight away.
+     */
+    public void setStageMaxWaitMillis(long stageMaxWaitMillis) {
+        for (PipelineStage stage : getDownstreamStages()) {
+            stage.setMaxWaitMillis(stageMaxWaitMillis);
+        }
+    }
+
+    /**
+     * @return the number of requests waiting for each stage of the pipeline, in pipeline order.
+     */
+    public Map<String, Integer> getStageQueueDepths() {
+        final Map<String, Integer> depths = new LinkedHashMap<>();
+        for (PipelineStage stage : getStages()) {
+            if (stage != null) {
+                depths.put(stage.getName(), stage.getQueueDepth());
+            }
+        }
+        return depths;
+    }
+
+    private PipelineStage[] getStages() {
+        return new PipelineStage[] {binaryStage, containerStage, hashStage, persistStage, archiveStage};
+    }
+
+    private PipelineStage[] getDownstreamStages() {
+        return new PipelineStage[] {containerStage, hashStage, persistStage, archiveStage};
     }
 
     /**
@@ -561,6 +829,14 @@ public class SubmissionGateway implements AsynchDroid {
      */
     public void close() throws IOException {
         executorService.shutdownNow();
+        for (PipelineStage stage : getStages()) {
+            if (stage != null) {
+                stage.shutdownNow();
+                if (stage.getTaskCount() > 0) {
+                    log.info(stage.toString());
+                }
+            }
+        }
         for (IdentificationRequest request : requests) {
             request.close();
         }
@@ -599,72 +875,4 @@ public class SubmissionGateway implements AsynchDroid {
         this.matchAllExtensions = matchAllExtensions;
     }
 
-    private final class SubmissionFutureTask extends FutureTask<IdentificationResultCollection> {
-
-        private IdentificationRequest request;
-
-        SubmissionFutureTask(Callable<IdentificationResultCollection> callable, IdentificationRequest request) {
-            super(callable);
-            this.request = request;
-        }
-
-        @Override
-        protected void done() {
-            boolean jobCountDecremented = false;
-            try {
-                generateHash(request);
-                IdentificationResultCollection results = get();
-                IdentificationResultCollection containerResults = handleContainer(request, results);
-                if (containerResults == null) {
-                    // no container results - process the normal results.
-                    droidCore.removeLowerPriorityHits(results);
-                    results = handleExtensions(request, results);
-
-                    // Are we processing archive formats?
-                    String archiveFormat = null;
-                    if (archiveFormatResolver != null) {
-                        archiveFormat = getArchiveFormat(results);
-                    }
-                    if (archiveFormat != null) {
-                        handleArchive(request, results, archiveFormat);
-                        jobCountDecremented = true;
-                    } else { // just process the results so far:
-                        results.setArchive(getArchiveFormat(results) != null);
-                        ResourceId id = resultHandler.handle(results);
-                        request.getIdentifier().setResourceId(id);
-                    }
-                } else { // we have possible container formats:
-                    droidCore.removeLowerPriorityHits(containerResults);
-                    containerResults = handleExtensions(request, containerResults);
-                    ResourceId id = resultHandler.handle(containerResults);
-                    request.getIdentifier().setResourceId(id);
-                }
-            } catch (ExecutionException e) {
-                final Throwable cause = e.getCause();
-                log.error(cause.getStackTrace().toString(), cause);
-                resultHandler.handleError(new IdentificationException(
-                        request, IdentificationErrorType.OTHER, cause));
-            } catch (InterruptedException e) {
-                log.debug(e.getMessage(), e);
-            } catch (IOException e) {
-                resultHandler.handleError(new IdentificationException(
-                        request, IdentificationErrorType.OTHER, e));
-            } finally {
-                closeRequest();
-                if (!jobCountDecremented) {
-                    jobCounter.decrement();
-                }
-            }
-        }
-
-        private void closeRequest() {
-            requests.remove(request);
-            try {
-                request.close();
-            } catch (IOException e) {
-                log.error(String.format("Error closing request [%s]", request.getIdentifier().getUri()), e);
-            }
-        }
-    }
-
 }
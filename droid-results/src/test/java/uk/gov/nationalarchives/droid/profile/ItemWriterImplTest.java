@@ -37,6 +37,19 @@ import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.SystemUtils;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.ValueVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryEncoder;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.ipc.SeekableReadChannel;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.apache.arrow.vector.util.ByteArrayReadableSeekableByteChannel;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
@@ -53,18 +66,26 @@ import uk.gov.nationalarchives.droid.export.interfaces.ExportTemplate;
 import uk.gov.nationalarchives.droid.export.interfaces.ExportTemplateColumnDef;
 import uk.gov.nationalarchives.droid.profile.referencedata.Format;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -1556,6 +1577,182 @@ public class ItemWriterImplTest {
         return def;
     }
 
+    @Test
+    public void should_write_an_arrow_file_with_only_the_columns_when_there_are_no_nodes_to_be_written() {
+        itemWriter.setOutputOptions(ExportOutputOptions.ARROW_OUTPUT);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        itemWriter.open(out);
+        itemWriter.close();
+
+        final byte[] bytes = out.toByteArray();
+        assertArrowMagic(bytes);
+        // the schema is written at the start of the file, and again in the footer.
+        assertEquals(2, countOccurrences(bytes, "FORMAT_VERSION"));
+    }
+
+    @Test
+    public void should_write_each_distinct_format_value_once_in_an_arrow_file() {
+        itemWriter.setOutputOptions(ExportOutputOptions.ARROW_OUTPUT);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        itemWriter.open(out);
+        for (int batch = 0; batch < 2; batch++) {
+            List<ProfileResourceNode> nodes = new ArrayList<>();
+            for (int i = 1; i <= 10; i++) {
+                ProfileResourceNode node = buildProfileResourceNode(i, (long) i);
+                node.addFormatIdentification(buildFormat(i));
+                nodes.add(node);
+            }
+            itemWriter.write(nodes);
+        }
+        itemWriter.close();
+
+        final byte[] bytes = out.toByteArray();
+        assertArrowMagic(bytes);
+        // dictionary encoded columns hold each distinct value once, however many rows have it.
+        assertEquals(1, countOccurrences(bytes, "Plain Text"));
+        assertEquals(1, countOccurrences(bytes, "text/plain"));
+        assertEquals(1, countOccurrences(bytes, "fmt/10"));
+        // other columns hold the value of each row.
+        assertEquals(2, countOccurrences(bytes, "11111111111111111111111111111110"));
+    }
+
+    @Test
+    public void should_read_back_an_arrow_file_with_its_schema_rows_nulls_and_dictionary_values() throws IOException {
+        itemWriter.setOutputOptions(ExportOutputOptions.ARROW_OUTPUT);
+        itemWriter.setArrowBatchRows(2);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        itemWriter.open(out);
+        List<ProfileResourceNode> nodes = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            ProfileResourceNode node = buildProfileResourceNode(i, (long) i);
+            node.addFormatIdentification(buildFormat(i, i == 2 ? null : "1.0"));
+            nodes.add(node);
+        }
+        nodes.get(2).getMetaData().setHash(null);
+        itemWriter.write(nodes.subList(0, 2));
+        itemWriter.write(nodes.subList(2, 3));
+        itemWriter.close();
+
+        final List<String> names = new ArrayList<>();
+        final List<String> hashes = new ArrayList<>();
+        final List<String> puids = new ArrayList<>();
+        final List<String> versions = new ArrayList<>();
+        try (BufferAllocator allocator = new RootAllocator();
+             ArrowFileReader reader = new ArrowFileReader(new SeekableReadChannel(
+                     new ByteArrayReadableSeekableByteChannel(out.toByteArray())), allocator)) {
+            final Schema schema = reader.getVectorSchemaRoot().getSchema();
+            final List<String> columns = new ArrayList<>();
+            for (Field field : schema.getFields()) {
+                columns.add(field.getName());
+                assertTrue(field.isNullable());
+            }
+            assertEquals(Arrays.asList(WriterConstants.HEADERS), columns);
+            assertNotNull(schema.findField(WriterConstants.HEADER_NAME_PUID).getDictionary());
+            assertNotNull(schema.findField(WriterConstants.HEADER_NAME_FORMAT_VERSION).getDictionary());
+            assertNull(schema.findField(WriterConstants.HEADER_NAME_HASH).getDictionary());
+
+            assertEquals(2, reader.getRecordBlocks().size());
+            while (reader.loadNextBatch()) {
+                final VectorSchemaRoot root = reader.getVectorSchemaRoot();
+                addValues(names, root.getVector(WriterConstants.HEADER_NAME_NAME));
+                addValues(hashes, root.getVector(WriterConstants.HEADER_NAME_HASH));
+                try (ValueVector puid = decode(reader, root.getVector(WriterConstants.HEADER_NAME_PUID));
+                     ValueVector version = decode(reader, root.getVector(WriterConstants.HEADER_NAME_FORMAT_VERSION))) {
+                    addValues(puids, puid);
+                    addValues(versions, version);
+                }
+            }
+        }
+        assertEquals(Arrays.asList("file1.txt", "file2.txt", "file3.txt"), names);
+        assertEquals(Arrays.asList("11111111111111111111111111111111", "11111111111111111111111111111112", null), hashes);
+        assertEquals(Arrays.asList("fmt/1", "fmt/2", "fmt/3"), puids);
+        assertEquals(Arrays.asList("1.0", null, "1.0"), versions);
+    }
+
+    @Test
+    public void should_write_full_record_batches_however_many_rows_are_written_at_a_time() throws IOException {
+        itemWriter.setOutputOptions(ExportOutputOptions.ARROW_OUTPUT);
+        itemWriter.setArrowBatchRows(4);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        itemWriter.open(out);
+        for (int i = 1; i <= 10; i++) {
+            ProfileResourceNode node = buildProfileResourceNode(i, (long) i);
+            node.addFormatIdentification(buildFormat(i));
+            itemWriter.write(List.of(node));
+        }
+        itemWriter.close();
+
+        final List<Integer> batchRows = new ArrayList<>();
+        try (BufferAllocator allocator = new RootAllocator();
+             ArrowFileReader reader = new ArrowFileReader(new SeekableReadChannel(
+                     new ByteArrayReadableSeekableByteChannel(out.toByteArray())), allocator)) {
+            while (reader.loadNextBatch()) {
+                batchRows.add(reader.getVectorSchemaRoot().getRowCount());
+            }
+        }
+        assertEquals(Arrays.asList(4, 4, 2), batchRows);
+    }
+
+    @Test
+    public void should_write_the_dictionaries_before_the_record_batches_so_an_arrow_file_can_be_read_as_a_stream() throws IOException {
+        itemWriter.setOutputOptions(ExportOutputOptions.ARROW_OUTPUT);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        itemWriter.open(out);
+        for (int i = 1; i <= 3; i++) {
+            ProfileResourceNode node = buildProfileResourceNode(i, (long) i);
+            node.addFormatIdentification(buildFormat(i));
+            itemWriter.write(List.of(node));
+        }
+        itemWriter.close();
+
+        // an Arrow file holds an Arrow stream after its magic bytes, which are padded to 8 bytes.
+        final byte[] bytes = out.toByteArray();
+        final List<String> puids = new ArrayList<>();
+        try (BufferAllocator allocator = new RootAllocator();
+             ArrowStreamReader reader = new ArrowStreamReader(
+                     new ByteArrayInputStream(bytes, 8, bytes.length - 8), allocator)) {
+            while (reader.loadNextBatch()) {
+                try (ValueVector puid = decode(reader,
+                        reader.getVectorSchemaRoot().getVector(WriterConstants.HEADER_NAME_PUID))) {
+                    addValues(puids, puid);
+                }
+            }
+        }
+        assertEquals(Arrays.asList("fmt/1", "fmt/2", "fmt/3"), puids);
+    }
+
+    private static ValueVector decode(ArrowReader reader, FieldVector indices) throws IOException {
+        return DictionaryEncoder.decode(indices,
+                reader.getDictionaryVectors().get(indices.getField().getDictionary().getId()));
+    }
+
+    private static void addValues(List<String> values, ValueVector vector) {
+        for (int i = 0; i < vector.getValueCount(); i++) {
+            final Object value = vector.getObject(i);
+            values.add(value == null ? null : value.toString());
+        }
+    }
+
+    private static void assertArrowMagic(byte[] bytes) {
+        final byte[] magic = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+        assertArrayEquals(magic, Arrays.copyOfRange(bytes, 0, magic.length));
+        assertArrayEquals(magic, Arrays.copyOfRange(bytes, bytes.length - magic.length, bytes.length));
+    }
+
+    private static int countOccurrences(byte[] bytes, String value) {
+        final String text = new String(bytes, StandardCharsets.ISO_8859_1);
+        int count = 0;
+        for (int index = text.indexOf(value); index >= 0; index = text.indexOf(value, index + 1)) {
+            count++;
+        }
+        return count;
+    }
+
     private static boolean isNotWindows() {
         return !SystemUtils.IS_OS_WINDOWS;
     }
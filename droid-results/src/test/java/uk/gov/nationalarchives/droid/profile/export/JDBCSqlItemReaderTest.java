@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.profile.export;
+
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.CriterionFieldEnum;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.CriterionOperator;
+import uk.gov.nationalarchives.droid.core.interfaces.filter.FilterValue;
+import uk.gov.nationalarchives.droid.profile.FilterCriterionImpl;
+import uk.gov.nationalarchives.droid.profile.FilterImpl;
+import uk.gov.nationalarchives.droid.profile.NodeMetaData;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+import uk.gov.nationalarchives.droid.results.handlers.JDBCBatchResultHandlerDao;
+
+public class JDBCSqlItemReaderTest {
+
+    private static final String FORMAT_PUID = "fmt/1";
+    private static final int NODES = 23;
+
+    private HikariDataSource datasource;
+    private JDBCSqlItemReader reader;
+
+    @Before
+    public void setup() throws SQLException {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:derby:memory:itemReader" + System.nanoTime() + ";create=true");
+        config.setAutoCommit(false);
+        datasource = new HikariDataSource(config);
+
+        JDBCBatchResultHandlerDao.setIsFreshTemplate(true);
+        new JDBCBatchResultHandlerDao(datasource).init();
+        JDBCBatchResultHandlerDao.setIsFreshTemplate(false);
+        try (Connection conn = datasource.getConnection(); Statement statement = conn.createStatement()) {
+            statement.execute("INSERT INTO FORMAT (PUID, NAME) VALUES ('', 'Unknown')");
+            statement.execute("INSERT INTO FORMAT (PUID, NAME) VALUES ('" + FORMAT_PUID + "', 'Format')");
+            conn.commit();
+        }
+
+        JDBCBatchResultHandlerDao dao = new JDBCBatchResultHandlerDao(datasource);
+        dao.init();
+
+        Format format = new Format(FORMAT_PUID, null, "Format", null);
+        for (int i = 0; i < NODES; i++) {
+            ProfileResourceNode node = new ProfileResourceNode(URI.create("file:/file" + i));
+            NodeMetaData metaData = new NodeMetaData();
+            metaData.setName("file" + i);
+            metaData.setResourceType(ResourceType.FILE);
+            metaData.setNodeStatus(NodeStatus.DONE);
+            metaData.setSize((long) i);
+            node.setMetaData(metaData);
+            node.setExtensionMismatch(false);
+            if (i % 3 == 0) {
+                node.addFormatIdentification(format);
+            }
+            dao.save(node, null);
+        }
+        dao.commit();
+
+        reader = new JDBCSqlItemReader(dao);
+        reader.setFetchSize(2);
+        reader.setChunkSize(5);
+    }
+
+    @After
+    public void tearDown() {
+        JDBCBatchResultHandlerDao.setIsFreshTemplate(false);
+        datasource.close();
+    }
+
+    @Test
+    public void testReadsAllNodesInPagesWithTheirIdentifications() throws Exception {
+        List<ProfileResourceNode> nodes = readAll(null);
+
+        assertEquals(NODES, nodes.size());
+        for (int i = 0; i < NODES; i++) {
+            ProfileResourceNode node = nodes.get(i);
+            assertEquals("file" + i, node.getMetaData().getName());
+            assertEquals(i % 3 == 0 ? 1 : 0, node.getIdentificationCount().intValue());
+            if (i > 0) {
+                assertTrue(node.getId() > nodes.get(i - 1).getId());
+            }
+        }
+    }
+
+    @Test
+    public void testAppliesFilterOnFormatsInTheDatabase() throws Exception {
+        FilterCriterionImpl criterion = new FilterCriterionImpl();
+        criterion.setSelectedValues(new ArrayList<FilterValue>());
+        criterion.setField(CriterionFieldEnum.PUID);
+        criterion.setOperator(CriterionOperator.ANY_OF);
+        criterion.addSelectedValue(new FilterValue(0, "", FORMAT_PUID));
+
+        List<ProfileResourceNode> nodes = readAll(newFilter(criterion));
+
+        assertEquals(8, nodes.size());
+        for (ProfileResourceNode node : nodes) {
+            assertEquals(FORMAT_PUID, node.getFormatIdentifications().get(0).getPuid());
+        }
+        assertEquals(8, readFromDatabase(newFilter(criterion)).size());
+    }
+
+    @Test
+    public void testAppliesFilterOnNodesInTheDatabase() throws Exception {
+        FilterCriterionImpl criterion = new FilterCriterionImpl();
+        criterion.setField(CriterionFieldEnum.FILE_SIZE);
+        criterion.setOperator(CriterionOperator.GTE);
+        criterion.setValueFreeText("10");
+
+        List<ProfileResourceNode> nodes = readAll(newFilter(criterion));
+
+        assertEquals(NODES - 10, nodes.size());
+        for (ProfileResourceNode node : nodes) {
+            assertTrue(node.getMetaData().getSize() >= 10);
+        }
+        assertEquals(NODES - 10, readFromDatabase(newFilter(criterion)).size());
+    }
+
+    private static FilterImpl newFilter(FilterCriterionImpl criterion) {
+        FilterImpl filter = new FilterImpl();
+        filter.setEnabled(true);
+        filter.setNarrowed(true);
+        filter.addFilterCiterion(criterion, 0);
+        return filter;
+    }
+
+    private List<ProfileResourceNode> readAll(FilterImpl filter) throws Exception {
+        List<ProfileResourceNode> nodes = new ArrayList<>();
+        reader.readAll(nodes::addAll, filter);
+        return nodes;
+    }
+
+    /*
+     * Reads the nodes returned by the database, without the check readAll makes on each node, so the
+     * filter is only applied if the query applies it.
+     */
+    private List<ProfileResourceNode> readFromDatabase(FilterImpl filter) {
+        List<ProfileResourceNode> nodes = new ArrayList<>();
+        reader.open(filter);
+        try {
+            ProfileResourceNode node;
+            while ((node = reader.read()) != null) {
+                nodes.add(node);
+            }
+        } finally {
+            reader.close();
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.results.handlers;
+
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import uk.gov.nationalarchives.droid.core.interfaces.NodeStatus;
+import uk.gov.nationalarchives.droid.core.interfaces.ResourceType;
+import uk.gov.nationalarchives.droid.profile.NodeMetaData;
+import uk.gov.nationalarchives.droid.profile.ProfileResourceNode;
+import uk.gov.nationalarchives.droid.profile.referencedata.Format;
+
+public class JDBCBatchResultHandlerDaoTest {
+
+    private static final String FORMAT_PUID = "fmt/1";
+
+    private HikariDataSource datasource;
+
+    @Before
+    public void setup() throws SQLException {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:derby:memory:batchResults" + System.nanoTime() + ";create=true");
+        config.setAutoCommit(false);
+        datasource = new HikariDataSource(config);
+
+        JDBCBatchResultHandlerDao.setIsFreshTemplate(true);
+        new JDBCBatchResultHandlerDao(datasource).init();
+        JDBCBatchResultHandlerDao.setIsFreshTemplate(false);
+        execute("INSERT INTO FORMAT (PUID, NAME) VALUES ('', 'Unknown')");
+        execute("INSERT INTO FORMAT (PUID, NAME) VALUES ('" + FORMAT_PUID + "', 'Format')");
+    }
+
+    @After
+    public void tearDown() {
+        JDBCBatchResultHandlerDao.setIsFreshTemplate(false);
+        datasource.close();
+    }
+
+    @Test
+    public void testSavesNodesInBatchesAcrossWritersAndBuildsDeferredIndexesOnCommit() throws SQLException {
+        JDBCBatchResultHandlerDao dao = newDao(3, 7, 0);
+        assertTrue(getIndexes().contains("IDX_PRN_NAME"));
+
+        Format format = new Format(FORMAT_PUID, null, "Format", null);
+        ProfileResourceNode updated = null;
+        for (int i = 0; i < 53; i++) {
+            ProfileResourceNode node = newNode("file" + i);
+            if (i % 2 == 0) {
+                node.addFormatIdentification(format);
+            }
+            dao.save(node, null);
+            if (i == 0) {
+                assertFalse(getIndexes().contains("IDX_PRN_NAME"));
+                assertTrue(getIndexes().contains("IDX_PARENT_ID"));
+                updated = node;
+            }
+        }
+        updated.getMetaData().setNodeStatus(NodeStatus.ERROR);
+        dao.save(updated, null);
+        dao.commit();
+
+        assertEquals(53, count("SELECT COUNT(*) FROM PROFILE_RESOURCE_NODE"));
+        assertEquals(27, count("SELECT COUNT(*) FROM IDENTIFICATION WHERE PUID = '" + FORMAT_PUID + "'"));
+        assertEquals(26, count("SELECT COUNT(*) FROM IDENTIFICATION WHERE PUID = ''"));
+        assertEquals(1, count("SELECT COUNT(*) FROM PROFILE_RESOURCE_NODE WHERE NODE_STATUS = "
+                + NodeStatus.ERROR.ordinal()));
+        assertTrue(getIndexes().contains("IDX_PRN_NAME"));
+        assertTrue(getIndexes().contains("IDX_PREFIX_PLUS_ONE"));
+    }
+
+    @Test
+    public void testCommitsPartBatchOnceItHasWaitedLongEnough() throws Exception {
+        JDBCBatchResultHandlerDao dao = newDao(1, 1000, 50);
+        for (int i = 0; i < 3; i++) {
+            dao.save(newNode("file" + i), null);
+        }
+
+        long giveUp = System.currentTimeMillis() + 10000;
+        while (count("SELECT COUNT(*) FROM PROFILE_RESOURCE_NODE") < 3 && System.currentTimeMillis() < giveUp) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, count("SELECT COUNT(*) FROM PROFILE_RESOURCE_NODE"));
+        dao.commit();
+    }
+
+    @Test
+    public void testDoesNotDeferIndexesOfAProfileWithResults() throws SQLException {
+        JDBCBatchResultHandlerDao dao = newDao(1, 10, 0);
+        dao.save(newNode("first"), null);
+        dao.commit();
+
+        dao = newDao(1, 10, 0);
+        dao.save(newNode("second"), null);
+        assertTrue(getIndexes().contains("IDX_PRN_NAME"));
+        dao.commit();
+        assertEquals(2, count("SELECT COUNT(*) FROM PROFILE_RESOURCE_NODE"));
+    }
+
+    @Test
+    public void testBulkLoadRunsWithOnlyPrimaryKeysAndBuildsEverythingOnCommit() throws SQLException {
+        JDBCBatchResultHandlerDao dao = newDao(1, 10, 0);
+        dao.save(newNode("first"), null);
+        dao.commit();
+
+        dao = newDao(2, 10, 0, true);
+        ProfileResourceNode node = newNode("second");
+        node.addFormatIdentification(new Format(FORMAT_PUID, null, "Format", null));
+        dao.save(node, null);
+        Set<String> indexes = getIndexes();
+        assertFalse(indexes.contains("IDX_PRN_NAME"));
+        assertFalse(indexes.contains("IDX_PARENT_ID"));
+        assertTrue(getForeignKeys().isEmpty());
+
+        dao.commit();
+        indexes = getIndexes();
+        assertTrue(indexes.contains("IDX_PRN_NAME"));
+        assertTrue(indexes.contains("IDX_PARENT_ID"));
+        assertEquals(2, getForeignKeys().size());
+        assertEquals(1, count("SELECT COUNT(*) FROM IDENTIFICATION WHERE PUID = '" + FORMAT_PUID + "'"));
+    }
+
+    @Test(timeout = 30000)
+    public void testSavesTheRestOfAFailedBatchOneAtATime() throws SQLException {
+        JDBCBatchResultHandlerDao dao = newDao(1, 10, 0);
+        for (int i = 0; i < 10; i++) {
+            ProfileResourceNode node = newNode("file" + i);
+            if (i == 3) {
+                // There is no such format, so the batch fails on the foreign key of its identification.
+                node.addFormatIdentification(new Format("fmt/unknown", null, "Unknown", null));
+            }
+            dao.save(node, null);
+        }
+        dao.commit();
+
+        assertEquals(9, count("SELECT COUNT(*) FROM PROFILE_RESOURCE_NODE"));
+        assertEquals(0, count("SELECT COUNT(*) FROM PROFILE_RESOURCE_NODE WHERE NAME = 'file3'"));
+        assertEquals(9, count("SELECT COUNT(*) FROM IDENTIFICATION"));
+    }
+
+    @Test(timeout = 30000)
+    public void testCommitDoesNotWaitForeverWhenAResultCannotBeSaved() throws SQLException {
+        JDBCBatchResultHandlerDao dao = newDao(2, 5, 0);
+        for (int i = 0; i < 6; i++) {
+            dao.save(newNode("file" + i), null);
+        }
+        // A node without metadata fails with a runtime exception as it is saved.
+        dao.save(new ProfileResourceNode(URI.create("file:/broken")), null);
+        dao.commit();
+
+        assertEquals(6, count("SELECT COUNT(*) FROM PROFILE_RESOURCE_NODE"));
+        dao.save(newNode("after"), null);
+        dao.commit();
+        assertEquals(7, count("SELECT COUNT(*) FROM PROFILE_RESOURCE_NODE"));
+    }
+
+    private JDBCBatchResultHandlerDao newDao(int writers, int batchSize, int batchLatency) {
+        return newDao(writers, batchSize, batchLatency, false);
+    }
+
+    private JDBCBatchResultHandlerDao newDao(int writers, int batchSize, int batchLatency, boolean bulkLoad) {
+        JDBCBatchResultHandlerDao dao = new JDBCBatchResultHandlerDao(datasource);
+        dao.setWriterThreads(writers);
+        dao.setBatchSize(batchSize);
+        dao.setBatchLatency(batchLatency);
+        dao.setBulkLoad(bulkLoad);
+        dao.init();
+        return dao;
+    }
+
+    private static ProfileResourceNode newNode(String name) {
+        ProfileResourceNode node = new ProfileResourceNode(URI.create("file:/" + name));
+        NodeMetaData metaData = new NodeMetaData();
+        metaData.setName(name);
+        metaData.setResourceType(ResourceType.FILE);
+        metaData.setNodeStatus(NodeStatus.DONE);
+        node.setMetaData(metaData);
+        node.setExtensionMismatch(false);
+        return node;
+    }
+
+    private Set<String> getIndexes() throws SQLException {
+        Set<String> indexes = new HashSet<>();
+        try (Connection conn = datasource.getConnection();
+             ResultSet results = conn.getMetaData().getIndexInfo(null, null, "PROFILE_RESOURCE_NODE", false, true)) {
+            while (results.next()) {
+                indexes.add(results.getString("INDEX_NAME"));
+            }
+        }
+        return indexes;
+    }
+
+    private Set<String> getForeignKeys() throws SQLException {
+        Set<String> foreignKeys = new HashSet<>();
+        try (Connection conn = datasource.getConnection();
+             ResultSet results = conn.getMetaData().getImportedKeys(null, null, "IDENTIFICATION")) {
+            while (results.next()) {
+                foreignKeys.add(results.getString("FK_NAME"));
+            }
+        }
+        return foreignKeys;
+    }
+
+    private long count(String query) throws SQLException {
+        try (Connection conn = datasource.getConnection();
+             PreparedStatement statement = conn.prepareStatement(query);
+             ResultSet results = statement.executeQuery()) {
+            results.next();
+            return results.getLong(1);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = datasource.getConnection();
+             PreparedStatement statement = conn.prepareStatement(sql)) {
+            statement.execute();
+            conn.commit();
+        }
+    }
+}
@@ -36,14 +36,20 @@ import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import static org.mockito.ArgumentMatchers.any;
 
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -53,6 +59,7 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
 import uk.gov.nationalarchives.droid.core.interfaces.AsynchDroid;
+import uk.gov.nationalarchives.droid.core.interfaces.IdentificationErrorType;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationException;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
@@ -116,6 +123,68 @@ public class FileEventHandlerTest {
         verify(identificationEngine).submit(requestCaptor.capture());
     }
     
+    @Test
+    public void testFileEventHandlerUsesAttributesReadByTheWalk() throws IOException {
+        fileEventHandler.setSubmissionThrottle(mock(SubmissionThrottle.class));
+
+        BasicFileAttributes attributes = mock(BasicFileAttributes.class);
+        when(attributes.size()).thenReturn(1234L);
+        when(attributes.lastModifiedTime()).thenReturn(FileTime.fromMillis(5678L));
+
+        final Path file = Paths.get("test_sig_files/DROID 5  Architecture.doc");
+        fileEventHandler.onEvent(file, attributes, new ResourceId(1L, ""), null,
+                f -> fail("The file system should only be checked when a file cannot be found"));
+
+        ArgumentCaptor<RequestMetaData> metaDataCaptor = ArgumentCaptor.forClass(RequestMetaData.class);
+        verify(requestFactory).newRequest(metaDataCaptor.capture(), any(RequestIdentifier.class));
+        assertEquals(Long.valueOf(1234L), metaDataCaptor.getValue().getSize());
+        assertEquals(Long.valueOf(5678L), metaDataCaptor.getValue().getTime());
+        assertEquals("DROID 5  Architecture.doc", metaDataCaptor.getValue().getName());
+    }
+
+    @Test
+    public void testFileWithStaleAttributesStopsTheWalkIfTheFileSystemHasGone() throws IOException {
+        fileEventHandler.setSubmissionThrottle(mock(SubmissionThrottle.class));
+        ResultHandler resultHandler = mock(ResultHandler.class);
+        fileEventHandler.setResultHandler(resultHandler);
+        doThrow(new IOException("gone")).when(request).open(any(Path.class));
+
+        BasicFileAttributes attributes = mock(BasicFileAttributes.class);
+        when(attributes.size()).thenReturn(1234L);
+        when(attributes.lastModifiedTime()).thenReturn(FileTime.fromMillis(5678L));
+
+        final Path file = Paths.get("non-existent");
+        final IOException unavailable = new IOException("file system unavailable");
+        try {
+            fileEventHandler.onEvent(file, attributes, new ResourceId(1L, ""), null, f -> {
+                assertEquals(file, f);
+                throw unavailable;
+            });
+            fail("Expected the walk to stop");
+        } catch (IOException e) {
+            assertSame(unavailable, e);
+        }
+        verify(resultHandler, never()).handleError(any(IdentificationException.class));
+        verify(identificationEngine, never()).submit(any(IdentificationRequest.class));
+    }
+
+    @Test
+    public void testFileWithStaleAttributesIsNotFoundIfTheFileSystemIsStillThere() throws IOException {
+        fileEventHandler.setSubmissionThrottle(mock(SubmissionThrottle.class));
+        ResultHandler resultHandler = mock(ResultHandler.class);
+        fileEventHandler.setResultHandler(resultHandler);
+        doThrow(new IOException("gone")).when(request).open(any(Path.class));
+
+        BasicFileAttributes attributes = mock(BasicFileAttributes.class);
+        when(attributes.lastModifiedTime()).thenReturn(FileTime.fromMillis(5678L));
+
+        fileEventHandler.onEvent(Paths.get("non-existent"), attributes, new ResourceId(1L, ""), null, f -> { });
+
+        ArgumentCaptor<IdentificationException> exCaptor = ArgumentCaptor.forClass(IdentificationException.class);
+        verify(resultHandler).handleError(exCaptor.capture());
+        assertEquals(IdentificationErrorType.FILE_NOT_FOUND, exCaptor.getValue().getErrorType());
+    }
+
     @Test
     public void testFileEventHandlerAppliesThrottleAfterSubmittingAFile() throws Exception {
         
@@ -35,7 +35,9 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.assertEquals;
@@ -650,4 +652,194 @@ public class FileWalkerTest {
       // Check the files have all been processed even with addition of directory
       assertEquals(fileSet.isEmpty(), true);
    }
-}
\ No newline at end of file
+
+   /**
+    * Tests that listing directories ahead of the walk on other threads visits
+    * files and directories in the same order, and with the same parents, as a
+    * walk which lists each directory as it reaches it.
+    *
+    * @throws Exception
+    */
+   @Test
+   public void testParallelListingWalksInTheSameOrder() throws Exception {
+      final List<String> sequential = recordWalk(null);
+      final ParallelDirectoryLister lister = new ParallelDirectoryLister(4, 2, ProfileSpecJobCounter.PROGRESS_DEPTH_LIMIT);
+      try {
+         assertEquals(sequential, recordWalk(lister));
+         // 2 directories, 4 sub-directories and 30 files beneath the root.
+         assertEquals(36, lister.getDiscoveredCount());
+         assertEquals(0, lister.getPrefetchedCount());
+      } finally {
+         lister.shutdown();
+      }
+   }
+
+   /**
+    * Tests that no more listings are made ahead of the walk than the lister
+    * allows, even within the progress depth limit.
+    *
+    * @throws Exception
+    */
+   @Test
+   public void testParallelListingHoldsNoMoreThanTheMaximumListings() throws Exception {
+      final ParallelDirectoryLister lister = new ParallelDirectoryLister(4, 1, ProfileSpecJobCounter.PROGRESS_DEPTH_LIMIT);
+      final AtomicInteger peakPrefetched = new AtomicInteger();
+      final AtomicLong nextId = new AtomicLong(0);
+      final FileWalkerHandler handler = (file, depth, parent) -> {
+         peakPrefetched.accumulateAndGet(lister.getPrefetchedCount(), Math::max);
+         return new ResourceId(nextId.incrementAndGet(), "");
+      };
+      try {
+         final FileWalker fileWalker = new FileWalker(TEST_ROOT.toUri(), true, handler, handler, handler);
+         fileWalker.setDirectoryLister(lister);
+         fileWalker.walk();
+         assertTrue(peakPrefetched.get() <= 1);
+         // Directories which were not listed ahead are still counted when the walk lists them.
+         assertEquals(36, lister.getDiscoveredCount());
+      } finally {
+         lister.shutdown();
+      }
+   }
+
+   /**
+    * Tests that a walk listing directories ahead of itself resumes from the
+    * file it stopped at, without reusing listings made before it stopped.
+    *
+    * @throws Exception
+    */
+   @Test
+   public void testFastForwardWithParallelListing() throws Exception {
+      final int FILES_TO_WALK = 23;
+      final Set<Path> fileSet = new HashSet<>(files);
+      final AtomicLong nextId = new AtomicLong(0);
+      final ParallelDirectoryLister lister = new ParallelDirectoryLister(4, 100, ProfileSpecJobCounter.PROGRESS_DEPTH_LIMIT);
+      FileWalker fileWalker = new FileWalker(TEST_ROOT.toUri(), true);
+      fileWalker.setDirectoryLister(lister);
+
+      FileWalkerHandler directoryHandler = mock(FileWalkerHandler.class);
+      FileWalkerHandler fileHandler = mock(FileWalkerHandler.class);
+      fileWalker.setDirectoryHandler(directoryHandler);
+      fileWalker.setFileHandler(fileHandler);
+
+      when(fileHandler.handle(any(Path.class), anyInt(), any(ProgressEntry.class))).thenAnswer(invocation -> {
+         final Path thisFile = (Path) invocation.getArguments()[0];
+         if (thisFile.equals(files.get(FILES_TO_WALK))) {
+            throw new DirectoryWalker.CancelException(thisFile.toFile(), (Integer) invocation.getArguments()[1]);
+         }
+         assertTrue("File not found within set.", fileSet.remove(thisFile));
+         return new ResourceId(nextId.incrementAndGet(), "");
+      });
+      when(directoryHandler.handle(any(Path.class), anyInt(), nullable(ProgressEntry.class)))
+            .thenAnswer(invocation -> new ResourceId(nextId.incrementAndGet(), ""));
+
+      try {
+         try {
+            fileWalker.walk();
+            fail("Expected file walker to throw exception");
+         } catch (DirectoryWalker.CancelException e) {
+            assertEquals(files.get(FILES_TO_WALK), e.getFile().toPath());
+         }
+         assertEquals(0, lister.getPrefetchedCount());
+
+         FileWalkerHandler resumeHandler = mock(FileWalkerHandler.class);
+         when(resumeHandler.handle(any(Path.class), anyInt(), any(ProgressEntry.class))).thenAnswer(invocation -> {
+            assertTrue("File not found within set.", fileSet.remove((Path) invocation.getArguments()[0]));
+            return new ResourceId(nextId.incrementAndGet(), "");
+         });
+         fileWalker.setFileHandler(resumeHandler);
+         fileWalker.walk();
+
+         assertTrue(fileSet.isEmpty());
+      } finally {
+         lister.shutdown();
+      }
+   }
+
+   /**
+    * Tests that a walk reading attributes as it lists directories hands the
+    * handlers the attributes of every file and directory beneath the root, and
+    * visits them in the same order as a walk which does not.
+    *
+    * @throws Exception
+    */
+   @Test
+   public void testWalkReadingAttributesPassesThemToTheHandlers() throws Exception {
+      final List<String> withoutAttributes = recordWalk(null);
+      final List<String> events = new ArrayList<>();
+      final AtomicLong nextId = new AtomicLong(0);
+      final FileWalkerHandler handler = new FileWalkerHandler() {
+         @Override
+         public ResourceId handle(Path file, int depth, ProgressEntry parent) {
+            assertEquals("Only the root is walked without attributes", 0, depth);
+            return handle(file, null, depth, parent);
+         }
+
+         @Override
+         public ResourceId handle(Path file, BasicFileAttributes attributes, int depth, ProgressEntry parent) {
+            if (attributes != null) {
+               assertEquals(Files.isDirectory(file), attributes.isDirectory());
+            }
+            events.add(depth + " " + TEST_ROOT.toAbsolutePath().relativize(file.toAbsolutePath())
+                  + " in " + (parent == null ? null : parent.getId()));
+            return new ResourceId(nextId.incrementAndGet(), "");
+         }
+      };
+      final FileWalker fileWalker = new FileWalker(TEST_ROOT.toUri(), true, handler, handler, handler);
+      fileWalker.setReadAttributes(true);
+      fileWalker.walk();
+      assertEquals(withoutAttributes, events);
+   }
+
+   /**
+    * Tests that a directory which has gone since its parent was listed is
+    * handled as restricted when listing it fails, and the walk carries on.
+    *
+    * @throws Exception
+    */
+   @Test
+   public void testDirectoryGoneSinceItsParentWasListedIsRestricted() throws Exception {
+      final Path dir2 = TEST_ROOT.resolve("dir2").toAbsolutePath();
+      final List<Path> walkedFiles = new ArrayList<>();
+      final List<Path> restricted = new ArrayList<>();
+      final AtomicLong nextId = new AtomicLong(0);
+      final FileWalkerHandler fileHandler = (file, depth, parent) -> {
+         walkedFiles.add(file.toAbsolutePath());
+         return null;
+      };
+      final FileWalkerHandler directoryHandler = (file, depth, parent) -> {
+         if (depth == 0) {
+            // the root has been listed, so the attributes of dir2 are already read.
+            FileUtil.deleteQuietly(dir2);
+         }
+         return new ResourceId(nextId.incrementAndGet(), "");
+      };
+      final FileWalkerHandler restrictedHandler = (file, depth, parent) -> {
+         restricted.add(file.toAbsolutePath());
+         return new ResourceId(nextId.incrementAndGet(), "");
+      };
+      final FileWalker fileWalker = new FileWalker(TEST_ROOT.toUri(), true, fileHandler, directoryHandler,
+            restrictedHandler);
+      fileWalker.setReadAttributes(true);
+      fileWalker.walk();
+
+      assertEquals(Collections.singletonList(dir2), restricted);
+      assertEquals(15, walkedFiles.size());
+      for (final Path file : walkedFiles) {
+         assertTrue(file.startsWith(TEST_ROOT.resolve("dir1").toAbsolutePath()));
+      }
+   }
+
+   private List<String> recordWalk(final ParallelDirectoryLister lister) throws Exception {
+      final List<String> events = new ArrayList<>();
+      final AtomicLong nextId = new AtomicLong(0);
+      final FileWalkerHandler handler = (file, depth, parent) -> {
+         events.add(depth + " " + TEST_ROOT.toAbsolutePath().relativize(file.toAbsolutePath())
+               + " in " + (parent == null ? null : parent.getId()));
+         return new ResourceId(nextId.incrementAndGet(), "");
+      };
+      final FileWalker fileWalker = new FileWalker(TEST_ROOT.toUri(), true, handler, handler, handler);
+      fileWalker.setDirectoryLister(lister);
+      fileWalker.walk();
+      return events;
+   }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2016, The National Archives <pronom@nationalarchives.gov.uk>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following
+ * conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the The National Archives nor the
+ *    names of its contributors may be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.gov.nationalarchives.droid.submitter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PipelineStageTest {
+
+    @Test
+    public void testRunsTasksOnTheStageThreads() throws Exception {
+        PipelineStage stage = new PipelineStage("test", 1, 10);
+        try {
+            AtomicReference<Thread> thread = new AtomicReference<>();
+            CountDownLatch done = new CountDownLatch(1);
+            stage.execute(() -> {
+                thread.set(Thread.currentThread());
+                done.countDown();
+            });
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertNotSame(Thread.currentThread(), thread.get());
+            assertTrue(thread.get().getName().startsWith("test-thread-"));
+            assertEquals(1, stage.getTaskCount());
+            assertEquals(0, stage.getCallerRunCount());
+        } finally {
+            stage.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCallerRunsTasksWhenTheQueueIsFull() throws Exception {
+        PipelineStage stage = new PipelineStage("test", 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            stage.execute(() -> {
+                started.countDown();
+                await(release);
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            stage.execute(() -> await(release));
+            assertEquals(1, stage.getQueueDepth());
+
+            AtomicReference<Thread> thread = new AtomicReference<>();
+            stage.execute(() -> thread.set(Thread.currentThread()));
+            assertSame(Thread.currentThread(), thread.get());
+            assertEquals(1, stage.getCallerRunCount());
+            assertEquals(1, stage.getPeakQueueDepth());
+            assertEquals(3, stage.getTaskCount());
+        } finally {
+            release.countDown();
+            stage.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCallerRunsTasksAfterWaitingForSpace() throws Exception {
+        PipelineStage stage = new PipelineStage("test", 1, 1);
+        stage.setMaxWaitMillis(50);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            stage.execute(() -> {
+                started.countDown();
+                await(release);
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            stage.execute(() -> await(release));
+
+            AtomicReference<Thread> thread = new AtomicReference<>();
+            final long start = System.nanoTime();
+            stage.execute(() -> thread.set(Thread.currentThread()));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+            assertSame(Thread.currentThread(), thread.get());
+            assertEquals(1, stage.getCallerRunCount());
+        } finally {
+            release.countDown();
+            stage.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testQueuesTasksOnceSpaceIsFreedWhileWaiting() throws Exception {
+        PipelineStage stage = new PipelineStage("test", 1, 1);
+        stage.setMaxWaitMillis(PipelineStage.WAIT_INDEFINITELY);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            stage.execute(() -> {
+                started.countDown();
+                await(release);
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            stage.execute(() -> { });
+
+            AtomicReference<Thread> thread = new AtomicReference<>();
+            CountDownLatch done = new CountDownLatch(1);
+            new Thread(() -> {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                release.countDown();
+            }).start();
+            stage.execute(() -> {
+                thread.set(Thread.currentThread());
+                done.countDown();
+            });
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertNotSame(Thread.currentThread(), thread.get());
+            assertEquals(0, stage.getCallerRunCount());
+        } finally {
+            release.countDown();
+            stage.shutdownNow();
+        }
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testRejectsTasksOnceShutDown() {
+        PipelineStage stage = new PipelineStage("test", 1, 10);
+        stage.shutdownNow();
+        stage.execute(() -> { });
+    }
+
+    @Test
+    public void testCanChangeTheThreadsOfAStage() throws Exception {
+        PipelineStage stage = new PipelineStage("test", 1, 10);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            stage.setThreads(2);
+            stage.execute(() -> {
+                started.countDown();
+                await(release);
+            });
+            stage.execute(() -> {
+                started.countDown();
+                await(release);
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            stage.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
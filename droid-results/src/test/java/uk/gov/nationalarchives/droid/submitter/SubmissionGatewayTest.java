@@ -31,21 +31,29 @@
  */
 package uk.gov.nationalarchives.droid.submitter;
 
+import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -55,6 +63,8 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
 import uk.gov.nationalarchives.droid.core.BinarySignatureIdentifier;
+import uk.gov.nationalarchives.droid.core.interfaces.BlockingThreadPoolExecutorFactory;
+import uk.gov.nationalarchives.droid.core.interfaces.ExecutorStrategy;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationResultCollection;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
@@ -166,6 +176,141 @@ public class SubmissionGatewayTest {
         assertEquals(1, allResults.size());
     }
 
+    @Test(timeout = 30000)
+    public void testEachRequestPassesThroughEveryStageOfThePipeline() throws Exception {
+        BinarySignatureIdentifier droid = new BinarySignatureIdentifier();
+        droid.setSignatureFile("test_sig_files/DROID_SignatureFile_V26.xml");
+        droid.init();
+
+        SubmissionGateway submissionGateway = new SubmissionGateway();
+        submissionGateway.setDroidCore(droid);
+        submissionGateway.setPauseAspect(new PauseAspect());
+        ResultHandler resultHandler = mock(ResultHandler.class);
+        submissionGateway.setResultHandler(resultHandler);
+        submissionGateway.setSubmissionQueue(mock(SubmissionQueue.class));
+        submissionGateway.setArchiveFormatResolver(mock(ArchiveFormatResolver.class));
+        submissionGateway.setContainerFormatResolver(mock(ArchiveFormatResolver.class));
+        submissionGateway.setExecutorService(Executors.newFixedThreadPool(2));
+        submissionGateway.setContainerThreads(1);
+        submissionGateway.setPersistThreads(1);
+        submissionGateway.setStageQueueCapacity(1);
+
+        final Path file = Paths.get("test_sig_files/sample.pdf");
+        for (int i = 0; i < 10; i++) {
+            RequestMetaData metaData = new RequestMetaData(Files.size(file), 1L, "sample.pdf");
+            IdentificationRequest<Path> request = new FileSystemIdentificationRequest(metaData,
+                    new RequestIdentifier(file.toUri()));
+            request.open(file);
+            submissionGateway.submit(request);
+        }
+        submissionGateway.awaitFinished();
+
+        verify(resultHandler, times(10)).handle(any(IdentificationResultCollection.class));
+        assertEquals(List.of("binary", "container", "hash", "persist", "archive"),
+                List.copyOf(submissionGateway.getStageQueueDepths().keySet()));
+        for (int depth : submissionGateway.getStageQueueDepths().values()) {
+            assertEquals(0, depth);
+        }
+        submissionGateway.close();
+    }
+
+    @Test(timeout = 30000)
+    public void testRequestsAreClosedBeforeTheirResultsArePersisted() throws Exception {
+        BinarySignatureIdentifier droid = new BinarySignatureIdentifier();
+        droid.setSignatureFile("test_sig_files/DROID_SignatureFile_V26.xml");
+        droid.init();
+
+        final Set<IdentificationRequest> closedRequests = ConcurrentHashMap.newKeySet();
+        final AtomicInteger persistedOpen = new AtomicInteger();
+        ResultHandler resultHandler = mock(ResultHandler.class);
+        doAnswer(invocation -> {
+            if (closedRequests.isEmpty()) {
+                persistedOpen.incrementAndGet();
+            }
+            return null;
+        }).when(resultHandler).handle(any(IdentificationResultCollection.class));
+
+        SubmissionGateway submissionGateway = new SubmissionGateway();
+        submissionGateway.setDroidCore(droid);
+        submissionGateway.setPauseAspect(new PauseAspect());
+        submissionGateway.setResultHandler(resultHandler);
+        submissionGateway.setSubmissionQueue(mock(SubmissionQueue.class));
+        submissionGateway.setArchiveFormatResolver(mock(ArchiveFormatResolver.class));
+        submissionGateway.setContainerFormatResolver(mock(ArchiveFormatResolver.class));
+        submissionGateway.setExecutorService(Executors.newFixedThreadPool(2));
+
+        final Path file = Paths.get("test_sig_files/sample.pdf");
+        RequestMetaData metaData = new RequestMetaData(Files.size(file), 1L, "sample.pdf");
+        IdentificationRequest<Path> request = new FileSystemIdentificationRequest(metaData,
+                new RequestIdentifier(file.toUri())) {
+            @Override
+            public void close() throws IOException {
+                closedRequests.add(this);
+                super.close();
+            }
+        };
+        request.open(file);
+        submissionGateway.submit(request);
+        submissionGateway.awaitFinished();
+
+        verify(resultHandler, times(1)).handle(any(IdentificationResultCollection.class));
+        assertEquals(0, persistedOpen.get());
+        assertEquals(1, closedRequests.size());
+        submissionGateway.close();
+    }
+
+    @Test(timeout = 30000)
+    public void testSubmittingThreadNeverIdentifiesWithABoundedQueue() throws Exception {
+        final Set<Thread> identifyingThreads = ConcurrentHashMap.newKeySet();
+        BinarySignatureIdentifier droid = new BinarySignatureIdentifier() {
+            @Override
+            public IdentificationResultCollection matchBinarySignatures(IdentificationRequest request) {
+                identifyingThreads.add(Thread.currentThread());
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.matchBinarySignatures(request);
+            }
+        };
+        droid.setSignatureFile("test_sig_files/DROID_SignatureFile_V26.xml");
+        droid.init();
+
+        BlockingThreadPoolExecutorFactory factory = new BlockingThreadPoolExecutorFactory();
+        factory.setStrategy(ExecutorStrategy.BOUNDED_QUEUE);
+        factory.setThreads(1);
+        factory.setWorkQueueSize(100);
+        ExecutorService executorService = factory.newExecutorService();
+
+        SubmissionGateway submissionGateway = new SubmissionGateway();
+        submissionGateway.setDroidCore(droid);
+        submissionGateway.setPauseAspect(new PauseAspect());
+        ResultHandler resultHandler = mock(ResultHandler.class);
+        submissionGateway.setResultHandler(resultHandler);
+        submissionGateway.setSubmissionQueue(mock(SubmissionQueue.class));
+        submissionGateway.setArchiveFormatResolver(mock(ArchiveFormatResolver.class));
+        submissionGateway.setContainerFormatResolver(mock(ArchiveFormatResolver.class));
+        submissionGateway.setExecutorService(executorService);
+        submissionGateway.setExecutorStrategy(ExecutorStrategy.BOUNDED_QUEUE);
+        submissionGateway.setStageQueueCapacity(1);
+
+        final Path file = Paths.get("test_sig_files/sample.pdf");
+        for (int i = 0; i < 10; i++) {
+            RequestMetaData metaData = new RequestMetaData(Files.size(file), 1L, "sample.pdf");
+            IdentificationRequest<Path> request = new FileSystemIdentificationRequest(metaData,
+                    new RequestIdentifier(file.toUri()));
+            request.open(file);
+            submissionGateway.submit(request);
+        }
+        submissionGateway.awaitFinished();
+
+        verify(resultHandler, times(10)).handle(any(IdentificationResultCollection.class));
+        assertFalse(identifyingThreads.isEmpty());
+        assertFalse(identifyingThreads.contains(Thread.currentThread()));
+        submissionGateway.close();
+    }
+
     @Test
     public void testResultAvailableWhenIdentificationFailed() throws InterruptedException {
 
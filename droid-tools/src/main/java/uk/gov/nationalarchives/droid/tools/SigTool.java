@@ -81,6 +81,7 @@ public final class SigTool {
     private static final String MATCH_OPTION = "m";
     private static final String OUTPUT_FILE = "o";
     private static final String INTERNAL_FILE = "i";
+    private static final String SNAPSHOT_OPTION = "z";
 
 
     private static final int SUCCESS = 0;
@@ -192,7 +193,9 @@ public final class SigTool {
 
     private static void processSigFiles(CommandLine cli, PrintStream output, SignatureType sigType,
                                    boolean spaceElements, boolean noTabs) throws IOException, SignatureParseException {
-        if (cli.hasOption(EXPRESSION_OUTPUT)) {
+        if (cli.hasOption(SNAPSHOT_OPTION)) {
+            SigUtils.writeSignatureSnapshot(output, cli.getOptionValue(FILE_OPTION), cli.getOptionValue(SNAPSHOT_OPTION));
+        } else if (cli.hasOption(EXPRESSION_OUTPUT)) {
             SigUtils.summariseSignatures(output, cli.getOptionValue(FILE_OPTION), sigType, spaceElements, noTabs);
         } else {
             SigUtils.convertSignatureFileToNewFormat(output, cli.getOptionValue(FILE_OPTION), sigType, spaceElements);
@@ -244,6 +247,8 @@ public final class SigTool {
                 "Specifies a file to output the results to.  If not specified, will output to console."));
         options.addOption(new Option(INTERNAL_FILE, "internal", true,
                 "The path of an internal file if matching container signatures."));
+        options.addOption(new Option(SNAPSHOT_OPTION, "snapshot", true,
+                "Writes a precompiled snapshot of the binary signature file given by --file to this directory."));
         addOptionGroups(options, buildFileOptions(), buildOutputOptions(), buildSignatureOptions(), buildCompileOptions());
         return options;
     }
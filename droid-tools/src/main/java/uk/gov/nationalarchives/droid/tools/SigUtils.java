@@ -69,6 +69,7 @@ import uk.gov.nationalarchives.droid.container.ole2.Ole2IdentifierEngine;
 import uk.gov.nationalarchives.droid.container.zip.ZipIdentifierEngine;
 import uk.gov.nationalarchives.droid.core.IdentificationRequestByteReaderAdapter;
 import uk.gov.nationalarchives.droid.core.SignatureFileParser;
+import uk.gov.nationalarchives.droid.core.SignatureFileSnapshot;
 import uk.gov.nationalarchives.droid.core.SignatureParseException;
 import uk.gov.nationalarchives.droid.core.interfaces.IdentificationRequest;
 import uk.gov.nationalarchives.droid.core.interfaces.RequestIdentifier;
@@ -192,6 +193,23 @@ public final class SigUtils {
         return parser.parseSigFile(theFile.toPath());
     }
 
+    /**
+     * Parses and prepares a binary signature file, and writes a precompiled snapshot of it, which DROID loads
+     * instead of parsing the signature file when configured to use the same snapshot directory.
+     * @param output The PrintStream to write the path of the snapshot to.
+     * @param filename The filename of the binary signature file.
+     * @param snapshotDir The directory to write the snapshot to.
+     * @throws IOException If there is a problem writing the snapshot.
+     * @throws SignatureParseException If there is a problem parsing the signature file.
+     */
+    public static void writeSignatureSnapshot(PrintStream output, String filename, String snapshotDir)
+            throws IOException, SignatureParseException {
+        FFSignatureFile sigFile = readBinarySignatures(filename);
+        sigFile.prepareForUse();
+        Path snapshot = new SignatureFileSnapshot(Paths.get(snapshotDir)).save(Paths.get(filename), sigFile);
+        output.println(snapshot.toAbsolutePath());
+    }
+
     /**
      * Parses a ByteSequence XML fragment into a ByteSequence object.
      * @param byteSequenceElement A ByteSequence XML element.